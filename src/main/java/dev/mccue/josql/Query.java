@@ -19,12 +19,14 @@ import java.io.BufferedReader;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.SortedMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.Collection;
@@ -39,6 +41,12 @@ import dev.mccue.josql.internal.*;
 
 import dev.mccue.josql.events.*;
 
+import dev.mccue.josql.profiler.ExpressionProfiler;
+import dev.mccue.josql.profiler.SlowQueryLog;
+
+import dev.mccue.josql.index.IndexedList;
+import dev.mccue.josql.index.ConcurrentIndexedCollection;
+
 /** 
  * This class provides the ability for a developer to apply an arbitrary SQL statement
  * (using suitable syntax) to a collection of Java objects.
@@ -138,9 +146,26 @@ public class Query
     private Expression where = null;
     private Expression having = null;
     private Map bindVars = null;
+
+    // The variable frame, the values of the named bind variables that have been
+    // given a slot (see: getVariableSlot).
+    private Map varSlots = null;
+    private Object[] varFrame = null;
+
+    // The number of slots needed for the values of the shared expressions.
+    private int rowValueCount = 0;
+
+    // Whether the WHERE clause can stop once the LIMIT has been reached.
+    private boolean whereCanStop = false;
+
+    // Incremented each time a bind variable is set.
+    private int varsVersion = 0;
+    private int executionCount = 0;
     private String query = null;
     private boolean wantTimings = false;
     private List functionHandlers = null;
+    private FunctionRegistry functionRegistry = null;
+    private int functionCacheSize = 1000;
     private int anonVarIndex = 1;
     private Expression from = null;
     private Class objClass = null;
@@ -153,11 +178,19 @@ public class Query
     private Query parent = null;
     private Map listeners = new HashMap ();
     private Comparator userComparator = null;
+    private ExpressionProfiler profiler = null;
+    private SlowQueryLog slowQueryLog = null;
 
     // Execution data.
     private transient Object currentObject = null;
     private transient List allObjects = null;
     private transient List currGroupBys = null;
+
+    // Object to the values of the shared expressions (see: getRowValues).
+    private transient Map rowValues = null;
+    private transient Object lastRow = null;
+    private transient Object[] lastRowValues = null;
+    private transient boolean keepRowValues = false;
     
     private QueryResults qd = null;
 
@@ -324,6 +357,131 @@ public class Query
 
     }
 
+    /**
+     * Set the registry of functions, functions in the registry are preferred over the methods
+     * of the function handlers.  The registry of the top level query is used by sub-queries.
+     *
+     * @param r The registry.
+     */
+    public void setFunctionRegistry (FunctionRegistry r)
+    {
+
+	if (this.parent != null)
+	{
+
+	    this.parent.setFunctionRegistry (r);
+
+	    return;
+
+	}
+
+	this.functionRegistry = r;
+
+    }
+
+    public FunctionRegistry getFunctionRegistry ()
+    {
+
+	if (this.parent != null)
+	{
+
+	    return this.parent.getFunctionRegistry ();
+
+	}
+
+	return this.functionRegistry;
+
+    }
+
+    /**
+     * Set the maximum number of results that are cached, per execution, for each
+     * {@link dev.mccue.josql.functions.Pure pure} function.  A size of 0 turns the caching off.
+     * The size of the top level query is used by sub-queries.
+     *
+     * @param s The size.
+     */
+    public void setFunctionCacheSize (int s)
+    {
+
+	if (this.parent != null)
+	{
+
+	    this.parent.setFunctionCacheSize (s);
+
+	    return;
+
+	}
+
+	this.functionCacheSize = s;
+
+    }
+
+    public int getFunctionCacheSize ()
+    {
+
+	if (this.parent != null)
+	{
+
+	    return this.parent.getFunctionCacheSize ();
+
+	}
+
+	return this.functionCacheSize;
+
+    }
+
+    /**
+     * Get the cache of results for a {@link dev.mccue.josql.functions.Pure pure} function, the
+     * cache lasts for the current execution of the top level query.  The cache maps the argument
+     * values, as a List, to the result, the result may be <code>null</code>.
+     *
+     * @param f The function.
+     * @return The cache or <code>null</code> if the top level query is not being executed or
+     *         caching is turned off.
+     */
+    public Map getFunctionCache (Object f)
+    {
+
+	if (this.parent != null)
+	{
+
+	    return this.parent.getFunctionCache (f);
+
+	}
+
+	if ((this.qd == null)
+	    ||
+	    (this.functionCacheSize < 1)
+	   )
+	{
+
+	    return null;
+
+	}
+
+	if (this.qd.functionCaches == null)
+	{
+
+	    this.qd.functionCaches = new IdentityHashMap ();
+
+	}
+
+	FunctionCache fc = (FunctionCache) this.qd.functionCaches.get (f);
+
+	if (fc == null)
+	{
+
+	    fc = new FunctionCache (this.functionCacheSize);
+
+	    this.qd.functionCaches.put (f,
+					fc);
+
+	}
+
+	return fc;
+
+    }
+
     public void addFunctionHandler (Object o)
     {
 
@@ -391,6 +549,13 @@ public class Query
 
     }
 
+    public Limit getGroupByLimit ()
+    {
+
+	return this.groupByLimit;
+
+    }
+
     public void setGroupByOrderColumns (List cols)
     {
 
@@ -398,6 +563,13 @@ public class Query
 
     }
 
+    public List getGroupByOrderColumns ()
+    {
+
+	return this.groupOrderBys;
+
+    }
+
     public List getGroupByColumns ()
     {
 
@@ -677,7 +849,8 @@ public class Query
     }    
 
     /**
-     * Set the value of a named bind variable.
+     * Set the value of a named bind variable, a {@link BindVariableChangedEvent} is fired
+     * to the listeners of the top level query.
      *
      * @param name The name.
      * @param v The value.
@@ -710,169 +883,573 @@ public class Query
             
         }
 
-	this.bindVars.put (name.toLowerCase (),
-			   v);
-
-    }
+	String n = name.toLowerCase ();
 
-    /**
-     * Set the value of an indexed bind variable.
-     *
-     * @param index The index.
-     * @param v The value.
-     */
-    public void setVariable (int    index,
-			     Object v)
-    {
+	Object old = this.bindVars.put (n,
+					v);
 
-	if (this.parent != null)
+	if (this.varSlots != null)
 	{
 
-	    this.parent.setVariable (index,
-				     v);
+	    Integer sl = (Integer) this.varSlots.get (n);
 
-	    return;
+	    if (sl != null)
+	    {
+
+		this.varFrame[sl.intValue ()] = v;
+
+	    }
 
 	}
 
-	this.setVariable (Query.INT_BIND_VAR_PREFIX + index,
-			  v);
+	this.varsVersion++;
+
+	this.fireBindVariableChangedEvent (n,
+					   old,
+					   v);
 
     }
 
     /**
-     * Get all the bind variables as a Map.
+     * Get the values of the shared expressions for an object, each shared expression has
+     * a slot in the values which is <code>null</code> until the expression has been evaluated
+     * for the object.  The values are only held during an execution.
      *
-     * @return The name/value mappings of the bind variables.
+     * @param o The object.
+     * @return The values or <code>null</code> if the query is not being executed or has no
+     *         shared expressions.
      */
-    public Map getVariables ()
+    public Object[] getRowValues (Object o)
     {
 
-	if (this.parent != null)
+	if (this.rowValues == null)
 	{
 
-	    return this.parent.getVariables ();
+	    return null;
 
 	}
 
-	return this.bindVars;
+	// The shared expressions are generally evaluated for the same object in turn.
+	if ((o == this.lastRow)
+	    &&
+	    (this.lastRowValues != null)
+	   )
+	{
+
+	    return this.lastRowValues;
+
+	}
+
+	Object[] vs = null;
+
+	if (!this.keepRowValues)
+	{
+
+	    // Still in the WHERE clause, only the values of the objects that match are
+	    // kept (see: keepRowValues) so the values of the last object can be reused.
+	    vs = this.lastRowValues;
+
+	    if (vs == null)
+	    {
+
+		vs = new Object[this.rowValueCount];
+
+	    } else {
+
+		Arrays.fill (vs,
+			     null);
+
+	    }
+
+	} else {
+
+	    vs = (Object[]) this.rowValues.get (o);
+
+	    if (vs == null)
+	    {
+
+		vs = new Object[this.rowValueCount];
+
+		this.rowValues.put (o,
+				    vs);
+
+	    }
+
+	}
+
+	this.lastRow = o;
+	this.lastRowValues = vs;
+
+	return vs;
 
     }
 
-    /**
-     * A helper method that will evaluate the WHERE clause for the object passed in.
-     *
-     * @param o The object to evaluate the WHERE clause against.
-     * @return The result of calling: Expression.isTrue(Object,Query) for the WHERE clause.
-     */
-    public boolean isWhereTrue (Object o)
-                                throws QueryExecutionException 
+    private void keepRowValues (Object o)
     {
 
-	if (this.where == null)
+	if ((this.rowValues != null)
+	    &&
+	    (o == this.lastRow)
+	    &&
+	    (this.lastRowValues != null)
+	   )
 	{
 
-	    // A null where means yes!
-	    return true;
+	    this.rowValues.put (o,
+				this.lastRowValues);
+
+	    // Kept, so can't be reused for the next object.
+	    this.lastRowValues = null;
 
 	}
 
-	return this.where.isTrue (o,
-				  this);
+    }
+
+    /**
+     * Get the number of times this query has been executed.
+     *
+     * @return The count.
+     */
+    public int getExecutionCount ()
+    {
+
+	return this.executionCount;
 
     }
 
     /**
-     * Set the bind variables in one go.
+     * Get the version of the bind variables, this changes each time a bind variable is
+     * set and when a query is executed after the map returned by {@link #getVariables()}
+     * has been changed directly.  Sub-queries use the version of the top level query.
      *
-     * @param bVars The bind variable name/value mappings.
+     * @return The version.
      */
-    public void setVariables (Map bVars)
+    public int getVariablesVersion ()
     {
 
 	if (this.parent != null)
 	{
 
-	    this.parent.setVariables (bVars);
-
-	    return;
+	    return this.parent.getVariablesVersion ();
 
 	}
 
-        Iterator iter = bVars.entrySet ().iterator ();
-        
-        while (iter.hasNext ())
-        {
-            
-            Map.Entry item = (Map.Entry) iter.next ();
-            
-            Object k = item.getKey ();
-            Object v = item.getValue ();
-            
-            if (k instanceof Number)
-            {
-                
-                this.setVariable (((Number) k).intValue (),
-                                  v);
-                
-            } else {
-            
-                this.setVariable (k.toString (),
-                                  v);
-                
-            }
-            
-        }
+	return this.varsVersion;
 
     }
 
     /**
-     * Execute all the expressions for the specified type, either: {@link #ALL} or:
-     * {@link #RESULTS}.  If the expressions are aliased then the results will be
-     * available in the save results upon completion.
+     * Get the slot in the variable frame for a named bind variable, the value of the variable
+     * can then be gained via {@link #getSlotVariable(int)} without the name being looked up.
+     * The slot is kept up to date as the variable is set and at the start of each execution.
+     * Sub-queries use the slots of the top level query.
      *
-     * @param l The List of objects to execute the functions on.
-     * @param t The type of expressions to execute.
-     * @throws QueryExecutionException If there is an issue with executing one of the
-     *                                 expressions or if the Query hasn't been inited yet.
+     * @param name The name of the bind variable, not a special variable.
+     * @return The slot.
      */
-    public void doExecuteOn (List   l,
-			     String t)
-	                     throws QueryExecutionException
+    public int getVariableSlot (String name)
     {
 
-        if (this.executeOn == null)
-        {
-            
-            // Do nothing.
-            return;
-            
-        }
-
-	if (!this.isParsed)
+	if (this.parent != null)
 	{
 
-	    throw new QueryExecutionException ("Query has not been initialised.");
+	    return this.parent.getVariableSlot (name);
 
 	}
 
-	if (this.executeOn != null)
+	String n = name.toLowerCase ();
+
+	if (n.startsWith (":"))
 	{
 
-	    // Set the "all objects".
-	    this.allObjects = l;
+	    n = n.substring (1);
 
-	    long s = System.currentTimeMillis ();
+	}
 
-	    List fs = (List) this.executeOn.get (t);
+	if (this.varSlots == null)
+	{
 
-	    if (fs != null)
-	    {
+	    this.varSlots = new HashMap ();
+	    this.varFrame = new Object[4];
 
-		// Execute each one in turn.
-		int si = fs.size (); 
+	}
 
-		for (int i = 0; i < si; i++)
+	Integer sl = (Integer) this.varSlots.get (n);
+
+	if (sl != null)
+	{
+
+	    return sl.intValue ();
+
+	}
+
+	int s = this.varSlots.size ();
+
+	if (s == this.varFrame.length)
+	{
+
+	    Object[] f = new Object[s * 2];
+
+	    System.arraycopy (this.varFrame,
+			      0,
+			      f,
+			      0,
+			      s);
+
+	    this.varFrame = f;
+
+	}
+
+	if (this.bindVars != null)
+	{
+
+	    this.varFrame[s] = this.bindVars.get (n);
+
+	}
+
+	this.varSlots.put (n,
+			   Integer.valueOf (s));
+
+	return s;
+
+    }
+
+    /**
+     * Copy the values of the bind variables into the variable frame.  The map returned by
+     * {@link #getVariables()} can be changed directly rather than via {@link #setVariable(String,Object)},
+     * so the frame is made up to date before each execution.  If a value has changed then the
+     * version is changed as well, so that values held for the variables are discarded.
+     */
+    private void syncVariableFrame ()
+    {
+
+	if ((this.varSlots == null)
+	    ||
+	    (this.bindVars == null)
+	   )
+	{
+
+	    return;
+
+	}
+
+	boolean changed = false;
+
+	Iterator iter = this.varSlots.entrySet ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Map.Entry item = (Map.Entry) iter.next ();
+
+	    int sl = ((Integer) item.getValue ()).intValue ();
+
+	    Object v = this.bindVars.get (item.getKey ());
+
+	    if (v != this.varFrame[sl])
+	    {
+
+		this.varFrame[sl] = v;
+
+		changed = true;
+
+	    }
+
+	}
+
+	if (changed)
+	{
+
+	    this.varsVersion++;
+
+	}
+
+    }
+
+    /**
+     * Get the value of the bind variable in a slot in the variable frame.
+     *
+     * @param slot The slot, as returned by {@link #getVariableSlot(String)}.
+     * @return The value.
+     */
+    public Object getSlotVariable (int slot)
+    {
+
+	if (this.parent != null)
+	{
+
+	    return this.parent.getSlotVariable (slot);
+
+	}
+
+	return this.varFrame[slot];
+
+    }
+
+    /**
+     * Set the value of an indexed bind variable.
+     *
+     * @param index The index.
+     * @param v The value.
+     */
+    public void setVariable (int    index,
+			     Object v)
+    {
+
+	if (this.parent != null)
+	{
+
+	    this.parent.setVariable (index,
+				     v);
+
+	    return;
+
+	}
+
+	this.setVariable (Query.INT_BIND_VAR_PREFIX + index,
+			  v);
+
+    }
+
+    /**
+     * Get all the bind variables as a Map.  The names are in lower case.  Changes made directly
+     * to the map (rather than via {@link #setVariable(String,Object)}) are seen when the query is
+     * next executed.
+     *
+     * @return The name/value mappings of the bind variables.
+     */
+    public Map getVariables ()
+    {
+
+	if (this.parent != null)
+	{
+
+	    return this.parent.getVariables ();
+
+	}
+
+	return this.bindVars;
+
+    }
+
+    /**
+     * A helper method that will evaluate the WHERE clause for the object passed in.
+     *
+     * @param o The object to evaluate the WHERE clause against.
+     * @return The result of calling: Expression.isTrue(Object,Query) for the WHERE clause.
+     */
+    public boolean isWhereTrue (Object o)
+                                throws QueryExecutionException 
+    {
+
+	if (this.where == null)
+	{
+
+	    // A null where means yes!
+	    return true;
+
+	}
+
+	return this.where.isTrue (o,
+				  this);
+
+    }
+
+    /**
+     * A helper method that will evaluate the HAVING clause for the object passed in.
+     *
+     * @param o The object to evaluate the HAVING clause against.
+     * @return The result of calling: Expression.isTrue(Object,Query) for the HAVING clause.
+     */
+    public boolean isHavingTrue (Object o)
+                                 throws QueryExecutionException 
+    {
+
+	if (this.having == null)
+	{
+
+	    return true;
+
+	}
+
+	return this.having.isTrue (o,
+				   this);
+
+    }
+
+    /**
+     * A helper method that will get the GROUP BY values for the object passed in.
+     *
+     * @param o The object to get the GROUP BY values for.
+     * @return The values (the key of the group the object is in) or <code>null</code> if there
+     *         is no GROUP BY clause.
+     * @throws QueryExecutionException If a value cannot be gained.
+     */
+    public List getGroupByValues (Object o)
+                                  throws QueryExecutionException 
+    {
+
+	if (this.grouper == null)
+	{
+
+	    return null;
+
+	}
+
+	return this.grouper.getValues (o);
+
+    }
+
+    /**
+     * A helper method that will evaluate the SELECT clause for each of the objects passed in,
+     * the current group by objects and all objects should be set first if the SELECT clause
+     * uses them.  Select items that add the items of a collection or map to the results are
+     * not supported.
+     *
+     * @param objs The objects to evaluate the SELECT clause against.
+     * @return The objects themselves if the objects are to be returned or a List of Lists of
+     *         the column values.
+     * @throws QueryExecutionException If a column value cannot be gained.
+     */
+    public List getSelectValues (List   objs)
+                                 throws QueryExecutionException 
+    {
+
+	if (this.retObjs)
+	{
+
+	    return new ArrayList (objs);
+
+	}
+
+	List res = new ArrayList (objs.size ());
+
+	this.getColumnValues (objs,
+			      res);
+
+	return res;
+
+    }
+
+    /**
+     * A helper method that will evaluate the SELECT clause for the object passed in.  Select
+     * items that add the items of a collection or map to the results are not supported.
+     *
+     * @param o The object to evaluate the SELECT clause against.
+     * @return The object itself if the objects are to be returned or a List of the column values.
+     * @throws QueryExecutionException If a column value cannot be gained.
+     */
+    public Object getSelectValue (Object o)
+                                  throws QueryExecutionException 
+    {
+
+	if (this.retObjs)
+	{
+
+	    return o;
+
+	}
+
+	List res = new ArrayList (1);
+
+	this.getColumnValues (Collections.singletonList (o),
+			      res);
+
+	return res.get (0);
+
+    }
+
+    /**
+     * Set the bind variables in one go.
+     *
+     * @param bVars The bind variable name/value mappings.
+     */
+    public void setVariables (Map bVars)
+    {
+
+	if (this.parent != null)
+	{
+
+	    this.parent.setVariables (bVars);
+
+	    return;
+
+	}
+
+        Iterator iter = bVars.entrySet ().iterator ();
+        
+        while (iter.hasNext ())
+        {
+            
+            Map.Entry item = (Map.Entry) iter.next ();
+            
+            Object k = item.getKey ();
+            Object v = item.getValue ();
+            
+            if (k instanceof Number)
+            {
+                
+                this.setVariable (((Number) k).intValue (),
+                                  v);
+                
+            } else {
+            
+                this.setVariable (k.toString (),
+                                  v);
+                
+            }
+            
+        }
+
+    }
+
+    /**
+     * Execute all the expressions for the specified type, either: {@link #ALL} or:
+     * {@link #RESULTS}.  If the expressions are aliased then the results will be
+     * available in the save results upon completion.
+     *
+     * @param l The List of objects to execute the functions on.
+     * @param t The type of expressions to execute.
+     * @throws QueryExecutionException If there is an issue with executing one of the
+     *                                 expressions or if the Query hasn't been inited yet.
+     */
+    public void doExecuteOn (List   l,
+			     String t)
+	                     throws QueryExecutionException
+    {
+
+        if (this.executeOn == null)
+        {
+            
+            // Do nothing.
+            return;
+            
+        }
+
+	if (!this.isParsed)
+	{
+
+	    throw new QueryExecutionException ("Query has not been initialised.");
+
+	}
+
+	if (this.executeOn != null)
+	{
+
+	    // Set the "all objects".
+	    this.allObjects = l;
+
+	    long s = System.currentTimeMillis ();
+
+	    List fs = (List) this.executeOn.get (t);
+
+	    if (fs != null)
+	    {
+
+		// Execute each one in turn.
+		int si = fs.size (); 
+
+		for (int i = 0; i < si; i++)
 		{
 
 		    AliasedExpression f = (AliasedExpression) fs.get (i);
@@ -953,7 +1530,9 @@ public class Query
 
     /**
      * Execute this query on the specified objects.  It should be noted that the collection
-     * is first converted to a List and then passed to the {@link #execute(List)} method for execution.
+     * is first converted to a List and then passed to the {@link #execute(List)} method for execution, unless
+     * it is an {@link IndexedList} in which case it is passed as is so that the indexes can be used.  For a
+     * {@link ConcurrentIndexedCollection} the current snapshot is used.
      *
      * @param objs The collection of objects to execute the query on.
      * @return The list of objects that match the query.
@@ -972,6 +1551,22 @@ public class Query
 	    throw new QueryExecutionException ("Collection of objects must be non-null when an object class is specified.");
 
 	}
+
+	if (objs instanceof IndexedList)
+	{
+
+	    // Keep the indexes.
+	    return this.execute ((List) objs);
+
+	}
+
+	if (objs instanceof ConcurrentIndexedCollection)
+	{
+
+	    // The snapshot won't change while the query is executing.
+	    return this.execute ((List) ((ConcurrentIndexedCollection) objs).getSnapshot ());
+
+	}
 		
         List l = new ArrayList (objs.size ());
         l.addAll (objs);
@@ -991,6 +1586,27 @@ public class Query
 	                         throws QueryExecutionException
     {
 
+	try
+	{
+
+	    return this.executeObjects (objs);
+
+	} finally {
+
+	    // The values are only for this execution, even if it failed.
+	    this.rowValues = null;
+	    this.lastRow = null;
+	    this.lastRowValues = null;
+	    this.keepRowValues = false;
+
+	}
+
+    }
+
+    private QueryResults executeObjects (List   objs)
+	                                 throws QueryExecutionException
+    {
+
 	if ((objs == null)
 	    &&
 	    (this.objClass != null)
@@ -1003,6 +1619,22 @@ public class Query
 
 	this.qd = new QueryResults ();
 
+	this.executionCount++;
+
+	if (this.parent == null)
+	{
+
+	    this.syncVariableFrame ();
+
+	}
+
+	if (this.rowValueCount > 0)
+	{
+
+	    this.rowValues = new IdentityHashMap ();
+
+	}
+
 	if ((this.objClass == null)
 	    &&
 	    (objs == null)
@@ -1015,26 +1647,66 @@ public class Query
 
 	this.allObjects = objs;
 
+	long start = System.nanoTime ();
+	long s = start;
+
+	this.qd.statistics.put (QueryResults.INPUT_SIZE,
+				Integer.valueOf (objs.size ()));
+
 	// See if we have any expressions that are to be executed on 
 	// the complete set.
 	this.doExecuteOn (objs,
 		          Query.ALL);
 
+	s = this.endStage ("EXECUTE ON ALL",
+			   s);
+
         this.evalWhereClause ();
 
+	// Every object from here on is in the results.
+	this.keepRowValues = true;
+
+	this.qd.statistics.put (QueryResults.WHERE_RESULTS_SIZE,
+				Integer.valueOf (this.qd.whereResults.size ()));
+
+	s = this.endStage ("WHERE",
+			   s);
+
 	// See if we have any functions that are to be executed on 
 	// the results...
         this.doExecuteOn (this.qd.results,
                           Query.RESULTS);
 
+	s = this.endStage ("EXECUTE ON RESULTS",
+			   s);
+
 	// If we have a "having" clause execute it here...
         this.evalHavingClause ();
 
+	if (this.qd.havingResults != null)
+	{
+
+	    this.qd.statistics.put (QueryResults.HAVING_RESULTS_SIZE,
+				    Integer.valueOf (this.qd.havingResults.size ()));
+
+	}
+
+	s = this.endStage ("HAVING",
+			   s);
+
 	// Now perform the group by operation.
         if (this.grouper != null)
         {
             
             this.evalGroupByClause ();
+
+	    this.endStage ("GROUP BY",
+			   s);
+
+	    this.qd.statistics.put (QueryResults.GROUP_BY_RESULTS_SIZE,
+				    Integer.valueOf (this.qd.groupByResults.size ()));
+
+	    this.endExecution (start);
             
             return this.qd;
         
@@ -1043,11 +1715,22 @@ public class Query
 	// Now perform the order by.
         this.evalOrderByClause ();
 
+	s = this.endStage ("ORDER BY",
+			   s);
+
 	// Finally, if we have a limit clause, restrict the set of objects returned...
         this.evalLimitClause ();
 
+	s = this.endStage ("LIMIT",
+			   s);
+
         this.evalSelectClause ();
 
+	this.endStage ("SELECT",
+		       s);
+
+	this.endExecution (start);
+
 	try
 	{
 
@@ -1062,6 +1745,61 @@ public class Query
 
     }
 
+    private long endStage (String stage,
+			   long   s)
+    {
+
+	long t = System.nanoTime ();
+
+	this.qd.stageTimings.put (stage,
+				  Long.valueOf (t - s));
+
+	return t;
+
+    }
+
+    private void endExecution (long start)
+    {
+
+	this.qd.statistics.put (QueryResults.RESULTS_SIZE,
+				Integer.valueOf (this.qd.results.size ()));
+
+	if (this.qd.functionCaches != null)
+	{
+
+	    int h = 0;
+	    int m = 0;
+
+	    Iterator iter = this.qd.functionCaches.values ().iterator ();
+
+	    while (iter.hasNext ())
+	    {
+
+		FunctionCache fc = (FunctionCache) iter.next ();
+
+		h += fc.getHits ();
+		m += fc.getMisses ();
+
+	    }
+
+	    this.qd.statistics.put (QueryResults.FUNCTION_CACHE_HITS,
+				    Integer.valueOf (h));
+	    this.qd.statistics.put (QueryResults.FUNCTION_CACHE_MISSES,
+				    Integer.valueOf (m));
+
+	}
+
+	if (this.slowQueryLog != null)
+	{
+
+	    this.slowQueryLog.check (this,
+				     this.qd,
+				     System.nanoTime () - start);
+
+	}
+
+    }
+
     private void evalSelectClause ()
                                    throws QueryExecutionException
     {
@@ -1250,14 +1988,8 @@ public class Query
 
                 }
 
-                this.qd.saveValues = new HashMap ();
-
-                if (origSvs != null)
-                {
-
-                    this.qd.saveValues.putAll (origSvs);
-                    
-                }
+                // The group sees the original save values without them being copied.
+                this.qd.saveValues = new SaveValues (origSvs);
 
                 this.qd.groupBySaveValues.put (l,
                                                this.qd.saveValues);
@@ -1337,6 +2069,10 @@ public class Query
 
             }
 
+            // The groups read through to the original save values, so any later values
+            // are put in a new map over them.
+            origSvs = new SaveValues (origSvs);
+
             // Restore the save values.
             this.qd.saveValues = origSvs;
 
@@ -1519,17 +2255,53 @@ public class Query
         if (this.where != null)
 	{
 
+	    // See if an index can be used to limit the objects to check.
+	    List objs = this.allObjects;
+
+	    if (objs instanceof IndexedList)
+	    {
+
+		IndexPlanner ip = new IndexPlanner ((IndexedList) objs,
+						    this);
+
+		List cands = ip.getCandidates (this.where);
+
+		if (cands != null)
+		{
+
+		    objs = cands;
+		    si = objs.size ();
+
+		    this.qd.statistics.put (QueryResults.WHERE_INDEX,
+					    ip.getIndexAccessor ());
+
+		}
+
+	    }
+
+	    // The number of matches needed to fill the LIMIT, if known.
+	    int max = -1;
+
+	    if (this.whereCanStop)
+	    {
+
+		max = this.limit.getEnd (this);
+
+	    }
+
 	    // Create the where results with "about" half the size of the input collection.
 	    // Further optimizations may be possible here if some statistics are collected
 	    // about how many objects match/fail the where clause and then increase the
 	    // capacity of the where results list as required, i.e. to cut down on the number
 	    // of array copy and allocation operations performed.  For now though half will do ;)
-	    this.qd.whereResults = new ArrayList (si / 2);
+	    this.qd.whereResults = new ArrayList ((max > -1) ? Math.min (max, si) : si / 2);
+
+	    boolean stopped = false;
 
 	    for (int i = 0; i < si; i++)
 	    {
 
-		Object o = this.allObjects.get (i);
+		Object o = objs.get (i);
 
 		this.currentObject = o;
 
@@ -1541,15 +2313,48 @@ public class Query
 
 		    this.qd.whereResults.add (o);
 
+		    this.keepRowValues (o);
+
+		    if (this.qd.whereResults.size () == max)
+		    {
+
+			// No need to look at the rest.
+			stopped = i < si - 1;
+
+			si = i + 1;
+
+			break;
+
+		    }
+
 		}
 
 	    }
 
+	    this.qd.statistics.put (QueryResults.WHERE_SCAN_SIZE,
+				    Integer.valueOf (si));
+
+	    if (stopped)
+	    {
+
+		this.qd.statistics.put (QueryResults.WHERE_SCAN_STOPPED,
+					Boolean.TRUE);
+
+	    }
+
 	} else {
 
 	    // No limiting where clause so what's passed in is what comes out.
 	    this.qd.whereResults = this.allObjects;
 
+	    if (this.allObjects instanceof IndexedList)
+	    {
+
+		// Don't sort or limit the indexed list itself.
+		this.qd.whereResults = new ArrayList (this.allObjects);
+
+	    }
+
 	}
 
 	double wet = (double) System.currentTimeMillis () - (double) s;
@@ -1781,17 +2586,10 @@ public class Query
 
 	}
 
-	if (id instanceof String)
-	{
-
-	    id = ((String) id).toLowerCase ();
-
-	}
-
-	Object old = this.qd.saveValues.get (id);
+	id = SaveValues.getKey (id);
 
-	this.qd.saveValues.put (id,
-				value);
+	Object old = this.qd.saveValues.put (id,
+					     value);
 
 	if (old != null)
 	{
@@ -1957,12 +2755,7 @@ public class Query
 
 	}
 
-	if (id instanceof String)
-	{
-
-	    id = ((String) id).toLowerCase ();
-
-	}
+	id = SaveValues.getKey (id);
 
 	return this.qd.saveValues.get (id);
 
@@ -2345,14 +3138,35 @@ public class Query
 					   q,
 					   e);
 
-	}
+	}
+
+	this.isParsed = true;
+
+	this.addTiming ("Time to parse query into object form",
+			System.currentTimeMillis () - s);
+
+	// Init the query.
+	this.init ();
+
+    }
+
+    /**
+     * Init the query from clauses that have been set directly (via: {@link #setFrom(Expression)},
+     * {@link #setColumns(List)}, {@link #setWhere(Expression)} and so on) rather than by
+     * {@link #parse(String) parsing} a string, see: {@link dev.mccue.josql.builder.QueryBuilder}.
+     *
+     * @param q The query string that the clauses represent, this is only used for
+     *          {@link #getQuery()}, it is not parsed.
+     * @throws QueryParseException If the query cannot be {@link #init() inited}.
+     */
+    public void initClauses (String q)
+	                     throws QueryParseException
+    {
+
+	this.query = q;
 
 	this.isParsed = true;
 
-	this.addTiming ("Time to parse query into object form",
-			System.currentTimeMillis () - s);
-
-	// Init the query.
 	this.init ();
 
     }
@@ -2473,11 +3287,379 @@ public class Query
 
         this.initExecuteOn ();
 
+	// Now everything is inited hoist out the parts that are the same for every object.
+	this.optimizeExpressions ();
+
+	if (this.profiler != null)
+	{
+
+	    this.instrumentExpressions ();
+
+	}
+
 	this.addTiming ("Time to init Query objects",
 			System.currentTimeMillis () - s);
 
     }
 
+    /**
+     * Set the profiler to use to profile the expressions in the query, see: {@link ExpressionProfiler}
+     * for details.  Profiling is off by default.  Once a query has been profiled it will continue to be
+     * profiled until it is {@link #parse(String) parsed} again.
+     *
+     * @param p The profiler.
+     */
+    public void setProfiler (ExpressionProfiler p)
+    {
+
+	this.profiler = p;
+
+	if ((p != null)
+	    &&
+	    (this.isParsed)
+	   )
+	{
+
+	    this.instrumentExpressions ();
+
+	}
+
+    }
+
+    public ExpressionProfiler getProfiler ()
+    {
+
+	return this.profiler;
+
+    }
+
+    /**
+     * Set the log that executions of this query should be checked against, any execution
+     * that exceeds the thresholds of the log will be recorded in it.  The same log can be
+     * shared by many queries.
+     *
+     * @param l The log, pass <code>null</code> to stop logging.
+     */
+    public void setSlowQueryLog (SlowQueryLog l)
+    {
+
+	this.slowQueryLog = l;
+
+    }
+
+    public SlowQueryLog getSlowQueryLog ()
+    {
+
+	return this.slowQueryLog;
+
+    }
+
+    private void optimizeExpressions ()
+    {
+
+	ExpressionOptimizer o = new ExpressionOptimizer (this);
+
+	o.setPass (ExpressionOptimizer.HOIST);
+	this.optimizeExpressions (o);
+
+	o.setPass (ExpressionOptimizer.COUNT);
+	this.optimizeExpressions (o);
+
+	o.setPass (ExpressionOptimizer.SHARE);
+	this.optimizeExpressions (o);
+
+	o.setPass (ExpressionOptimizer.TYPE);
+	this.optimizeExpressions (o);
+
+	this.rowValueCount = o.getSlotCount ();
+
+	this.whereCanStop = this.canStopWhere (o);
+
+    }
+
+    /**
+     * Determine whether the WHERE clause can stop once enough objects have matched to
+     * fill the LIMIT, that is the limit doesn't depend upon the objects and nothing after
+     * the WHERE clause needs all the matching objects (or changes their order).
+     *
+     * @param o The optimizer, used to check the expressions.
+     * @return <code>true</code> if the WHERE clause can stop early.
+     */
+    private boolean canStopWhere (ExpressionOptimizer o)
+    {
+
+	if ((this.limit == null)
+	    ||
+	    (this.where == null)
+	    ||
+	    (this.orderByComp != null)
+	    ||
+	    (this.grouper != null)
+	    ||
+	    (this.having != null)
+	    ||
+	    (this.distinctResults)
+	    ||
+	    ((this.executeOn != null)
+	     &&
+	     (this.executeOn.size () > 0)
+	    )
+	   )
+	{
+
+	    return false;
+
+	}
+
+	if (((this.limit.getStart () != null)
+	     &&
+	     (!o.isInvariant (this.limit.getStart ()))
+	    )
+	    ||
+	    (!o.isInvariant (this.limit.getRowsCount ()))
+	   )
+	{
+
+	    return false;
+
+	}
+
+	if (this.retObjs)
+	{
+
+	    return true;
+
+	}
+
+	// The columns are evaluated after the WHERE clause, they can't use the
+	// matching objects, i.e. via :_allobjs.
+	for (int i = 0; i < this.cols.size (); i++)
+	{
+
+	    SelectItemExpression sei = (SelectItemExpression) this.cols.get (i);
+
+	    if (!o.isObjectValue (sei.getExpression ()))
+	    {
+
+		return false;
+
+	    }
+
+	}
+
+	return true;
+
+    }
+
+    private void optimizeExpressions (ExpressionOptimizer o)
+    {
+
+	this.where = o.optimize (this.where);
+	this.having = o.optimize (this.having);
+
+	if (!this.retObjs)
+	{
+
+	    for (int i = 0; i < this.cols.size (); i++)
+	    {
+
+		o.optimize ((Expression) this.cols.get (i));
+
+	    }
+
+	}
+
+	if (this.orderByComp != null)
+	{
+
+	    ListExpressionComparator lec = (ListExpressionComparator) this.orderByComp;
+
+	    for (int i = 0; i < lec.getSortItems ().size (); i++)
+	    {
+
+		lec.setSortItemExpression (i,
+					   o.optimizeSortKey (lec.getSortItemExpression (i)));
+
+	    }
+
+	}
+
+	if (this.grouper != null)
+	{
+
+	    List l = this.grouper.getExpressions ();
+
+	    for (int i = 0; i < l.size (); i++)
+	    {
+
+		l.set (i,
+		       o.optimize ((Expression) l.get (i)));
+
+	    }
+
+	}
+
+	// The group order bys and execute on functions aren't evaluated for each object
+	// so only the invariant expressions are hoisted out.
+	if (o.getPass () != ExpressionOptimizer.HOIST)
+	{
+
+	    return;
+
+	}
+
+	this.optimizeChildren (o,
+			       this.groupOrderBys);
+
+	if (this.executeOn != null)
+	{
+
+	    Iterator iter = this.executeOn.values ().iterator ();
+
+	    while (iter.hasNext ())
+	    {
+
+		List l = (List) iter.next ();
+
+		for (int i = 0; i < l.size (); i++)
+		{
+
+		    o.optimizeChildren ((Expression) l.get (i));
+
+		}
+
+	    }
+
+	}
+
+    }
+
+    private void optimizeChildren (ExpressionOptimizer o,
+				   List                orderBys)
+    {
+
+	if (orderBys == null)
+	{
+
+	    return;
+
+	}
+
+	for (int i = 0; i < orderBys.size (); i++)
+	{
+
+	    Expression e = ((OrderBy) orderBys.get (i)).getExpression ();
+
+	    if (e != null)
+	    {
+
+		o.optimizeChildren (e);
+
+	    }
+
+	}
+
+    }
+
+    private void instrumentExpressions ()
+    {
+
+	ExpressionInstrumenter in = new ExpressionInstrumenter (this.profiler);
+
+	if (this.where != null)
+	{
+
+	    this.where = in.instrument (this.where,
+					ExpressionProfiler.WHERE);
+
+	}
+
+	if (this.having != null)
+	{
+
+	    this.having = in.instrument (this.having,
+					 ExpressionProfiler.HAVING);
+
+	}
+
+	if (!this.retObjs)
+	{
+
+	    for (int i = 0; i < this.cols.size (); i++)
+	    {
+
+		in.instrument ((Expression) this.cols.get (i),
+			       ExpressionProfiler.SELECT);
+
+	    }
+
+	}
+
+	// The order by and group by expressions are held by the comparators so
+	// only the children can be instrumented.
+	this.instrumentChildren (in,
+				 this.orderBys,
+				 ExpressionProfiler.ORDER_BY);
+	this.instrumentChildren (in,
+				 this.groupBys,
+				 ExpressionProfiler.GROUP_BY);
+	this.instrumentChildren (in,
+				 this.groupOrderBys,
+				 ExpressionProfiler.GROUP_BY);
+
+	if (this.executeOn != null)
+	{
+
+	    Iterator iter = this.executeOn.values ().iterator ();
+
+	    while (iter.hasNext ())
+	    {
+
+		List l = (List) iter.next ();
+
+		for (int i = 0; i < l.size (); i++)
+		{
+
+		    in.instrumentChildren ((Expression) l.get (i),
+					   ExpressionProfiler.EXECUTE_ON);
+
+		}
+
+	    }
+
+	}
+
+    }
+
+    private void instrumentChildren (ExpressionInstrumenter in,
+				     List                   orderBys,
+				     String                 clause)
+    {
+
+	if (orderBys == null)
+	{
+
+	    return;
+
+	}
+
+	for (int i = 0; i < orderBys.size (); i++)
+	{
+
+	    Expression e = ((OrderBy) orderBys.get (i)).getExpression ();
+
+	    if (e != null)
+	    {
+
+		in.instrumentChildren (e,
+				       clause);
+
+	    }
+
+	}
+
+    }
+
     private void initSelect ()
                              throws QueryParseException
     {
@@ -3031,6 +4213,13 @@ public class Query
 
     }
 
+    public boolean isWantDistinctResults ()
+    {
+
+	return this.distinctResults;
+
+    }
+
     /**
      * Get the results of {@link #execute(java.util.List) executing} this query.
      *
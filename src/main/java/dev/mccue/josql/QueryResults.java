@@ -16,7 +16,9 @@ package dev.mccue.josql;
 
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import dev.mccue.josql.internal.SaveValues;
 
 /**
  * This class holds all the "result" information about the execution of a particular
@@ -29,8 +31,19 @@ import java.util.HashMap;
 public class QueryResults
 {
 
+    public static final String INPUT_SIZE = "input size";
+    public static final String WHERE_RESULTS_SIZE = "where results size";
+    public static final String WHERE_INDEX = "where index";
+    public static final String WHERE_SCAN_SIZE = "where scan size";
+    public static final String WHERE_SCAN_STOPPED = "where scan stopped";
+    public static final String HAVING_RESULTS_SIZE = "having results size";
+    public static final String GROUP_BY_RESULTS_SIZE = "group by results size";
+    public static final String RESULTS_SIZE = "results size";
+    public static final String FUNCTION_CACHE_HITS = "function cache hits";
+    public static final String FUNCTION_CACHE_MISSES = "function cache misses";
+
     // Execution data.
-    Map saveValues = new HashMap ();
+    Map saveValues = new SaveValues ();
     Map timings = null;
     List results = null;
     List whereResults = null;
@@ -38,6 +51,11 @@ public class QueryResults
     Map groupByResults = null;
 
     Map groupBySaveValues = null;
+    Map stageTimings = new LinkedHashMap ();
+    Map statistics = new LinkedHashMap ();
+
+    // Function to FunctionCache, for the pure functions called.
+    Map functionCaches = null;
 
     public QueryResults ()
     {
@@ -86,12 +104,7 @@ public class QueryResults
 
 	}
 
-	if (id instanceof String)
-	{
-
-	    id = ((String) id).toLowerCase ();
-
-	}
+	id = SaveValues.getKey (id);
 
 	return this.saveValues.get (id);
 
@@ -122,6 +135,43 @@ public class QueryResults
 
     }
 
+    /**
+     * Get the time taken by each stage of the execution, this is a Map of the stage name
+     * (i.e. WHERE, ORDER BY) to the time taken in nanoseconds (as a Long), in the order
+     * the stages were executed.  Unlike the {@link #getTimings() timings} these are always
+     * collected.
+     *
+     * @return The stage timings.
+     */
+    public Map getStageTimings ()
+    {
+
+	return this.stageTimings;
+
+    }
+
+    /**
+     * Get the statistics gathered during the execution, such as the number of objects
+     * passed in ({@link #INPUT_SIZE}) and the number that matched the WHERE clause
+     * ({@link #WHERE_RESULTS_SIZE}).  This is a Map of the statistic name to the value, generally
+     * a Number.  When an index is used for the WHERE clause {@link #WHERE_INDEX} is the accessor
+     * of the index (a String) and {@link #WHERE_SCAN_SIZE} is the number of objects evaluated.
+     * When the query has a LIMIT and no ORDER BY, GROUP BY, HAVING, DISTINCT or EXECUTE ON the
+     * WHERE clause stops once enough objects have matched, {@link #WHERE_SCAN_STOPPED} is then
+     * <code>Boolean.TRUE</code> and there were objects left that weren't evaluated.
+     * When a {@link dev.mccue.josql.functions.Pure pure} function is called {@link #FUNCTION_CACHE_HITS}
+     * and {@link #FUNCTION_CACHE_MISSES} are the number of calls that were (and weren't) answered from
+     * the function cache, across all the pure functions in the query and its sub-queries.
+     *
+     * @return The statistics.
+     */
+    public Map getStatistics ()
+    {
+
+	return this.statistics;
+
+    }
+
     /**
      * Get the group by results.
      *
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.accessors;
+
+/**
+ * The accessors for a class, these are looked up (via a {@link java.util.ServiceLoader}) when
+ * an accessor is used on an object of the class and are used instead of reflection.
+ * <p>
+ * Tables are usually generated from classes marked with {@link GenerateAccessors}, a
+ * table for class <code>a.b.C</code> must be called <code>a.b.C$JoSQLAccessors</code> and
+ * registered as a service provider.
+ */
+public interface AccessorTable
+{
+
+    /**
+     * Get the class the accessors are for.
+     *
+     * @return The class.
+     */
+    public Class getObjectClass ();
+
+    /**
+     * Get the property for a single accessor name (i.e. <code>name</code> rather than
+     * <code>address.city</code>), the name is resolved in the same way as a
+     * {@link dev.mccue.josql.gentlyweb.utils.Getter}; a public field called <code>name</code>,
+     * then a public method called <code>getName</code>, <code>isName</code> or
+     * <code>name</code> that takes no arguments.
+     *
+     * @param name The accessor name.
+     * @return The property or <code>null</code> if there isn't one in the table, in
+     *         which case reflection is used.
+     */
+    public Property getProperty (String name);
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.accessors;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.annotation.ElementType;
+
+/**
+ * Marks a class that is queried (i.e. is used in the FROM clause or is the type of a value
+ * that accessors are used on) so that an {@link AccessorTable} is generated for it at compile
+ * time by the {@link dev.mccue.josql.accessors.processor.AccessorProcessor}.  The accessors
+ * of the class are then resolved and called without reflection.
+ * <p>
+ * The processor is not registered as a service (so <code>javac</code> won't run it just
+ * because the JoSQL jar is on the class path), it must be named explicitly, with the JoSQL jar on
+ * the annotation processor path (or the class path):
+ * <pre>
+ *   javac -processor dev.mccue.josql.accessors.processor.AccessorProcessor ...
+ * </pre>
+ * or with Maven:
+ * <pre>
+ *   &lt;annotationProcessorPaths&gt;
+ *     &lt;path&gt;
+ *       &lt;groupId&gt;dev.mccue&lt;/groupId&gt;
+ *       &lt;artifactId&gt;josql&lt;/artifactId&gt;
+ *       &lt;version&gt;...&lt;/version&gt;
+ *     &lt;/path&gt;
+ *   &lt;/annotationProcessorPaths&gt;
+ *   &lt;annotationProcessors&gt;
+ *     &lt;annotationProcessor&gt;dev.mccue.josql.accessors.processor.AccessorProcessor&lt;/annotationProcessor&gt;
+ *   &lt;/annotationProcessors&gt;
+ * </pre>
+ * For a class called <code>Person</code> the table is generated in the same package as
+ * <code>Person$JoSQLAccessors</code> and is registered in:
+ * <code>META-INF/services/dev.mccue.josql.accessors.AccessorTable</code>, in a modular
+ * application the module must instead declare: <code>provides dev.mccue.josql.accessors.AccessorTable
+ * with ...Person$JoSQLAccessors</code>.
+ * <p>
+ * The class must not be private.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateAccessors
+{
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.accessors;
+
+/**
+ * A single property of a class, from an {@link AccessorTable}.
+ */
+public abstract class Property
+{
+
+    private String name = null;
+    private Class type = null;
+
+    public Property (String name,
+		     Class  type)
+    {
+
+	this.name = name;
+	this.type = type;
+
+    }
+
+    public String getName ()
+    {
+
+	return this.name;
+
+    }
+
+    /**
+     * Get the type of the property, this is the declared type of the field or the return type
+     * of the method (as per reflection) so primitive properties have a primitive type.
+     *
+     * @return The type.
+     */
+    public Class getType ()
+    {
+
+	return this.type;
+
+    }
+
+    /**
+     * Get the value of the property from the object.
+     *
+     * @param o The object, this is an instance of the class of the table.
+     * @return The value, primitive values are wrapped.
+     * @throws Exception If the value cannot be got, for instance if the method throws
+     *                   an exception.
+     */
+    public abstract Object getValue (Object o)
+	                             throws Exception;
+
+    public String toString ()
+    {
+
+	return this.name + " (" + this.type.getName () + ")";
+
+    }
+
+}
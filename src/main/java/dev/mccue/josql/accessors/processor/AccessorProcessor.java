@@ -0,0 +1,563 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.accessors.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import dev.mccue.josql.accessors.AccessorTable;
+import dev.mccue.josql.accessors.GenerateAccessors;
+
+import dev.mccue.josql.internal.AccessorTables;
+
+/**
+ * Generates an {@link AccessorTable} for each class marked with {@link GenerateAccessors}.
+ * <p>
+ * The table has a property for each name that would be resolved (by a
+ * {@link dev.mccue.josql.gentlyweb.utils.Getter}) to a public field or a public method
+ * that takes no arguments, the properties access the field or call the method directly.  Names
+ * that resolve to a method that returns <code>void</code> are left out (and so use reflection).
+ * The generated tables are listed in: <code>META-INF/services/dev.mccue.josql.accessors.AccessorTable</code>.
+ * <p>
+ * The processor isn't discovered automatically, it is run with:
+ * <code>-processor dev.mccue.josql.accessors.processor.AccessorProcessor</code>, see
+ * {@link GenerateAccessors}.
+ */
+@SupportedAnnotationTypes("dev.mccue.josql.accessors.GenerateAccessors")
+public class AccessorProcessor extends AbstractProcessor
+{
+
+    private static final String SERVICES = "META-INF/services/" + AccessorTable.class.getName ();
+
+    // The names of the tables generated.
+    private Set tables = new TreeSet ();
+
+    public SourceVersion getSupportedSourceVersion ()
+    {
+
+	return SourceVersion.latestSupported ();
+
+    }
+
+    public boolean process (Set              annotations,
+			    RoundEnvironment env)
+    {
+
+	if (env.processingOver ())
+	{
+
+	    this.writeServices ();
+
+	    return false;
+
+	}
+
+	TypeElement a = this.processingEnv.getElementUtils ().getTypeElement (GenerateAccessors.class.getName ());
+
+	if (a == null)
+	{
+
+	    return false;
+
+	}
+
+	Iterator iter = env.getElementsAnnotatedWith (a).iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Element e = (Element) iter.next ();
+
+	    if (e instanceof TypeElement)
+	    {
+
+		this.generate ((TypeElement) e);
+
+	    }
+
+	}
+
+	return true;
+
+    }
+
+    private void generate (TypeElement t)
+    {
+
+	Elements els = this.processingEnv.getElementUtils ();
+	Types types = this.processingEnv.getTypeUtils ();
+
+	if ((t.getNestingKind () == NestingKind.LOCAL)
+	    ||
+	    (t.getNestingKind () == NestingKind.ANONYMOUS)
+	   )
+	{
+
+	    this.error ("Accessors cannot be generated for a local or anonymous class.",
+			t);
+
+	    return;
+
+	}
+
+	Element p = t;
+
+	while (p instanceof TypeElement)
+	{
+
+	    if (p.getModifiers ().contains (Modifier.PRIVATE))
+	    {
+
+		this.error ("Accessors cannot be generated for a private class.",
+			    t);
+
+		return;
+
+	    }
+
+	    p = p.getEnclosingElement ();
+
+	}
+
+	PackageElement pkg = els.getPackageOf (t);
+
+	String pn = pkg.isUnnamed () ? "" : pkg.getQualifiedName ().toString ();
+
+	String bn = els.getBinaryName (t).toString ();
+
+	String gn = ((pn.length () > 0) ? bn.substring (pn.length () + 1) : bn) + AccessorTables.SUFFIX;
+
+	String tn = this.getTypeName (t.asType ());
+
+	// The public fields and the public methods that take no arguments, by name.
+	Map fields = new HashMap ();
+	Map methods = new HashMap ();
+
+	// The names to look up.
+	Set names = new LinkedHashSet ();
+
+	List ms = els.getAllMembers (t);
+
+	for (int i = 0; i < ms.size (); i++)
+	{
+
+	    Element m = (Element) ms.get (i);
+
+	    if (!m.getModifiers ().contains (Modifier.PUBLIC))
+	    {
+
+		continue;
+
+	    }
+
+	    String n = m.getSimpleName ().toString ();
+
+	    if ((m.getKind () == ElementKind.FIELD)
+		||
+		(m.getKind () == ElementKind.ENUM_CONSTANT)
+	       )
+	    {
+
+		fields.put (n,
+			    m);
+
+		names.add (n);
+
+		continue;
+
+	    }
+
+	    if ((m.getKind () != ElementKind.METHOD)
+		||
+		(((ExecutableElement) m).getParameters ().size () > 0)
+	       )
+	    {
+
+		continue;
+
+	    }
+
+	    methods.put (n,
+			 m);
+
+	    if ((n.startsWith ("get"))
+		&&
+		(n.length () > 3)
+	       )
+	    {
+
+		this.addNames (n.substring (3),
+			       names);
+
+	    }
+
+	    if ((n.startsWith ("is"))
+		&&
+		(n.length () > 2)
+	       )
+	    {
+
+		this.addNames (n.substring (2),
+			       names);
+
+	    }
+
+	    names.add (n);
+
+	}
+
+	// The name for each member, in the same order as a Getter looks for them.
+	Map props = new LinkedHashMap ();
+
+	Iterator iter = names.iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    String n = (String) iter.next ();
+
+	    String c = Character.toUpperCase (n.charAt (0)) + n.substring (1);
+
+	    Element m = (Element) fields.get (n);
+
+	    if (m == null)
+	    {
+
+		m = (Element) methods.get ("get" + c);
+
+	    }
+
+	    if (m == null)
+	    {
+
+		m = (Element) methods.get ("is" + c);
+
+	    }
+
+	    if (m == null)
+	    {
+
+		m = (Element) methods.get (n);
+
+	    }
+
+	    if ((m == null)
+		||
+		((m instanceof ExecutableElement)
+		 &&
+		 (((ExecutableElement) m).getReturnType ().getKind () == TypeKind.VOID)
+		)
+	       )
+	    {
+
+		continue;
+
+	    }
+
+	    List l = (List) props.get (m);
+
+	    if (l == null)
+	    {
+
+		l = new ArrayList ();
+
+		props.put (m,
+			   l);
+
+	    }
+
+	    l.add (n);
+
+	}
+
+	StringBuilder b = new StringBuilder ();
+
+	b.append ("// Generated by: " + AccessorProcessor.class.getName () + " from: " + tn + ", do not edit.\n");
+
+	if (pn.length () > 0)
+	{
+
+	    b.append ("package " + pn + ";\n\n");
+
+	}
+
+	b.append ("@SuppressWarnings({\"rawtypes\", \"unchecked\", \"deprecation\"})\n");
+	b.append ("public final class " + gn + " implements " + AccessorTable.class.getName () + "\n");
+	b.append ("{\n\n");
+
+	StringBuilder sw = new StringBuilder ();
+
+	int i = 0;
+
+	iter = props.entrySet ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Map.Entry en = (Map.Entry) iter.next ();
+
+	    Element m = (Element) en.getKey ();
+	    List l = (List) en.getValue ();
+
+	    boolean meth = m instanceof ExecutableElement;
+
+	    TypeMirror rt = meth ? ((ExecutableElement) m).getReturnType () : m.asType ();
+
+	    String v = m.getModifiers ().contains (Modifier.STATIC) ? tn : "((" + tn + ") o)";
+
+	    v += "." + m.getSimpleName () + (meth ? " ()" : "");
+
+	    b.append ("    private static final dev.mccue.josql.accessors.Property p" + i + " = new dev.mccue.josql.accessors.Property (\"" + l.get (0) + "\", " + this.getTypeName (rt) + ".class)\n");
+	    b.append ("    {\n\n");
+	    b.append ("\tpublic Object getValue (Object o)\n");
+	    b.append ("\t                        throws Exception\n");
+	    b.append ("\t{\n\n");
+	    b.append ("\t    return " + v + ";\n\n");
+	    b.append ("\t}\n\n");
+	    b.append ("    };\n\n");
+
+	    for (int j = 0; j < l.size (); j++)
+	    {
+
+		sw.append ("\tcase \"" + l.get (j) + "\": return p" + i + ";\n");
+
+	    }
+
+	    i++;
+
+	}
+
+	b.append ("    public Class getObjectClass ()\n");
+	b.append ("    {\n\n");
+	b.append ("\treturn " + tn + ".class;\n\n");
+	b.append ("    }\n\n");
+	b.append ("    public dev.mccue.josql.accessors.Property getProperty (String name)\n");
+	b.append ("    {\n\n");
+	b.append ("\tswitch (name)\n");
+	b.append ("\t{\n\n");
+	b.append (sw);
+	b.append ("\n\t}\n\n");
+	b.append ("\treturn null;\n\n");
+	b.append ("    }\n\n");
+	b.append ("}\n");
+
+	String qn = bn + AccessorTables.SUFFIX;
+
+	try
+	{
+
+	    Writer w = this.processingEnv.getFiler ().createSourceFile (qn,
+									t).openWriter ();
+
+	    try
+	    {
+
+		w.write (b.toString ());
+
+	    } finally {
+
+		w.close ();
+
+	    }
+
+	} catch (IOException e) {
+
+	    this.error ("Unable to write: " + qn + ", " + e.getMessage (),
+			t);
+
+	    return;
+
+	}
+
+	this.tables.add (qn);
+
+    }
+
+    /**
+     * Add the names that a Getter converts to the <b>get</b>/<b>is</b> method with the suffix,
+     * i.e. for a suffix of <b>Value</b> the names <b>value</b> and <b>Value</b>.
+     */
+    private void addNames (String suffix,
+			   Set    names)
+    {
+
+	String n = Character.toLowerCase (suffix.charAt (0)) + suffix.substring (1);
+
+	if ((Character.toUpperCase (n.charAt (0)) + n.substring (1)).equals (suffix))
+	{
+
+	    names.add (n);
+
+	}
+
+	if ((Character.toUpperCase (suffix.charAt (0)) + suffix.substring (1)).equals (suffix))
+	{
+
+	    names.add (suffix);
+
+	}
+
+    }
+
+    /**
+     * Get the name to use in the source for the erasure of the type, this is the same as
+     * the class that reflection would give for the field or method.
+     */
+    private String getTypeName (TypeMirror t)
+    {
+
+	return this.processingEnv.getTypeUtils ().erasure (t).toString ();
+
+    }
+
+    private void writeServices ()
+    {
+
+	if (this.tables.size () == 0)
+	{
+
+	    return;
+
+	}
+
+	Set ts = new TreeSet (this.tables);
+
+	// Keep the tables from an earlier (incremental) compile.
+	try
+	{
+
+	    FileObject f = this.processingEnv.getFiler ().getResource (StandardLocation.CLASS_OUTPUT,
+								       "",
+								       AccessorProcessor.SERVICES);
+
+	    BufferedReader r = new BufferedReader (new InputStreamReader (f.openInputStream (),
+									  StandardCharsets.UTF_8));
+
+	    try
+	    {
+
+		String l = null;
+
+		while ((l = r.readLine ()) != null)
+		{
+
+		    l = l.trim ();
+
+		    if ((l.length () > 0)
+			&&
+			(!l.startsWith ("#"))
+		       )
+		    {
+
+			ts.add (l);
+
+		    }
+
+		}
+
+	    } finally {
+
+		r.close ();
+
+	    }
+
+	} catch (IOException e) {
+
+	    // No file yet.
+
+	}
+
+	try
+	{
+
+	    FileObject f = this.processingEnv.getFiler ().createResource (StandardLocation.CLASS_OUTPUT,
+									  "",
+									  AccessorProcessor.SERVICES);
+
+	    Writer w = f.openWriter ();
+
+	    try
+	    {
+
+		Iterator iter = ts.iterator ();
+
+		while (iter.hasNext ())
+		{
+
+		    w.write (iter.next () + "\n");
+
+		}
+
+	    } finally {
+
+		w.close ();
+
+	    }
+
+	} catch (IOException e) {
+
+	    this.processingEnv.getMessager ().printMessage (Diagnostic.Kind.ERROR,
+							    "Unable to write: " + AccessorProcessor.SERVICES + ", " + e.getMessage ());
+
+	}
+
+    }
+
+    private void error (String  m,
+			Element e)
+    {
+
+	this.processingEnv.getMessager ().printMessage (Diagnostic.Kind.ERROR,
+							m,
+							e);
+
+    }
+
+}
@@ -0,0 +1,544 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.builder;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import dev.mccue.josql.expressions.Expression;
+import dev.mccue.josql.expressions.Accessor;
+import dev.mccue.josql.expressions.ConstantExpression;
+import dev.mccue.josql.expressions.BooleanExpression;
+import dev.mccue.josql.expressions.Function;
+import dev.mccue.josql.expressions.EqualsExpression;
+import dev.mccue.josql.expressions.GTLTExpression;
+import dev.mccue.josql.expressions.BetweenExpression;
+import dev.mccue.josql.expressions.IsNullExpression;
+import dev.mccue.josql.expressions.LikeExpression;
+import dev.mccue.josql.expressions.InExpression;
+import dev.mccue.josql.expressions.AndOrExpression;
+
+import dev.mccue.josql.internal.Utilities;
+
+/**
+ * Creates the {@link Term terms} used by a {@link QueryBuilder}, these wrap the same expressions
+ * that the parser creates for a query string.  The methods are intended to be statically
+ * imported, for example, the WHERE clause:
+ * <pre>
+ *   WHERE length &gt; :min
+ *   AND   name $LIKE '%.txt'
+ * </pre>
+ * is created with:
+ * <pre>
+ *   Parameter min = param ("min",
+ *                          Long.class);
+ *
+ *   and (gt (accessor ("length"),
+ *            min),
+ *        ignoreCase (like (accessor ("name"),
+ *                          constant ("%.txt"))));
+ * </pre>
+ * <p>
+ * A term holds state for the query it is used in, so a term should only be used once and only
+ * in one query.
+ * <p>
+ * Unlike the parser, which creates every number as a <code>Double</code>, a constant keeps the type
+ * of the value passed in, so: <code>constant (Integer.valueOf (10))</code> is an Integer.
+ */
+public class Expressions
+{
+
+    private Expressions ()
+    {
+
+    }
+
+    /**
+     * Create an accessor into the current object, such as: <code>name</code> or
+     * <code>parent.name</code>.
+     *
+     * @param acc The accessor.
+     * @return The accessor.
+     */
+    public static Term accessor (String acc)
+    {
+
+	Accessor a = new Accessor ();
+	a.setAccessor (acc);
+
+	return new Term (a);
+
+    }
+
+    /**
+     * Create a constant.  A Boolean value is created as a boolean expression, as the
+     * parser does for <code>true</code> and <code>false</code>.
+     *
+     * @param v The value, may be <code>null</code>.
+     * @return The constant.
+     */
+    public static Term constant (Object v)
+    {
+
+	if (v instanceof Boolean)
+	{
+
+	    BooleanExpression b = new BooleanExpression ();
+	    b.setValue ((Boolean) v);
+
+	    return new Term (b);
+
+	}
+
+	ConstantExpression c = new ConstantExpression ();
+	c.setValue (v);
+
+	return new Term (c);
+
+    }
+
+    /**
+     * Create a named parameter (bind variable) with a declared type.
+     *
+     * @param name The name, without the leading ":".
+     * @param type The type of the values, a primitive type is converted to its wrapper.
+     * @return The parameter.
+     */
+    public static Parameter param (String name,
+				   Class  type)
+    {
+
+	return new Parameter (name,
+			      type);
+
+    }
+
+    /**
+     * Create a call to a function, the function is resolved when the query is built.
+     *
+     * @param name The name of the function.
+     * @param params The parameters, may be <code>null</code>.
+     * @return The function call.
+     */
+    public static Term function (String name,
+				 Term[] params)
+    {
+
+	Function f = new Function ();
+	f.setName (name);
+
+	if ((params != null)
+	    &&
+	    (params.length > 0)
+	   )
+	{
+
+	    List ps = new ArrayList ();
+
+	    for (int i = 0; i < params.length; i++)
+	    {
+
+		ps.add (params[i].getExpression ());
+
+	    }
+
+	    f.setParameters (ps);
+
+	}
+
+	return new Term (f);
+
+    }
+
+    public static Term eq (Term l,
+			   Term r)
+    {
+
+	return new Term (Expressions.equals (l,
+					     r,
+					     false));
+
+    }
+
+    public static Term ne (Term l,
+			   Term r)
+    {
+
+	return new Term (Expressions.equals (l,
+					     r,
+					     true));
+
+    }
+
+    private static EqualsExpression equals (Term    l,
+					    Term    r,
+					    boolean not)
+    {
+
+	EqualsExpression e = new EqualsExpression ();
+	e.setLeft (l.getExpression ());
+	e.setRight (r.getExpression ());
+	e.setNot (not);
+
+	return e;
+
+    }
+
+    public static Term gt (Term l,
+			   Term r)
+    {
+
+	return Expressions.gtlt (l,
+				 r,
+				 Utilities.GT);
+
+    }
+
+    public static Term gte (Term l,
+			    Term r)
+    {
+
+	return Expressions.gtlt (l,
+				 r,
+				 Utilities.GTE);
+
+    }
+
+    public static Term lt (Term l,
+			   Term r)
+    {
+
+	return Expressions.gtlt (l,
+				 r,
+				 Utilities.LT);
+
+    }
+
+    public static Term lte (Term l,
+			    Term r)
+    {
+
+	return Expressions.gtlt (l,
+				 r,
+				 Utilities.LTE);
+
+    }
+
+    private static Term gtlt (Term l,
+			      Term r,
+			      int  type)
+    {
+
+	GTLTExpression e = new GTLTExpression ();
+	e.setType (type);
+	e.setLeft (l.getExpression ());
+	e.setRight (r.getExpression ());
+
+	return new Term (e);
+
+    }
+
+    /**
+     * Create a BETWEEN, the start and end are inclusive.
+     *
+     * @param l The value.
+     * @param start The start of the range.
+     * @param end The end of the range.
+     * @return The between.
+     * @throws IllegalArgumentException If the start or end is a condition rather than a value.
+     */
+    public static Term between (Term l,
+				Term start,
+				Term end)
+	                        throws IllegalArgumentException
+    {
+
+	return new Term (Expressions.between (l,
+					      start,
+					      end,
+					      false));
+
+    }
+
+    public static Term notBetween (Term l,
+				   Term start,
+				   Term end)
+	                           throws IllegalArgumentException
+    {
+
+	return new Term (Expressions.between (l,
+					      start,
+					      end,
+					      true));
+
+    }
+
+    private static BetweenExpression between (Term    l,
+					      Term    start,
+					      Term    end,
+					      boolean not)
+    {
+
+	BetweenExpression e = new BetweenExpression ();
+	e.setLeft (l.getExpression ());
+	e.setStart (start.getValueExpression ("start of a BETWEEN"));
+	e.setEnd (end.getValueExpression ("end of a BETWEEN"));
+	e.setNot (not);
+
+	return e;
+
+    }
+
+    public static Term isNull (Term l)
+    {
+
+	return new Term (Expressions.isNull (l,
+					     false));
+
+    }
+
+    public static Term isNotNull (Term l)
+    {
+
+	return new Term (Expressions.isNull (l,
+					     true));
+
+    }
+
+    private static IsNullExpression isNull (Term    l,
+					    boolean not)
+    {
+
+	IsNullExpression e = new IsNullExpression ();
+	e.setLeft (l.getExpression ());
+	e.setNot (not);
+
+	return e;
+
+    }
+
+    /**
+     * Create a LIKE, the wildcard in the pattern is the query's
+     * {@link dev.mccue.josql.Query#getWildcardCharacter() wildcard character}, <b>%</b> by default.
+     *
+     * @param l The value.
+     * @param pattern The pattern.
+     * @return The like.
+     */
+    public static Term like (Term l,
+			     Term pattern)
+    {
+
+	return new Term (Expressions.like (l,
+					   pattern,
+					   false));
+
+    }
+
+    public static Term notLike (Term l,
+				Term pattern)
+    {
+
+	return new Term (Expressions.like (l,
+					   pattern,
+					   true));
+
+    }
+
+    private static LikeExpression like (Term    l,
+					Term    pattern,
+					boolean not)
+    {
+
+	LikeExpression e = new LikeExpression ();
+	e.setLeft (l.getExpression ());
+	e.setRight (pattern.getExpression ());
+	e.setNot (not);
+
+	return e;
+
+    }
+
+    /**
+     * Create an IN.
+     *
+     * @param l The value.
+     * @param items The items of the list.
+     * @return The in.
+     * @throws IllegalArgumentException If an item is a condition rather than a value.
+     */
+    public static Term in (Term   l,
+			   Term[] items)
+	                   throws IllegalArgumentException
+    {
+
+	return new Term (Expressions.in (l,
+					 items,
+					 false));
+
+    }
+
+    public static Term notIn (Term   l,
+			      Term[] items)
+	                      throws IllegalArgumentException
+    {
+
+	return new Term (Expressions.in (l,
+					 items,
+					 true));
+
+    }
+
+    private static InExpression in (Term    l,
+				    Term[]  items,
+				    boolean not)
+    {
+
+	InExpression e = new InExpression ();
+	e.setLeft (l.getExpression ());
+	e.setNot (not);
+
+	List is = new ArrayList ();
+
+	for (int i = 0; i < items.length; i++)
+	{
+
+	    is.add (items[i].getValueExpression ("item of an IN list"));
+
+	}
+
+	e.setItems (is);
+
+	return e;
+
+    }
+
+    /**
+     * Ignore the case of the values compared by an <code>=</code>, <code>!=</code>,
+     * <code>&lt;</code>, <code>&gt;</code>, <code>&lt;=</code>, <code>&gt;=</code>, LIKE or IN,
+     * as the parser does for: <code>$=</code>, <code>$LIKE</code> and so on.
+     *
+     * @param t The comparison.
+     * @return The comparison.
+     * @throws IllegalArgumentException If the term isn't one of the comparisons.
+     */
+    public static Term ignoreCase (Term t)
+	                           throws IllegalArgumentException
+    {
+
+	Expression e = t.getExpression ();
+
+	if (e instanceof EqualsExpression)
+	{
+
+	    ((EqualsExpression) e).setIgnoreCase (true);
+
+	    return t;
+
+	}
+
+	if (e instanceof GTLTExpression)
+	{
+
+	    ((GTLTExpression) e).setIgnoreCase (true);
+
+	    return t;
+
+	}
+
+	if (e instanceof LikeExpression)
+	{
+
+	    ((LikeExpression) e).setIgnoreCase (true);
+
+	    return t;
+
+	}
+
+	if (e instanceof InExpression)
+	{
+
+	    ((InExpression) e).setIgnoreCase (true);
+
+	    return t;
+
+	}
+
+	throw new IllegalArgumentException ("Term: " +
+					    t +
+					    " is not a comparison, the case can only be ignored for: " +
+					    "=, !=, <, >, <=, >=, LIKE and IN.");
+
+    }
+
+    public static Term and (Term l,
+			    Term r)
+    {
+
+	return Expressions.andOr (l,
+				  r,
+				  true);
+
+    }
+
+    public static Term or (Term l,
+			   Term r)
+    {
+
+	return Expressions.andOr (l,
+				  r,
+				  false);
+
+    }
+
+    private static Term andOr (Term    l,
+			       Term    r,
+			       boolean and)
+    {
+
+	AndOrExpression e = new AndOrExpression ();
+	e.setAnd (and);
+	e.setLeft (Expressions.bracket (l.getExpression (),
+					and));
+	e.setRight (Expressions.bracket (r.getExpression (),
+					 and));
+
+	return new Term (e);
+
+    }
+
+    /**
+     * Bracket an AND within an OR (or the other way round), this only affects the
+     * string form of the expression, the tree already gives the precedence.
+     */
+    private static Expression bracket (Expression e,
+				       boolean    and)
+    {
+
+	if ((e instanceof AndOrExpression)
+	    &&
+	    (((AndOrExpression) e).isAnd () != and)
+	   )
+	{
+
+	    e.setBracketed (true);
+
+	}
+
+	return e;
+
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.builder;
+
+import dev.mccue.josql.Query;
+
+import dev.mccue.josql.internal.Utilities;
+
+/**
+ * A named bind variable with a declared type, created via: {@link Expressions#param(String,Class)}.
+ * The value is set with {@link #setValue(Query,Object)}, which checks the type, rather than by
+ * name with {@link Query#setVariable(String,Object)}.
+ * <p>
+ * Since the type is known before a value is set the comparisons that use the parameter are
+ * typed when the query is built and the parameter can be used in the LIMIT clause.
+ */
+public class Parameter extends Term
+{
+
+    private String name = null;
+    private Class type = null;
+
+    Parameter (String name,
+	       Class  type)
+    {
+
+	super (new TypedBindVariable (name,
+				      Utilities.getObjectClass (type)));
+
+	this.name = name;
+	this.type = Utilities.getObjectClass (type);
+
+    }
+
+    public String getName ()
+    {
+
+	return this.name;
+
+    }
+
+    public Class getType ()
+    {
+
+	return this.type;
+
+    }
+
+    /**
+     * Set the value of the parameter in the query.
+     *
+     * @param q The query.
+     * @param v The value, may be <code>null</code>.
+     * @throws IllegalArgumentException If the value is not of the parameter's type.
+     */
+    public void setValue (Query  q,
+			  Object v)
+	                  throws IllegalArgumentException
+    {
+
+	if ((v != null)
+	    &&
+	    (!this.type.isInstance (v))
+	   )
+	{
+
+	    throw new IllegalArgumentException ("Value: " +
+						v +
+						" of class: " +
+						v.getClass ().getName () +
+						" is not valid for parameter: " +
+						this.name +
+						", expected type: " +
+						this.type.getName ());
+
+	}
+
+	q.setVariable (this.name,
+		       v);
+
+    }
+
+}
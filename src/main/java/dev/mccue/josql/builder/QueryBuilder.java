@@ -0,0 +1,365 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.builder;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryParseException;
+
+import dev.mccue.josql.expressions.ConstantExpression;
+import dev.mccue.josql.expressions.SelectItemExpression;
+
+import dev.mccue.josql.internal.Limit;
+import dev.mccue.josql.internal.OrderBy;
+
+/**
+ * Builds a {@link Query} from {@link Term terms} (see: {@link Expressions}) rather than by parsing a
+ * query string.  The clauses are the same objects that the parser creates so the query is inited
+ * and executed in the usual way, but there is no string to build (and no values to quote within
+ * it) and no parsing.
+ * <p>
+ * For example:
+ * <pre>
+ *   Parameter min = param ("min",
+ *                          Long.class);
+ *
+ *   Query q = new QueryBuilder (java.io.File.class)
+ *                 .select (accessor ("name"))
+ *                 .where (gt (accessor ("length"),
+ *                             min))
+ *                 .orderByDesc (accessor ("length"))
+ *                 .limit (10)
+ *                 .build ();
+ *
+ *   min.setValue (q,
+ *                 Long.valueOf (1000));
+ *
+ *   QueryResults qr = q.execute (myFiles);
+ * </pre>
+ * is the same as parsing:
+ * <pre>
+ *   SELECT name FROM java.io.File WHERE length &gt; :min ORDER BY length DESC LIMIT 10
+ * </pre>
+ * <p>
+ * If {@link #select(Term)} isn't called then the objects are returned, as per:
+ * <code>SELECT *</code>.  GROUP BY, HAVING and EXECUTE ON clauses aren't supported, a query
+ * that needs them should be parsed.
+ * <p>
+ * The terms are used by the query that is built, so a builder should only be built once.
+ */
+public class QueryBuilder
+{
+
+    private Class c = null;
+    private List cols = new ArrayList ();
+    private boolean distinct = false;
+    private Term where = null;
+    private List orderBys = null;
+    private Limit limit = null;
+
+    /**
+     * Create a builder for a query on the objects of a class (the FROM clause).  The class is
+     * loaded by the query using the class's class loader.
+     *
+     * @param c The class.
+     */
+    public QueryBuilder (Class c)
+    {
+
+	this.c = c;
+
+    }
+
+    public QueryBuilder select (Term e)
+    {
+
+	return this.select (e,
+			    null);
+
+    }
+
+    /**
+     * Add a column to the SELECT clause.
+     *
+     * @param e The term for the column.
+     * @param alias The alias of the column, may be <code>null</code>.
+     * @return This builder.
+     */
+    public QueryBuilder select (Term   e,
+				String alias)
+    {
+
+	SelectItemExpression s = new SelectItemExpression ();
+	s.setExpression (e.getExpression ());
+	s.setAlias (alias);
+
+	this.cols.add (s);
+
+	return this;
+
+    }
+
+    public QueryBuilder distinct ()
+    {
+
+	this.distinct = true;
+
+	return this;
+
+    }
+
+    /**
+     * Add a condition to the WHERE clause, if there is already a condition then
+     * the conditions are ANDed.
+     *
+     * @param e The condition.
+     * @return This builder.
+     */
+    public QueryBuilder where (Term e)
+    {
+
+	if (this.where == null)
+	{
+
+	    this.where = e;
+
+	} else {
+
+	    this.where = Expressions.and (this.where,
+					  e);
+
+	}
+
+	return this;
+
+    }
+
+    public QueryBuilder orderBy (Term e)
+    {
+
+	return this.orderBy (e,
+			     OrderBy.ASC);
+
+    }
+
+    public QueryBuilder orderByDesc (Term e)
+    {
+
+	return this.orderBy (e,
+			     OrderBy.DESC);
+
+    }
+
+    private QueryBuilder orderBy (Term e,
+				  int  type)
+    {
+
+	if (this.orderBys == null)
+	{
+
+	    this.orderBys = new ArrayList ();
+
+	}
+
+	OrderBy ob = new OrderBy ();
+	ob.setExpression (e.getExpression ());
+	ob.setType (type);
+
+	this.orderBys.add (ob);
+
+	return this;
+
+    }
+
+    public QueryBuilder limit (int rows)
+    {
+
+	return this.limit (null,
+			   Expressions.constant (Integer.valueOf (rows)));
+
+    }
+
+    /**
+     * Set the LIMIT clause.
+     *
+     * @param start The first row to return, rows start at 1.
+     * @param rows The number of rows.
+     * @return This builder.
+     */
+    public QueryBuilder limit (int start,
+			       int rows)
+    {
+
+	return this.limit (Expressions.constant (Integer.valueOf (start)),
+			   Expressions.constant (Integer.valueOf (rows)));
+
+    }
+
+    /**
+     * Set the LIMIT clause, the values can be {@link Parameter parameters} of a number type.
+     *
+     * @param start The first row to return, rows start at 1, may be <code>null</code>.
+     * @param rows The number of rows.
+     * @return This builder.
+     * @throws IllegalArgumentException If the start or rows is a condition rather than a value.
+     */
+    public QueryBuilder limit (Term start,
+			       Term rows)
+	                       throws IllegalArgumentException
+    {
+
+	this.limit = new Limit ();
+	this.limit.setStart ((start == null) ? null : start.getValueExpression ("start of the LIMIT"));
+	this.limit.setRowsCount (rows.getValueExpression ("rows of the LIMIT"));
+
+	return this;
+
+    }
+
+    /**
+     * Create the query and init it, ready to be executed.
+     *
+     * @return The query.
+     * @throws QueryParseException If the query cannot be inited, for example if an accessor
+     *                             or function cannot be found.
+     */
+    public Query build ()
+	               throws QueryParseException
+    {
+
+	Query q = new Query ();
+
+	// Null for the bootstrap class loader, the query's default will do.
+	if (this.c.getClassLoader () != null)
+	{
+
+	    q.setClassLoader (this.c.getClassLoader ());
+
+	}
+
+	ConstantExpression from = new ConstantExpression ();
+	from.setValue (this.c.getName ());
+
+	q.setFrom (from);
+	q.setColumns (this.cols);
+	q.setWantObjects (this.cols.size () == 0);
+	q.setWantDistinctResults (this.distinct);
+	q.setWhere ((this.where == null) ? null : this.where.getExpression ());
+	q.setOrderByColumns (this.orderBys);
+	q.setLimit (this.limit);
+
+	q.initClauses (this.toString ());
+
+	return q;
+
+    }
+
+    /**
+     * Get a string version of the query, this is built from the string versions of the
+     * expressions and, as per {@link Query#toString()}, is suitable for debugging but
+     * may not be parsable.  It is also the {@link Query#getQuery() query string} of the
+     * query that is built.
+     *
+     * @return The string version of the query.
+     */
+    public String toString ()
+    {
+
+	StringBuffer b = new StringBuffer ("SELECT ");
+
+	if (this.distinct)
+	{
+
+	    b.append ("DISTINCT ");
+
+	}
+
+	if (this.cols.size () == 0)
+	{
+
+	    b.append ("*");
+
+	}
+
+	for (int i = 0; i < this.cols.size (); i++)
+	{
+
+	    if (i > 0)
+	    {
+
+		b.append (", ");
+
+	    }
+
+	    b.append (this.cols.get (i));
+
+	}
+
+	b.append (" FROM ");
+	b.append (this.c.getName ());
+
+	if (this.where != null)
+	{
+
+	    b.append (" WHERE ");
+	    b.append (this.where);
+
+	}
+
+	if (this.orderBys != null)
+	{
+
+	    b.append (" ORDER BY ");
+
+	    for (int i = 0; i < this.orderBys.size (); i++)
+	    {
+
+		if (i > 0)
+		{
+
+		    b.append (", ");
+
+		}
+
+		b.append (this.orderBys.get (i));
+
+	    }
+
+	}
+
+	if (this.limit != null)
+	{
+
+	    b.append (" LIMIT ");
+
+	    if (this.limit.getStart () != null)
+	    {
+
+		b.append (this.limit.getStart ());
+		b.append (", ");
+
+	    }
+
+	    b.append (this.limit.getRowsCount ());
+
+	}
+
+	return b.toString ();
+
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.builder;
+
+import dev.mccue.josql.expressions.Expression;
+import dev.mccue.josql.expressions.ValueExpression;
+
+/**
+ * A part of a query created by {@link Expressions}, such as an accessor, a constant, a function
+ * call or a condition.  The expression it wraps is the same as the one the parser creates but
+ * isn't part of the API, so a term can only be passed to the other methods of {@link Expressions}
+ * and to a {@link QueryBuilder}.
+ * <p>
+ * A term holds state for the query it is used in, so a term should only be used once and only
+ * in one query.
+ */
+public class Term
+{
+
+    private Expression exp = null;
+
+    Term (Expression exp)
+    {
+
+	this.exp = exp;
+
+    }
+
+    Expression getExpression ()
+    {
+
+	return this.exp;
+
+    }
+
+    /**
+     * Get the expression as a value, for the places where a condition can't be used, such as
+     * the items of an IN list.
+     *
+     * @param what What the value is for, used in the message of the exception.
+     * @return The expression.
+     * @throws IllegalArgumentException If the term is a condition rather than a value.
+     */
+    ValueExpression getValueExpression (String what)
+	                                throws IllegalArgumentException
+    {
+
+	if (!(this.exp instanceof ValueExpression))
+	{
+
+	    throw new IllegalArgumentException ("Term: " +
+						this.exp +
+						" is not a value and cannot be used as the " +
+						what);
+
+	}
+
+	return (ValueExpression) this.exp;
+
+    }
+
+    /**
+     * Get the string form of the expression, this is suitable for debugging but may not
+     * be parsable.
+     *
+     * @return The string form.
+     */
+    public String toString ()
+    {
+
+	return this.exp.toString ();
+
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.builder;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryParseException;
+
+import dev.mccue.josql.expressions.BindVariable;
+
+/**
+ * The bind variable for a {@link Parameter}, the expected return type is the declared
+ * type of the parameter.
+ */
+class TypedBindVariable extends BindVariable
+{
+
+    private Class type = null;
+
+    TypedBindVariable (String name,
+		       Class  type)
+    {
+
+	this.setName (name);
+
+	this.type = type;
+
+    }
+
+    /**
+     * Get the expected return type, this is the declared type unless a value (of a sub-class)
+     * has already been set.
+     *
+     * @param q The Query object.
+     * @return The type.
+     * @throws QueryParseException If the type cannot be determined.
+     */
+    public Class getExpectedReturnType (Query  q)
+	                                throws QueryParseException
+    {
+
+	Class c = super.getExpectedReturnType (q);
+
+	if ((this.getAccessor () == null)
+	    &&
+	    (!this.type.isAssignableFrom (c))
+	   )
+	{
+
+	    return this.type;
+
+	}
+
+	return c;
+
+    }
+
+}
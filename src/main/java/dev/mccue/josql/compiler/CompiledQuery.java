@@ -0,0 +1,360 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.compiler;
+
+import java.util.List;
+
+import dev.mccue.josql.QueryExecutionException;
+
+import dev.mccue.josql.internal.Limit;
+import dev.mccue.josql.internal.Numbers;
+import dev.mccue.josql.internal.Utilities;
+
+/**
+ * The super-class of the queries generated by the {@link QueryCompiler}.  A compiled query
+ * doesn't need to be parsed or initialised and evaluates the WHERE clause, ORDER BY and SELECT
+ * columns directly.
+ * <p>
+ * The methods here are used by the generated code so that values are compared in the same
+ * way as when the query is executed by a {@link dev.mccue.josql.Query}.
+ */
+public abstract class CompiledQuery
+{
+
+    private String query = null;
+
+    protected CompiledQuery (String query)
+    {
+
+	this.query = query;
+
+    }
+
+    /**
+     * Get the statement the query was compiled from.
+     *
+     * @return The statement.
+     */
+    public String getQuery ()
+    {
+
+	return this.query;
+
+    }
+
+    /**
+     * Execute the query on the objects, the objects must be instances of the class in the
+     * FROM clause.
+     *
+     * @param objs The objects.
+     * @return The results, these are the same as those returned by:
+     *         {@link dev.mccue.josql.QueryResults#getResults()} when the query is executed
+     *         by a {@link dev.mccue.josql.Query}.  The list passed in is never changed.
+     * @throws QueryExecutionException If an object is not an instance of the FROM class or
+     *                                 a value cannot be got from an object.
+     */
+    public abstract List execute (List objs)
+	                          throws QueryExecutionException;
+
+    public String toString ()
+    {
+
+	return this.query;
+
+    }
+
+    protected static Object getObject (List  objs,
+				       int   i,
+				       Class c)
+	                               throws QueryExecutionException
+    {
+
+	Object o = objs.get (i);
+
+	if (!c.isInstance (o))
+	{
+
+	    throw new QueryExecutionException ("Object at index: " +
+					       i +
+					       " (" +
+					       o +
+					       ") is not an instance of: " +
+					       c.getName ());
+
+	}
+
+	return o;
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.EqualsExpression}.
+     */
+    protected static boolean isEquals (Object  l,
+				       Object  r,
+				       boolean ignoreCase,
+				       boolean not)
+    {
+
+	if ((l == null)
+	    &&
+	    (r == null)
+	   )
+	{
+
+	    return !not;
+
+	}
+
+	if ((l == null)
+	    ||
+	    (r == null)
+	   )
+	{
+
+	    return not;
+
+	}
+
+	return Utilities.matches (l,
+				  r,
+				  ignoreCase,
+				  Utilities.EQ,
+				  not);
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.GTLTExpression}.
+     */
+    protected static boolean isGTLT (Object  l,
+				     Object  r,
+				     boolean ignoreCase,
+				     int     type)
+    {
+
+	if ((l == null)
+	    &&
+	    (r == null)
+	   )
+	{
+
+	    return (type == Utilities.GTE) || (type == Utilities.LTE);
+
+	}
+
+	if ((l == null)
+	    ||
+	    (r == null)
+	   )
+	{
+
+	    return false;
+
+	}
+
+	return Utilities.matches (l,
+				  r,
+				  ignoreCase,
+				  type,
+				  false);
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.EqualsExpression} for two strings.
+     */
+    protected static boolean isEquals (String  l,
+				       String  r,
+				       boolean not)
+    {
+
+	if ((l == null)
+	    ||
+	    (r == null)
+	   )
+	{
+
+	    return (l == r) != not;
+
+	}
+
+	return l.equals (r) != not;
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.GTLTExpression} for two strings.
+     */
+    protected static boolean isGTLT (String l,
+				     String r,
+				     int    type)
+    {
+
+	if ((l == null)
+	    ||
+	    (r == null)
+	   )
+	{
+
+	    return (l == r) && ((type == Utilities.GTE) || (type == Utilities.LTE));
+
+	}
+
+	return Utilities.isMatch (l.compareTo (r),
+				  type,
+				  false);
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.EqualsExpression} for two numbers.
+     */
+    protected static boolean isEquals (Number  l,
+				       Number  r,
+				       boolean not)
+    {
+
+	if ((l == null)
+	    ||
+	    (r == null)
+	   )
+	{
+
+	    return (l == r) != not;
+
+	}
+
+	return (Numbers.compare (l,
+				 r) == 0) != not;
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.GTLTExpression} for two numbers.
+     */
+    protected static boolean isGTLT (Number l,
+				     Number r,
+				     int    type)
+    {
+
+	if ((l == null)
+	    ||
+	    (r == null)
+	   )
+	{
+
+	    return (l == r) && ((type == Utilities.GTE) || (type == Utilities.LTE));
+
+	}
+
+	return Utilities.isMatch (Numbers.compare (l,
+						   r),
+				  type,
+				  false);
+
+    }
+
+    /**
+     * Compare a long to a double exactly, as numbers are compared by a
+     * {@link dev.mccue.josql.Query}.
+     */
+    protected static int compare (long   l,
+				  double d)
+    {
+
+	return Numbers.compare (l,
+				d);
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.BetweenExpression}.
+     */
+    protected static boolean isBetween (Object  l,
+					Object  s,
+					Object  e,
+					boolean not)
+    {
+
+	boolean b = Utilities.isGTEquals (l,
+					  s)
+	            &&
+	            Utilities.isLTEquals (l,
+					  e);
+
+	return b != not;
+
+    }
+
+    /**
+     * As per: {@link dev.mccue.josql.expressions.Accessor#isTrue(Object,dev.mccue.josql.Query)}.
+     */
+    protected static boolean isTrue (Object v)
+    {
+
+	if (v == null)
+	{
+
+	    return false;
+
+	}
+
+	if (Utilities.isNumber (v))
+	{
+
+	    return Utilities.getDouble (v) > 0;
+
+	}
+
+	if (v instanceof Boolean)
+	{
+
+	    return ((Boolean) v).booleanValue ();
+
+	}
+
+	return true;
+
+    }
+
+    /**
+     * Compare the values of an ORDER BY column, as per:
+     * {@link dev.mccue.josql.internal.ListExpressionComparator}.
+     */
+    protected static int compare (Object l,
+				  Object r)
+    {
+
+	return Utilities.compare (l,
+				  r);
+
+    }
+
+    /**
+     * As per the LIMIT clause.
+     */
+    protected static List limit (List objs,
+				 int  start,
+				 int  rows)
+    {
+
+	return Limit.getSubList (objs,
+				 start,
+				 rows);
+
+    }
+
+}
@@ -0,0 +1,1562 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.IOException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.Iterator;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryParseException;
+
+import dev.mccue.josql.expressions.Expression;
+import dev.mccue.josql.expressions.Accessor;
+import dev.mccue.josql.expressions.AndOrExpression;
+import dev.mccue.josql.expressions.BetweenExpression;
+import dev.mccue.josql.expressions.BooleanExpression;
+import dev.mccue.josql.expressions.ConstantExpression;
+import dev.mccue.josql.expressions.EqualsExpression;
+import dev.mccue.josql.expressions.GTLTExpression;
+import dev.mccue.josql.expressions.InvariantExpression;
+import dev.mccue.josql.expressions.IsNullExpression;
+import dev.mccue.josql.expressions.ProfiledExpression;
+import dev.mccue.josql.expressions.SelectItemExpression;
+import dev.mccue.josql.expressions.SharedExpression;
+
+import dev.mccue.josql.gentlyweb.utils.Getter;
+
+import dev.mccue.josql.internal.Limit;
+import dev.mccue.josql.internal.ListExpressionComparator;
+import dev.mccue.josql.internal.OrderBy;
+import dev.mccue.josql.internal.Utilities;
+
+/**
+ * Compiles JoSQL statements to Java source at build time.  Each statement is parsed (and so
+ * resolved against the class in the FROM clause, which must be on the class path) and a
+ * sub-class of {@link CompiledQuery} is generated that filters, sorts, limits and selects the
+ * objects directly, without parsing or initialising the query at runtime.  The results are the
+ * same as executing the statement with a {@link Query}.
+ * <p>
+ * Only a subset of JoSQL can be compiled:
+ * <ul>
+ *   <li>A class in the FROM clause.</li>
+ *   <li><b>*</b> or accessors and constants in the SELECT clause.</li>
+ *   <li>A WHERE clause made of AND, OR, =, !=, &lt;, &gt;, &lt;=, &gt;=, BETWEEN and
+ *       IS [NOT] NULL on accessors and constants.</li>
+ *   <li>ORDER BY accessors or SELECT column indices.</li>
+ *   <li>A LIMIT clause with constant values.</li>
+ * </ul>
+ * Other statements (i.e. with functions, bind variables, GROUP BY or DISTINCT) cause a
+ * {@link QueryParseException} to be thrown.
+ * <p>
+ * The {@link #main(String[])} method takes an output directory followed by one or more
+ * properties files, in each file the key is the name of the class to generate and the value
+ * is the statement.  With Maven it can be run by the <code>exec-maven-plugin</code> (goal:
+ * <code>java</code>) in the <code>process-classes</code> phase, with the generated sources then
+ * compiled by a second execution of the compiler plugin, for example:
+ * <pre>
+ *   &lt;mainClass&gt;dev.mccue.josql.compiler.QueryCompiler&lt;/mainClass&gt;
+ *   &lt;arguments&gt;
+ *     &lt;argument&gt;${project.build.directory}/generated-sources/josql&lt;/argument&gt;
+ *     &lt;argument&gt;${project.basedir}/src/main/josql/queries.properties&lt;/argument&gt;
+ *   &lt;/arguments&gt;
+ * </pre>
+ */
+public class QueryCompiler
+{
+
+    private ClassLoader classLoader = null;
+
+    public QueryCompiler ()
+    {
+
+    }
+
+    /**
+     * Set the class loader used to load the FROM classes.
+     *
+     * @param l The class loader.
+     */
+    public void setClassLoader (ClassLoader l)
+    {
+
+	this.classLoader = l;
+
+    }
+
+    public ClassLoader getClassLoader ()
+    {
+
+	return this.classLoader;
+
+    }
+
+    /**
+     * Compile a statement.
+     *
+     * @param className The fully qualified name of the class to generate.
+     * @param query The statement.
+     * @return The Java source of the class.
+     * @throws QueryParseException If the statement cannot be parsed or can't be compiled.
+     */
+    public String compile (String className,
+			   String query)
+	                   throws QueryParseException
+    {
+
+	Query q = new Query ();
+
+	if (this.classLoader != null)
+	{
+
+	    q.setClassLoader (this.classLoader);
+
+	}
+
+	q.parse (query);
+
+	return new Source (className,
+			   q).generate ();
+
+    }
+
+    /**
+     * Compile the statements in properties files.
+     *
+     * @param args The output directory then the properties files.
+     */
+    public static void main (String[] args)
+    {
+
+	if (args.length < 2)
+	{
+
+	    System.err.println ("Usage: QueryCompiler <output directory> <properties file>...");
+
+	    System.exit (1);
+
+	}
+
+	File out = new File (args[0]);
+
+	QueryCompiler c = new QueryCompiler ();
+
+	int errs = 0;
+
+	for (int i = 1; i < args.length; i++)
+	{
+
+	    Properties ps = new Properties ();
+
+	    try
+	    {
+
+		InputStream in = new FileInputStream (args[i]);
+
+		try
+		{
+
+		    ps.load (in);
+
+		} finally {
+
+		    in.close ();
+
+		}
+
+	    } catch (IOException e) {
+
+		System.err.println ("Unable to read: " + args[i] + ", " + e.getMessage ());
+
+		errs++;
+
+		continue;
+
+	    }
+
+	    Iterator iter = new TreeSet (ps.keySet ()).iterator ();
+
+	    while (iter.hasNext ())
+	    {
+
+		String n = (String) iter.next ();
+
+		try
+		{
+
+		    c.write (out,
+			     n,
+			     c.compile (n,
+					ps.getProperty (n)));
+
+		} catch (Exception e) {
+
+		    System.err.println ("Unable to compile: " + n + " from: " + args[i] + ", " + e.getMessage ());
+
+		    errs++;
+
+		}
+
+	    }
+
+	}
+
+	if (errs > 0)
+	{
+
+	    System.exit (1);
+
+	}
+
+    }
+
+    private void write (File   dir,
+			String className,
+			String src)
+	                throws IOException
+    {
+
+	File f = new File (dir,
+			   className.replace ('.', File.separatorChar) + ".java");
+
+	f.getParentFile ().mkdirs ();
+
+	Writer w = new OutputStreamWriter (new FileOutputStream (f),
+					   StandardCharsets.UTF_8);
+
+	try
+	{
+
+	    w.write (src);
+
+	} finally {
+
+	    w.close ();
+
+	}
+
+    }
+
+    /**
+     * A value in the generated source.
+     */
+    private static class Value
+    {
+
+	private String src = null;
+	private Class type = null;
+
+	// The value of a constant.
+	private boolean constant = false;
+	private Object value = null;
+
+	private Value (String src,
+		       Class  type)
+	{
+
+	    this.src = src;
+	    this.type = type;
+
+	}
+
+    }
+
+    /**
+     * The source for a single query.
+     */
+    private static class Source
+    {
+
+	private String className = null;
+	private String pkg = null;
+	private String name = null;
+	private Query q = null;
+	private Class from = null;
+
+	private StringBuilder members = new StringBuilder ();
+	private StringBuilder orderBy = new StringBuilder ();
+	private List constants = new ArrayList ();
+
+	// Accessor to the method that gets the value.
+	private Map accessors = new HashMap ();
+
+	private Source (String className,
+			Query  q)
+	{
+
+	    this.className = className;
+	    this.q = q;
+
+	    int ind = className.lastIndexOf ('.');
+
+	    this.pkg = (ind > -1) ? className.substring (0, ind) : "";
+	    this.name = className.substring (ind + 1);
+
+	}
+
+	private String generate ()
+	                         throws QueryParseException
+	{
+
+	    this.checkQuery ();
+
+	    this.from = this.q.getFromObjectClass ();
+
+	    if ((this.from == null)
+		||
+		(!this.isAccessible (this.from))
+	       )
+	    {
+
+		throw new QueryParseException ("The FROM class must be accessible from package: " +
+					       this.pkg);
+
+	    }
+
+	    String fn = this.getTypeName (this.from);
+
+	    StringBuilder b = new StringBuilder ();
+
+	    b.append ("\tList res = new ArrayList ();\n\n");
+	    b.append ("\tfor (int i = 0; i < objs.size (); i++)\n");
+	    b.append ("\t{\n\n");
+	    b.append ("\t    " + fn + " o = (" + fn + ") CompiledQuery.getObject (objs,\n");
+	    b.append ("\t\t\t\t\t\t\t    i,\n");
+	    b.append ("\t\t\t\t\t\t\t    " + fn + ".class);\n\n");
+
+	    Expression w = this.q.getWhereClause ();
+
+	    if (w != null)
+	    {
+
+		b.append ("\t    try\n");
+		b.append ("\t    {\n\n");
+		b.append ("\t\tif (!" + this.getCondition (w) + ")\n");
+		b.append ("\t\t{\n\n");
+		b.append ("\t\t    continue;\n\n");
+		b.append ("\t\t}\n\n");
+		b.append ("\t    } catch (Exception e) {\n\n");
+		b.append ("\t\tthrow new QueryExecutionException (\"Unable to evaluate the WHERE clause for object: \" +\n");
+		b.append ("\t\t\t\t\t\t   i,\n");
+		b.append ("\t\t\t\t\t\t   e);\n\n");
+		b.append ("\t    }\n\n");
+
+	    }
+
+	    b.append ("\t    res.add (o);\n\n");
+
+	    int[] l = this.getLimit ();
+
+	    if ((l != null)
+		&&
+		(l[0] > -1)
+		&&
+		(l[1] > 0)
+		&&
+		(this.q.getOrderByComparator () == null)
+	       )
+	    {
+
+		b.append ("\t    if (res.size () == " + (l[0] + l[1]) + ")\n");
+		b.append ("\t    {\n\n");
+		b.append ("\t\t// Enough to fill the LIMIT.\n");
+		b.append ("\t\tbreak;\n\n");
+		b.append ("\t    }\n\n");
+
+	    }
+
+	    b.append ("\t}\n\n");
+
+	    this.addOrderBy (b);
+	    this.addLimit (b);
+	    this.addSelect (b);
+
+	    b.append ("\treturn res;\n\n");
+
+	    StringBuilder s = new StringBuilder ();
+
+	    s.append ("// Generated by: " + QueryCompiler.class.getName () + ", do not edit.\n");
+
+	    if (this.pkg.length () > 0)
+	    {
+
+		s.append ("package " + this.pkg + ";\n\n");
+
+	    }
+
+	    s.append ("import java.util.List;\n");
+	    s.append ("import java.util.ArrayList;\n");
+	    s.append ("import java.util.Arrays;\n");
+	    s.append ("import java.util.Comparator;\n\n");
+	    s.append ("import dev.mccue.josql.QueryExecutionException;\n\n");
+	    s.append ("import dev.mccue.josql.compiler.CompiledQuery;\n\n");
+	    s.append ("@SuppressWarnings({\"rawtypes\", \"unchecked\", \"deprecation\"})\n");
+	    s.append ("public class " + this.name + " extends CompiledQuery\n");
+	    s.append ("{\n\n");
+	    s.append ("    public static final String QUERY = " + QueryCompiler.literal (this.q.getQuery ()) + ";\n\n");
+
+	    for (int i = 0; i < this.constants.size (); i++)
+	    {
+
+		s.append ("    private static final " + this.constants.get (i) + ";\n");
+
+	    }
+
+	    if (this.constants.size () > 0)
+	    {
+
+		s.append ("\n");
+
+	    }
+
+	    s.append ("    public " + this.name + " ()\n");
+	    s.append ("    {\n\n");
+	    s.append ("\tsuper (" + this.name + ".QUERY);\n\n");
+	    s.append ("    }\n\n");
+	    s.append ("    public List execute (List objs)\n");
+	    s.append ("\t                 throws QueryExecutionException\n");
+	    s.append ("    {\n\n");
+	    s.append (b);
+	    s.append ("    }\n\n");
+	    s.append (this.orderBy);
+	    s.append (this.members);
+	    s.append ("}\n");
+
+	    return s.toString ();
+
+	}
+
+	private void checkQuery ()
+	                         throws QueryParseException
+	{
+
+	    String c = null;
+
+	    if (this.q.getGroupByColumns () != null)
+	    {
+
+		c = "GROUP BY";
+
+	    }
+
+	    if (this.q.getHavingClause () != null)
+	    {
+
+		c = "HAVING";
+
+	    }
+
+	    if (this.q.isWantDistinctResults ())
+	    {
+
+		c = "DISTINCT";
+
+	    }
+
+	    if ((this.q.getExecuteOnFunctions () != null)
+		&&
+		(this.q.getExecuteOnFunctions ().size () > 0)
+	       )
+	    {
+
+		c = "EXECUTE ON";
+
+	    }
+
+	    if (this.q.getObjectComparator () != null)
+	    {
+
+		c = "an object comparator";
+
+	    }
+
+	    if (c != null)
+	    {
+
+		throw new QueryParseException ("Query: " +
+					       this.q +
+					       " cannot be compiled, " +
+					       c +
+					       " is not supported.");
+
+	    }
+
+	}
+
+	private void addOrderBy (StringBuilder b)
+	                         throws        QueryParseException
+	{
+
+	    ListExpressionComparator lec = (ListExpressionComparator) this.q.getOrderByComparator ();
+
+	    if (lec == null)
+	    {
+
+		return;
+
+	    }
+
+	    int s = lec.getSortItems ().size ();
+
+	    StringBuilder c = new StringBuilder ();
+
+	    b.append ("\tif (res.size () > 1)\n");
+	    b.append ("\t{\n\n");
+	    b.append ("\t    // The sort values then the object.\n");
+	    b.append ("\t    Object[][] rs = new Object[res.size ()][];\n\n");
+	    b.append ("\t    for (int i = 0; i < rs.length; i++)\n");
+	    b.append ("\t    {\n\n");
+	    b.append ("\t\t" + this.getTypeName (this.from) + " o = (" + this.getTypeName (this.from) + ") res.get (i);\n\n");
+	    b.append ("\t\ttry\n");
+	    b.append ("\t\t{\n\n");
+	    b.append ("\t\t    rs[i] = new Object[] { ");
+
+	    for (int i = 0; i < s; i++)
+	    {
+
+		Value v = this.getValue (lec.getSortItemExpression (i));
+
+		b.append (v.src + ", ");
+
+		String k1 = "((Object[]) o1)[" + i + "]";
+		String k2 = "((Object[]) o2)[" + i + "]";
+
+		if (QueryCompiler.isIntegral (v.type))
+		{
+
+		    c.append ("\t    c = Long.compare (((Number) " + k1 + ").longValue (),\n");
+		    c.append ("\t\t\t      ((Number) " + k2 + ").longValue ());\n\n");
+
+		} else {
+
+		    c.append ("\t    c = CompiledQuery.compare (" + k1 + ",\n");
+		    c.append ("\t\t\t\t       " + k2 + ");\n\n");
+
+		}
+
+		c.append ("\t    if (c != 0)\n");
+		c.append ("\t    {\n\n");
+		c.append ("\t\treturn " + ((lec.getSortItemDirection (i) == OrderBy.DESC) ? "-c" : "c") + ";\n\n");
+		c.append ("\t    }\n\n");
+
+	    }
+
+	    b.append ("o };\n\n");
+	    b.append ("\t\t} catch (Exception e) {\n\n");
+	    b.append ("\t\t    throw new QueryExecutionException (\"Unable to order results\",\n");
+	    b.append ("\t\t\t\t\t\t       e);\n\n");
+	    b.append ("\t\t}\n\n");
+	    b.append ("\t    }\n\n");
+	    b.append ("\t    // Stable, so equal objects stay in the same order.\n");
+	    b.append ("\t    Arrays.sort (rs,\n");
+	    b.append ("\t\t\t " + this.name + ".ORDER_BY);\n\n");
+	    b.append ("\t    for (int i = 0; i < rs.length; i++)\n");
+	    b.append ("\t    {\n\n");
+	    b.append ("\t\tres.set (i,\n");
+	    b.append ("\t\t\t rs[i][" + s + "]);\n\n");
+	    b.append ("\t    }\n\n");
+	    b.append ("\t}\n\n");
+
+	    this.orderBy.append ("    private static final Comparator ORDER_BY = new Comparator ()\n");
+	    this.orderBy.append ("    {\n\n");
+	    this.orderBy.append ("\tpublic int compare (Object o1,\n");
+	    this.orderBy.append ("\t\t\t    Object o2)\n");
+	    this.orderBy.append ("\t{\n\n");
+	    this.orderBy.append ("\t    int c = 0;\n\n");
+	    this.orderBy.append (c);
+	    this.orderBy.append ("\t    return 0;\n\n");
+	    this.orderBy.append ("\t}\n\n");
+	    this.orderBy.append ("    };\n\n");
+
+	}
+
+	private void addLimit (StringBuilder b)
+	                       throws        QueryParseException
+	{
+
+	    int[] l = this.getLimit ();
+
+	    if (l == null)
+	    {
+
+		return;
+
+	    }
+
+	    b.append ("\tres = CompiledQuery.limit (res,\n");
+	    b.append ("\t\t\t\t  " + l[0] + ",\n");
+	    b.append ("\t\t\t\t  " + l[1] + ");\n\n");
+
+	}
+
+	/**
+	 * Get the start (from 0) and rows count of the LIMIT clause.
+	 *
+	 * @return The values or <code>null</code> if there is no LIMIT clause.
+	 */
+	private int[] getLimit ()
+	                        throws QueryParseException
+	{
+
+	    Limit l = this.q.getLimit ();
+
+	    if (l == null)
+	    {
+
+		return null;
+
+	    }
+
+	    int start = 0;
+
+	    if (l.getStart () != null)
+	    {
+
+		Object s = this.getConstant (l.getStart ());
+
+		if (s != null)
+		{
+
+		    // The rows start at 1 for the user.
+		    start = ((Number) s).intValue () - 1;
+
+		}
+
+	    }
+
+	    int rows = -1;
+
+	    Object r = this.getConstant (l.getRowsCount ());
+
+	    if (r != null)
+	    {
+
+		rows = ((Number) r).intValue ();
+
+	    }
+
+	    return new int[] { start, rows };
+
+	}
+
+	private void addSelect (StringBuilder b)
+	                        throws        QueryParseException
+	{
+
+	    if (this.q.isWantObjects ())
+	    {
+
+		return;
+
+	    }
+
+	    List cols = this.q.getColumns ();
+
+	    b.append ("\tfor (int i = 0; i < res.size (); i++)\n");
+	    b.append ("\t{\n\n");
+	    b.append ("\t    " + this.getTypeName (this.from) + " o = (" + this.getTypeName (this.from) + ") res.get (i);\n\n");
+	    b.append ("\t    List r = new ArrayList (" + cols.size () + ");\n\n");
+	    b.append ("\t    try\n");
+	    b.append ("\t    {\n\n");
+
+	    for (int i = 0; i < cols.size (); i++)
+	    {
+
+		SelectItemExpression s = (SelectItemExpression) cols.get (i);
+
+		if (s.isAddItemsFromCollectionOrMap ())
+		{
+
+		    throw new QueryParseException ("Query: " +
+						   this.q +
+						   " cannot be compiled, SELECT " +
+						   s +
+						   " is not supported.");
+
+		}
+
+		b.append ("\t\tr.add (" + this.getValue (s.getExpression ()).src + ");\n");
+
+	    }
+
+	    b.append ("\n\t    } catch (Exception e) {\n\n");
+	    b.append ("\t\tthrow new QueryExecutionException (\"Unable to get the column values for result: \" +\n");
+	    b.append ("\t\t\t\t\t\t   i,\n");
+	    b.append ("\t\t\t\t\t\t   e);\n\n");
+	    b.append ("\t    }\n\n");
+	    b.append ("\t    res.set (i,\n");
+	    b.append ("\t\t     r);\n\n");
+	    b.append ("\t}\n\n");
+
+	}
+
+	/**
+	 * Get the source for the expression as a condition (i.e. the WHERE clause).
+	 */
+	private String getCondition (Expression exp)
+	                             throws     QueryParseException
+	{
+
+	    exp = QueryCompiler.unwrap (exp);
+
+	    if (exp instanceof AndOrExpression)
+	    {
+
+		AndOrExpression a = (AndOrExpression) exp;
+
+		return "(" + this.getCondition (a.getLeft ()) + (a.isAnd () ? " && " : " || ") + this.getCondition (a.getRight ()) + ")";
+
+	    }
+
+	    if (exp instanceof EqualsExpression)
+	    {
+
+		EqualsExpression e = (EqualsExpression) exp;
+
+		Value l = this.getValue (e.getLeft ());
+		Value r = this.getValue (e.getRight ());
+
+		if (!e.isIgnoreCase ())
+		{
+
+		    String c = this.getComparison (l,
+						   r,
+						   e.isNot () ? " != " : " == ");
+
+		    if (c != null)
+		    {
+
+			return c;
+
+		    }
+
+		}
+
+		if ((!e.isIgnoreCase ())
+		    &&
+		    (QueryCompiler.isSameKind (l.type,
+					       r.type))
+		   )
+		{
+
+		    return "CompiledQuery.isEquals (" + l.src + ", " + r.src + ", " + e.isNot () + ")";
+
+		}
+
+		return "CompiledQuery.isEquals (" + l.src + ", " + r.src + ", " + e.isIgnoreCase () + ", " + e.isNot () + ")";
+
+	    }
+
+	    if (exp instanceof GTLTExpression)
+	    {
+
+		GTLTExpression g = (GTLTExpression) exp;
+
+		Value l = this.getValue (g.getLeft ());
+		Value r = this.getValue (g.getRight ());
+
+		if (!g.isIgnoreCase ())
+		{
+
+		    String c = this.getComparison (l,
+						   r,
+						   " " + QueryCompiler.getOperator (g.getType ()) + " ");
+
+		    if (c != null)
+		    {
+
+			return c;
+
+		    }
+
+		}
+
+		if ((!g.isIgnoreCase ())
+		    &&
+		    (QueryCompiler.isSameKind (l.type,
+					       r.type))
+		   )
+		{
+
+		    return "CompiledQuery.isGTLT (" + l.src + ", " + r.src + ", " + g.getType () + ")";
+
+		}
+
+		return "CompiledQuery.isGTLT (" + l.src + ", " + r.src + ", " + g.isIgnoreCase () + ", " + g.getType () + ")";
+
+	    }
+
+	    if (exp instanceof BetweenExpression)
+	    {
+
+		BetweenExpression be = (BetweenExpression) exp;
+
+		Value l = this.getValue (be.getLeft ());
+		Value s = this.getValue (be.getStart ());
+		Value e = this.getValue (be.getEnd ());
+
+		if ((this.isIntegral (l))
+		    &&
+		    (this.isIntegral (s))
+		    &&
+		    (this.isIntegral (e))
+		   )
+		{
+
+		    return "(" + (be.isNot () ? "!" : "") + "((" + this.getLong (l) + " >= " + this.getLong (s) + ") && (" + this.getLong (l) + " <= " + this.getLong (e) + ")))";
+
+		}
+
+		return "CompiledQuery.isBetween (" + l.src + ", " + s.src + ", " + e.src + ", " + be.isNot () + ")";
+
+	    }
+
+	    if (exp instanceof IsNullExpression)
+	    {
+
+		IsNullExpression n = (IsNullExpression) exp;
+
+		Value l = this.getValue (n.getLeft ());
+
+		if (l.type.isPrimitive ())
+		{
+
+		    return String.valueOf (n.isNot ());
+
+		}
+
+		return "(" + l.src + (n.isNot () ? " != " : " == ") + "null)";
+
+	    }
+
+	    if (exp instanceof Accessor)
+	    {
+
+		Value v = this.getValue (exp);
+
+		if (v.type == Boolean.TYPE)
+		{
+
+		    return v.src;
+
+		}
+
+		if ((v.type.isPrimitive ())
+		    &&
+		    (v.type != Character.TYPE)
+		   )
+		{
+
+		    return "(" + v.src + " > 0)";
+
+		}
+
+		return "CompiledQuery.isTrue (" + v.src + ")";
+
+	    }
+
+	    throw new QueryParseException ("Query: " +
+					   this.q +
+					   " cannot be compiled, expression: " +
+					   exp +
+					   " is not supported.");
+
+	}
+
+	/**
+	 * Get the source for the value of the expression.
+	 */
+	private Value getValue (Expression exp)
+	                        throws     QueryParseException
+	{
+
+	    exp = QueryCompiler.unwrap (exp);
+
+	    if (exp instanceof Accessor)
+	    {
+
+		return this.getAccessor (((Accessor) exp).getAccessor ());
+
+	    }
+
+	    if ((exp instanceof ConstantExpression)
+		||
+		(exp instanceof BooleanExpression)
+	       )
+	    {
+
+		Object o = this.getConstant (exp);
+
+		Value v = null;
+
+		if (o == null)
+		{
+
+		    v = new Value ("null",
+				   Object.class);
+
+		} else {
+
+		    v = new Value ("c" + this.constants.size (),
+				   o.getClass ());
+
+		    this.constants.add (this.getTypeName (o.getClass ()) + " " + v.src + " = " + QueryCompiler.getConstantSource (o));
+
+		}
+
+		v.constant = true;
+		v.value = o;
+
+		return v;
+
+	    }
+
+	    throw new QueryParseException ("Query: " +
+					   this.q +
+					   " cannot be compiled, expression: " +
+					   exp +
+					   " is not supported.");
+
+	}
+
+	private Object getConstant (Expression exp)
+	                            throws     QueryParseException
+	{
+
+	    exp = QueryCompiler.unwrap (exp);
+
+	    if ((!(exp instanceof ConstantExpression))
+		&&
+		(!(exp instanceof BooleanExpression))
+	       )
+	    {
+
+		throw new QueryParseException ("Query: " +
+					       this.q +
+					       " cannot be compiled, expression: " +
+					       exp +
+					       " is not a constant.");
+
+	    }
+
+	    try
+	    {
+
+		return exp.getValue (null,
+				     this.q);
+
+	    } catch (Exception e) {
+
+		throw new QueryParseException ("Unable to get value of: " +
+					       exp,
+					       e);
+
+	    }
+
+	}
+
+	/**
+	 * Get the value for an accessor on the FROM object, a method is added that gets the
+	 * value by resolving the accessor in the same way as a {@link Getter}.
+	 */
+	private Value getAccessor (String acc)
+	                           throws QueryParseException
+	{
+
+	    Value v = (Value) this.accessors.get (acc);
+
+	    if (v != null)
+	    {
+
+		return v;
+
+	    }
+
+	    StringTokenizer t = new StringTokenizer (acc,
+						     ".");
+
+	    Class c = this.from;
+
+	    StringBuilder b = new StringBuilder ();
+
+	    String var = "o";
+
+	    int i = 0;
+
+	    while (t.hasMoreTokens ())
+	    {
+
+		String tok = t.nextToken ();
+
+		if (!this.isAccessible (c))
+		{
+
+		    throw new QueryParseException ("Unable to compile accessor: " +
+						   acc +
+						   ", class: " +
+						   c.getName () +
+						   " is not accessible from package: " +
+						   this.pkg);
+
+		}
+
+		String get = null;
+		Class type = null;
+
+		Field f = null;
+
+		Field[] fields = c.getFields ();
+
+		for (int j = 0; j < fields.length; j++)
+		{
+
+		    if (fields[j].getName ().equals (tok))
+		    {
+
+			f = fields[j];
+
+			break;
+
+		    }
+
+		}
+
+		if (f != null)
+		{
+
+		    get = var + "." + tok;
+		    type = f.getType ();
+
+		} else {
+
+		    Method m = Getter.getNoParmJavaGetMethod (tok,
+							      c);
+
+		    if ((m == null)
+			||
+			(m.getReturnType () == Void.TYPE)
+		       )
+		    {
+
+			throw new QueryParseException ("Unable to compile accessor: " +
+						       acc +
+						       ", cannot find a field or method for: " +
+						       tok +
+						       " in class: " +
+						       c.getName ());
+
+		    }
+
+		    get = var + "." + m.getName () + " ()";
+		    type = m.getReturnType ();
+
+		}
+
+		if (!t.hasMoreTokens ())
+		{
+
+		    if (!this.isAccessible (type))
+		    {
+
+			type = Object.class;
+
+		    }
+
+		    if ((i > 0)
+			&&
+			(type.isPrimitive ())
+		       )
+		    {
+
+			// A null part way along gives null.
+			type = Utilities.getObjectClass (type);
+
+		    }
+
+		    b.append ("\treturn " + get + ";\n\n");
+
+		    c = type;
+
+		    break;
+
+		}
+
+		var = "v" + i++;
+
+		b.append ("\t" + this.getTypeName (type) + " " + var + " = " + get + ";\n\n");
+		b.append ("\tif (" + var + " == null)\n");
+		b.append ("\t{\n\n");
+		b.append ("\t    return null;\n\n");
+		b.append ("\t}\n\n");
+
+		c = type;
+
+	    }
+
+	    String mn = "a" + this.accessors.size ();
+
+	    this.members.append ("    // " + acc + "\n");
+	    this.members.append ("    private static " + this.getTypeName (c) + " " + mn + " (" + this.getTypeName (this.from) + " o) throws Exception\n");
+	    this.members.append ("    {\n\n");
+	    this.members.append (b);
+	    this.members.append ("    }\n\n");
+
+	    v = new Value (mn + " (o)",
+			   c);
+
+	    this.accessors.put (acc,
+				v);
+
+	    return v;
+
+	}
+
+	/**
+	 * Get the source that compares two numbers with the operator, for a primitive value
+	 * and a numeric constant (in either order).  The numbers are compared in the same way
+	 * as {@link dev.mccue.josql.internal.Numbers#compare(Number,Number)}.
+	 *
+	 * @return The source or <code>null</code> if the values can't be compared directly.
+	 */
+	private String getComparison (Value  l,
+				      Value  r,
+				      String op)
+	{
+
+	    if ((this.isIntegral (l))
+		&&
+		(this.isIntegral (r))
+	       )
+	    {
+
+		return "(" + this.getLong (l) + op + this.getLong (r) + ")";
+
+	    }
+
+	    boolean lc = l.constant && (l.value instanceof Double);
+	    boolean rc = r.constant && (r.value instanceof Double);
+
+	    if ((QueryCompiler.isIntegral (l.type))
+		&&
+		(rc)
+	       )
+	    {
+
+		return "(CompiledQuery.compare (" + l.src + ", " + r.value + ")" + op + "0)";
+
+	    }
+
+	    if ((lc)
+		&&
+		(QueryCompiler.isIntegral (r.type))
+	       )
+	    {
+
+		return "(-CompiledQuery.compare (" + r.src + ", " + l.value + ")" + op + "0)";
+
+	    }
+
+	    if (((l.type == Double.TYPE)
+		 ||
+		 (l.type == Float.TYPE)
+		)
+		&&
+		(rc)
+	       )
+	    {
+
+		return "(Double.compare (" + l.src + ", " + r.value + ")" + op + "0)";
+
+	    }
+
+	    if ((lc)
+		&&
+		((r.type == Double.TYPE)
+		 ||
+		 (r.type == Float.TYPE)
+		)
+	       )
+	    {
+
+		return "(Double.compare (" + l.value + ", " + r.src + ")" + op + "0)";
+
+	    }
+
+	    return null;
+
+	}
+
+	private boolean isIntegral (Value v)
+	{
+
+	    if (v.constant)
+	    {
+
+		return QueryCompiler.getLong (v.value) != null;
+
+	    }
+
+	    return (v.type.isPrimitive ())
+		   &&
+		   (QueryCompiler.isIntegral (v.type));
+
+	}
+
+	private String getLong (Value v)
+	{
+
+	    if (v.constant)
+	    {
+
+		return QueryCompiler.getLong (v.value) + "L";
+
+	    }
+
+	    return v.src;
+
+	}
+
+	/**
+	 * Whether the class can be used in the source, it must be public (as must any enclosing
+	 * classes) or in the same package as the generated class.
+	 */
+	private boolean isAccessible (Class c)
+	{
+
+	    if (c.isPrimitive ())
+	    {
+
+		return true;
+
+	    }
+
+	    if (c.isArray ())
+	    {
+
+		return this.isAccessible (c.getComponentType ());
+
+	    }
+
+	    if ((c.isAnonymousClass ())
+		||
+		(c.isLocalClass ())
+		||
+		(c.getCanonicalName () == null)
+	       )
+	    {
+
+		return false;
+
+	    }
+
+	    Class d = c;
+
+	    while (d != null)
+	    {
+
+		int m = d.getModifiers ();
+
+		if (Modifier.isPrivate (m))
+		{
+
+		    return false;
+
+		}
+
+		if ((!Modifier.isPublic (m))
+		    &&
+		    (!c.getPackageName ().equals (this.pkg))
+		   )
+		{
+
+		    return false;
+
+		}
+
+		d = d.getDeclaringClass ();
+
+	    }
+
+	    return true;
+
+	}
+
+	private String getTypeName (Class c)
+	{
+
+	    return c.getCanonicalName ();
+
+	}
+
+    }
+
+    private static Expression unwrap (Expression exp)
+    {
+
+	while (true)
+	{
+
+	    if (exp instanceof SharedExpression)
+	    {
+
+		exp = ((SharedExpression) exp).getExpression ();
+
+		continue;
+
+	    }
+
+	    if (exp instanceof InvariantExpression)
+	    {
+
+		exp = ((InvariantExpression) exp).getExpression ();
+
+		continue;
+
+	    }
+
+	    if (exp instanceof ProfiledExpression)
+	    {
+
+		exp = ((ProfiledExpression) exp).getExpression ();
+
+		continue;
+
+	    }
+
+	    return exp;
+
+	}
+
+    }
+
+    /**
+     * Whether the values are both strings or both numbers (but not primitives, which can be
+     * compared directly), and so can be compared by the typed methods of {@link CompiledQuery}.
+     */
+    private static boolean isSameKind (Class l,
+				       Class r)
+    {
+
+	if ((l == String.class)
+	    &&
+	    (r == String.class)
+	   )
+	{
+
+	    return true;
+
+	}
+
+	return (Number.class.isAssignableFrom (l))
+	       &&
+	       (Number.class.isAssignableFrom (r));
+
+    }
+
+    private static boolean isIntegral (Class c)
+    {
+
+	return (c == Long.TYPE)
+	       ||
+	       (c == Integer.TYPE)
+	       ||
+	       (c == Short.TYPE)
+	       ||
+	       (c == Byte.TYPE);
+
+    }
+
+    /**
+     * Get the constant as a long, if it is a whole number within the range of a long (and so
+     * compares to a long in the same way as its long value).
+     */
+    private static Long getLong (Object o)
+    {
+
+	if (o instanceof Long)
+	{
+
+	    return (Long) o;
+
+	}
+
+	if (o instanceof Double)
+	{
+
+	    double d = ((Double) o).doubleValue ();
+
+	    // 2^63 is exact as a double.
+	    if ((d == Math.rint (d))
+		&&
+		(d >= -9.223372036854775808E18)
+		&&
+		(d < 9.223372036854775808E18)
+	       )
+	    {
+
+		return Long.valueOf ((long) d);
+
+	    }
+
+	}
+
+	return null;
+
+    }
+
+    private static String getOperator (int type)
+    {
+
+	switch (type)
+	{
+
+	case Utilities.GT: return ">";
+	case Utilities.GTE: return ">=";
+	case Utilities.LT: return "<";
+
+	}
+
+	return "<=";
+
+    }
+
+    private static String getConstantSource (Object o)
+	                                     throws QueryParseException
+    {
+
+	if (o instanceof String)
+	{
+
+	    return QueryCompiler.literal ((String) o);
+
+	}
+
+	if (o instanceof Long)
+	{
+
+	    return "Long.valueOf (" + o + "L)";
+
+	}
+
+	if (o instanceof Double)
+	{
+
+	    return "Double.valueOf (Double.longBitsToDouble (" + Double.doubleToRawLongBits (((Double) o).doubleValue ()) + "L))";
+
+	}
+
+	if (o instanceof Boolean)
+	{
+
+	    return "Boolean." + (((Boolean) o).booleanValue () ? "TRUE" : "FALSE");
+
+	}
+
+	if (o instanceof BigDecimal)
+	{
+
+	    return "new java.math.BigDecimal (" + QueryCompiler.literal (o.toString ()) + ")";
+
+	}
+
+	if (o instanceof BigInteger)
+	{
+
+	    return "new java.math.BigInteger (" + QueryCompiler.literal (o.toString ()) + ")";
+
+	}
+
+	throw new QueryParseException ("Unable to compile constant: " +
+				       o +
+				       " of type: " +
+				       o.getClass ().getName ());
+
+    }
+
+    private static String literal (String s)
+    {
+
+	StringBuilder b = new StringBuilder ("\"");
+
+	for (int i = 0; i < s.length (); i++)
+	{
+
+	    char c = s.charAt (i);
+
+	    if ((c == '"')
+		||
+		(c == '\\')
+	       )
+	    {
+
+		b.append ('\\');
+		b.append (c);
+
+		continue;
+
+	    }
+
+	    // Octal escapes, a unicode escape for a line terminator would end the literal.
+	    if (c < 0x20)
+	    {
+
+		b.append (String.format ("\\%03o", Integer.valueOf (c)));
+
+		continue;
+
+	    }
+
+	    if (c > 0x7e)
+	    {
+
+		b.append (String.format ("\\u%04x", Integer.valueOf (c)));
+
+		continue;
+
+	    }
+
+	    b.append (c);
+
+	}
+
+	b.append ('"');
+
+	return b.toString ();
+
+    }
+
+}
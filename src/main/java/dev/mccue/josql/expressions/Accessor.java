@@ -21,6 +21,7 @@ import dev.mccue.josql.QueryExecutionException;
 import dev.mccue.josql.QueryParseException;
 
 import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.GetterCache;
 
 /**
  * Represents an "accessor" into an object.  An accessor is basically a dot separated list
@@ -29,12 +30,17 @@ import dev.mccue.josql.internal.Utilities;
  * All of the methods referenced must have no arguments and be "public" in the referring class.
  * You can use either the actual method name or the JavaBean naming convention.
  * Thus: <code>myObj.id.name</code> might also be represented as: <code>getMyObj.getId.getName</code>.
+ * <p>
+ * The accessor is resolved against the FROM class, which works for any subclass.  Objects that
+ * aren't instances of the FROM class (when the collection holds unrelated classes with the
+ * same methods) use an accessor resolved against their own class.
  */
 public class Accessor extends ValueExpression
 {
 
     private String acc = null;
     private Getter get = null;
+    private GetterCache getters = null;
 
     public Class getExpectedReturnType (Query  q)
 	                                throws QueryParseException
@@ -48,6 +54,8 @@ public class Accessor extends ValueExpression
 	              throws QueryParseException
     {
 
+	this.getters = null;
+
 	// Now init the getter.
 	try
 	{
@@ -140,10 +148,31 @@ public class Accessor extends ValueExpression
 	                    throws QueryExecutionException
     {
 
+	Getter g = this.get;
+
 	try
 	{
 
-	    return this.get.getValue (o);
+	    if ((o != null)
+		&&
+		(o.getClass () != g.getBaseClass ())
+		&&
+		(!g.getBaseClass ().isInstance (o))
+	       )
+	    {
+
+		if (this.getters == null)
+		{
+
+		    this.getters = new GetterCache (this.acc);
+
+		}
+
+		g = this.getters.getGetter (o.getClass ());
+
+	    }
+
+	    return g.getValue (o);
 
 	} catch (Exception e) {
 
@@ -14,6 +14,9 @@
  */
 package dev.mccue.josql.expressions;
 
+import java.util.List;
+import java.util.ArrayList;
+
 import dev.mccue.josql.Query;
 import dev.mccue.josql.QueryExecutionException;
 
@@ -23,11 +26,37 @@ import dev.mccue.josql.QueryExecutionException;
  * and LHS = true then the RHS is NOT evaluated, if the expression is: <code>LHS AND RHS</code>
  * and LHS = false then the RHS is NOT evaluated (see {@link #isTrue(Object,Query)}).  This is important to note if you expect
  * side-effects to occur in the RHS (bad practice anyway so don't do it!).
+ * <p>
+ * When none of the terms of a chain of ANDs (or ORs) have side-effects the chain is
+ * {@link #setAdaptive(boolean) adaptive}, the pass rate and cost of each term is sampled as the
+ * chain is evaluated and periodically the terms are reordered so that the cheapest term that
+ * is most likely to decide the result is evaluated first.  The result is always the same as
+ * evaluating the terms in the order given.
  */
 public class AndOrExpression extends BinaryExpression
 {
 
+    // Every SAMPLE_MIN + 1 calls (increasing up to SAMPLE_MAX + 1) are sampled.
+    private static final int SAMPLE_MIN = 15;
+    private static final int SAMPLE_MAX = 255;
+
+    // The number of samples between reordering the terms.
+    private static final int REORDER = 64;
+
     private boolean and = false;
+    private boolean adaptive = false;
+
+    // The terms of the chain, the order they are evaluated in and, per term, the
+    // times it was sampled, passed and the time taken (in ns).
+    private Expression[] terms = null;
+    private int[] order = null;
+    private boolean reordered = false;
+    private long[] samples = null;
+    private long[] passes = null;
+    private long[] costs = null;
+    private int calls = 0;
+    private int sampleMask = AndOrExpression.SAMPLE_MIN;
+    private int sampleCount = 0;
 
     public boolean isAnd ()
     {
@@ -43,6 +72,29 @@ public class AndOrExpression extends BinaryExpression
 
     }
 
+    public boolean isAdaptive ()
+    {
+
+	return this.adaptive;
+
+    }
+
+    /**
+     * Set whether the terms of the chain of ANDs (or ORs) this expression is the top of can
+     * be reordered, they must not have side-effects.  Any previous statistics are discarded.
+     *
+     * @param v Whether the terms can be reordered.
+     */
+    public void setAdaptive (boolean v)
+    {
+
+	this.adaptive = v;
+
+	// The terms are gathered when first evaluated since the children may still be replaced.
+	this.terms = null;
+
+    }
+
     /**
      * Evaulates the expression and returns true if the expression evaulates to <code>true</code>.
      * <p>
@@ -100,7 +152,8 @@ public class AndOrExpression extends BinaryExpression
      * <p>
      * In general what this means is that you should "left-weight" your expressions so that
      * the expression that returns <code>true</code> most often (or more likely to return 
-     * <code>true</code>) should be on the LHS.
+     * <code>true</code>) should be on the LHS.  For an {@link #setAdaptive(boolean) adaptive}
+     * expression this is only the initial order.
      *
      * @param o The current object to perform the expression on. 
      * @param q The query object.
@@ -113,6 +166,295 @@ public class AndOrExpression extends BinaryExpression
 	                   throws QueryExecutionException
     {
 
+	if (!this.adaptive)
+	{
+
+	    return this.isTrueInOrder (o,
+				       q);
+
+	}
+
+	if (this.terms == null)
+	{
+
+	    this.initTerms ();
+
+	}
+
+	if ((++this.calls & this.sampleMask) == 0)
+	{
+
+	    return this.isTrueSampled (o,
+				       q);
+
+	}
+
+	if (!this.reordered)
+	{
+
+	    return this.isTrueInOrder (o,
+				       q);
+
+	}
+
+	try
+	{
+
+	    for (int i = 0; i < this.order.length; i++)
+	    {
+
+		if (this.terms[this.order[i]].isTrue (o,
+						      q) != this.and)
+		{
+
+		    return !this.and;
+
+		}
+
+	    }
+
+	} catch (Exception e) {
+
+	    // A term earlier in the chain may prevent the exception, i.e. a check for null.
+	    return this.isTrueInOrder (o,
+				       q);
+
+	}
+
+	return this.and;
+
+    }
+
+    /**
+     * Evaluate every term in the order given, gathering the pass rate and cost of each.
+     */
+    private boolean isTrueSampled (Object o,
+				   Query  q)
+	                           throws QueryExecutionException
+    {
+
+	// The result, once known.
+	Boolean res = null;
+
+	for (int i = 0; i < this.terms.length; i++)
+	{
+
+	    long s = System.nanoTime ();
+
+	    boolean v = false;
+
+	    try
+	    {
+
+		v = this.terms[i].isTrue (o,
+					  q);
+
+	    } catch (QueryExecutionException e) {
+
+		if (res == null)
+		{
+
+		    throw e;
+
+		}
+
+		// Only evaluated for the statistics.
+		continue;
+
+	    } catch (RuntimeException e) {
+
+		if (res == null)
+		{
+
+		    throw e;
+
+		}
+
+		continue;
+
+	    }
+
+	    this.costs[i] += System.nanoTime () - s;
+	    this.samples[i]++;
+
+	    if (v)
+	    {
+
+		this.passes[i]++;
+
+	    }
+
+	    if ((res == null)
+		&&
+		(v != this.and)
+	       )
+	    {
+
+		res = Boolean.valueOf (v);
+
+	    }
+
+	}
+
+	if (++this.sampleCount == AndOrExpression.REORDER)
+	{
+
+	    this.reorder ();
+
+	}
+
+	return (res != null) ? res.booleanValue () : this.and;
+
+    }
+
+    /**
+     * Order the terms by the cost of the term divided by the chance of it deciding the result,
+     * for an AND this is the chance of it being false and for an OR the chance of it being true.
+     * The statistics are then halved so that later samples have more weight.
+     */
+    private void reorder ()
+    {
+
+	int n = this.terms.length;
+
+	double[] rank = new double[n];
+
+	for (int i = 0; i < n; i++)
+	{
+
+	    double p = (double) (this.passes[i] + 1) / (double) (this.samples[i] + 2);
+
+	    double c = (double) (this.costs[i] + 1) / (double) (this.samples[i] + 1);
+
+	    rank[i] = c / (this.and ? 1 - p : p);
+
+	    this.samples[i] /= 2;
+	    this.passes[i] /= 2;
+	    this.costs[i] /= 2;
+
+	}
+
+	// Insertion sort, the chains are short and ties keep their order.
+	for (int i = 0; i < n; i++)
+	{
+
+	    this.order[i] = i;
+
+	}
+
+	for (int i = 1; i < n; i++)
+	{
+
+	    int t = this.order[i];
+
+	    int j = i - 1;
+
+	    while ((j > -1)
+		   &&
+		   (rank[this.order[j]] > rank[t])
+		  )
+	    {
+
+		this.order[j + 1] = this.order[j];
+
+		j--;
+
+	    }
+
+	    this.order[j + 1] = t;
+
+	}
+
+	this.reordered = false;
+
+	for (int i = 0; i < n; i++)
+	{
+
+	    if (this.order[i] != i)
+	    {
+
+		this.reordered = true;
+
+	    }
+
+	}
+
+	this.sampleCount = 0;
+
+	// Sample less often as the order settles.
+	this.sampleMask = Math.min ((this.sampleMask << 1) | 1,
+				    AndOrExpression.SAMPLE_MAX);
+
+    }
+
+    private void initTerms ()
+    {
+
+	List l = new ArrayList ();
+
+	this.addTerms (this,
+		       l);
+
+	int n = l.size ();
+
+	this.terms = (Expression[]) l.toArray (new Expression[n]);
+	this.order = new int[n];
+
+	for (int i = 0; i < n; i++)
+	{
+
+	    this.order[i] = i;
+
+	}
+
+	this.reordered = false;
+	this.samples = new long[n];
+	this.passes = new long[n];
+	this.costs = new long[n];
+	this.calls = 0;
+	this.sampleMask = AndOrExpression.SAMPLE_MIN;
+	this.sampleCount = 0;
+
+    }
+
+    private void addTerms (Expression exp,
+			   List       l)
+    {
+
+	if ((exp instanceof AndOrExpression)
+	    &&
+	    (((AndOrExpression) exp).and == this.and)
+	   )
+	{
+
+	    AndOrExpression ao = (AndOrExpression) exp;
+
+	    if (ao != this)
+	    {
+
+		// Only evaluated when the terms are in the order given.
+		ao.setAdaptive (false);
+
+	    }
+
+	    this.addTerms (ao.left,
+			   l);
+	    this.addTerms (ao.right,
+			   l);
+
+	    return;
+
+	}
+
+	l.add (exp);
+
+    }
+
+    private boolean isTrueInOrder (Object o,
+				   Query  q)
+	                           throws QueryExecutionException
+    {
+
 	// Execute left first.
 	boolean l = this.left.isTrue (o,
 				      q);
@@ -14,17 +14,32 @@
  */
 package dev.mccue.josql.expressions;
 
+import java.math.BigInteger;
+import java.math.BigDecimal;
+
 import dev.mccue.josql.Query;
 import dev.mccue.josql.QueryExecutionException;
 import dev.mccue.josql.QueryParseException;
 
-import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.Numbers;
 
 /**
  * Represents the arithmetic expressions: *, +, /, - and %.
- * It should be noted that ALL numbers in JoSQL are represented as <b>double</b> values, this
- * allows for easy arithmetic operations without the fear of losing precision or casting
- * issues.
+ * The type of the result is worked out from the expected types of the LHS and RHS when the
+ * expression is initialised (see: {@link Numbers#getKind(Class)}), rather than from the values:
+ * <ul>
+ *   <li>Integral types (ints, longs and so on) give an exact <b>Long</b>, or a BigInteger if the
+ *       result is too big for a long.</li>
+ *   <li>BigIntegers give a BigInteger and BigDecimals give an exact <b>BigDecimal</b>, i.e.
+ *       <code>0.1 + 0.2</code> is <code>0.3</code> rather than <code>0.30000000000000004</code>.</li>
+ *   <li>Any other mix with a double or float gives a <b>Double</b>.</li>
+ * </ul>
+ * Number literals in a query are doubles, an integral literal used with an integral or
+ * BigDecimal value is converted to that type so that, for instance, <code>age + 1</code> is
+ * integral.  Division of integral values that isn't exact is not truncated, i.e. <code>7 / 2</code>
+ * is <code>3.5</code> and the remainder of integral division by zero is NaN.  If the type of either
+ * side isn't known (i.e. it is <code>java.lang.Object</code>) then the result depends on the
+ * values, as per {@link Numbers}.
  */
 public class ArithmeticExpression extends ValueExpression
 {
@@ -42,9 +57,14 @@ public class ArithmeticExpression extends ValueExpression
 
     private boolean fixedResult = false;
 
+    private int kind = -1;
+    private Number leftValue = null;
+    private Number rightValue = null;
+
     /**
-     * Return the expected return type.  This just returns the result of calling this
-     * method on the LHS.
+     * Return the expected return type.  Once initialised this is the type of number that the
+     * expression gives (see above), otherwise (or if the type isn't known) this just returns the
+     * result of calling this method on the LHS.
      *
      * @param q The Query object.
      * @return The expected return type class.
@@ -54,6 +74,34 @@ public class ArithmeticExpression extends ValueExpression
 	                                throws QueryParseException
     {
 
+	if (this.kind == Numbers.LONG)
+	{
+
+	    return Long.class;
+
+	}
+
+	if (this.kind == Numbers.BIG_INTEGER)
+	{
+
+	    return BigInteger.class;
+
+	}
+
+	if (this.kind == Numbers.DOUBLE)
+	{
+
+	    return Double.class;
+
+	}
+
+	if (this.kind == Numbers.BIG_DECIMAL)
+	{
+
+	    return BigDecimal.class;
+
+	}
+
 	return this.left.getExpectedReturnType (q);
 
     }
@@ -135,6 +183,77 @@ public class ArithmeticExpression extends ValueExpression
 
 	this.fixedResult = this.left.hasFixedResult (q) && this.right.hasFixedResult (q);
 
+	this.kind = -1;
+
+	Class lc = this.left.getExpectedReturnType (q);
+	Class rc = this.right.getExpectedReturnType (q);
+
+	this.leftValue = ArithmeticExpression.getConstant (this.left,
+							   rc);
+	this.rightValue = ArithmeticExpression.getConstant (this.right,
+							    lc);
+
+	this.kind = Numbers.getKind (ArithmeticExpression.getKind (this.leftValue,
+								   lc),
+				     ArithmeticExpression.getKind (this.rightValue,
+								   rc));
+
+    }
+
+    /**
+     * Get the value of a number constant, converted (where this is exact) to the kind of
+     * number of the type of the other side.
+     *
+     * @param e The expression.
+     * @param c The type of the other side.
+     * @return The value or <code>null</code> if the expression isn't a number constant.
+     */
+    private static Number getConstant (ValueExpression e,
+				       Class           c)
+    {
+
+	if (!(e instanceof ConstantExpression))
+	{
+
+	    return null;
+
+	}
+
+	Object v = ((ConstantExpression) e).getValue (null,
+						      null);
+
+	if (!(v instanceof Number))
+	{
+
+	    return null;
+
+	}
+
+	if (Numbers.getKind (c) < 0)
+	{
+
+	    return (Number) v;
+
+	}
+
+	return Numbers.convert ((Number) v,
+				c);
+
+    }
+
+    private static int getKind (Number v,
+				Class  c)
+    {
+
+	if (v != null)
+	{
+
+	    return Numbers.getKind (v);
+
+	}
+
+	return Numbers.getKind (c);
+
     }
 
     /**
@@ -213,11 +332,25 @@ public class ArithmeticExpression extends ValueExpression
 	                    throws QueryExecutionException
     {
 
-	Object l = this.left.getValue (o,
-				       q);
+	Object l = this.leftValue;
 
-	Object r = this.right.getValue (o,
-					q);
+	if (l == null)
+	{
+
+	    l = this.left.getValue (o,
+				    q);
+
+	}
+
+	Object r = this.rightValue;
+
+	if (r == null)
+	{
+
+	    r = this.right.getValue (o,
+				     q);
+
+	}
 
 	// Special case for addition.
 	if ((this.type == ArithmeticExpression.ADDITION)
@@ -242,59 +375,131 @@ public class ArithmeticExpression extends ValueExpression
 	if (l == null)
 	{
 
-	    l = Double.valueOf (0);
+	    l = Numbers.getZero (this.kind);
 
 	}
 
 	if (r == null)
 	{
 
-	    r = Double.valueOf (0);
+	    r = Numbers.getZero (this.kind);
+
+	}
+
+	Number ln = (Number) l;
+	Number rn = (Number) r;
+
+	if (this.kind == Numbers.DOUBLE)
+	{
+
+	    return this.evaluate (ln.doubleValue (),
+				  rn.doubleValue ());
+
+	}
+
+	Number v = null;
+
+	if (this.type == ArithmeticExpression.ADDITION)
+	{
+
+	    v = Numbers.add (ln,
+			     rn);
+
+	}
+
+	if (this.type == ArithmeticExpression.SUBTRACT)
+	{
+
+	    v = Numbers.subtract (ln,
+				  rn);
 
 	}
 
-	double ld = Utilities.getDouble (l);
-	double rd = Utilities.getDouble (r);
+	if (this.type == ArithmeticExpression.MULTIPLY)
+	{
+
+	    v = Numbers.multiply (ln,
+				  rn);
+
+	}
+
+	if (this.type == ArithmeticExpression.MODULUS)
+	{
+
+	    v = Numbers.modulus (ln,
+				 rn);
+
+	}
+
+	if (this.type == ArithmeticExpression.DIVIDE)
+	{
+
+	    v = Numbers.divide (ln,
+				rn);
+
+	}
+
+	if ((this.kind == Numbers.BIG_DECIMAL)
+	    &&
+	    (v != null)
+	    &&
+	    (!(v instanceof BigDecimal))
+	   )
+	{
+
+	    // Only if a value isn't of its expected type.
+	    return Numbers.convert (v,
+				    BigDecimal.class);
+
+	}
+
+	return v;
+
+    }
+
+    private Double evaluate (double l,
+			     double r)
+    {
 
 	if (this.type == ArithmeticExpression.ADDITION)
 	{
 
-	    return Double.valueOf (ld + rd);
+	    return Double.valueOf (l + r);
 
 	}
 
 	if (this.type == ArithmeticExpression.SUBTRACT)
 	{
 
-	    return Double.valueOf (ld - rd);
+	    return Double.valueOf (l - r);
 
 	}
 
 	if (this.type == ArithmeticExpression.MULTIPLY)
 	{
 
-	    return Double.valueOf (ld * rd);
+	    return Double.valueOf (l * r);
 
 	}
 
 	if (this.type == ArithmeticExpression.MODULUS)
 	{
 
-	    return Double.valueOf (ld % rd);
+	    return Double.valueOf (l % r);
 
 	}
 
 	if (this.type == ArithmeticExpression.DIVIDE)
 	{
 
-	    if (rd == 0)
+	    if (r == 0)
 	    {
 
 		return Double.valueOf (0);
 
 	    }
 
-	    return Double.valueOf (ld / rd);
+	    return Double.valueOf (l / r);
 
 	}
 
@@ -25,6 +25,7 @@ import dev.mccue.josql.QueryExecutionException;
 import dev.mccue.josql.QueryParseException;
 
 import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.GetterCache;
 
 /**
  * This class represents a "bind variable" used within a SQL statement.
@@ -118,9 +119,27 @@ public class BindVariable extends ValueExpression
     private boolean anon = false;
     private String acc = null;
     private Getter get = null;
+    private GetterCache getters = null;
     private boolean groupByVar = false;
     private int groupByInd = 0;
 
+    // What the variable refers to, resolved at init.
+    private static final int UNRESOLVED = 0;
+    private static final int QUERY = 1;
+    private static final int PARENT = 2;
+    private static final int CURR_OBJ = 3;
+    private static final int ALL_OBJS = 4;
+    private static final int SLOT = 5;
+
+    private int type = BindVariable.UNRESOLVED;
+
+    // The query the slot was gained for and its parent, the slot is in the frame of the
+    // top level query.
+    private Query slotQuery = null;
+    private Query slotParent = null;
+    private Query scope = null;
+    private int slot = -1;
+
     public boolean equals (Object o)
     {
 
@@ -329,6 +348,36 @@ public class BindVariable extends ValueExpression
 
 	} else {
 
+	    this.type = BindVariable.SLOT;
+
+	    if (n.equals (Query.QUERY_BIND_VAR_NAME))
+	    {
+
+		this.type = BindVariable.QUERY;
+
+	    }
+
+	    if (n.equals (Query.PARENT_BIND_VAR_NAME))
+	    {
+
+		this.type = BindVariable.PARENT;
+
+	    }
+
+	    if (n.equals (Query.CURR_OBJ_VAR_NAME))
+	    {
+
+		this.type = BindVariable.CURR_OBJ;
+
+	    }
+
+	    if (n.equals (Query.ALL_OBJS_VAR_NAME))
+	    {
+
+		this.type = BindVariable.ALL_OBJS;
+
+	    }
+
 	    if (n.startsWith (BindVariable.SPECIAL_NAME_PREFIX))
 	    {
 
@@ -451,6 +500,36 @@ public class BindVariable extends ValueExpression
 	
     }
 
+    private Getter getGetter (Object o)
+	                      throws QueryExecutionException
+    {
+
+	if (this.getters == null)
+	{
+
+	    this.getters = new GetterCache (this.acc);
+
+	}
+
+	try
+	{
+
+	    return this.getters.getGetter (o.getClass ());
+
+	} catch (Exception e) {
+
+	    throw new QueryExecutionException ("Unable to create accessor: " +
+					       this.acc +
+					       " for class: " +
+					       o.getClass ().getName () +
+					       " from bind variable: " +
+					       this.name,
+					       e);
+
+	}
+
+    }
+
     /**
      * Gets the value of this bind variable.  
      *
@@ -472,37 +551,91 @@ public class BindVariable extends ValueExpression
 
 	} else {
 
-	    o = q.getVariable (this.name);
+	    if (this.type == BindVariable.SLOT)
+	    {
+
+		// The parent of a sub-query is set when it is evaluated, so the
+		// scope can only be found here.
+		if ((q != this.slotQuery)
+		    ||
+		    (q.getParent () != this.slotParent)
+		   )
+		{
+
+		    this.scope = q.getTopLevelQuery ();
+		    this.slot = this.scope.getVariableSlot (this.name);
+		    this.slotQuery = q;
+		    this.slotParent = q.getParent ();
+
+		}
+
+		o = this.scope.getSlotVariable (this.slot);
+
+	    } else if (this.type == BindVariable.CURR_OBJ) {
+
+		o = q.getCurrentObject ();
+
+	    } else if (this.type == BindVariable.ALL_OBJS) {
+
+		o = q.getAllObjects ();
+
+	    } else if (this.type == BindVariable.QUERY) {
+
+		o = q;
+
+	    } else if (this.type == BindVariable.PARENT) {
+
+		o = q.getParent ();
+
+	    } else {
+
+		// Not inited.
+		o = q.getVariable (this.name);
+
+	    }
 
 	}
 
+	Getter g = this.get;
+
 	if ((this.acc != null)
-	    &&
-	    (this.get == null)
 	    &&
 	    (o != null)
+	    &&
+	    ((g == null)
+	     ||
+	     (!g.getBaseClass ().isInstance (o))
+	    )
 	   )
 	{
 
-	    // Unable to get the accessor...
-	    this.initGetter (o);
+	    // The value can be of any class (for instance the current object when
+	    // the objects are of different classes), so get the getter for its class.
+	    g = this.getGetter (o);
+
+	    if (this.get == null)
+	    {
+
+		this.get = g;
+
+	    }
 
 	} 
 
-	if (this.get != null)
+	if (g != null)
 	{
 
 	    try
 	    {
 
-		o = this.get.getValue (o);
+		o = g.getValue (o);
 
 	    } catch (Exception e) {
 
 		throw new QueryExecutionException ("Unable to get value for accessor: " +
 						   this.acc + 
 						   ", class: " + 
-						   this.get.getBaseClass ().getName () + 
+						   g.getBaseClass ().getName () + 
 						   " from bind variable: " + 
 						   this.name,
 						   e);
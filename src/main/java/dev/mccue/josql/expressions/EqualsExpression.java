@@ -18,6 +18,7 @@ import dev.mccue.josql.Query;
 import dev.mccue.josql.QueryExecutionException;
 
 import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.TypedComparison;
 
 /**
  * This class represents an "=" or "!=" expression.  This class also provides the
@@ -32,6 +33,9 @@ public class EqualsExpression extends BinaryExpression
 
     public boolean ignoreCase = false;
 
+    private TypedComparison comparison = null;
+    private boolean observe = true;
+
     public void setIgnoreCase (boolean v)
     {
 
@@ -46,6 +50,47 @@ public class EqualsExpression extends BinaryExpression
 
     }
 
+    TypedComparison getTypedComparison ()
+    {
+
+	return this.comparison;
+
+    }
+
+    /**
+     * Set the comparison to use when the values are of the types expected when the query
+     * was inited, see: {@link TypedComparison}.  If there isn't one then the comparison is
+     * created for the types of the first values compared.  If the values compared aren't of
+     * the types of the comparison then it is dropped and the values are compared in the usual
+     * way from then on.
+     *
+     * @param c The comparison, may be <code>null</code>.
+     */
+    void setTypedComparison (TypedComparison c)
+    {
+
+	this.comparison = c;
+	this.observe = (c == null);
+
+    }
+
+    /**
+     * Create the comparison to use from the expected types of the LHS and RHS, so that
+     * the values can be compared without finding their types first.  No comparison is created
+     * when the case is ignored or the types aren't known.  This should be called once the
+     * expression has been inited.
+     *
+     * @param q The Query object.
+     */
+    public void createTypedComparison (Query q)
+    {
+
+	this.setTypedComparison (this.ignoreCase ? null : TypedComparison.create (this.getLeft (),
+										   this.getRight (),
+										   q));
+
+    }
+
     public boolean isNot ()
     {
 
@@ -144,6 +189,40 @@ public class EqualsExpression extends BinaryExpression
 	}
 
 	// If we are here then both are NOT NULL.
+	if (this.observe)
+	{
+
+	    this.observe = false;
+
+	    if (!this.ignoreCase)
+	    {
+
+		this.comparison = TypedComparison.create (l,
+							  r);
+
+	    }
+
+	}
+
+	if (this.comparison != null)
+	{
+
+	    int c = this.comparison.compare (l,
+					     r);
+
+	    if (c != TypedComparison.NOT_COMPARED)
+	    {
+
+		return Utilities.isMatch (c,
+					  Utilities.EQ,
+					  this.not);
+
+	    }
+
+	    this.comparison = null;
+
+	}
+
 	return Utilities.matches (l,
 				  r,
 				  this.ignoreCase,
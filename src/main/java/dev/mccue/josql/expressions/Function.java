@@ -16,12 +16,17 @@ package dev.mccue.josql.expressions;
 
 import java.util.List;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import dev.mccue.josql.gentlyweb.utils.Getter;
 
 import dev.mccue.josql.Query;
@@ -29,8 +34,15 @@ import dev.mccue.josql.QueryExecutionException;
 import dev.mccue.josql.QueryParseException;
 
 import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.AllocationMeter;
+import dev.mccue.josql.internal.GetterCache;
 
 import dev.mccue.josql.functions.NotFixedResults;
+import dev.mccue.josql.functions.FunctionRegistry;
+import dev.mccue.josql.functions.RegisteredFunction;
+import dev.mccue.josql.functions.Pure;
+
+import dev.mccue.josql.profiler.ExpressionProfile;
 
 /**
  * This class represents a Function that can be "called" in JoSQL.  
@@ -42,10 +54,24 @@ public class Function extends ValueExpression
     private List params = null;
     private Method function = null;
     private Object handler = null;
+    private RegisteredFunction regFunction = null;
     private boolean fixedResult = true;
     private Object fixedValue = null;
+    private boolean pure = false;
+    private boolean deterministic = false;
     private String acc = null;
     private Getter get = null;
+    private ExpressionProfile methodProfile = null;
+
+    // The compiled call, see: initHandle.
+    private MethodHandle handle = null;
+    private boolean[] expArgs = null;
+    private Object[] args = null;
+    private boolean calling = false;
+
+    // When the return type of the method is java.lang.Object the getters for the
+    // accessor are created at run-time for each class returned.
+    private GetterCache getters = null;
 
     public Getter getGetter ()
     {
@@ -61,6 +87,45 @@ public class Function extends ValueExpression
 
     }
 
+    /**
+     * Get the function handler method that will be called, this is only available
+     * once the function has been {@link #init(Query) inited}.
+     *
+     * @return The method.
+     */
+    public Method getMethod ()
+    {
+
+	return this.function;
+
+    }
+
+    /**
+     * Get the function from the query's {@link FunctionRegistry} that will be called, this
+     * is only available once the function has been {@link #init(Query) inited}.
+     *
+     * @return The function or <code>null</code> if a function handler method is called instead.
+     */
+    public RegisteredFunction getRegisteredFunction ()
+    {
+
+	return this.regFunction;
+
+    }
+
+    /**
+     * Set the profile that calls to the function handler method should be recorded
+     * against, see: {@link dev.mccue.josql.profiler.ExpressionProfiler}.
+     *
+     * @param p The profile, pass <code>null</code> to stop profiling.
+     */
+    public void setMethodProfile (ExpressionProfile p)
+    {
+
+	this.methodProfile = p;
+
+    }
+
     public void setAccessor (String acc)
     {
 
@@ -85,6 +150,20 @@ public class Function extends ValueExpression
 
 	}
 
+	return this.getReturnType ();
+
+    }
+
+    private Class getReturnType ()
+    {
+
+	if (this.regFunction != null)
+	{
+
+	    return this.regFunction.getReturnType ();
+
+	}
+
 	return this.function.getReturnType ();
 
     }
@@ -127,7 +206,10 @@ public class Function extends ValueExpression
 	// or the built-in handlers.
         this.findMethod (q);
 
-	if (this.function == null)
+	if ((this.function == null)
+	    &&
+	    (this.regFunction == null)
+	   )
 	{
 
             Class[] ps = null;
@@ -155,7 +237,7 @@ public class Function extends ValueExpression
 	    throw new QueryParseException ("Unable to find function (method): \"" +
 					   Utilities.formatSignature (this.name,
 								      ps) + 
-					   "\" in any user-defined function handlers or the default function handler");
+					   "\" in the function registry, any user-defined function handlers or the default function handler");
 
 	}
 
@@ -167,12 +249,18 @@ public class Function extends ValueExpression
 
 	}
 
+	this.initHandle ();
+
+	boolean fixable = (this.regFunction != null)
+	                  ||
+	                  (!NotFixedResults.class.isAssignableFrom (this.function.getDeclaringClass ()));
+
 	// A function has/can have a fixed result if all it's arguments
 	// also have a fixed result, if there aren't any args then assume
 	// it won't have a fixed result.
 	if ((this.params != null)
             &&
-            (!NotFixedResults.class.isAssignableFrom (this.function.getDeclaringClass ()))
+            (fixable)
            )
 	{
 
@@ -197,14 +285,126 @@ public class Function extends ValueExpression
 
 	}
 
+	// The expression passed as an argument is the same for every call, its value isn't.
+	boolean vals = true;
+
+	for (int i = 0; i < this.expArgs.length; i++)
+	{
+
+	    if (this.expArgs[i])
+	    {
+
+		vals = false;
+		break;
+
+	    }
+
+	}
+
+	boolean p = (vals) && (this.isPure ());
+
+	// A pure function whose result isn't fixed has its results cached per execution.
+	this.pure = (!this.fixedResult) && (p);
+
+	this.deterministic = (vals) && ((fixable) || (p));
+
+    }
+
+    /**
+     * Whether the result of the function depends only upon the values of its arguments, this
+     * is only available once the function has been {@link #init(Query) inited}.
+     *
+     * @return <code>true</code> if the function returns the same result for the same argument values.
+     */
+    public boolean isDeterministic ()
+    {
+
+	return this.deterministic;
+
+    }
+
+    private boolean isPure ()
+    {
+
+	if (this.regFunction != null)
+	{
+
+	    return this.regFunction.isPure ();
+
+	}
+
+	return (this.function.isAnnotationPresent (Pure.class))
+	       ||
+	       (this.function.getDeclaringClass ().isAnnotationPresent (Pure.class));
+
+    }
+
+    /**
+     * Compile the call to the method, which arguments are passed as the expression rather than
+     * its value is worked out once and the method is bound to the handler as a method handle
+     * that takes the arguments as an array.  If the method cannot be accessed via a method
+     * handle (for instance if the handler's package isn't exported) then reflection is used.
+     */
+    private void initHandle ()
+    {
+
+	Class[] pts = (this.regFunction != null) ? this.regFunction.getParameterTypes () : this.function.getParameterTypes ();
+
+	this.expArgs = new boolean[pts.length];
+
+	for (int i = 0; i < pts.length; i++)
+	{
+
+	    this.expArgs[i] = Expression.class.isAssignableFrom (pts[i]);
+
+	}
+
+	this.args = null;
+	this.handle = null;
+
+	if (this.regFunction != null)
+	{
+
+	    // Called directly.
+	    return;
+
+	}
+
+	try
+	{
+
+	    MethodHandle h = MethodHandles.publicLookup ().unreflect (this.function).asFixedArity ();
+
+	    if (!Modifier.isStatic (this.function.getModifiers ()))
+	    {
+
+		h = h.bindTo (this.handler);
+
+	    }
+
+	    this.handle = h.asSpreader (Object[].class,
+					pts.length).asType (MethodType.methodType (Object.class,
+										   Object[].class));
+
+	} catch (Exception e) {
+
+	    // Use reflection.
+
+	}
+
     }
 
     private void initAccessor ()
                                throws QueryParseException
     {
 
+	this.get = null;
+	this.getters = null;
+
         // We have an accessor, see what the functions return type is.
-        Class retType = this.function.getReturnType ();
+        Class retType = this.getReturnType ();
+
+	Object f = (this.regFunction != null) ? (Object) this.regFunction : this.function;
 
         // Ensure that the function DOES have a return type.
         if (Void.TYPE.isAssignableFrom (retType))
@@ -214,7 +414,7 @@ public class Function extends ValueExpression
             throw new QueryParseException ("Function: " + 
                                            this + 
                                            " maps to method: " +
-                                           this.function +
+                                           f +
                                            " however methods return type is \"void\" and an accessor: " +
                                            this.acc +
                                            " has been defined.");
@@ -240,7 +440,7 @@ public class Function extends ValueExpression
                 throw new QueryParseException ("Function: " +
                                                this +
                                                " maps to method: " +
-                                               this.function +
+                                               f +
                                                " and has accessor: " +
                                                this.acc +
                                                " however no valid accessor has been found in return type: " +
@@ -249,7 +449,11 @@ public class Function extends ValueExpression
 
             }
 
-        }
+        } else {
+
+	    this.getters = new GetterCache (this.acc);
+
+	}
         
     }
 
@@ -300,10 +504,81 @@ public class Function extends ValueExpression
         
     }
 
+    private void getRegisteredFunction (Query            q,
+                                        FunctionRegistry r)
+                                        throws           QueryParseException
+    {
+
+        List fs = r.getFunctions (this.name);
+
+        int fps = (this.params != null) ? this.params.size () : 0;
+
+        int best = 0;
+
+        for (int i = 0; i < fs.size (); i++)
+        {
+
+            RegisteredFunction f = (RegisteredFunction) fs.get (i);
+
+            Class[] pts = f.getParameterTypes ();
+
+            if (pts.length != fps)
+            {
+
+                continue;
+
+            }
+
+            if (fps == 0)
+            {
+
+                this.regFunction = f;
+
+                return;
+
+            }
+
+            int score = this.matchMethodArgs (pts,
+                                              q);
+
+            // The first one registered wins a tie.
+            if (score > best)
+            {
+
+                this.regFunction = f;
+                best = score;
+
+            }
+
+        }
+
+    }
+
     private void findMethod (Query  q)
                              throws QueryParseException
     {
 
+        this.function = null;
+        this.handler = null;
+        this.regFunction = null;
+
+        FunctionRegistry r = q.getFunctionRegistry ();
+
+        if (r != null)
+        {
+
+            this.getRegisteredFunction (q,
+                                        r);
+
+            if (this.regFunction != null)
+            {
+
+                return;
+
+            }
+
+        }
+
         List fhs = q.getFunctionHandlers ();
         
         if (fhs != null)
@@ -399,19 +674,41 @@ public class Function extends ValueExpression
 	// Get the values for the parameters... if any...
 	Object[] ps = null;
 
+	// The argument array is re-used unless this is a nested call.
+	boolean reuse = !this.calling;
+
 	if (this.params != null)
 	{
 
 	    int s = this.params.size ();
 
-	    ps = new Object[s];
+	    ps = this.args;
+
+	    if ((!reuse)
+		||
+		(ps == null)
+	       )
+	    {
+
+		ps = new Object[s];
+
+		if (reuse)
+		{
+
+		    this.args = ps;
+
+		}
+
+	    }
+
+	    this.calling = true;
 
 	    for (int i = 0; i < s; i++)
 	    {
 
 		Expression exp = (Expression) this.params.get (i);
 
-	        if (Expression.class.isAssignableFrom (this.function.getParameterTypes ()[i]))
+	        if (this.expArgs[i])
 		{
 
 		    // Leave this one alone.
@@ -427,6 +724,13 @@ public class Function extends ValueExpression
 					      q);
 
 		    } catch (Exception e) {
+
+			if (reuse)
+			{
+
+			    this.clearArgs ();
+
+			}
 			
 			throw new QueryExecutionException ("Unable to get parameter: " + 
 							   i + 
@@ -446,13 +750,60 @@ public class Function extends ValueExpression
 
 	Object v = null;
 
+	Map fc = null;
+	List k = null;
+
+	if (this.pure)
+	{
+
+	    fc = q.getFunctionCache (this);
+
+	    if (fc != null)
+	    {
+
+		// Copied since the argument array is re-used.
+		k = (ps == null) ? Collections.EMPTY_LIST : Arrays.asList (ps.clone ());
+
+		v = fc.get (k);
+
+		if ((v != null)
+		    ||
+		    (fc.containsKey (k))
+		   )
+		{
+
+		    if (reuse)
+		    {
+
+			this.clearArgs ();
+
+		    }
+
+		    return v;
+
+		}
+
+		v = null;
+
+	    }
+
+	}
+
 	try
 	{
 
-	    v = this.function.invoke (this.handler,
-				      ps);
+	    if (this.methodProfile == null)
+	    {
 
-	} catch (Exception e) {
+		v = this.invoke (ps);
+
+	    } else {
+
+		v = this.invokeProfiled (ps);
+
+	    }
+
+	} catch (Throwable e) {
 
 	    throw new QueryExecutionException ("Unable to execute function: " + 
 					       this.name + 
@@ -462,70 +813,171 @@ public class Function extends ValueExpression
 					       Arrays.asList (ps),
 					       e);
 
+	} finally {
+
+	    if (reuse)
+	    {
+
+		this.clearArgs ();
+
+	    }
+
 	}
 
-	if (v != null)
+	if ((v != null)
+	    &&
+	    (this.acc != null)
+	   )
 	{
 
-	    // See if we have an accessor.
-	    if (this.acc != null)
-	    {
+	    v = this.getAccessorValue (v);
 
-		// See if we have a Getter.
-		if (this.get == null)
-		{
+	}
 
-		    // No getter, so now try and init it.  This assumes that the return
-		    // type won't ever change!
-		    try
-		    {
+	if (this.fixedResult)
+	{
 
-			this.get = new Getter (this.acc,
-					       v.getClass ());
-			
-		    } catch (Exception e) {
-			
-			throw new QueryExecutionException ("Unable to create accessor for: " +
-							   this.acc +
-							   " from return type: " +
-							   v.getClass ().getName () + 
-							   " after execution of function: " +
-							   this,
-							   e);
+	    this.fixedValue = v;
 
-		    }
+	}
 
-		}
+	if (fc != null)
+	{
 
-		try
-		{
+	    fc.put (k,
+		    v);
 
-		    v = this.get.getValue (v);
-		    
-		} catch (Exception e) {
-		    
-		    throw new QueryExecutionException ("Unable to get value for accessor: " +
-						       this.acc +
-						       " from return type: " +
-						       v.getClass ().getName () + 
-						       " after execution of function: " +
-						       this,
-						       e);
-		    
-		}
+	}
+
+	return v;
+
+    }
+
+    private void clearArgs ()
+    {
+
+	this.calling = false;
+
+	if (this.args != null)
+	{
+
+	    // Don't hold onto the values.
+	    Arrays.fill (this.args,
+			 null);
+
+	}
+
+    }
+
+    /**
+     * Get the value of the accessor from the value returned by the function.  When the
+     * return type of the method is <code>java.lang.Object</code> the getter is found (or
+     * created) for the class of the value.
+     *
+     * @param v The value returned by the function.
+     * @return The value of the accessor.
+     * @throws QueryExecutionException If the getter cannot be created or the value cannot
+     *                                 be gained.
+     */
+    private Object getAccessorValue (Object v)
+	                             throws QueryExecutionException
+    {
+
+	Getter g = this.get;
+
+	if (this.getters != null)
+	{
+
+	    Class c = v.getClass ();
+
+	    try
+	    {
+
+		g = this.getters.getGetter (c);
+
+	    } catch (Exception e) {
+
+		throw new QueryExecutionException ("Unable to create accessor for: " +
+						   this.acc +
+						   " from return type: " +
+						   c.getName () + 
+						   " after execution of function: " +
+						   this,
+						   e);
 
 	    }
 
+	    this.get = g;
+
 	}
 
-	if (this.fixedResult)
+	try
 	{
 
-	    this.fixedValue = v;
+	    return g.getValue (v);
+
+	} catch (Exception e) {
+
+	    throw new QueryExecutionException ("Unable to get value for accessor: " +
+					       this.acc +
+					       " from return type: " +
+					       v.getClass ().getName () + 
+					       " after execution of function: " +
+					       this,
+					       e);
 
 	}
 
-	return v;
+    }
+
+    private Object invoke (Object[] ps)
+	                   throws   Throwable
+    {
+
+	if (this.handle != null)
+	{
+
+	    return (Object) this.handle.invokeExact (ps);
+
+	}
+
+	if (this.regFunction != null)
+	{
+
+	    return this.regFunction.call (ps);
+
+	}
+
+	return this.function.invoke (this.handler,
+				     ps);
+
+    }
+
+    private Object invokeProfiled (Object[] ps)
+	                           throws   Throwable
+    {
+
+	if (!this.methodProfile.sample ())
+	{
+
+	    return this.invoke (ps);
+
+	}
+
+	long b = AllocationMeter.getAllocatedBytes ();
+	long s = System.nanoTime ();
+
+	try
+	{
+
+	    return this.invoke (ps);
+
+	} finally {
+
+	    this.methodProfile.addSample (System.nanoTime () - s,
+					  AllocationMeter.getAllocatedBytes () - b);
+
+	}
 
     }
 
@@ -769,20 +1221,14 @@ public class Function extends ValueExpression
                              throws QueryParseException
     {
 
-	Method[] meths = c.getMethods ();
+	Method[] meths = Utilities.getPublicMethods (c,
+						     this.name);
 
 	for (int i = 0; i < meths.length; i++)
 	{
 
 	    Method m = meths[i];
 
-	    if (!m.getName ().equals (this.name))
-	    {
-
-		continue;
-
-	    }
-
 	    // Make sure it's public...
 	    if (!Modifier.isPublic (m.getModifiers ()))
 	    {
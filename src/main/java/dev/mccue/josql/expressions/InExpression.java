@@ -16,8 +16,12 @@ package dev.mccue.josql.expressions;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.Set;
+import java.util.HashSet;
 import java.util.Iterator;
 
 import dev.mccue.josql.Query;
@@ -25,6 +29,7 @@ import dev.mccue.josql.QueryExecutionException;
 import dev.mccue.josql.QueryParseException;
 
 import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.Numbers;
 
 /**
  * This class represents in [ NOT ] IN [ LIKE ] [ ALL ] expression.
@@ -45,6 +50,24 @@ public class InExpression extends BinaryExpression
     private boolean all = false;
     private boolean ignoreCase = false;
 
+    // The constant items, when they are all Strings or all Numbers.
+    private Set strings = null;
+    private Object[] numbers = null;
+
+    private static final Comparator numberComp = new Comparator ()
+    {
+
+	public int compare (Object o1,
+			    Object o2)
+	{
+
+	    return Numbers.compare ((Number) o1,
+				    (Number) o2);
+
+	}
+
+    };
+
     /**
      * Initialise the IN expression.  Init the LHS and then all of the values in the brackets.
      * 
@@ -70,6 +93,103 @@ public class InExpression extends BinaryExpression
 
     }
 
+    /**
+     * If the items are all constant Strings or all constant Numbers then create a lookup for
+     * them, so that the LHS value can be found without comparing it to each of the items.  The
+     * lookup is only used when the value is of the same type as the items, otherwise the value is
+     * compared to each item.  This should be called once the items have been inited.
+     */
+    public void createLookup ()
+    {
+
+	this.strings = null;
+	this.numbers = null;
+
+	if ((this.doLike)
+	    ||
+	    (this.all)
+	    ||
+	    (this.ignoreCase)
+	    ||
+	    (this.items.size () == 0)
+	   )
+	{
+
+	    return;
+
+	}
+
+	Set strs = new HashSet ();
+	List nums = new ArrayList ();
+
+	int s = this.items.size ();
+
+	for (int i = 0; i < s; i++)
+	{
+
+	    Expression exp = (Expression) this.items.get (i);
+
+	    if (!(exp instanceof ConstantExpression))
+	    {
+
+		return;
+
+	    }
+
+	    Object v = ((ConstantExpression) exp).getValue (null,
+							    null);
+
+	    if (v instanceof String)
+	    {
+
+		strs.add (v);
+
+		continue;
+
+	    }
+
+	    // Only longs and doubles, an infinite double is equal to a BigDecimal
+	    // too big for a double so with those there is no single order to search.
+	    if ((v instanceof Number)
+		&&
+		((Numbers.getKind ((Number) v) == Numbers.LONG)
+		 ||
+		 (Numbers.getKind ((Number) v) == Numbers.DOUBLE)
+		)
+	       )
+	    {
+
+		nums.add (v);
+
+		continue;
+
+	    }
+
+	    return;
+
+	}
+
+	if (nums.size () == 0)
+	{
+
+	    this.strings = strs;
+
+	    return;
+
+	}
+
+	if (strs.size () == 0)
+	{
+
+	    this.numbers = nums.toArray ();
+
+	    Arrays.sort (this.numbers,
+			 InExpression.numberComp);
+
+	}
+
+    }
+
     public void setIgnoreCase (boolean v)
     {
 
@@ -166,6 +286,39 @@ public class InExpression extends BinaryExpression
 	Object l = this.left.getValue (o,
 				       q);
 
+	if (((this.strings != null)
+	     ||
+	     (this.numbers != null)
+	    )
+	    &&
+	    (Utilities.getObjectComparator () == null)
+	   )
+	{
+
+	    if ((this.strings != null)
+		&&
+		(l instanceof String)
+	       )
+	    {
+
+		return this.strings.contains (l) != this.not;
+
+	    }
+
+	    if ((this.numbers != null)
+		&&
+		(l instanceof Number)
+	       )
+	    {
+
+		return (Arrays.binarySearch (this.numbers,
+					     l,
+					     InExpression.numberComp) > -1) != this.not;
+
+	    }
+
+	}
+
 	String v = null;
 	String wc = String.valueOf (q.getWildcardCharacter ());
 
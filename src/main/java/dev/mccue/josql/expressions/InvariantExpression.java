@@ -0,0 +1,222 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.expressions;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryExecutionException;
+import dev.mccue.josql.QueryParseException;
+
+/**
+ * Wraps an expression that has the same value for every object so that it is only evaluated
+ * once rather than once per object.  Instances are created when the query is inited, they
+ * behave exactly as the wrapped expression does.
+ * <p>
+ * An expression with a {@link Expression#hasFixedResult(Query) fixed result} is evaluated once.
+ * Otherwise the expression depends upon bind variables and is evaluated once per execution of
+ * the top level query, and again if a bind variable is set during the execution.  Outside of an
+ * execution the expression is evaluated each time.
+ */
+public class InvariantExpression extends ValueExpression
+{
+
+    private Expression exp = null;
+    private boolean fixed = false;
+
+    // The execution and version of the bind variables the value is for.
+    private int execution = -1;
+    private int version = 0;
+    private boolean hasValue = false;
+    private Object value = null;
+    private boolean hasTrue = false;
+    private boolean isTrue = false;
+
+    public InvariantExpression (Expression exp,
+				boolean    fixed)
+    {
+
+	this.exp = exp;
+	this.fixed = fixed;
+
+    }
+
+    public Expression getExpression ()
+    {
+
+	return this.exp;
+
+    }
+
+    public void setExpression (Expression exp)
+    {
+
+	this.exp = exp;
+
+    }
+
+    public boolean isFixed ()
+    {
+
+	return this.fixed;
+
+    }
+
+    public boolean hasFixedResult (Query q)
+    {
+
+	return this.exp.hasFixedResult (q);
+
+    }
+
+    public Class getExpectedReturnType (Query  q)
+	                                throws QueryParseException
+    {
+
+	return this.exp.getExpectedReturnType (q);
+
+    }
+
+    public void init (Query  q)
+	              throws QueryParseException
+    {
+
+	this.exp.init (q);
+
+	this.reset ();
+
+    }
+
+    public boolean isBracketed ()
+    {
+
+	return this.exp.isBracketed ();
+
+    }
+
+    public boolean isTrue (Object o,
+			   Query  q)
+	                   throws QueryExecutionException
+    {
+
+	if (!this.isCurrent (q))
+	{
+
+	    return this.exp.isTrue (o,
+				    q);
+
+	}
+
+	if (!this.hasTrue)
+	{
+
+	    this.isTrue = this.exp.isTrue (o,
+					   q);
+	    this.hasTrue = true;
+
+	}
+
+	return this.isTrue;
+
+    }
+
+    public Object evaluate (Object o,
+			    Query  q)
+	                    throws QueryExecutionException
+    {
+
+	if (!this.isCurrent (q))
+	{
+
+	    return this.exp.getValue (o,
+				      q);
+
+	}
+
+	if (!this.hasValue)
+	{
+
+	    this.value = this.exp.getValue (o,
+					    q);
+	    this.hasValue = true;
+
+	}
+
+	return this.value;
+
+    }
+
+    /**
+     * Check whether the values held are for the current execution, if they aren't then they are
+     * discarded.
+     *
+     * @param q The query.
+     * @return <code>false</code> if the values cannot be held, i.e. outside of an execution.
+     */
+    private boolean isCurrent (Query q)
+    {
+
+	if (this.fixed)
+	{
+
+	    return true;
+
+	}
+
+	Query tq = q.getTopLevelQuery ();
+
+	if (tq.getQueryResults () == null)
+	{
+
+	    return false;
+
+	}
+
+	int e = tq.getExecutionCount ();
+	int v = tq.getVariablesVersion ();
+
+	if ((e != this.execution)
+	    ||
+	    (v != this.version)
+	   )
+	{
+
+	    this.reset ();
+
+	    this.execution = e;
+	    this.version = v;
+
+	}
+
+	return true;
+
+    }
+
+    private void reset ()
+    {
+
+	this.execution = -1;
+	this.hasValue = false;
+	this.value = null;
+	this.hasTrue = false;
+
+    }
+
+    public String toString ()
+    {
+
+	return this.exp.toString ();
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.expressions;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryExecutionException;
+import dev.mccue.josql.QueryParseException;
+
+import dev.mccue.josql.internal.AllocationMeter;
+
+import dev.mccue.josql.profiler.ExpressionProfile;
+
+/**
+ * Wraps an expression so that calls to it can be counted and (sampled) timed.
+ * Instances are created by the {@link dev.mccue.josql.internal.ExpressionInstrumenter}, they
+ * behave exactly as the wrapped expression does.
+ */
+public class ProfiledExpression extends ValueExpression
+{
+
+    private Expression exp = null;
+    private ExpressionProfile profile = null;
+
+    public ProfiledExpression (Expression        exp,
+			       ExpressionProfile profile)
+    {
+
+	this.exp = exp;
+	this.profile = profile;
+
+    }
+
+    public Expression getExpression ()
+    {
+
+	return this.exp;
+
+    }
+
+    public ExpressionProfile getProfile ()
+    {
+
+	return this.profile;
+
+    }
+
+    public boolean hasFixedResult (Query q)
+    {
+
+	return this.exp.hasFixedResult (q);
+
+    }
+
+    public Class getExpectedReturnType (Query  q)
+	                                throws QueryParseException
+    {
+
+	return this.exp.getExpectedReturnType (q);
+
+    }
+
+    public void init (Query  q)
+	              throws QueryParseException
+    {
+
+	this.exp.init (q);
+
+    }
+
+    public boolean isBracketed ()
+    {
+
+	return this.exp.isBracketed ();
+
+    }
+
+    public boolean isTrue (Object o,
+			   Query  q)
+	                   throws QueryExecutionException
+    {
+
+	if (!this.profile.sample ())
+	{
+
+	    return this.exp.isTrue (o,
+				    q);
+
+	}
+
+	long b = AllocationMeter.getAllocatedBytes ();
+	long s = System.nanoTime ();
+
+	try
+	{
+
+	    return this.exp.isTrue (o,
+				    q);
+
+	} finally {
+
+	    this.profile.addSample (System.nanoTime () - s,
+				    AllocationMeter.getAllocatedBytes () - b);
+
+	}
+
+    }
+
+    public Object evaluate (Object o,
+			    Query  q)
+	                    throws QueryExecutionException
+    {
+
+	if (!this.profile.sample ())
+	{
+
+	    return this.exp.getValue (o,
+				      q);
+
+	}
+
+	long b = AllocationMeter.getAllocatedBytes ();
+	long s = System.nanoTime ();
+
+	try
+	{
+
+	    return this.exp.getValue (o,
+				      q);
+
+	} finally {
+
+	    this.profile.addSample (System.nanoTime () - s,
+				    AllocationMeter.getAllocatedBytes () - b);
+
+	}
+
+    }
+
+    public String toString ()
+    {
+
+	return this.exp.toString ();
+
+    }
+
+}
@@ -21,6 +21,7 @@ import dev.mccue.josql.QueryExecutionException;
 import dev.mccue.josql.QueryParseException;
 
 import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.GetterCache;
 
 public class SaveValue extends ValueExpression
 {
@@ -28,6 +29,7 @@ public class SaveValue extends ValueExpression
     private String name = null;
     private String acc = null;
     private Getter get = null;
+    private GetterCache getters = null;
 
     public Class getExpectedReturnType (Query  q)
 	                                throws QueryParseException
@@ -110,18 +112,35 @@ public class SaveValue extends ValueExpression
 	}
 
 	// See if we have an accessor...
+	Getter g = this.get;
 
 	if ((this.acc != null)
 	    &&
-	    (this.get == null)
+	    ((g == null)
+	     ||
+	     (!g.getBaseClass ().isInstance (v))
+	    )
 	   )
 	{
 
+	    if (this.getters == null)
+	    {
+
+		this.getters = new GetterCache (this.acc);
+
+	    }
+
 	    try
 	    {
 
-		this.get = new Getter (this.acc,
-				       v.getClass ());
+		g = this.getters.getGetter (v.getClass ());
+
+		if (this.get == null)
+		{
+
+		    this.get = g;
+
+		}
 
 	    } catch (Exception e) {
 
@@ -137,13 +156,13 @@ public class SaveValue extends ValueExpression
 
 	}
 
-	if (this.get != null)
+	if (g != null)
 	{
 
 	    try
 	    {
 
-		v = this.get.getValue (v);
+		v = g.getValue (v);
 
 	    } catch (Exception e) {
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.expressions;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryExecutionException;
+import dev.mccue.josql.QueryParseException;
+
+import dev.mccue.josql.internal.Utilities;
+
+/**
+ * Wraps an expression that is used more than once for each object, either because the
+ * same expression appears in more than one clause (or more than once in a clause) or because
+ * it is used to order the results.  During an execution the value for an object is held in a
+ * slot of the {@link Query#getRowValues(Object) row values} of the object, every expression
+ * with the same slot then uses the value rather than evaluating the expression again.
+ * Instances are created when the query is inited, they behave exactly as the wrapped expression
+ * does.
+ */
+public class SharedExpression extends ValueExpression
+{
+
+    // Held in the slot when the value is null.
+    private static final Object NULL = new Object ();
+
+    private Expression exp = null;
+    private int slot = 0;
+
+    public SharedExpression (Expression exp,
+			     int        slot)
+    {
+
+	this.exp = exp;
+	this.slot = slot;
+
+    }
+
+    public Expression getExpression ()
+    {
+
+	return this.exp;
+
+    }
+
+    public void setExpression (Expression exp)
+    {
+
+	this.exp = exp;
+
+    }
+
+    public int getSlot ()
+    {
+
+	return this.slot;
+
+    }
+
+    public boolean hasFixedResult (Query q)
+    {
+
+	return this.exp.hasFixedResult (q);
+
+    }
+
+    public Class getExpectedReturnType (Query  q)
+	                                throws QueryParseException
+    {
+
+	return this.exp.getExpectedReturnType (q);
+
+    }
+
+    public void init (Query  q)
+	              throws QueryParseException
+    {
+
+	this.exp.init (q);
+
+    }
+
+    public boolean isBracketed ()
+    {
+
+	return this.exp.isBracketed ();
+
+    }
+
+    public boolean isTrue (Object o,
+			   Query  q)
+	                   throws QueryExecutionException
+    {
+
+	o = this.evaluate (o,
+			   q);
+
+	if (o == null)
+	{
+
+	    return false;
+
+	}
+
+	if (Utilities.isNumber (o))
+	{
+
+	    return Utilities.getDouble (o) > 0;
+
+	}
+
+	if (o instanceof Boolean)
+	{
+
+	    return ((Boolean) o).booleanValue ();
+
+	}
+
+	// Not null so return true...
+	return true;
+
+    }
+
+    public Object evaluate (Object o,
+			    Query  q)
+	                    throws QueryExecutionException
+    {
+
+	Object[] vs = q.getRowValues (o);
+
+	if (vs == null)
+	{
+
+	    // Not executing.
+	    return this.exp.getValue (o,
+				      q);
+
+	}
+
+	Object v = vs[this.slot];
+
+	if (v == null)
+	{
+
+	    v = this.exp.getValue (o,
+				   q);
+
+	    vs[this.slot] = (v == null) ? SharedExpression.NULL : v;
+
+	    return v;
+
+	}
+
+	return (v == SharedExpression.NULL) ? null : v;
+
+    }
+
+    public String toString ()
+    {
+
+	return this.exp.toString ();
+
+    }
+
+}
@@ -38,6 +38,13 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
     private Getter get = null;
     private boolean nullQuery = false;
 
+    // The class of the parent's objects the FROM clause was inited for and the class
+    // of the objects the sub-query was inited for, these are only inited again when
+    // the class changes.
+    private boolean fromInited = false;
+    private Class fromClass = null;
+    private Class objClass = null;
+
     public SubQueryExpression (Query q)
     {
 
@@ -59,7 +66,7 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 	    if (bv.getName ().equalsIgnoreCase (ev.getName ()))
 	    {
 
-		this.inited = false;
+		this.reset ();
 
 	    }
 
@@ -78,7 +85,7 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 	    if (sv.getName ().equalsIgnoreCase (ev.getName ()))
 	    {
 
-		this.inited = false;
+		this.reset ();
 
 	    }
 
@@ -86,6 +93,15 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
     }
 
+    private void reset ()
+    {
+
+	this.inited = false;
+	this.fromInited = false;
+	this.objClass = null;
+
+    }
+
     public Getter getGetter ()
     {
 
@@ -180,22 +196,28 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
     private Object innerInitFromFunction (Expression from,
                                           Object     o,
-                                          Query      q)
+                                          Query      q,
+                                          boolean    initFrom)
                                           throws     QueryExecutionException
     {
         
-        try
+        if (initFrom)
         {
 
-            from.init (q);
+            try
+            {
+
+                from.init (q);
+
+            } catch (Exception e) {
 
-        } catch (Exception e) {
+                throw new QueryExecutionException ("Unable to init FROM clause: " +
+                                                   from +
+                                                   " for sub-query: " +
+                                                   q,
+                                                   e);
 
-            throw new QueryExecutionException ("Unable to init FROM clause: " +
-                                               from +
-                                               " for sub-query: " +
-                                               q,
-                                               e);
+            }
 
         }
 
@@ -269,23 +291,29 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
     private Object innerInitFromBindVariable (Expression from,
                                               Object     o,
-                                              Query      q)
+                                              Query      q,
+                                              boolean    initFrom)
                                               throws     QueryExecutionException
     {
 
         // Need to init the bind variable.
-        try
+        if (initFrom)
         {
 
-            from.init (q.getTopLevelQuery ());
+            try
+            {
+
+                from.init (q.getTopLevelQuery ());
 
-        } catch (Exception e) {
+            } catch (Exception e) {
 
-            throw new QueryExecutionException ("Unable to init FROM clause: " +
-                                               from +
-                                               " for sub-query: " +
-                                               this.q,
-                                               e);
+                throw new QueryExecutionException ("Unable to init FROM clause: " +
+                                                   from +
+                                                   " for sub-query: " +
+                                                   this.q,
+                                                   e);
+
+            }
 
         }
 
@@ -296,22 +324,28 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
     private Object innerInitFromAccessor (Expression from,
                                           Object     o,
-                                          Query      q)
+                                          Query      q,
+                                          boolean    initFrom)
                                           throws     QueryExecutionException
     {
         
-        try
+        if (initFrom)
         {
 
-            from.init (q);
+            try
+            {
+
+                from.init (q);
+
+            } catch (Exception e) {
 
-        } catch (Exception e) {
+                throw new QueryExecutionException ("Unable to init FROM clause: " +
+                                                   from +
+                                                   " for sub-query: " +
+                                                   this.q,
+                                                   e);
 
-            throw new QueryExecutionException ("Unable to init FROM clause: " +
-                                               from +
-                                               " for sub-query: " +
-                                               this.q,
-                                               e);
+            }
 
         }
 
@@ -330,6 +364,12 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
 	Expression from = this.q.getFrom ();
 
+	// The FROM clause only needs to be inited again if the class of the
+	// parent's objects has changed.
+	Class fc = q.getFromObjectClass ();
+
+	boolean initFrom = (!this.fromInited) || (fc != this.fromClass);
+
 	if (from instanceof ConstantExpression)
 	{
 
@@ -344,7 +384,8 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
             obj = this.innerInitFromAccessor (from,
                                               o,
-                                              q);
+                                              q,
+                                              initFrom);
 
 	}
 
@@ -353,7 +394,8 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
             obj = this.innerInitFromFunction (from,
                                               o,
-                                              q);
+                                              q,
+                                              initFrom);
 
 	}
 
@@ -370,10 +412,14 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
             obj = this.innerInitFromBindVariable (from,
                                                   o,
-                                                  q);
+                                                  q,
+                                                  initFrom);
 	    
 	}
 
+	this.fromInited = true;
+	this.fromClass = fc;
+
 	if (obj == null)
 	{
 
@@ -398,51 +444,32 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
 	}
 
-	Collection col = (Collection) obj;
-	
-	// Now peek at the top of the collection.
-	Iterator iter = col.iterator ();
-	
-	if (!iter.hasNext ())
+	Class c = this.getObjectClass ((Collection) obj);
+
+	if (c == null)
 	{
 
+	    // Just return, no elements.
 	    return;
 
 	}
 
-	Object io = iter.next ();
-	
-	// Get the class...
-	if (io == null)
+	if (c != this.objClass)
 	{
 
-	    // Crapola!  Now need to iterate down the collection until we find
-	    // an item that is not null.
-	    while (iter.hasNext ())
-	    {
-
-		io = iter.next ();
-
-		if (io != null)
-		{
-
-		    break;
-
-		}
-
-	    }
+	    this.initQuery (c);
 
 	}
 
-	if (io == null)
-	{
+	this.inited = true;
 
-	    // Just return, no elements.
-	    return;
+    }
 
-	}
+    private void initQuery (Class c)
+	                    throws QueryExecutionException
+    {
 
-	this.q.setFromObjectClass (io.getClass ());
+	this.q.setFromObjectClass (c);
 
 	try
 	{
@@ -454,12 +481,41 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 	    throw new QueryExecutionException ("Unable to init sub-query: " + 
 					       this.q +
 					       " with class: " +
-					       io.getClass ().getName (),
+					       c.getName (),
 					       e);
 
 	}
 
-	this.inited = true;
+	this.objClass = c;
+
+    }
+
+    /**
+     * Get the class of the first non-null object in the collection.
+     *
+     * @param col The collection.
+     * @return The class or <code>null</code> if there are no non-null objects.
+     */
+    private Class getObjectClass (Collection col)
+    {
+
+	Iterator iter = col.iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Object io = iter.next ();
+
+	    if (io != null)
+	    {
+
+		return io.getClass ();
+
+	    }
+
+	}
+
+	return null;
 
     }
 
@@ -537,7 +593,10 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
 	this.q.setParent (q);
 
-	if (!this.inited)
+	if ((!this.inited)
+	    ||
+	    (q.getFromObjectClass () != this.fromClass)
+	   )
 	{
 
 	    this.innerInit (o,
@@ -550,6 +609,24 @@ public class SubQueryExpression extends ValueExpression implements BindVariableC
 
 	    List l = this.innerGetValue (o);
 
+	    if (!this.nullQuery)
+	    {
+
+		// Only init the sub-query again if the class of the objects has changed.
+		Class c = this.getObjectClass (l);
+
+		if ((c != null)
+		    &&
+		    (c != this.objClass)
+		   )
+		{
+
+		    this.initQuery (c);
+
+		}
+
+	    }
+
 	    QueryResults qr = this.q.execute (l);
 
 	    if (this.get != null)
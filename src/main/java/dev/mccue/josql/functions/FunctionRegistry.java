@@ -0,0 +1,296 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.functions;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+import java.util.function.Supplier;
+import java.util.function.Function;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A registry of functions that can be called in JoSQL, as an alternative to function handlers
+ * (see: {@link dev.mccue.josql.Query#addFunctionHandler(Object)}).  Each function is registered
+ * with its name, the types of its parameters and its return type so a function call can be matched
+ * without scanning the methods of the handlers and then called without reflection.  Functions in
+ * the registry are preferred over the methods of function handlers with the same name.
+ * <p>
+ * Usage:
+ * <pre>
+ *   FunctionRegistry r = new FunctionRegistry ();
+ *
+ *   r.addDoubleFunction ("sqrt",
+ *                        Math::sqrt);
+ *   r.addFunction ("initials",
+ *                  String.class,
+ *                  String.class,
+ *                  s -&gt; ...);
+ *
+ *   Query q = new Query ();
+ *   q.setFunctionRegistry (r);
+ *   q.parse ("SELECT name, initials(name) FROM java.io.File WHERE sqrt(length) &gt; 100");
+ * </pre>
+ * <p>
+ * A registry can be shared between queries, a function called with arguments that all
+ * have fixed results is only called once per query (as with function handlers).
+ */
+public class FunctionRegistry
+{
+
+    // Name to List of RegisteredFunction.
+    private Map functions = new HashMap ();
+
+    public FunctionRegistry ()
+    {
+
+    }
+
+    /**
+     * Add a function.
+     *
+     * @param f The function.
+     */
+    public synchronized void addFunction (RegisteredFunction f)
+    {
+
+	List l = (List) this.functions.get (f.getName ());
+
+	if (l == null)
+	{
+
+	    l = new ArrayList ();
+
+	    this.functions.put (f.getName (),
+				l);
+
+	}
+
+	l.add (f);
+
+    }
+
+    /**
+     * Add a function with no parameters.
+     *
+     * @param name The name of the function.
+     * @param returnType The class of the values returned.
+     * @param f The function.
+     */
+    public void addFunction (String         name,
+			     Class          returnType,
+			     final Supplier f)
+    {
+
+	this.addFunction (new RegisteredFunction (name,
+						  new Class[0],
+						  returnType)
+	                  {
+
+			      public Object call (Object[] args)
+			      {
+
+				  return f.get ();
+
+			      }
+
+			  });
+
+    }
+
+    /**
+     * Add a function with one parameter.
+     *
+     * @param name The name of the function.
+     * @param type The class of the parameter.
+     * @param returnType The class of the values returned.
+     * @param f The function.
+     */
+    public void addFunction (String         name,
+			     Class          type,
+			     Class          returnType,
+			     final Function f)
+    {
+
+	this.addFunction (new RegisteredFunction (name,
+						  new Class[] { type },
+						  returnType)
+	                  {
+
+			      public Object call (Object[] args)
+			      {
+
+				  return f.apply (args[0]);
+
+			      }
+
+			  });
+
+    }
+
+    /**
+     * Add a function with two parameters.
+     *
+     * @param name The name of the function.
+     * @param type1 The class of the first parameter.
+     * @param type2 The class of the second parameter.
+     * @param returnType The class of the values returned.
+     * @param f The function.
+     */
+    public void addFunction (String           name,
+			     Class            type1,
+			     Class            type2,
+			     Class            returnType,
+			     final BiFunction f)
+    {
+
+	this.addFunction (new RegisteredFunction (name,
+						  new Class[] { type1, type2 },
+						  returnType)
+	                  {
+
+			      public Object call (Object[] args)
+			      {
+
+				  return f.apply (args[0],
+						  args[1]);
+
+			      }
+
+			  });
+
+    }
+
+    /**
+     * Add a function with one parameter that returns a boolean.
+     *
+     * @param name The name of the function.
+     * @param type The class of the parameter.
+     * @param f The function.
+     */
+    public void addPredicate (String          name,
+			      Class           type,
+			      final Predicate f)
+    {
+
+	this.addFunction (new RegisteredFunction (name,
+						  new Class[] { type },
+						  Boolean.TYPE)
+	                  {
+
+			      public Object call (Object[] args)
+			      {
+
+				  return Boolean.valueOf (f.test (args[0]));
+
+			      }
+
+			  });
+
+    }
+
+    /**
+     * Add a function that takes a double and returns a double, any number can be passed.
+     *
+     * @param name The name of the function.
+     * @param f The function.
+     */
+    public void addDoubleFunction (String                    name,
+				   final DoubleUnaryOperator f)
+    {
+
+	this.addFunction (new RegisteredFunction (name,
+						  new Class[] { Double.TYPE },
+						  Double.TYPE)
+	                  {
+
+			      public Object call (Object[] args)
+			      {
+
+				  return Double.valueOf (f.applyAsDouble (((Number) args[0]).doubleValue ()));
+
+			      }
+
+			  });
+
+    }
+
+    /**
+     * Add a function that takes two doubles and returns a double, any numbers can be passed.
+     *
+     * @param name The name of the function.
+     * @param f The function.
+     */
+    public void addDoubleFunction (String                     name,
+				   final DoubleBinaryOperator f)
+    {
+
+	this.addFunction (new RegisteredFunction (name,
+						  new Class[] { Double.TYPE, Double.TYPE },
+						  Double.TYPE)
+	                  {
+
+			      public Object call (Object[] args)
+			      {
+
+				  return Double.valueOf (f.applyAsDouble (((Number) args[0]).doubleValue (),
+									  ((Number) args[1]).doubleValue ()));
+
+			      }
+
+			  });
+
+    }
+
+    /**
+     * Remove all the functions with a name.
+     *
+     * @param name The name.
+     */
+    public synchronized void removeFunctions (String name)
+    {
+
+	this.functions.remove (name);
+
+    }
+
+    /**
+     * Get the functions with a name.
+     *
+     * @param name The name.
+     * @return The functions, a copy, will be empty if there are no functions with the name.
+     */
+    public synchronized List getFunctions (String name)
+    {
+
+	List l = (List) this.functions.get (name);
+
+	if (l == null)
+	{
+
+	    return new ArrayList ();
+
+	}
+
+	return new ArrayList (l);
+
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.functions;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.annotation.ElementType;
+
+/**
+ * Marks a function handler method (or all the methods of a function handler class) as
+ * returning the same result whenever it is called with the same argument values and as having
+ * no side effects.  Within an execution of a query the result of calling a pure function is
+ * cached against the values of its arguments so the function is only called once for each
+ * distinct set of values, even when the arguments vary from object to object.
+ * <p>
+ * The size of the cache is set via: {@link dev.mccue.josql.Query#setFunctionCacheSize(int)}, the
+ * number of calls that were avoided is given by the {@link dev.mccue.josql.QueryResults#FUNCTION_CACHE_HITS}
+ * statistic.  Functions that take an {@link dev.mccue.josql.expressions.Expression} as an argument
+ * are never cached.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Pure
+{
+
+}
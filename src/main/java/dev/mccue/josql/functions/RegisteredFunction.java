@@ -0,0 +1,98 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.functions;
+
+import dev.mccue.josql.internal.Utilities;
+
+/**
+ * A function that has been added to a {@link FunctionRegistry}, it has a fixed number
+ * of parameters of known types and is called directly rather than via reflection.
+ * <p>
+ * The values passed to {@link #call(Object[])} are the values of the arguments as they are
+ * evaluated (so an int parameter is passed as an Integer), an argument for a parameter of
+ * type {@link dev.mccue.josql.expressions.Expression} is passed the expression itself.
+ */
+public abstract class RegisteredFunction
+{
+
+    private String name = null;
+    private Class[] paramTypes = null;
+    private Class returnType = null;
+
+    public RegisteredFunction (String  name,
+			       Class[] paramTypes,
+			       Class   returnType)
+    {
+
+	this.name = name;
+	this.paramTypes = paramTypes;
+	this.returnType = returnType;
+
+    }
+
+    public String getName ()
+    {
+
+	return this.name;
+
+    }
+
+    public Class[] getParameterTypes ()
+    {
+
+	return this.paramTypes;
+
+    }
+
+    public Class getReturnType ()
+    {
+
+	return this.returnType;
+
+    }
+
+    /**
+     * Whether the function is {@link Pure pure}, i.e. its results can be cached against the
+     * argument values.  Sub-classes should override this to return <code>true</code> when that
+     * is the case.
+     *
+     * @return <code>false</code>.
+     */
+    public boolean isPure ()
+    {
+
+	return false;
+
+    }
+
+    /**
+     * Call the function.
+     *
+     * @param args The arguments, one for each parameter type.
+     * @return The result.
+     * @throws Exception If the function fails.
+     */
+    public abstract Object call (Object[] args)
+	                         throws   Exception;
+
+    public String toString ()
+    {
+
+	return Utilities.formatSignature (this.name,
+					  this.paramTypes);
+
+    }
+
+}
@@ -22,7 +22,13 @@ import java.lang.reflect.InvocationTargetException;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dev.mccue.josql.accessors.Property;
+
+import dev.mccue.josql.internal.AccessorTables;
 
 /**
  * This class is used to perform access into a Java object using a 
@@ -108,11 +114,29 @@ import java.util.StringTokenizer;
  * Note: we have had to add the 3rd type to allow for methods that don't follow
  * JavaBeans conventions (there are loads in the standard Java APIs which makes 
  * accessing impossible otherwise).
+ * <p>
+ * If the class has a generated {@link dev.mccue.josql.accessors.AccessorTable} (see
+ * {@link dev.mccue.josql.accessors.GenerateAccessors}) then the property from the table
+ * is used rather than reflection.
  */
 public class Getter
 {
 
-    private List chain = new ArrayList ();
+    // The resolved chains for each class, the reference (String) to the chain (List).
+    // They are held against the class so they go when the class is unloaded.
+    private static final ClassValue chains = new ClassValue ()
+    {
+
+	protected Object computeValue (Class c)
+	{
+
+	    return new ConcurrentHashMap ();
+
+	}
+
+    };
+
+    private List chain = null;
 
     private Class clazz = null;
     private int cs = 0;
@@ -140,6 +164,38 @@ public class Getter
 	this.acc = ref;
 	this.clazz = clazz;
 
+	Map cm = (Map) Getter.chains.get (clazz);
+
+	List chain = (List) cm.get (ref);
+
+	if (chain == null)
+	{
+
+	    chain = Getter.getChain (ref,
+				     clazz);
+
+	    cm.put (ref,
+		    chain);
+
+	}
+
+	this.chain = chain;
+	this.cs = this.chain.size ();
+
+    }
+
+    /**
+     * Find the fields and methods for the reference, this is the slow part of creating a getter
+     * (there is an exception for each method name that is tried and isn't found) so the chain
+     * is only found once for each class and reference.
+     */
+    private static List getChain (String ref,
+				  Class  clazz)
+	                          throws IllegalArgumentException
+    {
+
+	List chain = new ArrayList ();
+
 	StringTokenizer t = new StringTokenizer (ref,
 						 ".");
 
@@ -152,6 +208,21 @@ public class Getter
 
 	    String index = "";
 
+	    // A generated property is used in preference to reflection.
+	    Property p = AccessorTables.getProperty (c,
+						     tok);
+
+	    if (p != null)
+	    {
+
+		c = p.getType ();
+
+		chain.add (p);
+
+		continue;
+
+	    }
+
 	    // Get the Fields.
 	    Field[] fields = c.getFields ();
 	    
@@ -178,12 +249,12 @@ public class Getter
 
 		c = f.getType ();
 
-		this.chain.add (f);
+		chain.add (f);
 
 	    } else {
 
-		Method m = this.getNoParmJavaGetMethod (tok,
-							c);
+		Method m = Getter.getNoParmJavaGetMethod (tok,
+							  c);
 
 		if (m == null)
 		{
@@ -213,13 +284,13 @@ public class Getter
 			
 		}
 		    
-		this.chain.add (m);
+		chain.add (m);
 		    
 	    }
 
 	}
 
-	this.cs = this.chain.size ();
+	return chain;
 
     }
 
@@ -241,6 +312,13 @@ public class Getter
 
 	Object o = this.chain.get (this.chain.size () - 1);
 
+	if (o instanceof Property)
+	{
+
+	    return ((Property) o).getType ();
+
+	}
+
 	// See what type the accessor is...
 	if (o instanceof Method)
 	{
@@ -287,6 +365,32 @@ public class Getter
 
 	    Object o = this.chain.get (i);
 
+	    if (o instanceof Property)
+	    {
+
+		try
+		{
+
+		    retdata = ((Property) o).getValue (retdata);
+
+		} catch (Exception e) {
+
+		    this.throwException (obj,
+					 e);
+
+		}
+
+		if (retdata == null)
+		{
+
+		    return null;
+
+		}
+
+		continue;
+
+	    }
+
 	    // See what type the accessor is...
 	    if (o instanceof Method)
 	    {
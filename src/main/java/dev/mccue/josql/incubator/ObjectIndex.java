@@ -16,36 +16,90 @@ package dev.mccue.josql.incubator;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
 
 import dev.mccue.josql.gentlyweb.utils.Getter;
 
 /**
- * This is an experimental class aimed at producing an index across a 
- * collection of homogeneous objects.  It should be noted here that it is the "sorting" 
- * of the elements in the List of objects that takes nearly all the time here.
- * Use the {@link #sort()} method yourself to only perform sort once.  Everytime you
- * add an object however the sort status of the List of objects will be invalidated and
- * have to be re-sorted before you have retrieve the objects again.
+ * This is an experimental class aimed at producing an index across a
+ * collection of homogeneous objects.  The objects are held in a tree ordered by the
+ * values of the accessors (added via {@link #add(String)}) so adding and removing an object
+ * is O(log n) and there is no separate sort step.
+ * <p>
+ * A <code>null</code> key passed to {@link #getObjects(List)} matches any value, fewer keys
+ * than accessors can also be passed in which case only the first accessors are matched.
+ * <p>
+ * For use with a {@link dev.mccue.josql.Query} see {@link dev.mccue.josql.index.IndexedCollection}.
  */
 public class ObjectIndex implements Comparator
 {
 
-    private List objs = new ArrayList ();
     private List indices = new ArrayList ();
     private Class c = null;
-    private int size = -1;
-    private boolean dirty = false;
+    private int size = 0;
     private boolean syncOnAdd = false;
 
+    // Key (List of values) to List of objects.
+    private TreeMap index = null;
+
+    // Object to key.
+    private Map objs = new LinkedHashMap ();
+
+    private Comparator keyComp = new Comparator ()
+    {
+
+	public int compare (Object o1,
+			    Object o2)
+	{
+
+	    List k1 = (List) o1;
+	    List k2 = (List) o2;
+
+	    int s = Math.min (k1.size (),
+			      k2.size ());
+
+	    for (int i = 0; i < s; i++)
+	    {
+
+		int v = ObjectIndex.compareValues (k1.get (i),
+						   k2.get (i));
+
+		if (v != 0)
+		{
+
+		    return v;
+
+		}
+
+	    }
+
+	    // A shorter key sorts before the longer keys it is a prefix of.
+	    return k1.size () - k2.size ();
+
+	}
+
+    };
+
     public ObjectIndex (Class c)
     {
 
 	this.c = c;
 
+	this.index = new TreeMap (this.keyComp);
+
     }
 
+    /**
+     * No longer used, the objects are always kept in order.
+     *
+     * @return Whether sync on add has been set.
+     */
     public boolean isSyncOnAdd ()
     {
 
@@ -53,6 +107,11 @@ public class ObjectIndex implements Comparator
 
     }
 
+    /**
+     * No longer used, the objects are always kept in order.
+     *
+     * @param v The value.
+     */
     public void setSyncOnAdd (boolean v)
     {
 
@@ -63,189 +122,247 @@ public class ObjectIndex implements Comparator
     public List getObjects (List keys)
     {
 
-	if (this.dirty)
-	{
+	List res = new ArrayList ();
 
-	    Collections.sort (this.objs,
-			      this);
+	int ks = Math.min (keys.size (),
+			   this.indices.size ());
 
-	    this.dirty = false;
+	// The leading non-null keys can be looked up in the tree, the
+	// rest have to be checked.
+	int p = 0;
 
-	}
+	while ((p < ks)
+	       &&
+	       (keys.get (p) != null)
+	      )
+	{
 
-	List res = new ArrayList ();
+	    p++;
 
-	int low = 0;
-	int os1 = this.objs.size () - 1;
+	}
+
+	List prefix = new ArrayList (keys.subList (0,
+						   p));
 
-	int high = os1;
+	Iterator iter = this.index.tailMap (prefix,
+					    true).entrySet ().iterator ();
 
-	while (low <= high)
+	while (iter.hasNext ())
 	{
 
-	    int mid = (low + high) / 2;
+	    Map.Entry en = (Map.Entry) iter.next ();
+
+	    List k = (List) en.getKey ();
 
-	    Object o = this.objs.get (mid);
+	    if (this.compareKeys (k,
+				  prefix,
+				  p) != 0)
+	    {
 
-	    int r = this.compare (o,
-				  keys);
+		// Past the prefix.
+		break;
 
-	    if (r != 0)
+	    }
+
+	    if (this.compareKeys (k,
+				  keys,
+				  ks) == 0)
 	    {
 
-		// They are not equal, so now determine whether we go "up" or "down".
-		if (r < 0)
-		{
+		res.addAll ((List) en.getValue ());
 
-		    low = mid + 1;
+	    }
 
-		} else {
+	}
 
-		    high = mid - 1;
+	return res;
 
-		}
+    }
 
-	    } else {
+    public int size ()
+    {
 
-		// Add it to the list...
-		res.add (o);
+	return this.size;
 
-		int oi = mid;
+    }
 
-		// Now we need to check either side for others that may
-		// match.
-		while (mid < os1)
-		{
+    /**
+     * No longer used, the objects are always kept in order.
+     */
+    public void sort ()
+    {
 
-		    mid++;
+    }
 
-		    o = this.objs.get (mid);
-		    
-		    r = this.compare (o,
-				      keys);
-		    
-		    if (r == 0)
-		    {
+    public void add (String name)
+    {
 
-			res.add (o);
-			    
-		    } else {
+	this.indices.add (new Getter (name,
+				      this.c));
 
-			// Not equal...
-			break;
+	// The keys have changed, rebuild the index.
+	List os = new ArrayList (this.objs.keySet ());
 
-		    }
+	this.objs.clear ();
+	this.index.clear ();
+	this.size = 0;
 
-		}
+	this.addObjects (os);
 
-		mid = oi;
+    }
 
-		while (mid > -1)
-		{
+    public void removeObject (Object o)
+    {
 
-		    mid--;
+	if (!this.objs.containsKey (o))
+	{
 
-		    o = this.objs.get (mid);
-		    
-		    r = this.compare (o,
-				      keys);
-		    
-		    if (r == 0)
-		    {
+	    return;
 
-			res.add (o);
-			    
-		    } else {
+	}
 
-			// Not equal...
-			break;
+	List k = (List) this.objs.remove (o);
 
-		    }
+	List l = (List) this.index.get (k);
 
-		}
+	if (l != null)
+	{
 
-		// If we are here then we've got 'em all.
-		break;
+	    l.remove (o);
+
+	    if (l.size () == 0)
+	    {
+
+		this.index.remove (k);
 
 	    }
 
 	}
 
-	return res;
+	this.size = this.objs.size ();
 
     }
 
-    public int size ()
+    public void addObject (Object o)
     {
 
-	return this.size;
+	if (this.objs.containsKey (o))
+	{
 
-    }
+	    return;
 
-    public void sort ()
-    {
+	}
+
+	List k = this.getKey (o);
 
-	Collections.sort (this.objs,
-			  this);
+	this.objs.put (o,
+		       k);
 
-	this.dirty = false;
+	List l = (List) this.index.get (k);
+
+	if (l == null)
+	{
+
+	    l = new ArrayList ();
+
+	    this.index.put (k,
+			    l);
+
+	}
+
+	l.add (o);
+
+	this.size = this.objs.size ();
 
     }
 
-    public void add (String name)
+    /**
+     * Add all the objects, this is quicker than adding them one at a time since
+     * the objects are sorted first and then added to the index once for each key.
+     *
+     * @param os The objects.
+     */
+    public void addObjects (Collection os)
     {
 
-	if (this.syncOnAdd)
+	final Object[][] ks = new Object[os.size ()][];
+
+	int i = 0;
+
+	Iterator iter = os.iterator ();
+
+	while (iter.hasNext ())
 	{
 
-	    Collections.sort (this.objs,
-			      this);
+	    Object o = iter.next ();
+
+	    if (this.objs.containsKey (o))
+	    {
+
+		continue;
+
+	    }
 
-	    this.dirty = false;
+	    List k = this.getKey (o);
 
-	} else {
+	    this.objs.put (o,
+			   k);
 
-	    this.dirty = true;
+	    ks[i++] = new Object[] { k, o };
 
 	}
 
-	this.indices.add (new Getter (name,
-				      this.c));
+	Arrays.sort (ks,
+		     0,
+		     i,
+		     new Comparator ()
+		     {
 
-    }
+			 public int compare (Object o1,
+					     Object o2)
+			 {
 
-    public void removeObject (Object o)
-    {
+			     return ObjectIndex.this.keyComp.compare (((Object[]) o1)[0],
+								      ((Object[]) o2)[0]);
 
-	this.objs.remove (o);
+			 }
 
-    }
+		     });
 
-    public void addObject (Object o)
-    {
+	List lk = null;
+	List l = null;
 
-	if (this.objs.contains (o))
+	for (int j = 0; j < i; j++)
 	{
 
-	    return;
+	    List k = (List) ks[j][0];
 
-	}
+	    if ((lk == null)
+		||
+		(this.keyComp.compare (lk,
+				       k) != 0)
+	       )
+	    {
 
-	if (this.syncOnAdd)
-	{
+		l = (List) this.index.get (k);
 
-	    Collections.sort (this.objs,
-			      this);
+		if (l == null)
+		{
 
-	    this.dirty = false;
+		    l = new ArrayList ();
 
-	} else {
+		    this.index.put (k,
+				    l);
 
-	    this.dirty = true;
+		}
 
-	}
+		lk = k;
+
+	    }
+
+	    l.add (ks[j][1]);
 
-	this.objs.add (o);
+	}
 
 	this.size = this.objs.size ();
 
@@ -255,130 +372,127 @@ public class ObjectIndex implements Comparator
 			List   keys)
     {
 
-	try
-	{
+	return this.compareKeys (this.getKey (o),
+				 keys,
+				 Math.min (keys.size (),
+					   this.indices.size ()));
 
-	    int ks = keys.size ();
+    }
 
-	    for (int i = 0; i < ks; i++)
-	    {
+    public int compare (Object o1,
+			Object o2)
+    {
 
-		Getter g = (Getter) this.indices.get (i);
-		
-		Object eo1 = g.getValue (o);
+	return this.keyComp.compare (this.getKey (o1),
+				     this.getKey (o2));
 
-		Object kso = keys.get (i);
+    }
 
-		// Can't compare what's not there, return 0.
-		if ((eo1 == null)
-		    ||
-		    (kso == null)
-		   )
-		{
+    private int compareKeys (List k,
+			     List keys,
+			     int  s)
+    {
 
-		    return 0;
+	for (int i = 0; i < s; i++)
+	{
 
-		}
+	    Object kso = keys.get (i);
+
+	    // A null key matches anything.
+	    if (kso == null)
+	    {
 
-		int v = 0;
-		    
-		if (eo1 instanceof Comparable)
-		{
-			
-		    // We can use a simple compareTo.
-		    Comparable comp = (Comparable) eo1;
-		    
-		    v = comp.compareTo (kso);
-			
-		} else {
-			
-		    v = eo1.toString ().compareTo (kso.toString ());
-			
-		}
-		    
-		if (v != 0)
-		{
-		    
-		    return v;
-		    
-		}
-		
-		// They are equal, so need to go to the next field...
 		continue;
 
 	    }
 
-	} catch (Exception e) {
-	    
+	    int v = ObjectIndex.compareValues (k.get (i),
+					       kso);
+
+	    if (v != 0)
+	    {
+
+		return v;
+
+	    }
+
 	}
 
-	// All equal.
 	return 0;
 
     }
 
-    public int compare (Object o1,
-			Object o2)
+    private List getKey (Object o)
     {
 
-	try
+	int s = this.indices.size ();
+
+	List k = new ArrayList (s);
+
+	for (int i = 0; i < s; i++)
 	{
 
-	    for (int i = 0; i < this.size; i++)
+	    Getter g = (Getter) this.indices.get (i);
+
+	    Object v = null;
+
+	    try
 	    {
 
-		Getter g = (Getter) this.indices.get (i);
-		
-		Object eo1 = g.getValue (o1);
+		v = g.getValue (o);
 
-		Object eo2 = g.getValue (o2);
+	    } catch (Exception e) {
 
-		// Can't compare what's not there, return 0.
-		if ((eo1 == null)
-		    ||
-		    (eo2 == null)
-		   )
-		{
+		// Treat as null.
 
-		    return 0;
+	    }
 
-		}
+	    k.add (v);
 
-		int v = 0;
-		    
-		if (eo1 instanceof Comparable)
-		{
-			
-		    // We can use a simple compareTo.
-		    Comparable comp = (Comparable) eo1;
-		    
-		    v = comp.compareTo (eo2);
-			
-		} else {
-			
-		    v = eo1.toString ().compareTo (eo2.toString ());
-			
-		}
-		    
-		if (v != 0)
-		{
-		    
-		    return v;
-		    
-		}
-		
-		// They are equal, so need to go to the next field...
-		continue;
+	}
+
+	return k;
+
+    }
+
+    private static int compareValues (Object eo1,
+				      Object eo2)
+    {
+
+	// Nulls go first.
+	if (eo1 == null)
+	{
+
+	    return (eo2 == null) ? 0 : -1;
+
+	}
+
+	if (eo2 == null)
+	{
+
+	    return 1;
+
+	}
+
+	if (eo1 instanceof Comparable)
+	{
+
+	    try
+	    {
+
+		// We can use a simple compareTo.
+		return ((Comparable) eo1).compareTo (eo2);
+
+	    } catch (ClassCastException e) {
+
+		// Different types, fall through to a string comparison.
 
 	    }
 
-	} catch (Exception e) {
-	    
 	}
 
-	// All equal.
-	return 0;
+	return eo1.toString ().compareTo (eo2.toString ());
 
-    }    
+    }
 
 }
@@ -0,0 +1,902 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.index;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.AbstractCollection;
+import java.util.RandomAccess;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread safe collection of objects of a single class with indexes on one or more accessors.
+ * Reads never block, {@link #getSnapshot()} returns an immutable {@link IndexedList} of the
+ * objects at that point in time and it can be queried while other threads are making changes.
+ * Executing a {@link dev.mccue.josql.Query} against this collection uses the current snapshot,
+ * the objects are not copied.
+ * <p>
+ * Writes are copy-on-write and striped, the objects are split into a number of stripes (by their
+ * identity hash code) and a change only copies the stripes that it affects.  The indexes of a stripe
+ * are copied rather than built again, so only the objects added and removed are indexed, but the copy
+ * still takes time in proportion to the size of the stripe.  Writers to different stripes do not block
+ * each other.  Each change (including a batch or a replace across stripes) is published in a single
+ * snapshot, so a reader sees either all or none of it.  It is much quicker to make changes in batches
+ * via {@link #addAll(Collection)} and {@link #removeAll(Collection)}.
+ * <p>
+ * Objects are identified by identity (not <code>equals</code>) and the same object can only be
+ * present once.  The objects should not be changed once added (a snapshot in use will still hold the
+ * object but its indexes won't reflect the change), instead use {@link #replace(Object,Object)}.
+ * The iteration order is not the order the objects were added in.
+ */
+public class ConcurrentIndexedCollection extends AbstractCollection
+{
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    private Class c = null;
+    private Object[] locks = null;
+
+    // Accessor to Boolean (whether the index is sorted), copied on write.
+    private volatile List indexes = new ArrayList ();
+
+    private AtomicReference root = new AtomicReference ();
+
+    public ConcurrentIndexedCollection (Class c)
+    {
+
+	this (c,
+	      ConcurrentIndexedCollection.DEFAULT_STRIPES);
+
+    }
+
+    public ConcurrentIndexedCollection (Class c,
+					int   stripes)
+    {
+
+	if (stripes < 1)
+	{
+
+	    throw new IllegalArgumentException ("Number of stripes must be at least 1, got: " +
+						stripes);
+
+	}
+
+	this.c = c;
+
+	this.locks = new Object[stripes];
+
+	IndexedCollection[] r = new IndexedCollection[stripes];
+
+	for (int i = 0; i < stripes; i++)
+	{
+
+	    this.locks[i] = new Object ();
+
+	    r[i] = new IndexedCollection (c);
+
+	}
+
+	this.root.set (new Snapshot (r,
+				     c));
+
+    }
+
+    public Class getObjectClass ()
+    {
+
+	return this.c;
+
+    }
+
+    /**
+     * Get an immutable view of the objects as they are now, the view is not affected by
+     * later changes.
+     *
+     * @return The snapshot.
+     */
+    public IndexedList getSnapshot ()
+    {
+
+	return (IndexedList) this.root.get ();
+
+    }
+
+    /**
+     * Add a hash index on the accessor, see: {@link IndexedCollection#addIndex(String)}.
+     *
+     * @param accessor The accessor.
+     * @throws IllegalArgumentException If the accessor is not valid for the object class.
+     */
+    public void addIndex (String accessor)
+    {
+
+	this.setIndex (accessor,
+		       Boolean.FALSE);
+
+    }
+
+    /**
+     * Add a sorted index on the accessor, see: {@link IndexedCollection#addSortedIndex(String)}.
+     *
+     * @param accessor The accessor.
+     * @throws IllegalArgumentException If the accessor is not valid for the object class.
+     */
+    public void addSortedIndex (String accessor)
+    {
+
+	this.setIndex (accessor,
+		       Boolean.TRUE);
+
+    }
+
+    public void removeIndex (String accessor)
+    {
+
+	this.setIndex (accessor,
+		       null);
+
+    }
+
+    public boolean add (Object o)
+    {
+
+	List l = new ArrayList (1);
+	l.add (o);
+
+	return this.addAll (l);
+
+    }
+
+    public boolean remove (Object o)
+    {
+
+	List l = new ArrayList (1);
+	l.add (o);
+
+	return this.removeAll (l);
+
+    }
+
+    /**
+     * Replace an object, this should be used instead of changing an indexed value of an object.
+     * The change is made atomically.
+     *
+     * @param old The object to replace.
+     * @param o The new object.
+     * @return <code>true</code> if the collection changed.
+     */
+    public boolean replace (Object old,
+			    Object o)
+    {
+
+	List r = new ArrayList (1);
+	r.add (old);
+
+	List a = new ArrayList (1);
+	a.add (o);
+
+	return this.update (a,
+			    r);
+
+    }
+
+    public boolean addAll (Collection objs)
+    {
+
+	return this.update (objs,
+			    null);
+
+    }
+
+    public boolean removeAll (Collection objs)
+    {
+
+	return this.update (null,
+			    objs);
+
+    }
+
+    public void clear ()
+    {
+
+	this.lockAll (0,
+		      null,
+		      true);
+
+    }
+
+    public boolean contains (Object o)
+    {
+
+	Snapshot s = (Snapshot) this.root.get ();
+
+	return s.stripes[this.getStripe (o)].containsObject (o);
+
+    }
+
+    public Iterator iterator ()
+    {
+
+	return this.getSnapshot ().iterator ();
+
+    }
+
+    public int size ()
+    {
+
+	return this.getSnapshot ().size ();
+
+    }
+
+    private int getStripe (Object o)
+    {
+
+	int h = System.identityHashCode (o);
+
+	h ^= (h >>> 16);
+
+	return (h & 0x7fffffff) % this.locks.length;
+
+    }
+
+    /**
+     * Add and remove objects, each affected stripe is copied once.
+     *
+     * @param add The objects to add, may be <code>null</code>.
+     * @param rem The objects to remove, may be <code>null</code>.
+     * @return <code>true</code> if the collection changed.
+     */
+    private boolean update (Collection add,
+			    Collection rem)
+    {
+
+	List[] adds = this.split (add);
+	List[] rems = this.split (rem);
+
+	int[] sts = new int[this.locks.length];
+	int n = 0;
+
+	for (int i = 0; i < this.locks.length; i++)
+	{
+
+	    if ((adds[i] != null)
+		||
+		(rems[i] != null)
+	       )
+	    {
+
+		sts[n++] = i;
+
+	    }
+
+	}
+
+	if (n == 0)
+	{
+
+	    return false;
+
+	}
+
+	return this.update (Arrays.copyOf (sts,
+					   n),
+			    0,
+			    adds,
+			    rems);
+
+    }
+
+    /**
+     * Lock the stripes (in order, so that writers can't deadlock) and then copy them with the
+     * changes, the copies are published in one snapshot.
+     *
+     * @param sts The stripes to change, in order.
+     * @param j The index (into <b>sts</b>) of the stripe to lock.
+     * @param adds The objects to add, by stripe.
+     * @param rems The objects to remove, by stripe.
+     * @return <code>true</code> if the collection changed.
+     */
+    private boolean update (int[]  sts,
+			    int    j,
+			    List[] adds,
+			    List[] rems)
+    {
+
+	if (j < sts.length)
+	{
+
+	    synchronized (this.locks[sts[j]])
+	    {
+
+		return this.update (sts,
+				    j + 1,
+				    adds,
+				    rems);
+
+	    }
+
+	}
+
+	Snapshot s = (Snapshot) this.root.get ();
+
+	IndexedCollection[] r = new IndexedCollection[this.locks.length];
+
+	boolean ch = false;
+
+	for (int k = 0; k < sts.length; k++)
+	{
+
+	    int i = sts[k];
+
+	    r[i] = this.copyStripe (s.stripes[i],
+				    adds[i],
+				    rems[i]);
+
+	    if (r[i] != null)
+	    {
+
+		ch = true;
+
+	    }
+
+	}
+
+	if (ch)
+	{
+
+	    this.setStripes (r);
+
+	}
+
+	return ch;
+
+    }
+
+    /**
+     * Copy a stripe with the objects added and removed.
+     *
+     * @param st The stripe.
+     * @param add The objects to add, may be <code>null</code>.
+     * @param rem The objects to remove, may be <code>null</code>.
+     * @return The copy or <code>null</code> if the stripe doesn't change.
+     */
+    private IndexedCollection copyStripe (IndexedCollection st,
+					  List              add,
+					  List              rem)
+    {
+
+	IdentityHashMap rm = null;
+
+	if (rem != null)
+	{
+
+	    rm = new IdentityHashMap ();
+
+	    for (int j = 0; j < rem.size (); j++)
+	    {
+
+		Object o = rem.get (j);
+
+		if (st.containsObject (o))
+		{
+
+		    rm.put (o,
+			    o);
+
+		}
+
+	    }
+
+	}
+
+	List ad = null;
+
+	if (add != null)
+	{
+
+	    IdentityHashMap as = new IdentityHashMap ();
+
+	    ad = new ArrayList (add.size ());
+
+	    for (int j = 0; j < add.size (); j++)
+	    {
+
+		Object o = add.get (j);
+
+		// An object that is removed and added is moved to the end.
+		if (((!st.containsObject (o))
+		     ||
+		     ((rm != null)
+		      &&
+		      (rm.containsKey (o))
+		     )
+		    )
+		    &&
+		    (as.put (o,
+			     o) == null)
+		   )
+		{
+
+		    ad.add (o);
+
+		}
+
+	    }
+
+	}
+
+	if (((rm == null)
+	     ||
+	     (rm.size () == 0)
+	    )
+	    &&
+	    ((ad == null)
+	     ||
+	     (ad.size () == 0)
+	    )
+	   )
+	{
+
+	    return null;
+
+	}
+
+	// Only the removed and added objects are indexed, the rest of the
+	// indexes are copied.
+	return st.copy (rm,
+			ad);
+
+    }
+
+    private List[] split (Collection objs)
+    {
+
+	List[] res = new List[this.locks.length];
+
+	if (objs == null)
+	{
+
+	    return res;
+
+	}
+
+	Iterator iter = objs.iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Object o = iter.next ();
+
+	    int i = this.getStripe (o);
+
+	    if (res[i] == null)
+	    {
+
+		res[i] = new ArrayList ();
+
+	    }
+
+	    res[i].add (o);
+
+	}
+
+	return res;
+
+    }
+
+    /**
+     * Publish the changed stripes in a new snapshot.
+     *
+     * @param sts The new stripes, <code>null</code> for a stripe that hasn't changed.
+     */
+    private void setStripes (IndexedCollection[] sts)
+    {
+
+	// Only the stripe lock holders change the stripes, but other stripes may be
+	// changing the root at the same time.
+	while (true)
+	{
+
+	    Snapshot s = (Snapshot) this.root.get ();
+
+	    IndexedCollection[] r = s.stripes.clone ();
+
+	    for (int i = 0; i < r.length; i++)
+	    {
+
+		if (sts[i] != null)
+		{
+
+		    r[i] = sts[i];
+
+		}
+
+	    }
+
+	    if (this.root.compareAndSet (s,
+					 new Snapshot (r,
+						       this.c)))
+	    {
+
+		return;
+
+	    }
+
+	}
+
+    }
+
+    private IndexedCollection createStripe (List objs,
+					    List indexes)
+    {
+
+	IndexedCollection st = new IndexedCollection (this.c,
+						      objs);
+
+	for (int i = 0; i < indexes.size (); i++)
+	{
+
+	    Object[] ind = (Object[]) indexes.get (i);
+
+	    if (((Boolean) ind[1]).booleanValue ())
+	    {
+
+		st.addSortedIndex ((String) ind[0]);
+
+	    } else {
+
+		st.addIndex ((String) ind[0]);
+
+	    }
+
+	}
+
+	return st;
+
+    }
+
+    private synchronized void setIndex (String  accessor,
+					Boolean sorted)
+    {
+
+	List inds = new ArrayList ();
+
+	for (int i = 0; i < this.indexes.size (); i++)
+	{
+
+	    Object[] ind = (Object[]) this.indexes.get (i);
+
+	    if (!ind[0].equals (accessor))
+	    {
+
+		inds.add (ind);
+
+	    }
+
+	}
+
+	if (sorted != null)
+	{
+
+	    // Check the accessor before changing anything.
+	    if (sorted.booleanValue ())
+	    {
+
+		new SortedIndex (accessor,
+				 this.c);
+
+	    } else {
+
+		new HashIndex (accessor,
+			       this.c);
+
+	    }
+
+	    inds.add (new Object[] { accessor, sorted });
+
+	}
+
+	this.lockAll (0,
+		      inds,
+		      false);
+
+    }
+
+    /**
+     * Lock all the stripes (in order) and then rebuild them with the indexes.
+     *
+     * @param i The stripe to lock.
+     * @param inds The new indexes, if <code>null</code> then the current indexes are used.
+     * @param clear Whether to remove all the objects.
+     */
+    private void lockAll (int     i,
+			  List    inds,
+			  boolean clear)
+    {
+
+	if (i < this.locks.length)
+	{
+
+	    synchronized (this.locks[i])
+	    {
+
+		this.lockAll (i + 1,
+			      inds,
+			      clear);
+
+	    }
+
+	    return;
+
+	}
+
+	if (inds == null)
+	{
+
+	    inds = this.indexes;
+
+	}
+
+	Snapshot s = (Snapshot) this.root.get ();
+
+	IndexedCollection[] r = new IndexedCollection[this.locks.length];
+
+	for (int j = 0; j < r.length; j++)
+	{
+
+	    List objs = clear ? new ArrayList () : new ArrayList (s.stripes[j]);
+
+	    r[j] = this.createStripe (objs,
+				      inds);
+
+	}
+
+	this.indexes = inds;
+
+	// All the stripes are locked so nothing else can change the root.
+	this.root.set (new Snapshot (r,
+				     this.c));
+
+    }
+
+    /**
+     * An immutable view across the stripes.
+     */
+    private static class Snapshot extends AbstractList implements IndexedList,
+								 RandomAccess
+    {
+
+	private IndexedCollection[] stripes = null;
+	private int[] offsets = null;
+	private int size = 0;
+	private Class c = null;
+
+	private Snapshot (IndexedCollection[] stripes,
+			  Class               c)
+	{
+
+	    this.stripes = stripes;
+	    this.c = c;
+
+	    this.offsets = new int[stripes.length];
+
+	    for (int i = 0; i < stripes.length; i++)
+	    {
+
+		this.offsets[i] = this.size;
+
+		this.size += stripes[i].size ();
+
+	    }
+
+	}
+
+	public Object get (int index)
+	{
+
+	    if ((index < 0)
+		||
+		(index >= this.size)
+	       )
+	    {
+
+		throw new IndexOutOfBoundsException ("Index: " + index + ", size: " + this.size);
+
+	    }
+
+	    int i = Arrays.binarySearch (this.offsets,
+					 index);
+
+	    if (i < 0)
+	    {
+
+		i = -i - 2;
+
+	    } else {
+
+		// Skip any empty stripes.
+		while (this.stripes[i].size () == 0)
+		{
+
+		    i++;
+
+		}
+
+	    }
+
+	    return this.stripes[i].get (index - this.offsets[i]);
+
+	}
+
+	public int size ()
+	{
+
+	    return this.size;
+
+	}
+
+	public Class getObjectClass ()
+	{
+
+	    return this.c;
+
+	}
+
+	public boolean hasIndex (String accessor)
+	{
+
+	    return this.stripes[0].hasIndex (accessor);
+
+	}
+
+	public int getCandidateCount (String accessor,
+				      List   keys)
+	{
+
+	    int c = 0;
+
+	    for (int i = 0; i < this.stripes.length; i++)
+	    {
+
+		int sc = this.stripes[i].getCandidateCount (accessor,
+							    keys);
+
+		if (sc < 0)
+		{
+
+		    return -1;
+
+		}
+
+		c += sc;
+
+	    }
+
+	    return c;
+
+	}
+
+	public List getCandidates (String accessor,
+				   List   keys)
+	{
+
+	    List res = new ArrayList ();
+
+	    for (int i = 0; i < this.stripes.length; i++)
+	    {
+
+		List sc = this.stripes[i].getCandidates (accessor,
+							 keys);
+
+		if (sc == null)
+		{
+
+		    return null;
+
+		}
+
+		res.addAll (sc);
+
+	    }
+
+	    return res;
+
+	}
+
+	public int getRangeCandidateCount (String  accessor,
+					   Object  low,
+					   boolean lowInclusive,
+					   Object  high,
+					   boolean highInclusive,
+					   int     max)
+	{
+
+	    int c = 0;
+
+	    for (int i = 0; i < this.stripes.length; i++)
+	    {
+
+		// Each stripe only needs to count up to what the earlier stripes left.
+		int sc = this.stripes[i].getRangeCandidateCount (accessor,
+								 low,
+								 lowInclusive,
+								 high,
+								 highInclusive,
+								 max - c);
+
+		if (sc < 0)
+		{
+
+		    return -1;
+
+		}
+
+		c += sc;
+
+		if (c > max)
+		{
+
+		    return c;
+
+		}
+
+	    }
+
+	    return c;
+
+	}
+
+	public List getRangeCandidates (String  accessor,
+					Object  low,
+					boolean lowInclusive,
+					Object  high,
+					boolean highInclusive)
+	{
+
+	    List res = new ArrayList ();
+
+	    for (int i = 0; i < this.stripes.length; i++)
+	    {
+
+		List sc = this.stripes[i].getRangeCandidates (accessor,
+							      low,
+							      lowInclusive,
+							      high,
+							      highInclusive);
+
+		if (sc == null)
+		{
+
+		    return null;
+
+		}
+
+		res.addAll (sc);
+
+	    }
+
+	    return res;
+
+	}
+
+    }
+
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.index;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * A hash based index, supports equality (=) and IN lookups.
+ * <p>
+ * To give the same results as the WHERE clause the index follows the rules of
+ * {@link dev.mccue.josql.internal.Utilities#compare(Object,Object)}, numbers are
+ * equal if their double values are equal and other values are compared using
+ * their string form (Strings and other types with different classes are compared
+ * via <code>toString</code>).  Thus numbers are held both by their double value (with
+ * -0.0 held as 0.0) and by their string form and other values are held by their string form, only String
+ * and Number keys can be looked up.
+ */
+public class HashIndex extends Index
+{
+
+    Map numbers = null;
+    Map numberStrings = null;
+    Map strings = null;
+    Set nulls = new LinkedHashSet ();
+    Set others = new LinkedHashSet ();
+
+    // For a copy, the sets of entries that belong to this index rather than being
+    // shared with the index it was copied from, shared sets are copied before they
+    // are changed.  Null if the index is not a copy.
+    private Map ownSets = null;
+
+    HashIndex (String acc,
+	       Class  c)
+    {
+
+	super (acc,
+	       c);
+
+	this.numbers = this.createMap ();
+	this.numberStrings = this.createMap ();
+	this.strings = this.createMap ();
+
+    }
+
+    HashIndex (HashIndex ind)
+    {
+
+	super (ind);
+
+	this.numbers = this.copyMap (ind.numbers);
+	this.numberStrings = this.copyMap (ind.numberStrings);
+	this.strings = this.copyMap (ind.strings);
+	this.nulls = new LinkedHashSet (ind.nulls);
+	this.others = new LinkedHashSet (ind.others);
+	this.ownSets = new IdentityHashMap ();
+
+    }
+
+    Index copy ()
+    {
+
+	return new HashIndex (this);
+
+    }
+
+    /**
+     * Create the map used to hold the entries for each value.
+     *
+     * @return The map.
+     */
+    Map createMap ()
+    {
+
+	return new HashMap ();
+
+    }
+
+    /**
+     * Copy the map used to hold the entries for each value, the sets of entries are
+     * shared until they are changed.
+     *
+     * @param m The map.
+     * @return The copy.
+     */
+    Map copyMap (Map m)
+    {
+
+	return new HashMap (m);
+
+    }
+
+    public int getKeyCount ()
+    {
+
+	return this.numbers.size () + this.strings.size ();
+
+    }
+
+    Object addEntry (IndexEntry e,
+		     Object     v)
+    {
+
+	if (v == null)
+	{
+
+	    this.nulls.add (e);
+
+	    return null;
+
+	}
+
+	if (v instanceof Number)
+	{
+
+	    // Keep both keys, the number may be mutable.
+	    Object[] k = { HashIndex.toKey ((Number) v),
+			   v.toString () };
+
+	    this.add (this.numbers,
+		      k[0],
+		      e);
+
+	    this.add (this.numberStrings,
+		      k[1],
+		      e);
+
+	    return k;
+
+	}
+
+	String s = null;
+
+	if (v != Index.UNINDEXABLE)
+	{
+
+	    try
+	    {
+
+		s = v.toString ();
+
+	    } catch (Exception ex) {
+
+		// Ignore, treat as unindexable.
+
+	    }
+
+	}
+
+	if (s == null)
+	{
+
+	    this.others.add (e);
+
+	    return Index.UNINDEXABLE;
+
+	}
+
+	this.add (this.strings,
+		  s,
+		  e);
+
+	return s;
+
+    }
+
+    void removeEntry (IndexEntry e,
+		      Object     k)
+    {
+
+	if (k == null)
+	{
+
+	    this.nulls.remove (e);
+
+	    return;
+
+	}
+
+	if (k == Index.UNINDEXABLE)
+	{
+
+	    this.others.remove (e);
+
+	    return;
+
+	}
+
+	if (k instanceof Object[])
+	{
+
+	    Object[] ks = (Object[]) k;
+
+	    this.remove (this.numbers,
+			 ks[0],
+			 e);
+
+	    this.remove (this.numberStrings,
+			 ks[1],
+			 e);
+
+	    return;
+
+	}
+
+	this.remove (this.strings,
+		     k,
+		     e);
+
+    }
+
+    void clearEntries ()
+    {
+
+	this.numbers.clear ();
+	this.numberStrings.clear ();
+	this.strings.clear ();
+	this.nulls.clear ();
+	this.others.clear ();
+
+    }
+
+    boolean getEntries (Object key,
+			List   res)
+    {
+
+	if (key == null)
+	{
+
+	    res.addAll (this.nulls);
+
+	} else {
+
+	    if (key instanceof String)
+	    {
+
+		this.addAll (this.strings,
+			     key,
+			     res);
+		this.addAll (this.numberStrings,
+			     key,
+			     res);
+
+	    } else {
+
+		if (!(key instanceof Number))
+		{
+
+		    return false;
+
+		}
+
+		this.addAll (this.numbers,
+			     HashIndex.toKey ((Number) key),
+			     res);
+		this.addAll (this.strings,
+			     key.toString (),
+			     res);
+
+	    }
+
+	}
+
+	res.addAll (this.others);
+
+	return true;
+
+    }
+
+    int getEntryCount (Object key)
+    {
+
+	int c = this.others.size ();
+
+	if (key == null)
+	{
+
+	    return c + this.nulls.size ();
+
+	}
+
+	if (key instanceof String)
+	{
+
+	    return c + this.size (this.strings,
+				  key) + this.size (this.numberStrings,
+						    key);
+
+	}
+
+	if (key instanceof Number)
+	{
+
+	    return c + this.size (this.numbers,
+				  HashIndex.toKey ((Number) key)) + this.size (this.strings,
+									       key.toString ());
+
+	}
+
+	return -1;
+
+    }
+
+    void add (Map        m,
+	      Object     k,
+	      IndexEntry e)
+    {
+
+	Set s = this.getSet (m,
+			     k);
+
+	if (s == null)
+	{
+
+	    s = new LinkedHashSet ();
+
+	    m.put (k,
+		   s);
+
+	    if (this.ownSets != null)
+	    {
+
+		this.ownSets.put (s,
+				  s);
+
+	    }
+
+	}
+
+	s.add (e);
+
+    }
+
+    private void remove (Map        m,
+			 Object     k,
+			 IndexEntry e)
+    {
+
+	Set s = this.getSet (m,
+			     k);
+
+	if (s == null)
+	{
+
+	    return;
+
+	}
+
+	s.remove (e);
+
+	if (s.size () == 0)
+	{
+
+	    m.remove (k);
+
+	}
+
+    }
+
+    /**
+     * Get the set of entries for the key so that it can be changed, for a copy a set that
+     * is shared with the index it was copied from is copied first.
+     *
+     * @param m The map.
+     * @param k The key.
+     * @return The set or <code>null</code> if there are no entries for the key.
+     */
+    private Set getSet (Map    m,
+			Object k)
+    {
+
+	Set s = (Set) m.get (k);
+
+	if ((s == null)
+	    ||
+	    (this.ownSets == null)
+	    ||
+	    (this.ownSets.containsKey (s))
+	   )
+	{
+
+	    return s;
+
+	}
+
+	s = new LinkedHashSet (s);
+
+	m.put (k,
+	       s);
+
+	this.ownSets.put (s,
+			  s);
+
+	return s;
+
+    }
+
+    void addAll (Map    m,
+		 Object k,
+		 List   res)
+    {
+
+	Set s = (Set) m.get (k);
+
+	if (s != null)
+	{
+
+	    res.addAll (s);
+
+	}
+
+    }
+
+    int size (Map    m,
+	      Object k)
+    {
+
+	Set s = (Set) m.get (k);
+
+	if (s == null)
+	{
+
+	    return 0;
+
+	}
+
+	return s.size ();
+
+    }
+
+    /**
+     * Get the key that a number is held by, this is its double value with -0.0 replaced by 0.0.
+     * {@link dev.mccue.josql.internal.Numbers#compare(Number,Number)} finds a long 0 equal to
+     * -0.0 (i.e. <code>0 = -0.0</code>) but as Double keys they are neither equal nor next to
+     * each other, so both are held by the same key and the WHERE clause decides which match.
+     *
+     * @param n The number.
+     * @return The key.
+     */
+    static Double toKey (Number n)
+    {
+
+	double d = n.doubleValue ();
+
+	if (d == 0)
+	{
+
+	    // Also true for -0.0.
+	    return Double.valueOf (0);
+
+	}
+
+	return Double.valueOf (d);
+
+    }
+
+}
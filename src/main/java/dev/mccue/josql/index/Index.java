@@ -0,0 +1,276 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.index;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Collection;
+
+import dev.mccue.josql.gentlyweb.utils.Getter;
+
+/**
+ * The base class for the indexes held by an {@link IndexedCollection}.  An index maps the value
+ * of an accessor (as used in a WHERE clause) to the objects that have that value.
+ * <p>
+ * Lookups are allowed to return more objects than actually match (the WHERE clause is
+ * always evaluated against the objects returned) but must never miss an object that would
+ * match, objects whose value cannot be indexed are therefore returned by every lookup.
+ */
+public abstract class Index
+{
+
+    /**
+     * Used as the value for objects that the accessor could not be applied to.
+     */
+    static final Object UNINDEXABLE = new Object ();
+
+    private String acc = null;
+    private Class c = null;
+    private Getter get = null;
+
+    private Map values = new HashMap ();
+
+    Index (String acc,
+	   Class  c)
+    {
+
+	this.acc = acc;
+	this.c = c;
+
+	// This will throw an exception if the accessor isn't valid for the class.
+	this.get = new Getter (acc,
+			       c);
+
+    }
+
+    /**
+     * Create a copy of the index, the copy holds the same entries under the same keys.
+     *
+     * @param ind The index to copy.
+     */
+    Index (Index ind)
+    {
+
+	this.acc = ind.acc;
+	this.c = ind.c;
+	this.get = ind.get;
+	this.values = new HashMap (ind.values);
+
+    }
+
+    /**
+     * Get the accessor that the index is on, this is the accessor as it
+     * would appear in the WHERE clause, i.e. <b>name</b> or <b>parent.name</b>.
+     *
+     * @return The accessor.
+     */
+    public String getAccessor ()
+    {
+
+	return this.acc;
+
+    }
+
+    public Class getObjectClass ()
+    {
+
+	return this.c;
+
+    }
+
+    /**
+     * Get the number of distinct values held in the index, this is used to determine
+     * which index to use when more than one could be.
+     *
+     * @return The number of distinct keys.
+     */
+    public abstract int getKeyCount ();
+
+    void add (IndexEntry e)
+    {
+
+	Object v = this.getValue (e.object);
+
+	this.values.put (e,
+			 this.addEntry (e,
+					v));
+
+    }
+
+    /**
+     * Add all the entries, sub-classes can override this to build the index
+     * more efficiently than one entry at a time.
+     *
+     * @param es The {@link IndexEntry} objects.
+     */
+    void addAll (List es)
+    {
+
+	int s = es.size ();
+
+	for (int i = 0; i < s; i++)
+	{
+
+	    this.add ((IndexEntry) es.get (i));
+
+	}
+
+    }
+
+    void remove (IndexEntry e)
+    {
+
+	if (!this.values.containsKey (e))
+	{
+
+	    return;
+
+	}
+
+	Object v = this.values.remove (e);
+
+	this.removeEntry (e,
+			  v);
+
+    }
+
+    void clear ()
+    {
+
+	this.values.clear ();
+
+	this.clearEntries ();
+
+    }
+
+    private Object getValue (Object o)
+    {
+
+	try
+	{
+
+	    Object v = this.get.getValue (o);
+
+	    if (v instanceof Collection)
+	    {
+
+		// Collections are compared item by item, so can't be indexed.
+		return Index.UNINDEXABLE;
+
+	    }
+
+	    return v;
+
+	} catch (Exception e) {
+
+	    // The WHERE clause will report the problem.
+	    return Index.UNINDEXABLE;
+
+	}
+
+    }
+
+    /**
+     * Add the entry to the index.
+     *
+     * @param e The entry.
+     * @param v The value of the accessor for the entry's object.
+     * @return The key the entry was added under, this is passed to:
+     *         {@link #removeEntry(IndexEntry,Object)} (the object may have changed
+     *         since it was added).
+     */
+    abstract Object addEntry (IndexEntry e,
+			      Object     v);
+
+    abstract void removeEntry (IndexEntry e,
+			       Object     k);
+
+    abstract void clearEntries ();
+
+    /**
+     * Create a copy of the index that can be changed without changing this index, the
+     * entries are not indexed again.
+     *
+     * @return The copy.
+     */
+    abstract Index copy ();
+
+    /**
+     * Add to the list the entries that "may" have a value equal to the key, as
+     * determined by: {@link dev.mccue.josql.internal.Utilities#isEquals(Object,Object)}.
+     *
+     * @param key The key.
+     * @param res The list to add the entries to.
+     * @return <code>false</code> if the key type cannot be looked up in the index.
+     */
+    abstract boolean getEntries (Object key,
+				 List   res);
+
+    /**
+     * Return the number of entries that {@link #getEntries(Object,List)} would add.
+     *
+     * @param key The key.
+     * @return The number of entries or -1 if the key type cannot be looked up.
+     */
+    abstract int getEntryCount (Object key);
+
+    /**
+     * Add to the list the entries that "may" have a value within the range, as determined
+     * by: {@link dev.mccue.josql.internal.Utilities#compare(Object,Object)}.  By default range
+     * lookups are not supported.
+     *
+     * @param low The lower bound or <code>null</code> if there is no lower bound.
+     * @param lowInc Whether the lower bound is inclusive.
+     * @param high The upper bound or <code>null</code> if there is no upper bound.
+     * @param highInc Whether the upper bound is inclusive.
+     * @param res The list to add the entries to.
+     * @return <code>false</code> if the range cannot be looked up in the index.
+     */
+    boolean getRangeEntries (Object  low,
+			     boolean lowInc,
+			     Object  high,
+			     boolean highInc,
+			     List    res)
+    {
+
+	return false;
+
+    }
+
+    /**
+     * Return the number of entries that {@link #getRangeEntries(Object,boolean,Object,boolean,List)}
+     * would add.  Counting stops once there are more than <b>max</b> entries.
+     *
+     * @param low The lower bound or <code>null</code> if there is no lower bound.
+     * @param lowInc Whether the lower bound is inclusive.
+     * @param high The upper bound or <code>null</code> if there is no upper bound.
+     * @param highInc Whether the upper bound is inclusive.
+     * @param max The most entries to count.
+     * @return The number of entries (more than <b>max</b> if counting stopped) or -1 if the
+     *         range cannot be looked up.
+     */
+    int getRangeEntryCount (Object  low,
+			    boolean lowInc,
+			    Object  high,
+			    boolean highInc,
+			    int     max)
+    {
+
+	return -1;
+
+    }
+
+}
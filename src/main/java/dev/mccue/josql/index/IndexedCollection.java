@@ -0,0 +1,809 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.index;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * A List of objects of a single class with indexes on one or more accessors.
+ * The indexes are kept up to date as objects are added, removed or replaced, however
+ * if an object is changed in a way that changes the value of an indexed accessor then
+ * {@link #update(Object)} must be called.
+ * <p>
+ * Usage:
+ * <pre>
+ *   IndexedCollection files = new IndexedCollection (java.io.File.class,
+ *                                                    myFiles);
+ *   files.addIndex ("name");
+ *   files.addIndex ("parent");
+ *   files.addSortedIndex ("lastModified");
+ *
+ *   Query q = new Query ();
+ *   q.parse ("SELECT * FROM java.io.File WHERE name = :n AND length > 1000");
+ *   q.setVariable ("n", "build.xml");
+ *
+ *   // Only the files returned by the "name" index are checked.
+ *   List res = q.execute (files).getResults ();
+ * </pre>
+ * <p>
+ * The results are always the same as if every object were checked.  This class is not
+ * synchronized.
+ */
+public class IndexedCollection extends AbstractList implements IndexedList,
+							       RandomAccess
+{
+
+    private static final Comparator positionComparator = new Comparator ()
+    {
+
+	public int compare (Object o1,
+			    Object o2)
+	{
+
+	    return ((IndexEntry) o1).position - ((IndexEntry) o2).position;
+
+	}
+
+    };
+
+    private Class c = null;
+    private List entries = new ArrayList ();
+    private Map indexes = new LinkedHashMap ();
+
+    // Object to IndexEntry, or List of IndexEntry when the object is present more than once.
+    private Map objectEntries = new IdentityHashMap ();
+
+    public IndexedCollection (Class c)
+    {
+
+	this.c = c;
+
+    }
+
+    public IndexedCollection (Class      c,
+			      Collection objs)
+    {
+
+	this (c);
+
+	this.addAll (objs);
+
+    }
+
+    public Class getObjectClass ()
+    {
+
+	return this.c;
+
+    }
+
+    /**
+     * Add a hash index on the accessor, the index will support = and IN lookups.
+     * If an index is already present for the accessor then it is returned.
+     *
+     * @param accessor The accessor, as it would appear in the WHERE clause.
+     * @return The index.
+     * @throws IllegalArgumentException If the accessor is not valid for the object class.
+     */
+    public Index addIndex (String accessor)
+    {
+
+	Index ind = (Index) this.indexes.get (accessor);
+
+	if (ind != null)
+	{
+
+	    return ind;
+
+	}
+
+	ind = new HashIndex (accessor,
+			     this.c);
+
+	this.addIndex (ind);
+
+	return ind;
+
+    }
+
+    /**
+     * Add a sorted index on the accessor, the index will support =, IN and range
+     * (&gt;, &gt;=, &lt;, &lt;= and BETWEEN) lookups.  If a sorted index is already
+     * present for the accessor then it is returned, any other type of index is replaced.
+     * <p>
+     * When indexing a large number of objects it is quicker to add the objects first,
+     * via {@link #addAll(Collection)} or the constructor, and then add the index since
+     * the index can then be built in one go.
+     *
+     * @param accessor The accessor, as it would appear in the WHERE clause.
+     * @return The index.
+     * @throws IllegalArgumentException If the accessor is not valid for the object class.
+     */
+    public Index addSortedIndex (String accessor)
+    {
+
+	Index ind = (Index) this.indexes.get (accessor);
+
+	if (ind instanceof SortedIndex)
+	{
+
+	    return ind;
+
+	}
+
+	ind = new SortedIndex (accessor,
+			       this.c);
+
+	this.addIndex (ind);
+
+	return ind;
+
+    }
+
+    void addIndex (Index ind)
+    {
+
+	ind.addAll (this.entries);
+
+	this.indexes.put (ind.getAccessor (),
+			  ind);
+
+    }
+
+    public void removeIndex (String accessor)
+    {
+
+	this.indexes.remove (accessor);
+
+    }
+
+    public Index getIndex (String accessor)
+    {
+
+	return (Index) this.indexes.get (accessor);
+
+    }
+
+    /**
+     * Get all the indexes.
+     *
+     * @return A List of {@link Index} objects.
+     */
+    public List getIndexes ()
+    {
+
+	return new ArrayList (this.indexes.values ());
+
+    }
+
+    public boolean hasIndex (String accessor)
+    {
+
+	return this.indexes.containsKey (accessor);
+
+    }
+
+    /**
+     * Re-index the object, this should be called when the value of an indexed accessor
+     * has changed for the object.
+     *
+     * @param o The object.
+     */
+    public void update (Object o)
+    {
+
+	Object e = this.objectEntries.get (o);
+
+	if (e == null)
+	{
+
+	    return;
+
+	}
+
+	if (e instanceof IndexEntry)
+	{
+
+	    this.reindex ((IndexEntry) e);
+
+	    return;
+
+	}
+
+	List l = (List) e;
+
+	for (int i = 0; i < l.size (); i++)
+	{
+
+	    this.reindex ((IndexEntry) l.get (i));
+
+	}
+
+    }
+
+    /**
+     * Re-index the object at the specified position.
+     *
+     * @param index The position.
+     */
+    public void update (int index)
+    {
+
+	this.reindex ((IndexEntry) this.entries.get (index));
+
+    }
+
+    /**
+     * Create a copy without the objects in <code>rem</code> and with the objects in <code>add</code>
+     * added to the end, this collection is not changed.  The copy shares the entries, which are not
+     * changed, and copies the indexes rather than building them again, so only the removed and added
+     * objects are indexed.  This is used by {@link ConcurrentIndexedCollection} to change a stripe
+     * that may be in use by a snapshot.
+     * <p>
+     * Since the entries are shared their positions are not renumbered, the positions of the copy
+     * are in the same order as its entries (which is all that lookups need) but they are not
+     * its indexes.  Therefore the copy should not be changed.
+     *
+     * @param rem The objects to remove, as the keys of a Map compared by identity, may be
+     *            <code>null</code>.
+     * @param add The objects to add, may be <code>null</code>.
+     * @return The copy.
+     */
+    IndexedCollection copy (Map  rem,
+			    List add)
+    {
+
+	IndexedCollection ic = new IndexedCollection (this.c);
+
+	Iterator iter = this.indexes.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Index ind = (Index) iter.next ();
+
+	    ic.indexes.put (ind.getAccessor (),
+			    ind.copy ());
+
+	}
+
+	ic.objectEntries = new IdentityHashMap (this.objectEntries);
+
+	iter = ic.objectEntries.entrySet ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Map.Entry en = (Map.Entry) iter.next ();
+
+	    if (en.getValue () instanceof List)
+	    {
+
+		en.setValue (new ArrayList ((List) en.getValue ()));
+
+	    }
+
+	}
+
+	int s = this.entries.size ();
+
+	ic.entries = new ArrayList (s + ((add != null) ? add.size () : 0));
+
+	for (int i = 0; i < s; i++)
+	{
+
+	    IndexEntry e = (IndexEntry) this.entries.get (i);
+
+	    if ((rem == null)
+		||
+		(!rem.containsKey (e.object))
+	       )
+	    {
+
+		ic.entries.add (e);
+
+		continue;
+
+	    }
+
+	    ic.removeObjectEntry (e);
+
+	    iter = ic.indexes.values ().iterator ();
+
+	    while (iter.hasNext ())
+	    {
+
+		((Index) iter.next ()).remove (e);
+
+	    }
+
+	}
+
+	if (add == null)
+	{
+
+	    return ic;
+
+	}
+
+	int p = (s > 0) ? ((IndexEntry) this.entries.get (s - 1)).position + 1 : 0;
+
+	List es = new ArrayList (add.size ());
+
+	for (int i = 0; i < add.size (); i++)
+	{
+
+	    IndexEntry e = new IndexEntry (add.get (i),
+					   p++);
+
+	    es.add (e);
+
+	    ic.addObjectEntry (e);
+
+	}
+
+	ic.entries.addAll (es);
+
+	iter = ic.indexes.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    ((Index) iter.next ()).addAll (es);
+
+	}
+
+	return ic;
+
+    }
+
+    /**
+     * Return whether the object (not an equal object) is in the list.
+     *
+     * @param o The object.
+     * @return <code>true</code> if the object is present.
+     */
+    boolean containsObject (Object o)
+    {
+
+	return this.objectEntries.containsKey (o);
+
+    }
+
+    public int getCandidateCount (String accessor,
+				  List   keys)
+    {
+
+	Index ind = (Index) this.indexes.get (accessor);
+
+	if (ind == null)
+	{
+
+	    return -1;
+
+	}
+
+	int c = 0;
+
+	for (int i = 0; i < keys.size (); i++)
+	{
+
+	    int kc = ind.getEntryCount (keys.get (i));
+
+	    if (kc < 0)
+	    {
+
+		return -1;
+
+	    }
+
+	    c += kc;
+
+	}
+
+	return c;
+
+    }
+
+    public List getCandidates (String accessor,
+			       List   keys)
+    {
+
+	Index ind = (Index) this.indexes.get (accessor);
+
+	if (ind == null)
+	{
+
+	    return null;
+
+	}
+
+	List es = new ArrayList ();
+
+	for (int i = 0; i < keys.size (); i++)
+	{
+
+	    if (!ind.getEntries (keys.get (i),
+				 es))
+	    {
+
+		return null;
+
+	    }
+
+	}
+
+	return IndexedCollection.toObjects (es);
+
+    }
+
+    public int getRangeCandidateCount (String  accessor,
+				       Object  low,
+				       boolean lowInclusive,
+				       Object  high,
+				       boolean highInclusive,
+				       int     max)
+    {
+
+	Index ind = (Index) this.indexes.get (accessor);
+
+	if (ind == null)
+	{
+
+	    return -1;
+
+	}
+
+	return ind.getRangeEntryCount (low,
+				       lowInclusive,
+				       high,
+				       highInclusive,
+				       max);
+
+    }
+
+    public List getRangeCandidates (String  accessor,
+				    Object  low,
+				    boolean lowInclusive,
+				    Object  high,
+				    boolean highInclusive)
+    {
+
+	Index ind = (Index) this.indexes.get (accessor);
+
+	if (ind == null)
+	{
+
+	    return null;
+
+	}
+
+	List es = new ArrayList ();
+
+	if (!ind.getRangeEntries (low,
+				  lowInclusive,
+				  high,
+				  highInclusive,
+				  es))
+	{
+
+	    return null;
+
+	}
+
+	return IndexedCollection.toObjects (es);
+
+    }
+
+    /**
+     * Sort the entries into position order, remove the duplicates and return the objects.
+     *
+     * @param es The entries.
+     * @return The objects.
+     */
+    static List toObjects (List es)
+    {
+
+	Collections.sort (es,
+			  IndexedCollection.positionComparator);
+
+	int s = es.size ();
+
+	List res = new ArrayList (s);
+
+	IndexEntry last = null;
+
+	for (int i = 0; i < s; i++)
+	{
+
+	    IndexEntry e = (IndexEntry) es.get (i);
+
+	    if (e == last)
+	    {
+
+		continue;
+
+	    }
+
+	    res.add (e.object);
+
+	    last = e;
+
+	}
+
+	return res;
+
+    }
+
+    public Object get (int index)
+    {
+
+	return ((IndexEntry) this.entries.get (index)).object;
+
+    }
+
+    public int size ()
+    {
+
+	return this.entries.size ();
+
+    }
+
+    public void add (int    index,
+		     Object o)
+    {
+
+	IndexEntry e = new IndexEntry (o,
+				       index);
+
+	this.entries.add (index,
+			  e);
+
+	this.renumber (index + 1);
+
+	this.addObjectEntry (e);
+
+	Iterator iter = this.indexes.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    ((Index) iter.next ()).add (e);
+
+	}
+
+	this.modCount++;
+
+    }
+
+    /**
+     * Add the objects to the end of the list, the indexes are updated once all the
+     * objects have been added.
+     *
+     * @param objs The objects to add.
+     * @return <code>true</code> if the list changed.
+     */
+    public boolean addAll (Collection objs)
+    {
+
+	int st = this.entries.size ();
+
+	List es = new ArrayList (objs.size ());
+
+	Iterator iter = objs.iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    IndexEntry e = new IndexEntry (iter.next (),
+					   st + es.size ());
+
+	    es.add (e);
+
+	    this.addObjectEntry (e);
+
+	}
+
+	this.entries.addAll (es);
+
+	iter = this.indexes.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    ((Index) iter.next ()).addAll (es);
+
+	}
+
+	this.modCount++;
+
+	return es.size () > 0;
+
+    }
+
+    public Object set (int    index,
+		       Object o)
+    {
+
+	IndexEntry e = (IndexEntry) this.entries.get (index);
+
+	Object old = e.object;
+
+	this.removeObjectEntry (e);
+
+	e.object = o;
+
+	this.addObjectEntry (e);
+
+	this.reindex (e);
+
+	return old;
+
+    }
+
+    public Object remove (int index)
+    {
+
+	IndexEntry e = (IndexEntry) this.entries.remove (index);
+
+	this.renumber (index);
+
+	this.removeObjectEntry (e);
+
+	Iterator iter = this.indexes.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    ((Index) iter.next ()).remove (e);
+
+	}
+
+	this.modCount++;
+
+	return e.object;
+
+    }
+
+    public void clear ()
+    {
+
+	this.entries.clear ();
+	this.objectEntries.clear ();
+
+	Iterator iter = this.indexes.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    ((Index) iter.next ()).clear ();
+
+	}
+
+	this.modCount++;
+
+    }
+
+    private void renumber (int from)
+    {
+
+	int s = this.entries.size ();
+
+	for (int i = from; i < s; i++)
+	{
+
+	    ((IndexEntry) this.entries.get (i)).position = i;
+
+	}
+
+    }
+
+    private void reindex (IndexEntry e)
+    {
+
+	Iterator iter = this.indexes.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Index ind = (Index) iter.next ();
+
+	    ind.remove (e);
+	    ind.add (e);
+
+	}
+
+    }
+
+    private void addObjectEntry (IndexEntry e)
+    {
+
+	Object o = this.objectEntries.get (e.object);
+
+	if (o == null)
+	{
+
+	    this.objectEntries.put (e.object,
+				    e);
+
+	    return;
+
+	}
+
+	List l = null;
+
+	if (o instanceof IndexEntry)
+	{
+
+	    l = new ArrayList ();
+	    l.add (o);
+
+	    this.objectEntries.put (e.object,
+				    l);
+
+	} else {
+
+	    l = (List) o;
+
+	}
+
+	l.add (e);
+
+    }
+
+    private void removeObjectEntry (IndexEntry e)
+    {
+
+	Object o = this.objectEntries.get (e.object);
+
+	if (o == e)
+	{
+
+	    this.objectEntries.remove (e.object);
+
+	    return;
+
+	}
+
+	if (o instanceof List)
+	{
+
+	    List l = (List) o;
+
+	    l.remove (e);
+
+	    if (l.size () == 1)
+	    {
+
+		this.objectEntries.put (e.object,
+					l.get (0));
+
+	    }
+
+	}
+
+    }
+
+}
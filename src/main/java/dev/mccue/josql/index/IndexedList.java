@@ -0,0 +1,110 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.index;
+
+import java.util.List;
+
+/**
+ * A List of objects that has one or more indexes that can be used by a Query to
+ * avoid scanning every object when evaluating the WHERE clause.  When a Query is
+ * {@link dev.mccue.josql.Query#execute(List) executed} against an instance of this
+ * interface the WHERE clause is checked for predicates on indexed accessors and,
+ * where possible, only the objects returned by the index are evaluated.
+ *
+ * @see IndexedCollection
+ */
+public interface IndexedList extends List
+{
+
+    /**
+     * Get the class of the objects in the list, the indexes are only used if this is
+     * the same as the class in the FROM clause of the query.
+     *
+     * @return The class.
+     */
+    public Class getObjectClass ();
+
+    /**
+     * Return whether there is an index for the accessor.
+     *
+     * @param accessor The accessor.
+     * @return <code>true</code> if an index is present.
+     */
+    public boolean hasIndex (String accessor);
+
+    /**
+     * Get the number of objects that would be returned by {@link #getCandidates(String,List)}.
+     * This can be an estimate, it is used to decide which index to use.
+     *
+     * @param accessor The accessor.
+     * @param keys The values to look up.
+     * @return The number of objects or -1 if the index cannot be used.
+     */
+    public int getCandidateCount (String accessor,
+				  List   keys);
+
+    /**
+     * Get the objects whose value for the accessor is equal to any of the keys.  The
+     * objects must be returned in list order (duplicates included), more objects than match
+     * may be returned but any object that matches must be returned.
+     *
+     * @param accessor The accessor.
+     * @param keys The values to look up.
+     * @return The objects or <code>null</code> if the index cannot be used.
+     */
+    public List getCandidates (String accessor,
+			       List   keys);
+
+    /**
+     * Get the number of objects that would be returned by
+     * {@link #getRangeCandidates(String,Object,boolean,Object,boolean)}.  This can be an estimate.
+     * A range is only used if it has fewer objects than the other candidates so counting can
+     * stop once there are more than <b>max</b> objects.
+     *
+     * @param accessor The accessor.
+     * @param low The lower bound or <code>null</code> if there is no lower bound.
+     * @param lowInclusive Whether the lower bound is inclusive.
+     * @param high The upper bound or <code>null</code> if there is no upper bound.
+     * @param highInclusive Whether the upper bound is inclusive.
+     * @param max The most objects to count.
+     * @return The number of objects (any number greater than <b>max</b> if counting stopped)
+     *         or -1 if the index cannot be used.
+     */
+    public int getRangeCandidateCount (String  accessor,
+				       Object  low,
+				       boolean lowInclusive,
+				       Object  high,
+				       boolean highInclusive,
+				       int     max);
+
+    /**
+     * Get the objects whose value for the accessor is within the range.  As for
+     * {@link #getCandidates(String,List)} the objects must be returned in list order and
+     * any object that matches must be returned.
+     *
+     * @param accessor The accessor.
+     * @param low The lower bound or <code>null</code> if there is no lower bound.
+     * @param lowInclusive Whether the lower bound is inclusive.
+     * @param high The upper bound or <code>null</code> if there is no upper bound.
+     * @param highInclusive Whether the upper bound is inclusive.
+     * @return The objects or <code>null</code> if the index cannot be used.
+     */
+    public List getRangeCandidates (String  accessor,
+				    Object  low,
+				    boolean lowInclusive,
+				    Object  high,
+				    boolean highInclusive);
+
+}
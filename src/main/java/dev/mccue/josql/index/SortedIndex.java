@@ -0,0 +1,393 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.index;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.SortedMap;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.List;
+import java.util.Iterator;
+
+/**
+ * A tree based index, supports equality (=), IN and range (&gt;, &gt;=, &lt;, &lt;= and
+ * BETWEEN) lookups.  Adding and removing an object is O(log n).  Counting the objects in a
+ * range is O(log n) plus the number of values in the range, counting can be stopped early
+ * once the count is too large to be of use.
+ * <p>
+ * The values are held in the same way as a {@link HashIndex} (numbers by their double value
+ * and string form, other values by their string form) but in sorted order so that the objects
+ * within a range can be found without checking every value.  Ranges can only be looked up
+ * when the bounds are both Numbers or both Strings.
+ */
+public class SortedIndex extends HashIndex
+{
+
+    SortedIndex (String acc,
+		 Class  c)
+    {
+
+	super (acc,
+	       c);
+
+    }
+
+    SortedIndex (SortedIndex ind)
+    {
+
+	super (ind);
+
+    }
+
+    Index copy ()
+    {
+
+	return new SortedIndex (this);
+
+    }
+
+    Map createMap ()
+    {
+
+	return new TreeMap ();
+
+    }
+
+    Map copyMap (Map m)
+    {
+
+	// Linear, the keys are already in order.
+	return new TreeMap ((SortedMap) m);
+
+    }
+
+    void addAll (List es)
+    {
+
+	if ((this.numbers.size () > 0)
+	    ||
+	    (this.strings.size () > 0)
+	    ||
+	    (this.nulls.size () > 0)
+	    ||
+	    (this.others.size () > 0)
+	   )
+	{
+
+	    super.addAll (es);
+
+	    return;
+
+	}
+
+	// Group the entries by value first so that the trees are only built
+	// once for each distinct value rather than once per entry.
+	this.numbers = new HashMap ();
+	this.numberStrings = new HashMap ();
+	this.strings = new HashMap ();
+
+	try
+	{
+
+	    super.addAll (es);
+
+	} finally {
+
+	    this.numbers = new TreeMap (this.numbers);
+	    this.numberStrings = new TreeMap (this.numberStrings);
+	    this.strings = new TreeMap (this.strings);
+
+	}
+
+    }
+
+    boolean getRangeEntries (Object  low,
+			     boolean lowInc,
+			     Object  high,
+			     boolean highInc,
+			     List    res)
+    {
+
+	return this.range (low,
+			   lowInc,
+			   high,
+			   highInc,
+			   res,
+			   Integer.MAX_VALUE) > -1;
+
+    }
+
+    int getRangeEntryCount (Object  low,
+			    boolean lowInc,
+			    Object  high,
+			    boolean highInc,
+			    int     max)
+    {
+
+	return this.range (low,
+			   lowInc,
+			   high,
+			   highInc,
+			   null,
+			   max);
+
+    }
+
+    /**
+     * Find the entries in the range.
+     *
+     * @param low The lower bound, may be <code>null</code>.
+     * @param lowInc Whether the lower bound is inclusive.
+     * @param high The upper bound, may be <code>null</code>.
+     * @param highInc Whether the upper bound is inclusive.
+     * @param res The list to add the entries to, if <code>null</code> then the entries are
+     *            just counted.
+     * @param max The most entries to count, counting stops once there are more.
+     * @return The number of entries (more than <b>max</b> if counting stopped) or -1 if the
+     *         range cannot be looked up.
+     */
+    private int range (Object  low,
+		       boolean lowInc,
+		       Object  high,
+		       boolean highInc,
+		       List    res,
+		       int     max)
+    {
+
+	Object b = (low != null) ? low : high;
+
+	if (b == null)
+	{
+
+	    return -1;
+
+	}
+
+	int c = 0;
+
+	if (b instanceof Number)
+	{
+
+	    if ((high != null)
+		&&
+		(!(high instanceof Number))
+	       )
+	    {
+
+		return -1;
+
+	    }
+
+	    // The keys are doubles but values are compared exactly (i.e. a long or BigDecimal
+	    // just above the bound has the same key) so the bounds are always included, the
+	    // WHERE clause removes the objects that don't match.
+	    c += this.range (this.numbers,
+			     SortedIndex.toDouble (low),
+			     true,
+			     SortedIndex.toDouble (high),
+			     true,
+			     res,
+			     max);
+
+	    if (c > max)
+	    {
+
+		return c;
+
+	    }
+
+	    // Non-number values are compared to numbers using their string form.
+	    c += this.range (this.strings,
+			     SortedIndex.toStringKey (low),
+			     lowInc,
+			     SortedIndex.toStringKey (high),
+			     highInc,
+			     res,
+			     max - c);
+
+	} else {
+
+	    if ((!(b instanceof String))
+		||
+		((high != null)
+		 &&
+		 (!(high instanceof String))
+		)
+	       )
+	    {
+
+		return -1;
+
+	    }
+
+	    c += this.range (this.strings,
+			     low,
+			     lowInc,
+			     high,
+			     highInc,
+			     res,
+			     max);
+
+	    if (c > max)
+	    {
+
+		return c;
+
+	    }
+
+	    c += this.range (this.numberStrings,
+			     low,
+			     lowInc,
+			     high,
+			     highInc,
+			     res,
+			     max - c);
+
+	}
+
+	if (res != null)
+	{
+
+	    res.addAll (this.others);
+
+	}
+
+	return c + this.others.size ();
+
+    }
+
+    private int range (Map     m,
+		       Object  low,
+		       boolean lowInc,
+		       Object  high,
+		       boolean highInc,
+		       List    res,
+		       int     max)
+    {
+
+	NavigableMap nm = (NavigableMap) m;
+
+	Map sm = null;
+
+	if ((low != null)
+	    &&
+	    (high != null)
+	   )
+	{
+
+	    int c = ((Comparable) low).compareTo (high);
+
+	    if ((c > 0)
+		||
+		((c == 0)
+		 &&
+		 ((!lowInc)
+		  ||
+		  (!highInc)
+		 )
+		)
+	       )
+	    {
+
+		// Empty range.
+		return 0;
+
+	    }
+
+	    sm = nm.subMap (low,
+			    lowInc,
+			    high,
+			    highInc);
+
+	} else {
+
+	    if (low != null)
+	    {
+
+		sm = nm.tailMap (low,
+				 lowInc);
+
+	    } else {
+
+		sm = nm.headMap (high,
+				 highInc);
+
+	    }
+
+	}
+
+	int c = 0;
+
+	Iterator iter = sm.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Set s = (Set) iter.next ();
+
+	    c += s.size ();
+
+	    if (c > max)
+	    {
+
+		// Only counting, the rest of the range isn't needed.
+		return c;
+
+	    }
+
+	    if (res != null)
+	    {
+
+		res.addAll (s);
+
+	    }
+
+	}
+
+	return c;
+
+    }
+
+    private static Double toDouble (Object o)
+    {
+
+	if (o == null)
+	{
+
+	    return null;
+
+	}
+
+	return HashIndex.toKey ((Number) o);
+
+    }
+
+    private static String toStringKey (Object o)
+    {
+
+	if (o == null)
+	{
+
+	    return null;
+
+	}
+
+	return o.toString ();
+
+    }
+
+}
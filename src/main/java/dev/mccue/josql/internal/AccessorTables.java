@@ -0,0 +1,145 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.ServiceConfigurationError;
+
+import dev.mccue.josql.accessors.AccessorTable;
+import dev.mccue.josql.accessors.Property;
+
+/**
+ * Finds the {@link AccessorTable} for a class.  The service providers visible from the class
+ * loader of the class are searched once for each class, for a provider called
+ * <code>&lt;class name&gt;$JoSQLAccessors</code>, so only the table for the class is created.
+ */
+public class AccessorTables
+{
+
+    public static final String SUFFIX = "$JoSQLAccessors";
+
+    // The table (or null) for each class, held against the class so it goes when
+    // the class is unloaded.
+    private static final ClassValue tables = new ClassValue ()
+    {
+
+	protected Object computeValue (Class c)
+	{
+
+	    return AccessorTables.findTable (c);
+
+	}
+
+    };
+
+    /**
+     * Get the table for the class.
+     *
+     * @param c The class.
+     * @return The table or <code>null</code> if there isn't one.
+     */
+    public static AccessorTable getTable (Class c)
+    {
+
+	return (AccessorTable) AccessorTables.tables.get (c);
+
+    }
+
+    /**
+     * Get the property from the table for the class.
+     *
+     * @param c The class.
+     * @param name The accessor name (a single name, not a chain).
+     * @return The property or <code>null</code> if there is no table for the class or the
+     *         property isn't in it.
+     */
+    public static Property getProperty (Class  c,
+					String name)
+    {
+
+	AccessorTable t = AccessorTables.getTable (c);
+
+	if (t == null)
+	{
+
+	    return null;
+
+	}
+
+	return t.getProperty (name);
+
+    }
+
+    private static AccessorTable findTable (Class c)
+    {
+
+	ClassLoader l = c.getClassLoader ();
+
+	// The JDK classes have no tables.
+	if ((l == null)
+	    ||
+	    (c.isPrimitive ())
+	    ||
+	    (c.isArray ())
+	   )
+	{
+
+	    return null;
+
+	}
+
+	String n = c.getName () + AccessorTables.SUFFIX;
+
+	try
+	{
+
+	    Iterator iter = ServiceLoader.load (AccessorTable.class,
+						l).stream ().iterator ();
+
+	    while (iter.hasNext ())
+	    {
+
+		ServiceLoader.Provider p = (ServiceLoader.Provider) iter.next ();
+
+		if (!p.type ().getName ().equals (n))
+		{
+
+		    continue;
+
+		}
+
+		AccessorTable t = (AccessorTable) p.get ();
+
+		if (t.getObjectClass () == c)
+		{
+
+		    return t;
+
+		}
+
+	    }
+
+	} catch (ServiceConfigurationError e) {
+
+	    // A bad provider, use reflection for the class.
+
+	}
+
+	return null;
+
+    }
+
+}
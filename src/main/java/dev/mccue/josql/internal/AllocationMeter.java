@@ -0,0 +1,131 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Gives an estimate of the number of bytes allocated by the current thread.  Where
+ * the JVM supports per-thread allocation counting (via the <code>com.sun.management</code>
+ * extensions) that is used, otherwise the heap usage of the whole JVM is used which is
+ * only a very rough estimate since other threads (and the GC) will skew the value.
+ */
+public class AllocationMeter
+{
+
+    private static boolean threadSupported = false;
+
+    static
+    {
+
+	try
+	{
+
+	    AllocationMeter.threadSupported = ThreadBeanHolder.threadBean != null;
+
+	} catch (LinkageError e) {
+
+	    // The com.sun.management classes aren't available, for instance when the
+	    // jdk.management module is not present, fall back to the heap usage.
+
+	}
+
+    }
+
+    /**
+     * Return whether the allocation counts are for the current thread only.
+     *
+     * @return <code>true</code> if per-thread allocation counting is available.
+     */
+    public static boolean isThreadAllocationSupported ()
+    {
+
+	return AllocationMeter.threadSupported;
+
+    }
+
+    /**
+     * Get the (running) count of bytes allocated.  Only the difference between two
+     * calls is meaningful.
+     *
+     * @return The allocated byte count.
+     */
+    public static long getAllocatedBytes ()
+    {
+
+	if (AllocationMeter.threadSupported)
+	{
+
+	    return ThreadBeanHolder.threadBean.getThreadAllocatedBytes (Thread.currentThread ().getId ());
+
+	}
+
+	Runtime r = Runtime.getRuntime ();
+
+	return r.totalMemory () - r.freeMemory ();
+
+    }
+
+    /**
+     * Holds the thread bean, this is the only class that refers to the <code>com.sun.management</code>
+     * classes so that they are only loaded (and fail to link if they are missing) when it is first used.
+     */
+    private static class ThreadBeanHolder
+    {
+
+	private static final com.sun.management.ThreadMXBean threadBean = ThreadBeanHolder.getThreadBean ();
+
+	private static com.sun.management.ThreadMXBean getThreadBean ()
+	{
+
+	    try
+	    {
+
+		Object b = ManagementFactory.getThreadMXBean ();
+
+		if (b instanceof com.sun.management.ThreadMXBean)
+		{
+
+		    com.sun.management.ThreadMXBean tb = (com.sun.management.ThreadMXBean) b;
+
+		    if (tb.isThreadAllocatedMemorySupported ())
+		    {
+
+			if (!tb.isThreadAllocatedMemoryEnabled ())
+			{
+
+			    tb.setThreadAllocatedMemoryEnabled (true);
+
+			}
+
+			return tb;
+
+		    }
+
+		}
+
+	    } catch (Exception e) {
+
+		// Not allowed or not supported, fall back to the heap usage.
+
+	    }
+
+	    return null;
+
+	}
+
+    }
+
+}
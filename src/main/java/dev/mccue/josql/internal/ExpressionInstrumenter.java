@@ -0,0 +1,309 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.lang.reflect.Method;
+
+import dev.mccue.josql.expressions.*;
+
+import dev.mccue.josql.functions.FunctionRegistry;
+import dev.mccue.josql.functions.RegisteredFunction;
+
+import dev.mccue.josql.profiler.ExpressionProfile;
+import dev.mccue.josql.profiler.ExpressionProfiler;
+
+/**
+ * Instruments the expressions of a query for an {@link ExpressionProfiler}, each node is
+ * wrapped in a {@link ProfiledExpression} and each function is given the profile of its
+ * handler method.
+ */
+public class ExpressionInstrumenter
+{
+
+    private ExpressionProfiler profiler = null;
+
+    public ExpressionInstrumenter (ExpressionProfiler p)
+    {
+
+	this.profiler = p;
+
+    }
+
+    /**
+     * Instrument the expression and its children.  The expression returned should be
+     * used in place of the expression passed in.  Select items and aliased expressions
+     * are never wrapped themselves, only their child expression.  Expressions that have
+     * already been instrumented are returned unchanged.
+     *
+     * @param exp The expression.
+     * @param clause The clause the expression belongs to.
+     * @return The expression to use.
+     */
+    public Expression instrument (Expression exp,
+				  String     clause)
+    {
+
+	if ((exp == null)
+	    ||
+	    (exp instanceof ProfiledExpression)
+	   )
+	{
+
+	    return exp;
+
+	}
+
+	this.instrumentChildren (exp,
+				 clause);
+
+	if ((exp instanceof ConstantExpression)
+	    ||
+	    (exp instanceof BooleanExpression)
+	    ||
+	    (exp instanceof SelectItemExpression)
+	    ||
+	    (exp instanceof AliasedExpression)
+	   )
+	{
+
+	    // Nothing worth timing or can't be replaced.
+	    return exp;
+
+	}
+
+	return new ProfiledExpression (exp,
+				       this.profiler.getProfile (null,
+								 exp.getClass ().getSimpleName (),
+								 exp.toString (),
+								 clause));
+
+    }
+
+    /**
+     * Instrument the children of the expression, but not the expression itself.  This is used
+     * where the expression is held elsewhere, i.e. in a comparator, and cannot be replaced.
+     *
+     * @param exp The expression.
+     * @param clause The clause the expression belongs to.
+     */
+    public void instrumentChildren (Expression exp,
+				    String     clause)
+    {
+
+	if (exp instanceof BetweenExpression)
+	{
+
+	    BetweenExpression be = (BetweenExpression) exp;
+
+	    be.setStart ((ValueExpression) this.instrument (be.getStart (),
+							    clause));
+	    be.setEnd ((ValueExpression) this.instrument (be.getEnd (),
+							  clause));
+
+	}
+
+	if (exp instanceof InExpression)
+	{
+
+	    InExpression ie = (InExpression) exp;
+
+	    ie.setItems (this.instrument (ie.getItems (),
+					  clause));
+
+	}
+
+	if (exp instanceof BinaryExpression)
+	{
+
+	    BinaryExpression be = (BinaryExpression) exp;
+
+	    be.setLeft (this.instrument (be.getLeft (),
+					 clause));
+	    be.setRight (this.instrument (be.getRight (),
+					  clause));
+
+	    return;
+
+	}
+
+	if (exp instanceof ArithmeticExpression)
+	{
+
+	    ArithmeticExpression ae = (ArithmeticExpression) exp;
+
+	    ae.setLeft ((ValueExpression) this.instrument (ae.getLeft (),
+							   clause));
+	    ae.setRight ((ValueExpression) this.instrument (ae.getRight (),
+							    clause));
+
+	    return;
+
+	}
+
+	if (exp instanceof Function)
+	{
+
+	    Function f = (Function) exp;
+
+	    if (f.getParameters () != null)
+	    {
+
+		f.setParameters (this.instrument (f.getParameters (),
+						  clause));
+
+	    }
+
+	    if (f.getMethod () != null)
+	    {
+
+		f.setMethodProfile (this.getMethodProfile (f.getMethod ()));
+
+	    } else {
+
+		f.setMethodProfile (this.getMethodProfile (f.getRegisteredFunction ()));
+
+	    }
+
+	    return;
+
+	}
+
+	if (exp instanceof ExpressionList)
+	{
+
+	    ExpressionList el = (ExpressionList) exp;
+
+	    if (el.getExpressions () != null)
+	    {
+
+		el.setExpressions (this.instrument (el.getExpressions (),
+						    clause));
+
+	    }
+
+	    return;
+
+	}
+
+	if (exp instanceof SharedExpression)
+	{
+
+	    SharedExpression se = (SharedExpression) exp;
+
+	    se.setExpression (this.instrument (se.getExpression (),
+					       clause));
+
+	    return;
+
+	}
+
+	if (exp instanceof InvariantExpression)
+	{
+
+	    InvariantExpression ie = (InvariantExpression) exp;
+
+	    ie.setExpression (this.instrument (ie.getExpression (),
+					       clause));
+
+	    return;
+
+	}
+
+	if (exp instanceof AliasedFunction)
+	{
+
+	    // The function must not be replaced.
+	    this.instrumentChildren (((AliasedFunction) exp).getFunction (),
+				     clause);
+
+	    return;
+
+	}
+
+	if (exp instanceof AliasedExpression)
+	{
+
+	    AliasedExpression ae = (AliasedExpression) exp;
+
+	    ae.setExpression (this.instrument (ae.getExpression (),
+					       clause));
+
+	    return;
+
+	}
+
+	if (exp instanceof SelectItemExpression)
+	{
+
+	    SelectItemExpression sei = (SelectItemExpression) exp;
+
+	    // The query checks for a new object expression directly.
+	    if (sei.getExpression () instanceof NewObjectExpression)
+	    {
+
+		return;
+
+	    }
+
+	    sei.setExpression (this.instrument (sei.getExpression (),
+						clause));
+
+	}
+
+    }
+
+    private List instrument (List   exps,
+			     String clause)
+    {
+
+	List l = new ArrayList (exps.size ());
+
+	for (int i = 0; i < exps.size (); i++)
+	{
+
+	    l.add (this.instrument ((Expression) exps.get (i),
+				    clause));
+
+	}
+
+	return l;
+
+    }
+
+    private ExpressionProfile getMethodProfile (Method m)
+    {
+
+	return this.profiler.getProfile (m,
+					 "method",
+					 m.getDeclaringClass ().getName () + "." + Utilities.formatSignature (m.getName (),
+													 m.getParameterTypes ()),
+					 null);
+
+    }
+
+    private ExpressionProfile getMethodProfile (RegisteredFunction f)
+    {
+
+	return this.profiler.getProfile (f,
+					 "method",
+					 FunctionRegistry.class.getName () + "." + f,
+					 null);
+
+    }
+
+}
@@ -0,0 +1,916 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+import dev.mccue.josql.Query;
+
+import dev.mccue.josql.expressions.*;
+
+/**
+ * Optimizes the expressions of a query once it has been inited, this is done in passes over
+ * the expressions:
+ * <ul>
+ *   <li>{@link #HOIST} - Finds the parts of the expressions that have the same value for every
+ *       object, i.e. those made up of constants, bind variables and functions whose result depends
+ *       only upon their arguments, and wraps them in an {@link InvariantExpression} so that they are
+ *       evaluated once rather than once per object.  Only the largest invariant expressions are
+ *       wrapped, constants and plain bind variables are left alone since they are already cheap
+ *       to evaluate.</li>
+ *   <li>{@link #COUNT} - Counts the uses of the functions and arithmetic expressions whose value
+ *       depends only upon the object, expressions are the same if they have the same structure, i.e.
+ *       the same kinds of expression, operators, functions, accessors and bind variables and constants
+ *       that are equal and of the same class.</li>
+ *   <li>{@link #SHARE} - Wraps each of the expressions used more than once in a {@link SharedExpression},
+ *       identical expressions are given the same slot in the row values so the expression is
+ *       only evaluated once for each object.  An expression used to order the results is evaluated
+ *       many times for each object while sorting so is always shared.</li>
+ *   <li>{@link #TYPE} - Uses the expected types of the operands of each <code>=</code>, <code>!=</code>,
+ *       <code>&lt;</code>, <code>&gt;</code>, <code>&lt;=</code> and <code>&gt;=</code> to bind it to a
+ *       {@link TypedComparison} (see: {@link EqualsExpression#createTypedComparison(Query)}) and
+ *       creates a lookup for each <code>IN</code> list made up of constants.</li>
+ * </ul>
+ * The traversal is the same as that of the {@link ExpressionInstrumenter}.
+ */
+public class ExpressionOptimizer
+{
+
+    public static final int HOIST = 0;
+    public static final int COUNT = 1;
+    public static final int SHARE = 2;
+    public static final int TYPE = 3;
+
+    private Query q = null;
+    private int pass = ExpressionOptimizer.HOIST;
+
+    // The key of an expression (see getKey) to the number of uses (Integer) and then
+    // to its slot (Integer).
+    private Map uses = new HashMap ();
+    private Map slots = new HashMap ();
+    private int slotCount = 0;
+
+    public ExpressionOptimizer (Query q)
+    {
+
+	this.q = q;
+
+    }
+
+    public int getPass ()
+    {
+
+	return this.pass;
+
+    }
+
+    public void setPass (int p)
+    {
+
+	this.pass = p;
+
+    }
+
+    /**
+     * Get the number of slots needed for the row values, i.e. the number of different
+     * shared expressions.
+     *
+     * @return The count.
+     */
+    public int getSlotCount ()
+    {
+
+	return this.slotCount;
+
+    }
+
+    /**
+     * Optimize the expression and its children.  The expression returned should be
+     * used in place of the expression passed in.
+     *
+     * @param exp The expression.
+     * @return The expression to use.
+     */
+    public Expression optimize (Expression exp)
+    {
+
+	if ((exp == null)
+	    ||
+	    (exp instanceof InvariantExpression)
+	    ||
+	    (exp instanceof ProfiledExpression)
+	   )
+	{
+
+	    return exp;
+
+	}
+
+	if (exp instanceof SharedExpression)
+	{
+
+	    if (this.pass == ExpressionOptimizer.COUNT)
+	    {
+
+		// The query has been inited again, keep the slot.
+		SharedExpression se = (SharedExpression) exp;
+
+		this.slots.put (this.getKey (se),
+				Integer.valueOf (se.getSlot ()));
+
+		this.slotCount = Math.max (this.slotCount,
+					   se.getSlot () + 1);
+
+	    }
+
+	    return exp;
+
+	}
+
+	if ((this.pass == ExpressionOptimizer.HOIST)
+	    &&
+	    (this.isInvariant (exp))
+	    &&
+	    (!(exp instanceof ConstantExpression))
+	    &&
+	    (!((exp instanceof BindVariable)
+	       &&
+	       (((BindVariable) exp).getAccessor () == null)
+	      )
+	    )
+	   )
+	{
+
+	    return new InvariantExpression (exp,
+					    exp.hasFixedResult (this.q));
+
+	}
+
+	if ((this.pass == ExpressionOptimizer.COUNT)
+	    &&
+	    (this.isShareable (exp))
+	   )
+	{
+
+	    this.addUse (exp);
+
+	}
+
+	this.optimizeChildren (exp);
+
+	if (this.pass == ExpressionOptimizer.TYPE)
+	{
+
+	    this.bindTypes (exp);
+
+	    return exp;
+
+	}
+
+	if ((this.pass == ExpressionOptimizer.SHARE)
+	    &&
+	    (exp instanceof AndOrExpression)
+	   )
+	{
+
+	    ((AndOrExpression) exp).setAdaptive (this.isReorderable (exp));
+
+	}
+
+	if ((this.pass == ExpressionOptimizer.SHARE)
+	    &&
+	    (this.isShareable (exp))
+	   )
+	{
+
+	    Integer c = (Integer) this.uses.get (this.getKey (exp));
+
+	    if ((c != null)
+		&&
+		(c.intValue () > 1)
+	       )
+	    {
+
+		return new SharedExpression (exp,
+					     this.getSlot (exp));
+
+	    }
+
+	}
+
+	return exp;
+
+    }
+
+    /**
+     * Optimize an expression used to order the results, the expression returned should be
+     * used in place of the expression passed in.
+     *
+     * @param exp The expression.
+     * @return The expression to use.
+     */
+    public Expression optimizeSortKey (Expression exp)
+    {
+
+	if ((this.pass == ExpressionOptimizer.COUNT)
+	    &&
+	    (this.isShareable (exp))
+	   )
+	{
+
+	    // Evaluated many times while sorting.
+	    this.addUse (exp);
+
+	}
+
+	return this.optimize (exp);
+
+    }
+
+    /**
+     * Optimize the children of the expression, but not the expression itself.  This is used
+     * where the expression is held elsewhere, i.e. in a comparator, and cannot be replaced.
+     *
+     * @param exp The expression.
+     */
+    public void optimizeChildren (Expression exp)
+    {
+
+	if (exp instanceof BetweenExpression)
+	{
+
+	    BetweenExpression be = (BetweenExpression) exp;
+
+	    be.setStart ((ValueExpression) this.optimize (be.getStart ()));
+	    be.setEnd ((ValueExpression) this.optimize (be.getEnd ()));
+
+	}
+
+	if (exp instanceof InExpression)
+	{
+
+	    InExpression ie = (InExpression) exp;
+
+	    ie.setItems (this.optimize (ie.getItems ()));
+
+	}
+
+	if (exp instanceof BinaryExpression)
+	{
+
+	    BinaryExpression be = (BinaryExpression) exp;
+
+	    be.setLeft (this.optimize (be.getLeft ()));
+	    be.setRight (this.optimize (be.getRight ()));
+
+	    return;
+
+	}
+
+	if (exp instanceof ArithmeticExpression)
+	{
+
+	    ArithmeticExpression ae = (ArithmeticExpression) exp;
+
+	    ae.setLeft ((ValueExpression) this.optimize (ae.getLeft ()));
+	    ae.setRight ((ValueExpression) this.optimize (ae.getRight ()));
+
+	    return;
+
+	}
+
+	if (exp instanceof Function)
+	{
+
+	    Function f = (Function) exp;
+
+	    if (f.getParameters () != null)
+	    {
+
+		f.setParameters (this.optimize (f.getParameters ()));
+
+	    }
+
+	    return;
+
+	}
+
+	if (exp instanceof ExpressionList)
+	{
+
+	    ExpressionList el = (ExpressionList) exp;
+
+	    if (el.getExpressions () != null)
+	    {
+
+		el.setExpressions (this.optimize (el.getExpressions ()));
+
+	    }
+
+	    return;
+
+	}
+
+	if (exp instanceof AliasedFunction)
+	{
+
+	    // The function must not be replaced.
+	    this.optimizeChildren (((AliasedFunction) exp).getFunction ());
+
+	    return;
+
+	}
+
+	if (exp instanceof AliasedExpression)
+	{
+
+	    AliasedExpression ae = (AliasedExpression) exp;
+
+	    ae.setExpression (this.optimize (ae.getExpression ()));
+
+	    return;
+
+	}
+
+	if (exp instanceof SelectItemExpression)
+	{
+
+	    SelectItemExpression sei = (SelectItemExpression) exp;
+
+	    // The query checks for a new object expression directly.
+	    if (sei.getExpression () instanceof NewObjectExpression)
+	    {
+
+		return;
+
+	    }
+
+	    sei.setExpression (this.optimize (sei.getExpression ()));
+
+	}
+
+    }
+
+    private void bindTypes (Expression exp)
+    {
+
+	if (exp instanceof EqualsExpression)
+	{
+
+	    ((EqualsExpression) exp).createTypedComparison (this.q);
+
+	}
+
+	if (exp instanceof GTLTExpression)
+	{
+
+	    ((GTLTExpression) exp).createTypedComparison (this.q);
+
+	}
+
+	if (exp instanceof InExpression)
+	{
+
+	    ((InExpression) exp).createLookup ();
+
+	}
+
+    }
+
+    /**
+     * Determine whether the expression has the same value for every object.
+     *
+     * @param exp The expression.
+     * @return <code>true</code> if the value of the expression doesn't depend upon the object.
+     */
+    public boolean isInvariant (Expression exp)
+    {
+
+	if (exp instanceof ConstantExpression)
+	{
+
+	    return true;
+
+	}
+
+	if (exp instanceof BindVariable)
+	{
+
+	    String n = ((BindVariable) exp).getName ();
+
+	    if (n.startsWith (":"))
+	    {
+
+		n = n.substring (1);
+
+	    }
+
+	    // Special variables, such as the current object, can change for each object.
+	    return !n.startsWith (BindVariable.SPECIAL_NAME_PREFIX);
+
+	}
+
+	if (exp instanceof ArithmeticExpression)
+	{
+
+	    ArithmeticExpression ae = (ArithmeticExpression) exp;
+
+	    return (this.isInvariant (ae.getLeft ()))
+		   &&
+		   (this.isInvariant (ae.getRight ()));
+
+	}
+
+	if (exp instanceof Function)
+	{
+
+	    Function f = (Function) exp;
+
+	    // A function without arguments may depend upon anything.
+	    if ((!f.isDeterministic ())
+		||
+		(f.getParameters () == null)
+	       )
+	    {
+
+		return false;
+
+	    }
+
+	    return this.isInvariant (f.getParameters ());
+
+	}
+
+	if (exp instanceof ExpressionList)
+	{
+
+	    List l = ((ExpressionList) exp).getExpressions ();
+
+	    return (l != null) && (this.isInvariant (l));
+
+	}
+
+	return false;
+
+    }
+
+    /**
+     * Determine whether the condition can be evaluated before (or instead of) the conditions
+     * around it, i.e. it has no side-effects and its value only depends upon the object.
+     *
+     * @param exp The condition.
+     * @return <code>true</code> if the condition can be reordered.
+     */
+    private boolean isReorderable (Expression exp)
+    {
+
+	if (exp instanceof BooleanExpression)
+	{
+
+	    return true;
+
+	}
+
+	if (exp instanceof AndOrExpression)
+	{
+
+	    AndOrExpression ao = (AndOrExpression) exp;
+
+	    return (this.isReorderable (ao.getLeft ()))
+		   &&
+		   (this.isReorderable (ao.getRight ()));
+
+	}
+
+	if (exp instanceof BinaryExpression)
+	{
+
+	    BinaryExpression be = (BinaryExpression) exp;
+
+	    if (((be.getLeft () != null)
+		 &&
+		 (!this.isObjectValue (be.getLeft ()))
+		)
+		||
+		((be.getRight () != null)
+		 &&
+		 (!this.isObjectValue (be.getRight ()))
+		)
+	       )
+	    {
+
+		return false;
+
+	    }
+
+	    if (exp instanceof BetweenExpression)
+	    {
+
+		BetweenExpression bt = (BetweenExpression) exp;
+
+		return (this.isObjectValue (bt.getStart ()))
+		       &&
+		       (this.isObjectValue (bt.getEnd ()));
+
+	    }
+
+	    if (exp instanceof InExpression)
+	    {
+
+		List l = ((InExpression) exp).getItems ();
+
+		return (l != null) && (this.isObjectValue (l));
+
+	    }
+
+	    return (exp instanceof EqualsExpression)
+		   ||
+		   (exp instanceof GTLTExpression)
+		   ||
+		   (exp instanceof LikeExpression)
+		   ||
+		   (exp instanceof IsNullExpression);
+
+	}
+
+	return this.isObjectValue (exp);
+
+    }
+
+    /**
+     * Determine whether the expression is worth sharing, i.e. it is a function (or arithmetic
+     * that calls a function) whose value only depends upon the object.
+     *
+     * @param exp The expression.
+     * @return <code>true</code> if the expression can be shared.
+     */
+    private boolean isShareable (Expression exp)
+    {
+
+	if (exp instanceof Function)
+	{
+
+	    return this.isObjectValue (exp);
+
+	}
+
+	// Arithmetic on accessors is quicker to evaluate again than to look up
+	// the value for the object.
+	if (exp instanceof ArithmeticExpression)
+	{
+
+	    return (this.isObjectValue (exp))
+		   &&
+		   (this.callsFunction (exp));
+
+	}
+
+	return false;
+
+    }
+
+    private boolean callsFunction (Expression exp)
+    {
+
+	if ((exp instanceof Function)
+	    ||
+	    (exp instanceof SharedExpression)
+	   )
+	{
+
+	    return true;
+
+	}
+
+	if (exp instanceof ArithmeticExpression)
+	{
+
+	    ArithmeticExpression ae = (ArithmeticExpression) exp;
+
+	    return (this.callsFunction (ae.getLeft ()))
+		   ||
+		   (this.callsFunction (ae.getRight ()));
+
+	}
+
+	return false;
+
+    }
+
+    /**
+     * Determine whether the value of the expression depends only upon the object, i.e. it is
+     * made up of accessors, constants, bind variables and functions whose result depends only
+     * upon their arguments.
+     *
+     * @param exp The expression.
+     * @return <code>true</code> if the value only depends upon the object.
+     */
+    public boolean isObjectValue (Expression exp)
+    {
+
+	if ((exp instanceof Accessor)
+	    ||
+	    (exp instanceof InvariantExpression)
+	    ||
+	    (exp instanceof SharedExpression)
+	   )
+	{
+
+	    return true;
+
+	}
+
+	if (exp instanceof ArithmeticExpression)
+	{
+
+	    ArithmeticExpression ae = (ArithmeticExpression) exp;
+
+	    return (this.isObjectValue (ae.getLeft ()))
+		   &&
+		   (this.isObjectValue (ae.getRight ()));
+
+	}
+
+	if (exp instanceof Function)
+	{
+
+	    Function f = (Function) exp;
+
+	    if ((!f.isDeterministic ())
+		||
+		(f.getParameters () == null)
+	       )
+	    {
+
+		return false;
+
+	    }
+
+	    return this.isObjectValue (f.getParameters ());
+
+	}
+
+	if (exp instanceof ExpressionList)
+	{
+
+	    List l = ((ExpressionList) exp).getExpressions ();
+
+	    return (l != null) && (this.isObjectValue (l));
+
+	}
+
+	// Constants and bind variables.
+	return this.isInvariant (exp);
+
+    }
+
+    private boolean isObjectValue (List exps)
+    {
+
+	for (int i = 0; i < exps.size (); i++)
+	{
+
+	    if (!this.isObjectValue ((Expression) exps.get (i)))
+	    {
+
+		return false;
+
+	    }
+
+	}
+
+	return true;
+
+    }
+
+    private void addUse (Expression exp)
+    {
+
+	Object k = this.getKey (exp);
+
+	Integer c = (Integer) this.uses.get (k);
+
+	this.uses.put (k,
+		       Integer.valueOf ((c == null) ? 1 : c.intValue () + 1));
+
+    }
+
+    private int getSlot (Expression exp)
+    {
+
+	Object k = this.getKey (exp);
+
+	Integer s = (Integer) this.slots.get (k);
+
+	if (s == null)
+	{
+
+	    s = Integer.valueOf (this.slotCount++);
+
+	    this.slots.put (k,
+			    s);
+
+	}
+
+	return s.intValue ();
+
+    }
+
+    /**
+     * Get the key used to find the uses and slot of an expression.  The key is made up of the
+     * class of each node, its operator, name or accessor and its children, for a constant it is
+     * the class of the value and the value so that (say) the BigDecimal <code>1.0</code> and the
+     * Double <code>1.0</code> are different, the string form can't be used since they print the same.
+     * Other expressions are only the same as themselves.
+     *
+     * @param exp The expression.
+     * @return The key.
+     */
+    private Object getKey (Expression exp)
+    {
+
+	if (exp instanceof SharedExpression)
+	{
+
+	    return this.getKey (((SharedExpression) exp).getExpression ());
+
+	}
+
+	if (exp instanceof InvariantExpression)
+	{
+
+	    return this.getKey (((InvariantExpression) exp).getExpression ());
+
+	}
+
+	List k = new ArrayList ();
+
+	k.add (exp.getClass ());
+
+	if (exp instanceof Accessor)
+	{
+
+	    k.add (((Accessor) exp).getAccessor ());
+
+	    return k;
+
+	}
+
+	if (exp instanceof BindVariable)
+	{
+
+	    BindVariable bv = (BindVariable) exp;
+
+	    k.add (bv.getName ());
+	    k.add (bv.getAccessor ());
+
+	    return k;
+
+	}
+
+	if ((exp instanceof ConstantExpression)
+	    ||
+	    (exp instanceof BooleanExpression)
+	   )
+	{
+
+	    Object v = null;
+
+	    try
+	    {
+
+		v = exp.getValue (null,
+				  this.q);
+
+	    } catch (Exception e) {
+
+		return exp;
+
+	    }
+
+	    k.add ((v == null) ? null : v.getClass ());
+	    k.add (v);
+
+	    return k;
+
+	}
+
+	if (exp instanceof ArithmeticExpression)
+	{
+
+	    ArithmeticExpression ae = (ArithmeticExpression) exp;
+
+	    k.add (Integer.valueOf (ae.getType ()));
+	    k.add (this.getKey (ae.getLeft ()));
+	    k.add (this.getKey (ae.getRight ()));
+
+	    return k;
+
+	}
+
+	if (exp instanceof Function)
+	{
+
+	    Function f = (Function) exp;
+
+	    k.add (f.getName ());
+	    k.add (f.getAccessor ());
+
+	    if (f.getParameters () != null)
+	    {
+
+		k.add (this.getKeys (f.getParameters ()));
+
+	    }
+
+	    return k;
+
+	}
+
+	if (exp instanceof ExpressionList)
+	{
+
+	    List l = ((ExpressionList) exp).getExpressions ();
+
+	    if (l != null)
+	    {
+
+		k.add (this.getKeys (l));
+
+	    }
+
+	    return k;
+
+	}
+
+	return exp;
+
+    }
+
+    private List getKeys (List exps)
+    {
+
+	List k = new ArrayList (exps.size ());
+
+	for (int i = 0; i < exps.size (); i++)
+	{
+
+	    k.add (this.getKey ((Expression) exps.get (i)));
+
+	}
+
+	return k;
+
+    }
+
+    private boolean isInvariant (List exps)
+    {
+
+	for (int i = 0; i < exps.size (); i++)
+	{
+
+	    if (!this.isInvariant ((Expression) exps.get (i)))
+	    {
+
+		return false;
+
+	    }
+
+	}
+
+	return true;
+
+    }
+
+    private List optimize (List exps)
+    {
+
+	List l = new ArrayList (exps.size ());
+
+	for (int i = 0; i < exps.size (); i++)
+	{
+
+	    l.add (this.optimize ((Expression) exps.get (i)));
+
+	}
+
+	return l;
+
+    }
+
+}
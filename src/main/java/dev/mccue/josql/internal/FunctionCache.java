@@ -0,0 +1,97 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+/**
+ * The results of a {@link dev.mccue.josql.functions.Pure pure} function for one execution of a
+ * query, keyed by the argument values (a List).  The least recently used results are discarded
+ * once the cache is full.
+ */
+public class FunctionCache extends LinkedHashMap
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private int max = 0;
+    private int hits = 0;
+    private int misses = 0;
+
+    public FunctionCache (int max)
+    {
+
+	super (16,
+	       0.75f,
+	       true);
+
+	this.max = max;
+
+    }
+
+    /**
+     * Get the result for the arguments, the lookup is counted as a hit if there is a result
+     * (which may be <code>null</code>) and as a miss otherwise.
+     *
+     * @param k The argument values.
+     * @return The result or <code>null</code> if there isn't one, use {@link #containsKey(Object)}
+     *         to tell the difference.
+     */
+    public Object get (Object k)
+    {
+
+	Object v = super.get (k);
+
+	if ((v == null)
+	    &&
+	    (!this.containsKey (k))
+	   )
+	{
+
+	    this.misses++;
+
+	    return null;
+
+	}
+
+	this.hits++;
+
+	return v;
+
+    }
+
+    public int getHits ()
+    {
+
+	return this.hits;
+
+    }
+
+    public int getMisses ()
+    {
+
+	return this.misses;
+
+    }
+
+    protected boolean removeEldestEntry (Map.Entry en)
+    {
+
+	return this.size () > this.max;
+
+    }
+
+}
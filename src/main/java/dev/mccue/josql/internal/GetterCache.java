@@ -0,0 +1,144 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.util.Map;
+import java.util.HashMap;
+
+import dev.mccue.josql.gentlyweb.utils.Getter;
+
+/**
+ * The getters for an accessor applied to values of different classes, for an expression (such
+ * as a bind variable or a function with a trailing accessor) whose value can be of any class.
+ * <p>
+ * The getters for the first few classes seen are held in an array that is searched by class
+ * identity, most expressions only ever see one or two classes.  Once more classes than that
+ * have been seen the getters are moved to a map from the class, so the cost of a lookup doesn't
+ * grow with the number of classes.
+ */
+public class GetterCache
+{
+
+    private static final int SIZE = 4;
+
+    private String acc = null;
+
+    private Class[] classes = new Class[GetterCache.SIZE];
+    private Getter[] getters = new Getter[GetterCache.SIZE];
+    private int count = 0;
+
+    private Map map = null;
+
+    public GetterCache (String acc)
+    {
+
+	this.acc = acc;
+
+    }
+
+    public String getAccessor ()
+    {
+
+	return this.acc;
+
+    }
+
+    /**
+     * Get the getter for the class, it is created if this is the first time the class has been seen.
+     *
+     * @param c The class.
+     * @return The getter.
+     * @throws IllegalArgumentException If the getter cannot be created, see:
+     *                                  {@link Getter#Getter(String,Class)}.
+     */
+    public Getter getGetter (Class c)
+    {
+
+	for (int i = 0; i < this.count; i++)
+	{
+
+	    if (this.classes[i] == c)
+	    {
+
+		return this.getters[i];
+
+	    }
+
+	}
+
+	Getter g = null;
+
+	if (this.map != null)
+	{
+
+	    g = (Getter) this.map.get (c);
+
+	    if (g != null)
+	    {
+
+		return g;
+
+	    }
+
+	}
+
+	g = new Getter (this.acc,
+			c);
+
+	if (this.map != null)
+	{
+
+	    this.map.put (c,
+			  g);
+
+	    return g;
+
+	}
+
+	if (this.count < GetterCache.SIZE)
+	{
+
+	    this.classes[this.count] = c;
+	    this.getters[this.count] = g;
+	    this.count++;
+
+	    return g;
+
+	}
+
+	// Too many classes, move to the map.
+	this.map = new HashMap ();
+
+	for (int i = 0; i < this.count; i++)
+	{
+
+	    this.map.put (this.classes[i],
+			  this.getters[i]);
+
+	    this.classes[i] = null;
+	    this.getters[i] = null;
+
+	}
+
+	this.count = 0;
+
+	this.map.put (c,
+		      g);
+
+	return g;
+
+    }
+
+}
@@ -53,46 +53,64 @@ public class Grouper
 
     }
 
-    public Map group (List   objs)
-	              throws QueryExecutionException
+    /**
+     * Get the group by values for an object, this is the key of the group the
+     * object is in.
+     *
+     * @param o The object.
+     * @return The values.
+     * @throws QueryExecutionException If a value cannot be gained.
+     */
+    public List getValues (Object o)
+	                   throws QueryExecutionException
     {
 
-	Map retVals = new HashMap ();
+	this.q.setCurrentObject (o);
 
-	int s = objs.size (); 
+	List l = new ArrayList (this.cs);
 
-	List l = null;
-
-	for (int j = 0; j < s; j++)
+	// Get the values...
+	for (int i = 0; i < this.cs; i++)
 	{
 
-	    Object o = objs.get (j);
+	    Expression exp = (Expression) this.cols.get (i);
+
+	    try
+	    {
 
-	    this.q.setCurrentObject (o);
+		l.add (exp.getValue (o,
+				     this.q));
 
-	    l = new ArrayList ();
+	    } catch (Exception e) {
 
-	    // Get the values...
-	    for (int i = 0; i < this.cs; i++)
-	    {
+		throw new QueryExecutionException ("Unable to get group by value for expression: " +
+						   exp,
+						   e);
+
+	    }
+
+	}
+
+	return l;
+
+    }
 
-		Expression exp = (Expression) this.cols.get (i);
+    public Map group (List   objs)
+	              throws QueryExecutionException
+    {
 
-		try
-		{
+	Map retVals = new HashMap ();
 
-		    l.add (exp.getValue (o,
-					 this.q));
+	int s = objs.size (); 
 
-		} catch (Exception e) {
+	List l = null;
 
-		    throw new QueryExecutionException ("Unable to get group by value for expression: " +
-						       exp,
-						       e);
+	for (int j = 0; j < s; j++)
+	{
 
-		}
+	    Object o = objs.get (j);
 
-	    }
+	    l = this.getValues (o);
 
 	    List v = (List) retVals.get (l);
 
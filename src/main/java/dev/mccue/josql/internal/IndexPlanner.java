@@ -0,0 +1,746 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+
+import dev.mccue.josql.Query;
+
+import dev.mccue.josql.expressions.Expression;
+import dev.mccue.josql.expressions.AndOrExpression;
+import dev.mccue.josql.expressions.EqualsExpression;
+import dev.mccue.josql.expressions.InExpression;
+import dev.mccue.josql.expressions.GTLTExpression;
+import dev.mccue.josql.expressions.BetweenExpression;
+import dev.mccue.josql.expressions.Accessor;
+import dev.mccue.josql.expressions.ConstantExpression;
+import dev.mccue.josql.expressions.InvariantExpression;
+import dev.mccue.josql.expressions.BindVariable;
+import dev.mccue.josql.expressions.ProfiledExpression;
+
+import dev.mccue.josql.index.IndexedList;
+
+/**
+ * Works out whether an index of an {@link IndexedList} can be used to limit the objects
+ * that the WHERE clause is evaluated against.
+ * <p>
+ * The WHERE clause is split into its top-level AND terms, any term of the form:
+ * <pre>
+ *   accessor = value
+ *   accessor IN (value, value, ...)
+ *   accessor &gt; value   (or &gt;=, &lt;, &lt;=)
+ *   accessor BETWEEN value AND value
+ * </pre>
+ * where the accessor is indexed and the value(s) are constants or bind variables is a
+ * candidate, the range terms for the same accessor are combined and the candidate that
+ * returns the fewest objects is used.  A range is only counted up to the size of the best
+ * candidate found before it.  Since an object must satisfy
+ * every AND term to match, only the objects returned by the index need to be evaluated.
+ */
+public class IndexPlanner
+{
+
+    private IndexedList objs = null;
+    private Query q = null;
+    private String acc = null;
+
+    public IndexPlanner (IndexedList objs,
+			 Query       q)
+    {
+
+	this.objs = objs;
+	this.q = q;
+
+    }
+
+    /**
+     * Get the accessor of the index used by the last call to {@link #getCandidates(Expression)}.
+     *
+     * @return The accessor or <code>null</code> if no index was used.
+     */
+    public String getIndexAccessor ()
+    {
+
+	return this.acc;
+
+    }
+
+    /**
+     * Get the objects that the WHERE clause needs to be evaluated against, in list order.
+     *
+     * @param where The WHERE clause.
+     * @return The objects or <code>null</code> if no index can be used and all the objects
+     *         must be evaluated.
+     */
+    public List getCandidates (Expression where)
+    {
+
+	this.acc = null;
+
+	if (where == null)
+	{
+
+	    return null;
+
+	}
+
+	// A user defined comparator may consider values equal that the
+	// index would not.
+	if (Utilities.getObjectComparator () != null)
+	{
+
+	    return null;
+
+	}
+
+	if (!this.objs.getObjectClass ().equals (this.q.getFromObjectClass ()))
+	{
+
+	    return null;
+
+	}
+
+	List terms = new ArrayList ();
+
+	// Accessor to Range, the range terms for the same accessor are combined.
+	Map ranges = new LinkedHashMap ();
+
+	this.getTerms (where,
+		       terms);
+
+	String bestAcc = null;
+	List bestKeys = null;
+	int best = this.objs.size ();
+
+	for (int i = 0; i < terms.size (); i++)
+	{
+
+	    Expression t = (Expression) terms.get (i);
+
+	    Accessor a = null;
+	    List keys = null;
+
+	    if (t instanceof EqualsExpression)
+	    {
+
+		EqualsExpression e = (EqualsExpression) t;
+
+		if ((e.isNot ())
+		    ||
+		    (e.isIgnoreCase ())
+		   )
+		{
+
+		    continue;
+
+		}
+
+		Expression l = IndexPlanner.unwrap (e.getLeft ());
+		Expression r = IndexPlanner.unwrap (e.getRight ());
+
+		if (!(l instanceof Accessor))
+		{
+
+		    // Try it the other way around.
+		    Expression x = l;
+		    l = r;
+		    r = x;
+
+		}
+
+		if (!(l instanceof Accessor))
+		{
+
+		    continue;
+
+		}
+
+		a = (Accessor) l;
+
+		if (!this.objs.hasIndex (a.getAccessor ()))
+		{
+
+		    continue;
+
+		}
+
+		keys = new ArrayList (1);
+
+		if (!this.addKey (r,
+				  keys))
+		{
+
+		    continue;
+
+		}
+
+	    }
+
+	    if (t instanceof InExpression)
+	    {
+
+		InExpression in = (InExpression) t;
+
+		if ((in.isNot ())
+		    ||
+		    (in.isDoLike ())
+		    ||
+		    (in.isAll ())
+		    ||
+		    (in.isIgnoreCase ())
+		   )
+		{
+
+		    continue;
+
+		}
+
+		Expression l = IndexPlanner.unwrap (in.getLeft ());
+
+		if (!(l instanceof Accessor))
+		{
+
+		    continue;
+
+		}
+
+		a = (Accessor) l;
+
+		if (!this.objs.hasIndex (a.getAccessor ()))
+		{
+
+		    continue;
+
+		}
+
+		List items = in.getItems ();
+
+		keys = new ArrayList (items.size ());
+
+		for (int j = 0; j < items.size (); j++)
+		{
+
+		    if (!this.addKey (IndexPlanner.unwrap ((Expression) items.get (j)),
+				      keys))
+		    {
+
+			keys = null;
+
+			break;
+
+		    }
+
+		}
+
+	    }
+
+	    if ((t instanceof GTLTExpression)
+		||
+		(t instanceof BetweenExpression)
+	       )
+	    {
+
+		this.addRange (t,
+			       ranges);
+
+		continue;
+
+	    }
+
+	    if (keys == null)
+	    {
+
+		continue;
+
+	    }
+
+	    int c = this.objs.getCandidateCount (a.getAccessor (),
+						 keys);
+
+	    if ((c > -1)
+		&&
+		(c < best)
+	       )
+	    {
+
+		best = c;
+		bestAcc = a.getAccessor ();
+		bestKeys = keys;
+
+	    }
+
+	}
+
+	Range bestRange = null;
+
+	Iterator iter = ranges.values ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Range r = (Range) iter.next ();
+
+	    // A range is only of use if it is smaller than the best so far, so a wide
+	    // range is only counted that far and only the best range is looked up.
+	    int c = this.objs.getRangeCandidateCount (r.acc,
+						      r.low,
+						      r.lowInc,
+						      r.high,
+						      r.highInc,
+						      best - 1);
+
+	    if ((c > -1)
+		&&
+		(c < best)
+	       )
+	    {
+
+		best = c;
+		bestAcc = r.acc;
+		bestRange = r;
+
+	    }
+
+	}
+
+	if (bestAcc == null)
+	{
+
+	    return null;
+
+	}
+
+	List res = null;
+
+	if (bestRange != null)
+	{
+
+	    res = this.objs.getRangeCandidates (bestAcc,
+						bestRange.low,
+						bestRange.lowInc,
+						bestRange.high,
+						bestRange.highInc);
+
+	} else {
+
+	    res = this.objs.getCandidates (bestAcc,
+					   bestKeys);
+
+	}
+
+	if (res != null)
+	{
+
+	    this.acc = bestAcc;
+
+	}
+
+	return res;
+
+    }
+
+    private void addRange (Expression exp,
+			   Map        ranges)
+    {
+
+	Expression l = null;
+	Object low = null;
+	Object high = null;
+	boolean lowInc = true;
+	boolean highInc = true;
+
+	List v = new ArrayList (2);
+
+	if (exp instanceof BetweenExpression)
+	{
+
+	    BetweenExpression b = (BetweenExpression) exp;
+
+	    if (b.isNot ())
+	    {
+
+		return;
+
+	    }
+
+	    l = IndexPlanner.unwrap (b.getLeft ());
+
+	    if ((!this.addKey (IndexPlanner.unwrap (b.getStart ()),
+			       v))
+		||
+		(!this.addKey (IndexPlanner.unwrap (b.getEnd ()),
+			       v))
+	       )
+	    {
+
+		return;
+
+	    }
+
+	    low = v.get (0);
+	    high = v.get (1);
+
+	} else {
+
+	    GTLTExpression g = (GTLTExpression) exp;
+
+	    if (g.isIgnoreCase ())
+	    {
+
+		return;
+
+	    }
+
+	    int type = g.getType ();
+
+	    l = IndexPlanner.unwrap (g.getLeft ());
+	    Expression r = IndexPlanner.unwrap (g.getRight ());
+
+	    if (!(l instanceof Accessor))
+	    {
+
+		// value > accessor is the same as accessor < value.
+		Expression x = l;
+		l = r;
+		r = x;
+
+		switch (type)
+		{
+
+		    case Utilities.GT : type = Utilities.LT; break;
+		    case Utilities.GTE : type = Utilities.LTE; break;
+		    case Utilities.LT : type = Utilities.GT; break;
+		    case Utilities.LTE : type = Utilities.GTE; break;
+
+		}
+
+	    }
+
+	    if (!this.addKey (r,
+			      v))
+	    {
+
+		return;
+
+	    }
+
+	    if ((type == Utilities.GT)
+		||
+		(type == Utilities.GTE)
+	       )
+	    {
+
+		low = v.get (0);
+		lowInc = (type == Utilities.GTE);
+
+	    } else {
+
+		high = v.get (0);
+		highInc = (type == Utilities.LTE);
+
+	    }
+
+	}
+
+	if (!(l instanceof Accessor))
+	{
+
+	    return;
+
+	}
+
+	String acc = ((Accessor) l).getAccessor ();
+
+	if (!this.objs.hasIndex (acc))
+	{
+
+	    return;
+
+	}
+
+	// A null bound can never match.
+	if ((exp instanceof BetweenExpression)
+	    &&
+	    ((low == null)
+	     ||
+	     (high == null)
+	    )
+	   )
+	{
+
+	    return;
+
+	}
+
+	if ((low == null)
+	    &&
+	    (high == null)
+	   )
+	{
+
+	    return;
+
+	}
+
+	Range rg = (Range) ranges.get (acc);
+
+	if (rg == null)
+	{
+
+	    rg = new Range ();
+	    rg.acc = acc;
+
+	    ranges.put (acc,
+			rg);
+
+	}
+
+	if (low != null)
+	{
+
+	    if ((rg.low == null)
+		||
+		((IndexPlanner.isSameType (low,
+					   rg.low))
+		 &&
+		 (Utilities.compare (low,
+				     rg.low) > 0)
+		)
+	       )
+	    {
+
+		rg.low = low;
+		rg.lowInc = lowInc;
+
+	    } else {
+
+		if ((IndexPlanner.isSameType (low,
+					      rg.low))
+		    &&
+		    (Utilities.compare (low,
+					rg.low) == 0)
+		   )
+		{
+
+		    rg.lowInc = rg.lowInc && lowInc;
+
+		}
+
+	    }
+
+	}
+
+	if (high != null)
+	{
+
+	    if ((rg.high == null)
+		||
+		((IndexPlanner.isSameType (high,
+					   rg.high))
+		 &&
+		 (Utilities.compare (high,
+				     rg.high) < 0)
+		)
+	       )
+	    {
+
+		rg.high = high;
+		rg.highInc = highInc;
+
+	    } else {
+
+		if ((IndexPlanner.isSameType (high,
+					      rg.high))
+		    &&
+		    (Utilities.compare (high,
+					rg.high) == 0)
+		   )
+		{
+
+		    rg.highInc = rg.highInc && highInc;
+
+		}
+
+	    }
+
+	}
+
+    }
+
+    private static boolean isSameType (Object o1,
+				       Object o2)
+    {
+
+	if (o1 instanceof Number)
+	{
+
+	    return o2 instanceof Number;
+
+	}
+
+	return (o1 instanceof String) && (o2 instanceof String);
+
+    }
+
+    private void getTerms (Expression exp,
+			   List       terms)
+    {
+
+	exp = IndexPlanner.unwrap (exp);
+
+	if ((exp instanceof AndOrExpression)
+	    &&
+	    (((AndOrExpression) exp).isAnd ())
+	   )
+	{
+
+	    AndOrExpression ao = (AndOrExpression) exp;
+
+	    this.getTerms (ao.getLeft (),
+			   terms);
+	    this.getTerms (ao.getRight (),
+			   terms);
+
+	    return;
+
+	}
+
+	terms.add (exp);
+
+    }
+
+    /**
+     * Add the value of the expression to the keys, the expression must have the
+     * same value for every object and be a type that can be looked up.
+     *
+     * @param exp The expression.
+     * @param keys The keys to add to.
+     * @return <code>false</code> if the expression cannot be used as a key.
+     */
+    private boolean addKey (Expression exp,
+			    List       keys)
+    {
+
+	Object v = null;
+
+	if ((exp instanceof ConstantExpression)
+	    ||
+	    (exp instanceof InvariantExpression)
+	   )
+	{
+
+	    try
+	    {
+
+		v = exp.getValue (null,
+				  this.q);
+
+	    } catch (Exception e) {
+
+		return false;
+
+	    }
+
+	} else {
+
+	    if (!(exp instanceof BindVariable))
+	    {
+
+		return false;
+
+	    }
+
+	    BindVariable b = (BindVariable) exp;
+
+	    String n = b.getName ();
+
+	    if (n.startsWith (":"))
+	    {
+
+		n = n.substring (1);
+
+	    }
+
+	    // Special variables, such as the current object, can change for each object.
+	    if (n.startsWith (BindVariable.SPECIAL_NAME_PREFIX))
+	    {
+
+		return false;
+
+	    }
+
+	    try
+	    {
+
+		v = b.getValue (null,
+				this.q);
+
+	    } catch (Exception e) {
+
+		// Let the WHERE clause report it.
+		return false;
+
+	    }
+
+	}
+
+	if ((v != null)
+	    &&
+	    (!(v instanceof String))
+	    &&
+	    (!(v instanceof Number))
+	   )
+	{
+
+	    return false;
+
+	}
+
+	keys.add (v);
+
+	return true;
+
+    }
+
+    private static class Range
+    {
+
+	String acc = null;
+	Object low = null;
+	boolean lowInc = true;
+	Object high = null;
+	boolean highInc = true;
+
+    }
+
+    private static Expression unwrap (Expression exp)
+    {
+
+	while (exp instanceof ProfiledExpression)
+	{
+
+	    exp = ((ProfiledExpression) exp).getExpression ();
+
+	}
+
+	return exp;
+
+    }
+
+}
@@ -82,11 +82,109 @@ public class Limit
 
     }
 
+    /**
+     * Get the number of objects needed to produce the sub-list, i.e. the end of the
+     * sub-list.
+     *
+     * @param q The query.
+     * @return The number of objects or -1 if the rows count isn't set and the sub-list
+     *         includes all the objects from the start.
+     * @throws QueryExecutionException If the start or rows count expression cannot be
+     *                                 evaluated.
+     */
+    public int getEnd (Query  q)
+	               throws QueryExecutionException
+    {
+
+	int rows = this.getRows (q);
+
+	int start = this.getStart (q);
+
+	if ((rows < 1)
+	    ||
+	    (start < 0)
+	   )
+	{
+
+	    return -1;
+
+	}
+
+	return start + rows;
+
+    }
+
     public List getSubList (List   objs,
 			    Query  q)
 	                    throws QueryExecutionException
     {
 
+	int rows = this.getRows (q);
+
+	int start = this.getStart (q);
+
+	return Limit.getSubList (objs,
+				 start,
+				 rows);
+
+    }
+
+    /**
+     * Get the sub-list of the objects.
+     *
+     * @param objs The objects.
+     * @param start The index of the first object (from 0).
+     * @param rows The number of objects, if less than 1 then all the objects from the start are
+     *             returned.
+     * @return A new list of the objects.
+     */
+    public static List getSubList (List objs,
+				   int  start,
+				   int  rows)
+    {
+
+	int ls = objs.size ();
+
+	// Now get our sub-list.
+	if (start > (ls - 1))
+	{
+
+	    // Return nothing, outside of the range.
+	    return new ArrayList ();
+
+	}
+
+	if (rows > 0)
+	{
+
+	    if ((start + rows) > (ls - 1))
+	    {
+
+		    // Just return the rows starting at start...
+		    // We return a new list to prevent issues with modifications...
+		    return new ArrayList (objs.subList (start,
+							ls));
+
+	    }
+
+	    // Here we return start + rows.
+	    return new ArrayList (objs.subList (start,
+						start + rows));
+
+	} else {
+
+	    // Just ignore the rows...
+	    return new ArrayList (objs.subList (start,
+						ls));
+
+	}
+
+    }
+
+    private int getRows (Query  q)
+	                 throws QueryExecutionException
+    {
+
 	// Get the row count.
 	Object o = this.rowsCount.evaluate (null,
 					    q);
@@ -116,6 +214,14 @@ public class Limit
 
 	}
 
+	return rows;
+
+    }
+
+    private int getStart (Query  q)
+	                  throws QueryExecutionException
+    {
+
 	int start = 0;
 
 	// Now get the start value...
@@ -153,41 +259,21 @@ public class Limit
 
 	}
 
-	int ls = objs.size ();
-
-	// Now get our sub-list.
-	if (start > (ls - 1))
-	{
-
-	    // Return nothing, outside of the range.
-	    return new ArrayList ();
+	return start;
 
-	}
-
-	if (rows > 0)
-	{
-
-	    if ((start + rows) > (ls - 1))
-	    {
-
-		    // Just return the rows starting at start...
-		    // We return a new list to prevent issues with modifications...
-		    return new ArrayList (objs.subList (start,
-							ls));
+    }
 
-	    }
+    public ValueExpression getStart ()
+    {
 
-	    // Here we return start + rows.
-	    return new ArrayList (objs.subList (start,
-						start + rows));
+	return this.start;
 
-	} else {
+    }
 
-	    // Just ignore the rows...
-	    return new ArrayList (objs.subList (start,
-						ls));
+    public ValueExpression getRowsCount ()
+    {
 
-	}
+	return this.rowsCount;
 
     }
 
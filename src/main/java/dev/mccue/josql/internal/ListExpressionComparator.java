@@ -23,6 +23,7 @@ import java.util.HashMap;
 import dev.mccue.josql.expressions.Expression;
 
 import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryExecutionException;
 
 public class ListExpressionComparator implements Comparator
 {
@@ -317,6 +318,83 @@ public class ListExpressionComparator implements Comparator
 
     }
 
+    /**
+     * Get the values of the sort items for the object, these can then be compared via
+     * {@link #compareSortValues(Object[],Object[])} without evaluating the expressions again.
+     *
+     * @param o The object.
+     * @return The values.
+     * @throws QueryExecutionException If a value cannot be gained.
+     */
+    public Object[] getSortValues (Object o)
+	                           throws QueryExecutionException
+    {
+
+	Object[] vs = new Object[this.size];
+
+	for (int i = 0; i < this.size; i++)
+	{
+
+	    Item it = (Item) this.items.get (i);
+
+	    this.q.setCurrentObject (o);
+
+	    vs[i] = it.exp.getValue (o,
+				     this.q);
+
+	}
+
+	return vs;
+
+    }
+
+    public int compareSortValues (Object[] v1,
+				  Object[] v2)
+    {
+
+	for (int i = 0; i < this.size; i++)
+	{
+
+	    Item it = (Item) this.items.get (i);
+
+            int c = 0;
+
+            if (this.uc != null)
+            {
+                
+                c = this.uc.compare (v1[i],
+                                     v2[i]);
+                
+            } else {
+            
+	        c = Utilities.compare (v1[i],
+				       v2[i]);
+
+            }
+
+	    if (c == 0)
+	    {
+
+		continue;
+
+	    }
+
+	    // For speed reasons, 1 is used here rather than the constant.
+	    if (it.dir == 1)
+	    {
+
+		c = -1 * c;
+
+	    }
+
+	    return c;
+
+	}
+
+	return 0;
+
+    }
+
     public Exception getException ()
     {
 
@@ -331,6 +409,34 @@ public class ListExpressionComparator implements Comparator
 
     }
 
+    public Expression getSortItemExpression (int i)
+    {
+
+	return ((Item) this.items.get (i)).exp;
+
+    }
+
+    /**
+     * Get the direction of the sort item.
+     *
+     * @param i The index of the item.
+     * @return {@link OrderBy#ASC} or {@link OrderBy#DESC}.
+     */
+    public int getSortItemDirection (int i)
+    {
+
+	return ((Item) this.items.get (i)).dir;
+
+    }
+
+    public void setSortItemExpression (int        i,
+				       Expression exp)
+    {
+
+	((Item) this.items.get (i)).exp = exp;
+
+    }
+
     public void addSortItem (Expression exp,
 			     int        dir)
     {
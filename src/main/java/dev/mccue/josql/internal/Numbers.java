@@ -0,0 +1,1074 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.math.BigInteger;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Comparison and arithmetic for Numbers that works on the values directly (rather than
+ * converting them to Doubles) so that integral values are exact and no objects are created
+ * other than the result.
+ * <p>
+ * The operands are worked on as the widest kind of the two, in the order: long (Byte, Short,
+ * Integer and Long), BigInteger, double (Double, Float and any other Number) and BigDecimal,
+ * except that a BigInteger and a double are worked on as BigDecimals.  Long arithmetic that
+ * overflows gives a BigInteger.  A double is converted to a BigDecimal via its string form, so
+ * <code>0.1</code> is <code>0.1</code> rather than the nearest binary value.  If a double is
+ * NaN or infinite then double arithmetic is used instead.
+ * <p>
+ * Number literals are doubles, so that a long too big for a double plus (say) <code>1</code>
+ * is exact, when the operands of double arithmetic are integral and one of them or the result
+ * is beyond 2<sup>53</sup> then long arithmetic is used instead.
+ * <p>
+ * The arithmetic methods return the widest kind of the values, {@link dev.mccue.josql.expressions.ArithmeticExpression}
+ * instead works out the kind from the types of its operands (see: {@link #getKind(Class)}) so
+ * that the type of its result doesn't depend on the values.
+ */
+public class Numbers
+{
+
+    public static final int LONG = 0;
+    public static final int BIG_INTEGER = 1;
+    public static final int DOUBLE = 2;
+    public static final int BIG_DECIMAL = 3;
+
+    private static final double TWO_53 = 0x1p53;
+    private static final double TWO_63 = 0x1p63;
+
+    /**
+     * Get the kind of number.
+     *
+     * @param n The number.
+     * @return One of {@link #LONG}, {@link #BIG_INTEGER}, {@link #DOUBLE} or {@link #BIG_DECIMAL}.
+     */
+    public static int getKind (Number n)
+    {
+
+	if (n instanceof Double)
+	{
+
+	    return Numbers.DOUBLE;
+
+	}
+
+	if ((n instanceof Integer)
+	    ||
+	    (n instanceof Long)
+	    ||
+	    (n instanceof Short)
+	    ||
+	    (n instanceof Byte)
+	   )
+	{
+
+	    return Numbers.LONG;
+
+	}
+
+	if (n instanceof BigDecimal)
+	{
+
+	    return Numbers.BIG_DECIMAL;
+
+	}
+
+	if (n instanceof BigInteger)
+	{
+
+	    return Numbers.BIG_INTEGER;
+
+	}
+
+	return Numbers.DOUBLE;
+
+    }
+
+    /**
+     * Get the kind of number that the values of a type are.
+     *
+     * @param c The type, may be <code>null</code>.
+     * @return One of {@link #LONG}, {@link #BIG_INTEGER}, {@link #DOUBLE} or {@link #BIG_DECIMAL},
+     *         or -1 if the type isn't a number type or its values may be any kind of number
+     *         (i.e. <code>java.lang.Number</code>).
+     */
+    public static int getKind (Class c)
+    {
+
+	if ((c == Long.class)
+	    ||
+	    (c == Long.TYPE)
+	    ||
+	    (c == Integer.class)
+	    ||
+	    (c == Integer.TYPE)
+	    ||
+	    (c == Short.class)
+	    ||
+	    (c == Short.TYPE)
+	    ||
+	    (c == Byte.class)
+	    ||
+	    (c == Byte.TYPE)
+	   )
+	{
+
+	    return Numbers.LONG;
+
+	}
+
+	if ((c == Double.class)
+	    ||
+	    (c == Double.TYPE)
+	    ||
+	    (c == Float.class)
+	    ||
+	    (c == Float.TYPE)
+	   )
+	{
+
+	    return Numbers.DOUBLE;
+
+	}
+
+	if (c == BigInteger.class)
+	{
+
+	    return Numbers.BIG_INTEGER;
+
+	}
+
+	if (c == BigDecimal.class)
+	{
+
+	    return Numbers.BIG_DECIMAL;
+
+	}
+
+	return -1;
+
+    }
+
+    /**
+     * Get the kind that two kinds of number are worked on as, i.e. the widest of the two
+     * except that a BigInteger and a double are worked on as BigDecimals.
+     *
+     * @param k1 The first kind.
+     * @param k2 The second kind.
+     * @return The kind or -1 if either kind is -1 (i.e. unknown).
+     */
+    public static int getKind (int k1,
+			       int k2)
+    {
+
+	if ((k1 < 0)
+	    ||
+	    (k2 < 0)
+	   )
+	{
+
+	    return -1;
+
+	}
+
+	int k = Math.max (k1,
+			  k2);
+
+	if ((k == Numbers.DOUBLE)
+	    &&
+	    (Math.min (k1,
+		       k2) == Numbers.BIG_INTEGER)
+	   )
+	{
+
+	    return Numbers.BIG_DECIMAL;
+
+	}
+
+	return k;
+
+    }
+
+    /**
+     * Get zero as a kind of number.
+     *
+     * @param k The kind, if this is -1 then a Double is returned.
+     * @return Zero.
+     */
+    public static Number getZero (int k)
+    {
+
+	if (k == Numbers.LONG)
+	{
+
+	    return Long.valueOf (0);
+
+	}
+
+	if (k == Numbers.BIG_INTEGER)
+	{
+
+	    return BigInteger.ZERO;
+
+	}
+
+	if (k == Numbers.BIG_DECIMAL)
+	{
+
+	    return BigDecimal.ZERO;
+
+	}
+
+	return Double.valueOf (0);
+
+    }
+
+    /**
+     * Convert a number to the kind of number of a type, so that comparing a value of the type
+     * to the number doesn't need to convert the number each time.  The number is only converted
+     * if this can be done exactly, otherwise it is returned unchanged.
+     *
+     * @param n The number.
+     * @param c The type.
+     * @return The number, converted where possible.
+     */
+    public static Number convert (Number n,
+				  Class  c)
+    {
+
+	if (!Numbers.isFinite (n))
+	{
+
+	    return n;
+
+	}
+
+	int k = Numbers.getKind (n);
+
+	if (c == BigDecimal.class)
+	{
+
+	    return Numbers.toBigDecimal (n);
+
+	}
+
+	if ((k == Numbers.DOUBLE)
+	    &&
+	    (!Numbers.isIntegral (n,
+				  n.doubleValue ()))
+	   )
+	{
+
+	    return n;
+
+	}
+
+	if (c == BigInteger.class)
+	{
+
+	    if (k == Numbers.LONG)
+	    {
+
+		return Numbers.toBigInteger (n);
+
+	    }
+
+	    if (k == Numbers.DOUBLE)
+	    {
+
+		return Numbers.toBigDecimal (n).toBigInteger ();
+
+	    }
+
+	    return n;
+
+	}
+
+	if ((k == Numbers.DOUBLE)
+	    &&
+	    ((c == Long.TYPE)
+	     ||
+	     (c == Long.class)
+	     ||
+	     (c == Integer.TYPE)
+	     ||
+	     (c == Integer.class)
+	     ||
+	     (c == Short.TYPE)
+	     ||
+	     (c == Short.class)
+	     ||
+	     (c == Byte.TYPE)
+	     ||
+	     (c == Byte.class)
+	    )
+	   )
+	{
+
+	    return Long.valueOf ((long) n.doubleValue ());
+
+	}
+
+	return n;
+
+    }
+
+    /**
+     * Parse a number literal, the literal is a Double unless a double can't hold its exact
+     * value, in which case it is a Long (or BigInteger) if it is integral and a BigDecimal
+     * otherwise.  So <code>0.1</code> and <code>10</code> are Doubles whilst
+     * <code>9007199254740993</code> is a Long.
+     *
+     * @param s The literal.
+     * @return The value.
+     */
+    public static Number parse (String s)
+    {
+
+	Double d = Double.valueOf (s);
+
+	BigDecimal b = new BigDecimal (s);
+
+	if ((!d.isInfinite ())
+	    &&
+	    (b.compareTo (BigDecimal.valueOf (d.doubleValue ())) == 0)
+	   )
+	{
+
+	    return d;
+
+	}
+
+	// A decimal point means a decimal, even if the fraction is 0.
+	if ((s.indexOf ('.') > -1)
+	    ||
+	    (b.scale () > 0)
+	   )
+	{
+
+	    return b;
+
+	}
+
+	BigInteger i = b.toBigInteger ();
+
+	if (i.bitLength () < 64)
+	{
+
+	    return Long.valueOf (i.longValue ());
+
+	}
+
+	return i;
+
+    }
+
+    /**
+     * Compare two numbers, doubles are compared as per {@link Double#compare(double,double)}.
+     *
+     * @param n1 The first number.
+     * @param n2 The second number.
+     * @return Less than, equal to or greater than 0 if the first number is less than, equal to
+     *         or greater than the second.
+     */
+    public static int compare (Number n1,
+			       Number n2)
+    {
+
+	int k1 = Numbers.getKind (n1);
+	int k2 = Numbers.getKind (n2);
+
+	if (k1 == Numbers.DOUBLE)
+	{
+
+	    if (k2 == Numbers.DOUBLE)
+	    {
+
+		return Double.compare (n1.doubleValue (),
+				       n2.doubleValue ());
+
+	    }
+
+	    if (k2 == Numbers.LONG)
+	    {
+
+		return -Numbers.compare (n2.longValue (),
+					 n1.doubleValue ());
+
+	    }
+
+	}
+
+	if (k1 == Numbers.LONG)
+	{
+
+	    if (k2 == Numbers.LONG)
+	    {
+
+		return Long.compare (n1.longValue (),
+				     n2.longValue ());
+
+	    }
+
+	    if (k2 == Numbers.DOUBLE)
+	    {
+
+		return Numbers.compare (n1.longValue (),
+					n2.doubleValue ());
+
+	    }
+
+	}
+
+	int k = Numbers.getKind (k1,
+				 k2,
+				 n1,
+				 n2);
+
+	if (k == Numbers.BIG_INTEGER)
+	{
+
+	    return Numbers.toBigInteger (n1).compareTo (Numbers.toBigInteger (n2));
+
+	}
+
+	if (k == Numbers.DOUBLE)
+	{
+
+	    return Double.compare (n1.doubleValue (),
+				   n2.doubleValue ());
+
+	}
+
+	return Numbers.toBigDecimal (n1).compareTo (Numbers.toBigDecimal (n2));
+
+    }
+
+    public static Number add (Number l,
+			      Number r)
+    {
+
+	int k = Numbers.getKind (l,
+				 r);
+
+	if (k == Numbers.LONG)
+	{
+
+	    return Numbers.add (l.longValue (),
+				r.longValue ());
+
+	}
+
+	if (k == Numbers.DOUBLE)
+	{
+
+	    double ld = l.doubleValue ();
+	    double rd = r.doubleValue ();
+	    double v = ld + rd;
+
+	    if (Numbers.useLong (l,
+				 ld,
+				 r,
+				 rd,
+				 v))
+	    {
+
+		return Numbers.add (Numbers.toLong (l,
+						    ld),
+				    Numbers.toLong (r,
+						    rd));
+
+	    }
+
+	    return Double.valueOf (v);
+
+	}
+
+	if (k == Numbers.BIG_INTEGER)
+	{
+
+	    return Numbers.toBigInteger (l).add (Numbers.toBigInteger (r));
+
+	}
+
+	return Numbers.toBigDecimal (l).add (Numbers.toBigDecimal (r));
+
+    }
+
+    public static Number subtract (Number l,
+				   Number r)
+    {
+
+	int k = Numbers.getKind (l,
+				 r);
+
+	if (k == Numbers.LONG)
+	{
+
+	    return Numbers.subtract (l.longValue (),
+				     r.longValue ());
+
+	}
+
+	if (k == Numbers.DOUBLE)
+	{
+
+	    double ld = l.doubleValue ();
+	    double rd = r.doubleValue ();
+	    double v = ld - rd;
+
+	    if (Numbers.useLong (l,
+				 ld,
+				 r,
+				 rd,
+				 v))
+	    {
+
+		return Numbers.subtract (Numbers.toLong (l,
+							 ld),
+					 Numbers.toLong (r,
+							 rd));
+
+	    }
+
+	    return Double.valueOf (v);
+
+	}
+
+	if (k == Numbers.BIG_INTEGER)
+	{
+
+	    return Numbers.toBigInteger (l).subtract (Numbers.toBigInteger (r));
+
+	}
+
+	return Numbers.toBigDecimal (l).subtract (Numbers.toBigDecimal (r));
+
+    }
+
+    public static Number multiply (Number l,
+				   Number r)
+    {
+
+	int k = Numbers.getKind (l,
+				 r);
+
+	if (k == Numbers.LONG)
+	{
+
+	    return Numbers.multiply (l.longValue (),
+				     r.longValue ());
+
+	}
+
+	if (k == Numbers.DOUBLE)
+	{
+
+	    double ld = l.doubleValue ();
+	    double rd = r.doubleValue ();
+	    double v = ld * rd;
+
+	    if (Numbers.useLong (l,
+				 ld,
+				 r,
+				 rd,
+				 v))
+	    {
+
+		return Numbers.multiply (Numbers.toLong (l,
+							 ld),
+					 Numbers.toLong (r,
+							 rd));
+
+	    }
+
+	    return Double.valueOf (v);
+
+	}
+
+	if (k == Numbers.BIG_INTEGER)
+	{
+
+	    return Numbers.toBigInteger (l).multiply (Numbers.toBigInteger (r));
+
+	}
+
+	return Numbers.toBigDecimal (l).multiply (Numbers.toBigDecimal (r));
+
+    }
+
+    /**
+     * Divide the numbers.  Division by zero gives 0, of the kind of the operands.  Integral values give an integral result
+     * if the division is exact, otherwise a long gives a double and a BigInteger gives a
+     * BigDecimal.  BigDecimals are divided to 34 digits (see: {@link MathContext#DECIMAL128}).
+     *
+     * @param l The dividend.
+     * @param r The divisor.
+     * @return The quotient.
+     */
+    public static Number divide (Number l,
+				 Number r)
+    {
+
+	int k = Numbers.getKind (l,
+				 r);
+
+	if (k == Numbers.DOUBLE)
+	{
+
+	    double ld = l.doubleValue ();
+	    double rd = r.doubleValue ();
+
+	    if (rd == 0)
+	    {
+
+		return Double.valueOf (0);
+
+	    }
+
+	    double v = ld / rd;
+
+	    if (Numbers.useLong (l,
+				 ld,
+				 r,
+				 rd,
+				 v))
+	    {
+
+		return Numbers.divide (Numbers.toLong (l,
+						       ld),
+				       Numbers.toLong (r,
+						       rd));
+
+	    }
+
+	    return Double.valueOf (v);
+
+	}
+
+	if (Numbers.isZero (r))
+	{
+
+	    return Numbers.getZero (k);
+
+	}
+
+	if (k == Numbers.LONG)
+	{
+
+	    return Numbers.divide (l.longValue (),
+				   r.longValue ());
+
+	}
+
+	if (k == Numbers.BIG_INTEGER)
+	{
+
+	    BigInteger[] qr = Numbers.toBigInteger (l).divideAndRemainder (Numbers.toBigInteger (r));
+
+	    if (qr[1].signum () == 0)
+	    {
+
+		return qr[0];
+
+	    }
+
+	}
+
+	return Numbers.toBigDecimal (l).divide (Numbers.toBigDecimal (r),
+						MathContext.DECIMAL128);
+
+    }
+
+    /**
+     * Get the remainder of dividing the numbers, the remainder of division by zero is NaN.
+     *
+     * @param l The dividend.
+     * @param r The divisor.
+     * @return The remainder.
+     */
+    public static Number modulus (Number l,
+				  Number r)
+    {
+
+	int k = Numbers.getKind (l,
+				 r);
+
+	if (k == Numbers.DOUBLE)
+	{
+
+	    double ld = l.doubleValue ();
+	    double rd = r.doubleValue ();
+	    double v = ld % rd;
+
+	    if ((rd != 0)
+		&&
+		(Numbers.useLong (l,
+				  ld,
+				  r,
+				  rd,
+				  v))
+	       )
+	    {
+
+		long a = Numbers.toLong (l,
+					 ld);
+		long b = Numbers.toLong (r,
+					 rd);
+
+		return Long.valueOf (a % b);
+
+	    }
+
+	    return Double.valueOf (v);
+
+	}
+
+	if (Numbers.isZero (r))
+	{
+
+	    return Double.valueOf (Double.NaN);
+
+	}
+
+	if (k == Numbers.LONG)
+	{
+
+	    return Long.valueOf (l.longValue () % r.longValue ());
+
+	}
+
+	if (k == Numbers.BIG_INTEGER)
+	{
+
+	    return Numbers.toBigInteger (l).remainder (Numbers.toBigInteger (r));
+
+	}
+
+	return Numbers.toBigDecimal (l).remainder (Numbers.toBigDecimal (r));
+
+    }
+
+    private static Number add (long a,
+			       long b)
+    {
+
+	long s = a + b;
+
+	// Overflowed if the result has a different sign to both.
+	if (((a ^ s) & (b ^ s)) < 0)
+	{
+
+	    return BigInteger.valueOf (a).add (BigInteger.valueOf (b));
+
+	}
+
+	return Long.valueOf (s);
+
+    }
+
+    private static Number subtract (long a,
+				    long b)
+    {
+
+	long s = a - b;
+
+	// Overflowed if the operands have different signs and the result
+	// has a different sign to the first.
+	if (((a ^ b) & (a ^ s)) < 0)
+	{
+
+	    return BigInteger.valueOf (a).subtract (BigInteger.valueOf (b));
+
+	}
+
+	return Long.valueOf (s);
+
+    }
+
+    private static Number multiply (long a,
+				    long b)
+    {
+
+	long p = a * b;
+
+	// Overflowed if the high 64 bits of the full product aren't just the sign.
+	if (Math.multiplyHigh (a,
+			       b) != (p >> 63))
+	{
+
+	    return BigInteger.valueOf (a).multiply (BigInteger.valueOf (b));
+
+	}
+
+	return Long.valueOf (p);
+
+    }
+
+    private static Number divide (long a,
+				  long b)
+    {
+
+	if (a % b != 0)
+	{
+
+	    return Double.valueOf ((double) a / (double) b);
+
+	}
+
+	if ((a == Long.MIN_VALUE)
+	    &&
+	    (b == -1)
+	   )
+	{
+
+	    return BigInteger.valueOf (a).negate ();
+
+	}
+
+	return Long.valueOf (a / b);
+
+    }
+
+    /**
+     * Determine whether the result of double arithmetic on the numbers may not be exact when
+     * integral arithmetic would be, i.e. for a long too big for a double plus a number literal
+     * (which is a double).
+     */
+    private static boolean useLong (Number l,
+				    double ld,
+				    Number r,
+				    double rd,
+				    double v)
+    {
+
+	if ((Math.abs (v) < Numbers.TWO_53)
+	    &&
+	    (Math.abs (ld) < Numbers.TWO_53)
+	    &&
+	    (Math.abs (rd) < Numbers.TWO_53)
+	   )
+	{
+
+	    return false;
+
+	}
+
+	return (Numbers.isIntegral (l,
+				    ld))
+	       &&
+	       (Numbers.isIntegral (r,
+				    rd));
+
+    }
+
+    private static boolean isIntegral (Number n,
+				       double d)
+    {
+
+	if (Numbers.getKind (n) == Numbers.LONG)
+	{
+
+	    return true;
+
+	}
+
+	return (Math.abs (d) < Numbers.TWO_63)
+	       &&
+	       (d == Math.rint (d));
+
+    }
+
+    private static long toLong (Number n,
+				double d)
+    {
+
+	if (Numbers.getKind (n) == Numbers.LONG)
+	{
+
+	    return n.longValue ();
+
+	}
+
+	return (long) d;
+
+    }
+
+    /**
+     * Compare a long to a double exactly, the double is split into its integral part (which
+     * fits in a long when in range) and its fraction.
+     */
+    public static int compare (long   l,
+				double d)
+    {
+
+	// NaN is greater than everything.
+	if (Double.isNaN (d))
+	{
+
+	    return -1;
+
+	}
+
+	if (d >= Numbers.TWO_63)
+	{
+
+	    return -1;
+
+	}
+
+	if (d < -Numbers.TWO_63)
+	{
+
+	    return 1;
+
+	}
+
+	long dl = (long) d;
+
+	if (l != dl)
+	{
+
+	    return (l < dl) ? -1 : 1;
+
+	}
+
+	double f = d - (double) dl;
+
+	return (f > 0) ? -1 : ((f < 0) ? 1 : 0);
+
+    }
+
+    private static int getKind (Number l,
+				Number r)
+    {
+
+	return Numbers.getKind (Numbers.getKind (l),
+				Numbers.getKind (r),
+				l,
+				r);
+
+    }
+
+    private static int getKind (int    k1,
+				int    k2,
+				Number l,
+				Number r)
+    {
+
+	int k = Numbers.getKind (k1,
+				 k2);
+
+	// A BigInteger or BigDecimal can't be mixed with NaN or infinity.
+	if (k == Numbers.BIG_DECIMAL)
+	{
+
+	    if ((!Numbers.isFinite (l))
+		||
+		(!Numbers.isFinite (r))
+	       )
+	    {
+
+		return Numbers.DOUBLE;
+
+	    }
+
+	    return Numbers.BIG_DECIMAL;
+
+	}
+
+	return k;
+
+    }
+
+    private static boolean isFinite (Number n)
+    {
+
+	if (Numbers.getKind (n) != Numbers.DOUBLE)
+	{
+
+	    return true;
+
+	}
+
+	return Double.isFinite (n.doubleValue ());
+
+    }
+
+    private static boolean isZero (Number n)
+    {
+
+	if (n instanceof BigDecimal)
+	{
+
+	    return ((BigDecimal) n).signum () == 0;
+
+	}
+
+	if (n instanceof BigInteger)
+	{
+
+	    return ((BigInteger) n).signum () == 0;
+
+	}
+
+	return n.doubleValue () == 0;
+
+    }
+
+    private static BigInteger toBigInteger (Number n)
+    {
+
+	if (n instanceof BigInteger)
+	{
+
+	    return (BigInteger) n;
+
+	}
+
+	return BigInteger.valueOf (n.longValue ());
+
+    }
+
+    private static BigDecimal toBigDecimal (Number n)
+    {
+
+	if (n instanceof BigDecimal)
+	{
+
+	    return (BigDecimal) n;
+
+	}
+
+	if (n instanceof BigInteger)
+	{
+
+	    return new BigDecimal ((BigInteger) n);
+
+	}
+
+	if (Numbers.getKind (n) == Numbers.LONG)
+	{
+
+	    return BigDecimal.valueOf (n.longValue ());
+
+	}
+
+	return BigDecimal.valueOf (n.doubleValue ());
+
+    }
+
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Set;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The save values for a query execution, or for a group within the execution.  A child is
+ * created with its parent's save values, it can see the parent's values but any values it
+ * puts (or removes) are only held in the child, the parent is never copied.  A child reads
+ * through to its parent, so the parent must not be changed once a child has been created (a
+ * query layers a new map over its save values after the groups are created rather than writing
+ * to the one the groups were created from).
+ * <p>
+ * String keys are case insensitive and are held in lower case, use {@link #getKey(Object)} to
+ * get the key for an id, the lower case form of a String is only created once.
+ */
+public class SaveValues extends AbstractMap
+{
+
+    private static final Object REMOVED = new Object ();
+
+    // The lower case forms of the String ids, limited since any object (including
+    // strings from the objects being queried) can be used as an id.
+    private static final int MAX_KEYS = 1024;
+    private static Map keys = new ConcurrentHashMap ();
+
+    private Map parent = null;
+    private Map values = null;
+
+    public SaveValues ()
+    {
+
+    }
+
+    public SaveValues (Map parent)
+    {
+
+	this.parent = parent;
+
+    }
+
+    /**
+     * Get the key to use for a save value id, this is the lower case form of a String
+     * or the id itself.
+     *
+     * @param id The id.
+     * @return The key.
+     */
+    public static Object getKey (Object id)
+    {
+
+	if (!(id instanceof String))
+	{
+
+	    return id;
+
+	}
+
+	Object k = SaveValues.keys.get (id);
+
+	if (k != null)
+	{
+
+	    return k;
+
+	}
+
+	String s = ((String) id).toLowerCase ();
+
+	if (SaveValues.keys.size () < SaveValues.MAX_KEYS)
+	{
+
+	    SaveValues.keys.put (id,
+				 s);
+
+	}
+
+	return s;
+
+    }
+
+    public Object get (Object k)
+    {
+
+	if (this.values != null)
+	{
+
+	    Object v = this.values.get (k);
+
+	    if ((v != null)
+		||
+		(this.values.containsKey (k))
+	       )
+	    {
+
+		return (v == SaveValues.REMOVED) ? null : v;
+
+	    }
+
+	}
+
+	if (this.parent != null)
+	{
+
+	    return this.parent.get (k);
+
+	}
+
+	return null;
+
+    }
+
+    public boolean containsKey (Object k)
+    {
+
+	if ((this.values != null)
+	    &&
+	    (this.values.containsKey (k))
+	   )
+	{
+
+	    return this.values.get (k) != SaveValues.REMOVED;
+
+	}
+
+	if (this.parent != null)
+	{
+
+	    return this.parent.containsKey (k);
+
+	}
+
+	return false;
+
+    }
+
+    public Object put (Object k,
+		       Object v)
+    {
+
+	Object old = this.get (k);
+
+	if (this.values == null)
+	{
+
+	    this.values = new HashMap ();
+
+	}
+
+	this.values.put (k,
+			 v);
+
+	return old;
+
+    }
+
+    public Object remove (Object k)
+    {
+
+	Object old = this.get (k);
+
+	if ((this.parent != null)
+	    &&
+	    (this.parent.containsKey (k))
+	   )
+	{
+
+	    // Hide the parent's value.
+	    this.put (k,
+		      SaveValues.REMOVED);
+
+	} else {
+
+	    if (this.values != null)
+	    {
+
+		this.values.remove (k);
+
+	    }
+
+	}
+
+	return old;
+
+    }
+
+    public void clear ()
+    {
+
+	this.parent = null;
+	this.values = null;
+
+    }
+
+    public int size ()
+    {
+
+	int s = 0;
+
+	if (this.parent != null)
+	{
+
+	    s = this.parent.size ();
+
+	}
+
+	if (this.values == null)
+	{
+
+	    return s;
+
+	}
+
+	Iterator iter = this.values.entrySet ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Map.Entry en = (Map.Entry) iter.next ();
+
+	    boolean inParent = (this.parent != null) && (this.parent.containsKey (en.getKey ()));
+
+	    if (en.getValue () == SaveValues.REMOVED)
+	    {
+
+		if (inParent)
+		{
+
+		    s--;
+
+		}
+
+	    } else {
+
+		if (!inParent)
+		{
+
+		    s++;
+
+		}
+
+	    }
+
+	}
+
+	return s;
+
+    }
+
+    public boolean isEmpty ()
+    {
+
+	return this.size () == 0;
+
+    }
+
+    /**
+     * Get the entries, this is a view of the values (including those of the parent that
+     * haven't been replaced or removed) and cannot be modified.
+     *
+     * @return The entries.
+     */
+    public Set entrySet ()
+    {
+
+	final SaveValues sv = this;
+
+	return new AbstractSet ()
+	{
+
+	    public Iterator iterator ()
+	    {
+
+		return new EntryIterator (sv.values,
+					  sv.parent);
+
+	    }
+
+	    public int size ()
+	    {
+
+		return sv.size ();
+
+	    }
+
+	};
+
+    }
+
+    /**
+     * Iterates over the values then the values of the parent that the values don't hide.
+     */
+    private static class EntryIterator implements Iterator
+    {
+
+	private Map values = null;
+	private Iterator iter = null;
+	private Iterator parentIter = null;
+	private Map.Entry next = null;
+
+	private EntryIterator (Map values,
+			       Map parent)
+	{
+
+	    this.values = values;
+
+	    if (values != null)
+	    {
+
+		this.iter = values.entrySet ().iterator ();
+
+	    }
+
+	    if (parent != null)
+	    {
+
+		this.parentIter = parent.entrySet ().iterator ();
+
+	    }
+
+	    this.next = this.findNext ();
+
+	}
+
+	private Map.Entry findNext ()
+	{
+
+	    while ((this.iter != null)
+		   &&
+		   (this.iter.hasNext ())
+		  )
+	    {
+
+		Map.Entry en = (Map.Entry) this.iter.next ();
+
+		if (en.getValue () != SaveValues.REMOVED)
+		{
+
+		    return new AbstractMap.SimpleImmutableEntry (en);
+
+		}
+
+	    }
+
+	    while ((this.parentIter != null)
+		   &&
+		   (this.parentIter.hasNext ())
+		  )
+	    {
+
+		Map.Entry en = (Map.Entry) this.parentIter.next ();
+
+		if ((this.values == null)
+		    ||
+		    (!this.values.containsKey (en.getKey ()))
+		   )
+		{
+
+		    return new AbstractMap.SimpleImmutableEntry (en);
+
+		}
+
+	    }
+
+	    return null;
+
+	}
+
+	public boolean hasNext ()
+	{
+
+	    return this.next != null;
+
+	}
+
+	public Object next ()
+	{
+
+	    if (this.next == null)
+	    {
+
+		throw new NoSuchElementException ();
+
+	    }
+
+	    Map.Entry en = this.next;
+
+	    this.next = this.findNext ();
+
+	    return en;
+
+	}
+
+	public void remove ()
+	{
+
+	    throw new UnsupportedOperationException ();
+
+	}
+
+    }
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.internal;
+
+import dev.mccue.josql.Query;
+
+import dev.mccue.josql.expressions.Expression;
+import dev.mccue.josql.expressions.ConstantExpression;
+
+/**
+ * A comparison of two values whose types are known, either both integral (byte, short, int or
+ * long), both Numbers or both Strings.  The values are compared directly rather than going
+ * through the checks made by {@link Utilities#compare(Object,Object)} to find out how they should
+ * be compared.  The types are either those expected when the query is inited or those of the
+ * first values compared.
+ * <p>
+ * A constant is converted to the type of the other value when the comparison is created,
+ * so for <code>price &gt; 9.99</code>, where <code>price</code> is a BigDecimal, the value is
+ * compared to the BigDecimal <code>9.99</code> rather than converting the double each time.
+ * A number constant compared to a String is compared using its string form (as it would be
+ * anyway).
+ * <p>
+ * The expected types are only a guide, a function or an arithmetic expression can return a
+ * value of another type, so if the values aren't of the expected types then
+ * {@link #NOT_COMPARED} is returned and the values should be compared in the usual way.
+ */
+public class TypedComparison
+{
+
+    public static final int NOT_COMPARED = Integer.MIN_VALUE;
+
+    private static final int LONGS = 0;
+    private static final int NUMBERS = 1;
+    private static final int STRINGS = 2;
+
+    private int type = TypedComparison.NUMBERS;
+
+    // The converted constants, if any.
+    private Object left = null;
+    private Object right = null;
+
+    private TypedComparison (int    type,
+			     Object left,
+			     Object right)
+    {
+
+	this.type = type;
+	this.left = left;
+	this.right = right;
+
+    }
+
+    /**
+     * Create the comparison for the expressions.
+     *
+     * @param l The LHS.
+     * @param r The RHS.
+     * @param q The Query object.
+     * @return The comparison or <code>null</code> if the expressions aren't expected to
+     *         both be Numbers or Strings.
+     */
+    public static TypedComparison create (Expression l,
+					  Expression r,
+					  Query      q)
+    {
+
+	Class lc = TypedComparison.getType (l,
+					    q);
+	Class rc = TypedComparison.getType (r,
+					    q);
+
+	if ((lc == null)
+	    ||
+	    (rc == null)
+	   )
+	{
+
+	    return null;
+
+	}
+
+	Object lv = TypedComparison.getConstant (l);
+	Object rv = TypedComparison.getConstant (r);
+
+	if ((lv instanceof Number)
+	    &&
+	    (rc == String.class)
+	   )
+	{
+
+	    lv = lv.toString ();
+	    lc = String.class;
+
+	}
+
+	if ((rv instanceof Number)
+	    &&
+	    (lc == String.class)
+	   )
+	{
+
+	    rv = rv.toString ();
+	    rc = String.class;
+
+	}
+
+	if ((lc == String.class)
+	    &&
+	    (rc == String.class)
+	   )
+	{
+
+	    return new TypedComparison (TypedComparison.STRINGS,
+					lv,
+					rv);
+
+	}
+
+	if ((TypedComparison.isNumber (lc))
+	    &&
+	    (TypedComparison.isNumber (rc))
+	   )
+	{
+
+	    if (lv instanceof Number)
+	    {
+
+		lv = Numbers.convert ((Number) lv,
+				      rc);
+
+	    }
+
+	    if (rv instanceof Number)
+	    {
+
+		rv = Numbers.convert ((Number) rv,
+				      lc);
+
+	    }
+
+	    int t = TypedComparison.NUMBERS;
+
+	    if ((TypedComparison.isLong (lc))
+		&&
+		(TypedComparison.isLong (rc))
+		&&
+		((lv == null)
+		 ||
+		 (TypedComparison.isLong (lv))
+		)
+		&&
+		((rv == null)
+		 ||
+		 (TypedComparison.isLong (rv))
+		)
+	       )
+	    {
+
+		t = TypedComparison.LONGS;
+
+	    }
+
+	    return new TypedComparison (t,
+					lv,
+					rv);
+
+	}
+
+	return null;
+
+    }
+
+    /**
+     * Create the comparison for the types of the values.
+     *
+     * @param l The LHS value.
+     * @param r The RHS value.
+     * @return The comparison or <code>null</code> if the values aren't both Numbers or Strings.
+     */
+    public static TypedComparison create (Object l,
+					  Object r)
+    {
+
+	if ((TypedComparison.isLong (l))
+	    &&
+	    (TypedComparison.isLong (r))
+	   )
+	{
+
+	    return new TypedComparison (TypedComparison.LONGS,
+					null,
+					null);
+
+	}
+
+	if ((l instanceof Number)
+	    &&
+	    (r instanceof Number)
+	   )
+	{
+
+	    return new TypedComparison (TypedComparison.NUMBERS,
+					null,
+					null);
+
+	}
+
+	if ((l instanceof String)
+	    &&
+	    (r instanceof String)
+	   )
+	{
+
+	    return new TypedComparison (TypedComparison.STRINGS,
+					null,
+					null);
+
+	}
+
+	return null;
+
+    }
+
+    /**
+     * Compare the values, the values should not be <code>null</code>.  If either expression
+     * is a constant then its converted value is used instead.
+     *
+     * @param l The LHS value.
+     * @param r The RHS value.
+     * @return The result of the comparison, as per: {@link Utilities#compare(Object,Object)},
+     *         or {@link #NOT_COMPARED} if the values aren't of the expected types.
+     */
+    public int compare (Object l,
+			Object r)
+    {
+
+	// A comparator set by the application decides how everything is compared.
+	if (Utilities.getObjectComparator () != null)
+	{
+
+	    return TypedComparison.NOT_COMPARED;
+
+	}
+
+	if (this.left != null)
+	{
+
+	    l = this.left;
+
+	}
+
+	if (this.right != null)
+	{
+
+	    r = this.right;
+
+	}
+
+	if (this.type == TypedComparison.STRINGS)
+	{
+
+	    if ((l instanceof String)
+		&&
+		(r instanceof String)
+	       )
+	    {
+
+		return ((String) l).compareTo ((String) r);
+
+	    }
+
+	    return TypedComparison.NOT_COMPARED;
+
+	}
+
+	if ((this.type == TypedComparison.LONGS)
+	    &&
+	    (TypedComparison.isLong (l))
+	    &&
+	    (TypedComparison.isLong (r))
+	   )
+	{
+
+	    return Long.compare (((Number) l).longValue (),
+				 ((Number) r).longValue ());
+
+	}
+
+	if ((l instanceof Number)
+	    &&
+	    (r instanceof Number)
+	   )
+	{
+
+	    return Numbers.compare ((Number) l,
+				    (Number) r);
+
+	}
+
+	return TypedComparison.NOT_COMPARED;
+
+    }
+
+    private static Class getType (Expression exp,
+				  Query      q)
+    {
+
+	try
+	{
+
+	    return exp.getExpectedReturnType (q);
+
+	} catch (Exception e) {
+
+	    // Not known.
+	    return null;
+
+	}
+
+    }
+
+    private static Object getConstant (Expression exp)
+    {
+
+	if (exp instanceof ConstantExpression)
+	{
+
+	    return ((ConstantExpression) exp).getValue (null,
+							null);
+
+	}
+
+	return null;
+
+    }
+
+    private static boolean isLong (Object o)
+    {
+
+	return (o instanceof Integer)
+	       ||
+	       (o instanceof Long)
+	       ||
+	       (o instanceof Short)
+	       ||
+	       (o instanceof Byte);
+
+    }
+
+    private static boolean isLong (Class c)
+    {
+
+	return (c == Integer.TYPE)
+	       ||
+	       (c == Integer.class)
+	       ||
+	       (c == Long.TYPE)
+	       ||
+	       (c == Long.class)
+	       ||
+	       (c == Short.TYPE)
+	       ||
+	       (c == Short.class)
+	       ||
+	       (c == Byte.TYPE)
+	       ||
+	       (c == Byte.class);
+
+    }
+
+    private static boolean isNumber (Class c)
+    {
+
+	return (Utilities.isNumber (c))
+	       ||
+	       (Number.class.isAssignableFrom (c));
+
+    }
+
+}
@@ -15,6 +15,7 @@
 package dev.mccue.josql.internal;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import java.lang.reflect.Method;
 
@@ -40,6 +41,32 @@ public class Utilities
 
     private static Comparator objComp = null;
 
+    // The methods found by getMethods and getPublicMethods for each class, held
+    // against the class so they go when the class is unloaded.
+    private static final ClassValue methods = new ClassValue ()
+    {
+
+	protected Object computeValue (Class c)
+	{
+
+	    return new ConcurrentHashMap ();
+
+	}
+
+    };
+
+    private static final ClassValue publicMethods = new ClassValue ()
+    {
+
+	protected Object computeValue (Class c)
+	{
+
+	    return new ConcurrentHashMap ();
+
+	}
+
+    };
+
     static
     {
 
@@ -152,6 +179,13 @@ public class Utilities
         
     }
 
+    public static Comparator getObjectComparator ()
+    {
+        
+        return Utilities.objComp;
+        
+    }
+
     public static Class getObjectClass (Class c)
     {
 
@@ -638,9 +672,27 @@ public class Utilities
 				     boolean not)
     {
 
-	int c = Utilities.compare (l,
-				   r);
-	
+	return Utilities.isMatch (Utilities.compare (l,
+						     r),
+				  type,
+				  not);
+
+    }
+
+    /**
+     * Determine whether the result of comparing two values matches the type of comparison.
+     *
+     * @param c The result of the comparison, as per: {@link #compare(Object,Object)}.
+     * @param type The type of comparison, one of: {@link #GT}, {@link #GTE}, {@link #LT},
+     *             {@link #LTE} or {@link #EQ}.
+     * @param not Whether the result should be negated.
+     * @return <code>true</code> if the comparison matches.
+     */
+    public static boolean isMatch (int     c,
+				   int     type,
+				   boolean not)
+    {
+
 	// Use the direct values here for speed.
 	
 	// Check for >
@@ -790,7 +842,8 @@ public class Utilities
 	   )
 	{
 
-	    return Utilities.getDoubleObject (o1).compareTo (Utilities.getDoubleObject (o2));
+	    return Numbers.compare ((Number) o1,
+				    (Number) o2);
 
 	}
 
@@ -1317,6 +1370,16 @@ public class Utilities
 
     }
 
+    /**
+     * Get the methods with the name and modifiers declared by the class, its super-classes
+     * and interfaces and add them to the list (if not already present).  The methods
+     * found are cached for the class.
+     *
+     * @param c The class.
+     * @param name The name of the method.
+     * @param mods The modifiers the method must have.
+     * @param ms The list to add the methods to.
+     */
     public static void getMethods (Class  c,
 				   String name,
 				   int    mods,
@@ -1330,6 +1393,102 @@ public class Utilities
 
 	}
 
+	Map cm = (Map) Utilities.methods.get (c);
+
+	String k = name + "/" + mods;
+
+	List l = (List) cm.get (k);
+
+	if (l == null)
+	{
+
+	    l = new ArrayList ();
+
+	    Utilities.findMethods (c,
+				   name,
+				   mods,
+				   l);
+
+	    cm.put (k,
+		    l);
+
+	}
+
+	for (int i = 0; i < l.size (); i++)
+	{
+
+	    Object m = l.get (i);
+
+	    if (!ms.contains (m))
+	    {
+
+		ms.add (m);
+
+	    }
+
+	}
+
+    }
+
+    /**
+     * Get the public methods (as per: {@link Class#getMethods()}) of the class with the name,
+     * these are cached for the class.
+     *
+     * @param c The class.
+     * @param name The name of the method.
+     * @return The methods, this array is shared and must not be changed.
+     */
+    public static Method[] getPublicMethods (Class  c,
+					     String name)
+    {
+
+	Map cm = (Map) Utilities.publicMethods.get (c);
+
+	Method[] ms = (Method[]) cm.get (name);
+
+	if (ms == null)
+	{
+
+	    Method[] meths = c.getMethods ();
+
+	    List l = new ArrayList ();
+
+	    for (int i = 0; i < meths.length; i++)
+	    {
+
+		if (meths[i].getName ().equals (name))
+		{
+
+		    l.add (meths[i]);
+
+		}
+
+	    }
+
+	    ms = (Method[]) l.toArray (new Method[l.size ()]);
+
+	    cm.put (name,
+		    ms);
+
+	}
+
+	return ms;
+
+    }
+
+    private static void findMethods (Class  c,
+				     String name,
+				     int    mods,
+				     List   ms)
+    {
+
+	if (c == null)
+	{
+
+	    return;
+
+	}
+
 	Method[] meths = c.getDeclaredMethods ();
 
 	for (int i = 0; i < meths.length; i++)
@@ -1361,10 +1520,10 @@ public class Utilities
 	if (sup != null)
 	{
 
-	    Utilities.getMethods (sup,
-				  name,
-				  mods,
-				  ms);
+	    Utilities.findMethods (sup,
+				   name,
+				   mods,
+				   ms);
 
 	}
 
@@ -1376,10 +1535,10 @@ public class Utilities
 
 	    Class in = ints[i];
 
-	    Utilities.getMethods (in,
-				  name,
-				  mods,
-				  ms);
+	    Utilities.findMethods (in,
+				   name,
+				   mods,
+				   ms);
 
 	}
 
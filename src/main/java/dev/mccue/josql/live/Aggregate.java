@@ -0,0 +1,749 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.live;
+
+import java.util.List;
+import java.util.Comparator;
+import java.util.TreeMap;
+
+import java.lang.reflect.Method;
+
+import java.math.BigDecimal;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryExecutionException;
+
+import dev.mccue.josql.expressions.Expression;
+import dev.mccue.josql.expressions.Accessor;
+import dev.mccue.josql.expressions.ConstantExpression;
+import dev.mccue.josql.expressions.BooleanExpression;
+import dev.mccue.josql.expressions.ArithmeticExpression;
+import dev.mccue.josql.expressions.BindVariable;
+import dev.mccue.josql.expressions.Function;
+import dev.mccue.josql.expressions.SharedExpression;
+import dev.mccue.josql.expressions.InvariantExpression;
+import dev.mccue.josql.expressions.ProfiledExpression;
+
+import dev.mccue.josql.functions.CollectionFunctions;
+import dev.mccue.josql.functions.GroupingFunctions;
+
+import dev.mccue.josql.internal.Utilities;
+
+/**
+ * A built-in aggregate function over the objects in a group, used as a SELECT column of a
+ * {@link ContinuousQuery}, i.e. one of:
+ * <pre>
+ *   count(:_allobjs)
+ *   count(:_allobjs, expression)
+ *   sum(:_allobjs, expression)
+ *   avg(:_allobjs, expression)
+ *   min(:_allobjs, expression) or least(:_allobjs, expression)
+ *   max(:_allobjs, expression) or greatest(:_allobjs, expression)
+ * </pre>
+ * where the expression only depends upon the object (see: {@link #isPerObject(Expression)}).
+ * The value of the expression is gained once for each object (its argument) and the value
+ * of the function is kept in a {@link State} for each group that is updated as objects join
+ * and leave the group.
+ * <p>
+ * The sum (and so the average) is the exact total of the double values rounded to a double,
+ * so it may differ in the last digits from that of executing the query (which adds the values
+ * in turn).
+ */
+class Aggregate
+{
+
+    static final int COUNT = 0;
+    static final int COUNT_TRUE = 1;
+    static final int SUM = 2;
+    static final int AVG = 3;
+    static final int MIN = 4;
+    static final int MAX = 5;
+
+    private int type = -1;
+    private Expression exp = null;
+    private Comparator comp = null;
+
+    private Aggregate (int        type,
+		       Expression exp,
+		       Query      q)
+    {
+
+	this.type = type;
+	this.exp = exp;
+
+	final Comparator uc = q.getObjectComparator ();
+
+	// The same comparison as the min and max functions.
+	this.comp = new Comparator ()
+	{
+
+	    public int compare (Object o1,
+				Object o2)
+	    {
+
+		if (uc != null)
+		{
+
+		    return uc.compare (o1,
+				       o2);
+
+		}
+
+		return Utilities.compare (o1,
+					  o2);
+
+	    }
+
+	};
+
+    }
+
+    /**
+     * Get the aggregate for a SELECT column.
+     *
+     * @param q The query.
+     * @param e The expression of the column.
+     * @return The aggregate or <code>null</code> if the expression isn't one of the
+     *         built-in aggregate functions over <code>:_allobjs</code>.
+     */
+    static Aggregate create (Query      q,
+			     Expression e)
+    {
+
+	e = Aggregate.unwrap (e);
+
+	if (!(e instanceof Function))
+	{
+
+	    return null;
+
+	}
+
+	Function f = (Function) e;
+
+	Method m = f.getMethod ();
+	List ps = f.getParameters ();
+
+	if ((m == null)
+	    ||
+	    (ps == null)
+	    ||
+	    (ps.size () != m.getParameterTypes ().length)
+	    ||
+	    (!Aggregate.isAllObjects ((Expression) ps.get (0)))
+	   )
+	{
+
+	    return null;
+
+	}
+
+	String n = m.getName ();
+
+	if (m.getDeclaringClass () == CollectionFunctions.class)
+	{
+
+	    if (!n.equals ("count"))
+	    {
+
+		return null;
+
+	    }
+
+	    if (ps.size () == 1)
+	    {
+
+		// The list is never empty, so every object counts.
+		return new Aggregate (Aggregate.COUNT,
+				      null,
+				      q);
+
+	    }
+
+	    if ((ps.size () == 2)
+		&&
+		(Aggregate.isPerObject ((Expression) ps.get (1)))
+	       )
+	    {
+
+		return new Aggregate (Aggregate.COUNT_TRUE,
+				      (Expression) ps.get (1),
+				      q);
+
+	    }
+
+	    return null;
+
+	}
+
+	if ((m.getDeclaringClass () != GroupingFunctions.class)
+	    ||
+	    (ps.size () != 2)
+	    ||
+	    (!Aggregate.isPerObject ((Expression) ps.get (1)))
+	   )
+	{
+
+	    return null;
+
+	}
+
+	int t = -1;
+
+	if (n.equals ("sum"))
+	{
+
+	    t = Aggregate.SUM;
+
+	}
+
+	if (n.equals ("avg"))
+	{
+
+	    t = Aggregate.AVG;
+
+	}
+
+	if ((n.equals ("min"))
+	    ||
+	    (n.equals ("least"))
+	   )
+	{
+
+	    t = Aggregate.MIN;
+
+	}
+
+	if ((n.equals ("max"))
+	    ||
+	    (n.equals ("greatest"))
+	   )
+	{
+
+	    t = Aggregate.MAX;
+
+	}
+
+	if (t < 0)
+	{
+
+	    return null;
+
+	}
+
+	return new Aggregate (t,
+			      (Expression) ps.get (1),
+			      q);
+
+    }
+
+    /**
+     * Determine whether the value of an expression only depends upon the current object, i.e.
+     * it is made up of accessors, constants, (non-special) bind variables, arithmetic and
+     * {@link Function#isDeterministic() deterministic} functions.
+     *
+     * @param e The expression.
+     * @return <code>true</code> if the expression only depends upon the current object.
+     */
+    static boolean isPerObject (Expression e)
+    {
+
+	e = Aggregate.unwrap (e);
+
+	if ((e instanceof Accessor)
+	    ||
+	    (e instanceof ConstantExpression)
+	    ||
+	    (e instanceof BooleanExpression)
+	   )
+	{
+
+	    return true;
+
+	}
+
+	if (e instanceof BindVariable)
+	{
+
+	    // The special bind variables (:_allobjs, :_grpby and so on) all start with "_".
+	    String n = ((BindVariable) e).getName ();
+
+	    return (n != null) && (!n.startsWith ("_"));
+
+	}
+
+	if (e instanceof ArithmeticExpression)
+	{
+
+	    ArithmeticExpression a = (ArithmeticExpression) e;
+
+	    return (Aggregate.isPerObject (a.getLeft ()))
+		   &&
+		   (Aggregate.isPerObject (a.getRight ()));
+
+	}
+
+	if (e instanceof Function)
+	{
+
+	    Function f = (Function) e;
+
+	    if (!f.isDeterministic ())
+	    {
+
+		return false;
+
+	    }
+
+	    List ps = f.getParameters ();
+
+	    if (ps != null)
+	    {
+
+		for (int i = 0; i < ps.size (); i++)
+		{
+
+		    if (!Aggregate.isPerObject ((Expression) ps.get (i)))
+		    {
+
+			return false;
+
+		    }
+
+		}
+
+	    }
+
+	    return true;
+
+	}
+
+	return false;
+
+    }
+
+    private static boolean isAllObjects (Expression e)
+    {
+
+	e = Aggregate.unwrap (e);
+
+	if (!(e instanceof BindVariable))
+	{
+
+	    return false;
+
+	}
+
+	BindVariable b = (BindVariable) e;
+
+	return (Query.ALL_OBJS_VAR_NAME.equals (b.getName ()))
+	       &&
+	       (b.getAccessor () == null);
+
+    }
+
+    private static Expression unwrap (Expression e)
+    {
+
+	while (true)
+	{
+
+	    if (e instanceof SharedExpression)
+	    {
+
+		e = ((SharedExpression) e).getExpression ();
+
+		continue;
+
+	    }
+
+	    if (e instanceof InvariantExpression)
+	    {
+
+		e = ((InvariantExpression) e).getExpression ();
+
+		continue;
+
+	    }
+
+	    if (e instanceof ProfiledExpression)
+	    {
+
+		e = ((ProfiledExpression) e).getExpression ();
+
+		continue;
+
+	    }
+
+	    return e;
+
+	}
+
+    }
+
+    /**
+     * Get the argument of the function for an object, this is the value that is added to
+     * and removed from the state of the group.
+     *
+     * @param o The object.
+     * @param q The query.
+     * @return The argument.
+     * @throws QueryExecutionException If the expression cannot be evaluated or, for a sum
+     *                                 or average, doesn't give a number.
+     */
+    Object getArgument (Object o,
+			Query  q)
+	                throws QueryExecutionException
+    {
+
+	if (this.type == Aggregate.COUNT)
+	{
+
+	    return null;
+
+	}
+
+	if (this.type == Aggregate.COUNT_TRUE)
+	{
+
+	    return Boolean.valueOf (this.exp.isTrue (o,
+						     q));
+
+	}
+
+	Object v = this.exp.getValue (o,
+				      q);
+
+	if ((this.type == Aggregate.SUM)
+	    ||
+	    (this.type == Aggregate.AVG)
+	   )
+	{
+
+	    // A sum skips nulls, an average can't.
+	    if (((v == null)
+		 &&
+		 (this.type == Aggregate.AVG)
+		)
+		||
+		((v != null)
+		 &&
+		 (!(v instanceof Number))
+		)
+	       )
+	    {
+
+		throw new QueryExecutionException ("Expected expression: " +
+						   this.exp +
+						   " to return a number (sub-class of: " +
+						   Number.class.getName () +
+						   ") but returns: " +
+						   v +
+						   " for object: " +
+						   o);
+
+	    }
+
+	}
+
+	return v;
+
+    }
+
+    State createState ()
+    {
+
+	return new State ();
+
+    }
+
+    /**
+     * The value of the function for a group.
+     */
+    class State
+    {
+
+	private int size = 0;
+	private int count = 0;
+
+	private BigDecimal total = BigDecimal.ZERO;
+	private int nans = 0;
+	private int posInfs = 0;
+	private int negInfs = 0;
+
+	// The non-null values to the number of times they occur.
+	private TreeMap values = null;
+	private int nulls = 0;
+
+	private State ()
+	{
+
+	    if ((Aggregate.this.type == Aggregate.MIN)
+		||
+		(Aggregate.this.type == Aggregate.MAX)
+	       )
+	    {
+
+		this.values = new TreeMap (Aggregate.this.comp);
+
+	    }
+
+	}
+
+	void add (Object v)
+	{
+
+	    this.update (v,
+			 1);
+
+	}
+
+	void remove (Object v)
+	{
+
+	    this.update (v,
+			 -1);
+
+	}
+
+	private void update (Object v,
+			     int    d)
+	{
+
+	    this.size += d;
+
+	    int t = Aggregate.this.type;
+
+	    if (t == Aggregate.COUNT_TRUE)
+	    {
+
+		if (((Boolean) v).booleanValue ())
+		{
+
+		    this.count += d;
+
+		}
+
+		return;
+
+	    }
+
+	    if ((t == Aggregate.SUM)
+		||
+		(t == Aggregate.AVG)
+	       )
+	    {
+
+		if (v == null)
+		{
+
+		    return;
+
+		}
+
+		double n = ((Number) v).doubleValue ();
+
+		if (Double.isNaN (n))
+		{
+
+		    this.nans += d;
+
+		    return;
+
+		}
+
+		if (Double.isInfinite (n))
+		{
+
+		    if (n > 0)
+		    {
+
+			this.posInfs += d;
+
+		    } else {
+
+			this.negInfs += d;
+
+		    }
+
+		    return;
+
+		}
+
+		BigDecimal b = new BigDecimal (n);
+
+		this.total = (d > 0) ? this.total.add (b) : this.total.subtract (b);
+
+		return;
+
+	    }
+
+	    if (this.values != null)
+	    {
+
+		if (v == null)
+		{
+
+		    this.nulls += d;
+
+		    return;
+
+		}
+
+		int[] c = (int[]) this.values.get (v);
+
+		if (c == null)
+		{
+
+		    c = new int[1];
+
+		    this.values.put (v,
+				     c);
+
+		}
+
+		c[0] += d;
+
+		if (c[0] == 0)
+		{
+
+		    this.values.remove (v);
+
+		}
+
+	    }
+
+	}
+
+	/**
+	 * Get the value of the function.
+	 *
+	 * @param members The rows of the objects in the group, in order.
+	 * @param col The index of the column, the arguments are the values of the rows for
+	 *            the column.
+	 * @return The value.
+	 */
+	Object getValue (List members,
+			 int  col)
+	{
+
+	    int t = Aggregate.this.type;
+
+	    if (t == Aggregate.COUNT)
+	    {
+
+		return Integer.valueOf (this.size);
+
+	    }
+
+	    if (t == Aggregate.COUNT_TRUE)
+	    {
+
+		return Integer.valueOf (this.count);
+
+	    }
+
+	    if (t == Aggregate.SUM)
+	    {
+
+		return Double.valueOf (this.getTotal ());
+
+	    }
+
+	    if (t == Aggregate.AVG)
+	    {
+
+		return Double.valueOf (this.getTotal () / this.size);
+
+	    }
+
+	    if (t == Aggregate.MIN)
+	    {
+
+		// A null is greater than any value, so is only the minimum if there
+		// are no other values.
+		return (this.values.size () == 0) ? null : this.values.firstKey ();
+
+	    }
+
+	    if (this.nulls == 0)
+	    {
+
+		return this.values.lastKey ();
+
+	    }
+
+	    // As the max function, a null "resets" the maximum so it depends on the order.
+	    Object g = null;
+
+	    for (int i = 0; i < members.size (); i++)
+	    {
+
+		Object v = ((Row) members.get (i)).values[col];
+
+		if ((g == null)
+		    ||
+		    (Aggregate.this.comp.compare (v,
+						  g) > 0)
+		   )
+		{
+
+		    g = v;
+
+		}
+
+	    }
+
+	    return g;
+
+	}
+
+	private double getTotal ()
+	{
+
+	    if ((this.nans > 0)
+		||
+		((this.posInfs > 0)
+		 &&
+		 (this.negInfs > 0)
+		)
+	       )
+	    {
+
+		return Double.NaN;
+
+	    }
+
+	    if (this.posInfs > 0)
+	    {
+
+		return Double.POSITIVE_INFINITY;
+
+	    }
+
+	    if (this.negInfs > 0)
+	    {
+
+		return Double.NEGATIVE_INFINITY;
+
+	    }
+
+	    return this.total.doubleValue ();
+
+	}
+
+    }
+
+}
@@ -0,0 +1,1018 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.live;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryParseException;
+import dev.mccue.josql.QueryExecutionException;
+
+import dev.mccue.josql.expressions.Expression;
+import dev.mccue.josql.expressions.SelectItemExpression;
+
+import dev.mccue.josql.internal.ListExpressionComparator;
+
+/**
+ * Delivers the changes to the results of a query to listeners as objects are added to,
+ * removed from and updated in a source collection, without executing the query again.
+ * Each change only evaluates the WHERE and HAVING clauses (and the SELECT columns) for the
+ * changed object.
+ * <p>
+ * Usage:
+ * <pre>
+ *   Query q = new Query ();
+ *   q.parse ("SELECT name, count(:_allobjs) FROM java.io.File WHERE length > 1000 GROUP BY parent");
+ *
+ *   ContinuousQuery cq = new ContinuousQuery (q,
+ *                                             myFiles);
+ *
+ *   cq.addContinuousQueryListener (myListener);
+ *
+ *   // As files change...
+ *   cq.objectAdded (newFile);
+ *   cq.objectUpdated (changedFile);
+ *   cq.objectRemoved (deletedFile);
+ * </pre>
+ * <p>
+ * Without a GROUP BY clause each object that matches has a row and a change to an object causes
+ * at most one event, see: {@link ContinuousQueryEvent}.
+ * <p>
+ * With a GROUP BY clause the objects are kept in their groups and a change to an object only
+ * affects the group it was in and the group it is now in.  The value of the <code>:_allobjs</code>
+ * bind variable is the objects in the group, the order of the groups is the order they were created
+ * in.  If each SELECT column is either one of the built-in count, sum, avg, min (least) or max
+ * (greatest) functions over <code>:_allobjs</code> or only depends upon the object (accessors,
+ * constants, arithmetic and deterministic functions) then the columns are only evaluated for the
+ * changed object and the aggregates are kept as running values for each group (the sum and average
+ * are exact totals rounded to a double, so may differ in the last digits from executing the query).
+ * Otherwise the SELECT columns are evaluated again over all the objects in each affected group, so
+ * the cost of a change grows with the size of the groups it affects.
+ * <p>
+ * Only queries without GROUP BY ORDER, GROUP BY LIMIT, LIMIT, DISTINCT and EXECUTE ON clauses
+ * can be used and WHERE and HAVING clauses that depend upon all the objects are not supported.
+ * Objects are identified by identity, adding an object that is already present is treated as
+ * an update.
+ * <p>
+ * The methods of this class are synchronized and the listeners are called from within them,
+ * the query should not be executed elsewhere while it is in use.
+ */
+public class ContinuousQuery
+{
+
+    private Query q = null;
+    private ListExpressionComparator comp = null;
+    private boolean grouped = false;
+
+    private List listeners = new ArrayList ();
+
+    // Every object seen (whether it matches or not) to its entry.
+    private Map objEntries = new IdentityHashMap ();
+    private long seq = 0;
+
+    // The entries that match, in order (without a GROUP BY clause).
+    private List rows = new ArrayList ();
+
+    // Group by values to group.
+    private Map groups = new LinkedHashMap ();
+
+    // The aggregate for each SELECT column (null for a column that only depends upon the
+    // object) or null if the columns are evaluated again over the objects in a group.
+    private Aggregate[] aggs = null;
+
+    private Comparator entryComp = null;
+
+    public ContinuousQuery (Query q)
+	                    throws QueryParseException
+    {
+
+	ContinuousQuery.checkQuery (q);
+
+	this.q = q;
+	this.comp = (ListExpressionComparator) q.getOrderByComparator ();
+	this.entryComp = LiveQueries.createRowComparator (this.comp);
+	this.grouped = q.getGroupByColumns () != null;
+
+	if (this.grouped)
+	{
+
+	    this.aggs = ContinuousQuery.getAggregates (q);
+
+	}
+
+    }
+
+    /**
+     * Create the continuous query with an initial set of objects, no events are fired
+     * for these objects.
+     *
+     * @param q The query.
+     * @param objs The objects.
+     * @throws QueryParseException If the query cannot be used for a continuous query.
+     * @throws QueryExecutionException If the query cannot be evaluated for an object.
+     */
+    public ContinuousQuery (Query      q,
+			    Collection objs)
+	                    throws     QueryParseException,
+				       QueryExecutionException
+    {
+
+	this (q);
+
+	Iterator iter = objs.iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Object o = iter.next ();
+
+	    if (this.objEntries.containsKey (o))
+	    {
+
+		continue;
+
+	    }
+
+	    Row e = this.createRow (o,
+				    this.seq++);
+
+	    this.objEntries.put (o,
+				 e);
+
+	    if (!e.in)
+	    {
+
+		continue;
+
+	    }
+
+	    if (this.grouped)
+	    {
+
+		Group g = this.getGroup (e.group);
+
+		g.members.add (e);
+
+		this.updateStates (g,
+				   e,
+				   true);
+
+	    } else {
+
+		this.rows.add (e);
+
+	    }
+
+	}
+
+	if (this.comp != null)
+	{
+
+	    // Stable, so equal objects stay in the order they were passed in.
+	    Collections.sort (this.rows,
+			      this.entryComp);
+
+	}
+
+	Iterator giter = this.groups.entrySet ().iterator ();
+
+	while (giter.hasNext ())
+	{
+
+	    Map.Entry en = (Map.Entry) giter.next ();
+
+	    Group g = (Group) en.getValue ();
+
+	    if (this.comp != null)
+	    {
+
+		Collections.sort (g.members,
+				  this.entryComp);
+
+	    }
+
+	    if (this.aggs == null)
+	    {
+
+		g.rows = this.getRows ((List) en.getKey (),
+				       g.members);
+
+	    }
+
+	}
+
+    }
+
+    public Query getQuery ()
+    {
+
+	return this.q;
+
+    }
+
+    public synchronized void addContinuousQueryListener (ContinuousQueryListener l)
+    {
+
+	if (!this.listeners.contains (l))
+	{
+
+	    this.listeners.add (l);
+
+	}
+
+    }
+
+    public synchronized void removeContinuousQueryListener (ContinuousQueryListener l)
+    {
+
+	this.listeners.remove (l);
+
+    }
+
+    /**
+     * Check that the query can be used for a continuous query.
+     *
+     * @param q The query.
+     * @throws QueryParseException If the query has not been parsed or uses a clause that
+     *                             isn't supported.
+     */
+    public static void checkQuery (Query q)
+	                           throws QueryParseException
+    {
+
+	LiveQueries.checkQuery (q,
+				true,
+				"a continuous query");
+
+    }
+
+    /**
+     * Add an object, if it matches the WHERE and HAVING clauses then the listeners are
+     * told of the new (or changed) row.
+     *
+     * @param o The object.
+     * @throws QueryExecutionException If the query cannot be evaluated for the object, in which
+     *                                 case the object is removed.
+     */
+    public synchronized void objectAdded (Object o)
+	                                  throws QueryExecutionException
+    {
+
+	Row old = (Row) this.objEntries.remove (o);
+
+	Row e = null;
+
+	try
+	{
+
+	    // An updated object keeps its place amongst equal objects.
+	    e = this.createRow (o,
+				(old != null) ? old.seq : this.seq++);
+
+	} catch (QueryExecutionException ex) {
+
+	    this.apply (o,
+			old,
+			null);
+
+	    throw ex;
+
+	}
+
+	this.objEntries.put (o,
+			     e);
+
+	this.apply (o,
+		    old,
+		    e);
+
+    }
+
+    /**
+     * Remove an object, if it is in the results then the listeners are told of the removed
+     * (or changed) row.
+     *
+     * @param o The object.
+     * @throws QueryExecutionException If the rows for the object's group cannot be gained.
+     */
+    public synchronized void objectRemoved (Object o)
+	                                    throws QueryExecutionException
+    {
+
+	this.apply (o,
+		    (Row) this.objEntries.remove (o),
+		    null);
+
+    }
+
+    /**
+     * Indicate that an object has changed, the WHERE and HAVING clauses are evaluated for
+     * the object again.
+     *
+     * @param o The object.
+     * @throws QueryExecutionException If the query cannot be evaluated for the object, in which
+     *                                 case the object is removed.
+     */
+    public synchronized void objectUpdated (Object o)
+	                                    throws QueryExecutionException
+    {
+
+	this.objectAdded (o);
+
+    }
+
+    /**
+     * Get the current results, this is a copy and won't change.
+     *
+     * @return The results, either the objects or Lists of the column values or, with
+     *         a GROUP BY clause, the Lists of group by values (as per:
+     *         {@link dev.mccue.josql.QueryResults#getResults()}).
+     */
+    public synchronized List getResults ()
+    {
+
+	if (this.grouped)
+	{
+
+	    return new ArrayList (this.groups.keySet ());
+
+	}
+
+	List res = new ArrayList (this.rows.size ());
+
+	for (int i = 0; i < this.rows.size (); i++)
+	{
+
+	    res.add (((Row) this.rows.get (i)).value);
+
+	}
+
+	return res;
+
+    }
+
+    /**
+     * Get the current rows for each group, this is a copy and won't change.
+     *
+     * @return The group by values to the List of rows for the group (as per:
+     *         {@link dev.mccue.josql.QueryResults#getGroupByResults()}) or <code>null</code>
+     *         if there is no GROUP BY clause.
+     */
+    public synchronized Map getGroupByResults ()
+    {
+
+	if (!this.grouped)
+	{
+
+	    return null;
+
+	}
+
+	Map res = new LinkedHashMap ();
+
+	Iterator iter = this.groups.entrySet ().iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Map.Entry en = (Map.Entry) iter.next ();
+
+	    res.put (en.getKey (),
+		     new ArrayList (this.getRows ((Group) en.getValue ())));
+
+	}
+
+	return res;
+
+    }
+
+    private void apply (Object o,
+			Row    old,
+			Row    e)
+	                throws QueryExecutionException
+    {
+
+	boolean wasIn = (old != null) && (old.in);
+	boolean isIn = (e != null) && (e.in);
+
+	if (!this.grouped)
+	{
+
+	    if (wasIn)
+	    {
+
+		// The keys are the ones the entry was inserted with, so the entry
+		// can be found even if the object has since changed.
+		this.rows.remove (Collections.binarySearch (this.rows,
+							    old,
+							    this.entryComp));
+
+	    }
+
+	    if (isIn)
+	    {
+
+		// Not present, so this gives the insertion point.
+		int i = -Collections.binarySearch (this.rows,
+						   e,
+						   this.entryComp) - 1;
+
+		this.rows.add (i,
+			       e);
+
+	    }
+
+	    if ((wasIn)
+		&&
+		(isIn)
+	       )
+	    {
+
+		this.fireEvent (ContinuousQueryEvent.CHANGED,
+				o,
+				old.value,
+				e.value);
+
+		return;
+
+	    }
+
+	    if (wasIn)
+	    {
+
+		this.fireEvent (ContinuousQueryEvent.REMOVED,
+				o,
+				old.value,
+				null);
+
+	    }
+
+	    if (isIn)
+	    {
+
+		this.fireEvent (ContinuousQueryEvent.ADDED,
+				o,
+				null,
+				e.value);
+
+	    }
+
+	    return;
+
+	}
+
+	// The rows before the change are only needed for the events.
+	boolean ev = this.listeners.size () > 0;
+
+	Group og = null;
+	Group ng = null;
+
+	if (wasIn)
+	{
+
+	    og = (Group) this.groups.get (old.group);
+
+	    if (ev)
+	    {
+
+		this.getRows (og);
+
+	    }
+
+	    // The keys are the ones the entry was inserted with, so the entry
+	    // can be found even if the object has since changed.
+	    og.members.remove (Collections.binarySearch (og.members,
+							 old,
+							 this.entryComp));
+
+	    this.updateStates (og,
+			       old,
+			       false);
+
+	}
+
+	if (isIn)
+	{
+
+	    ng = (Group) this.groups.get (e.group);
+
+	    if ((ng != null)
+		&&
+		(ev)
+	       )
+	    {
+
+		this.getRows (ng);
+
+	    }
+
+	    ng = this.getGroup (e.group);
+
+	    // Not present, so this gives the insertion point.
+	    int i = -Collections.binarySearch (ng.members,
+					       e,
+					       this.entryComp) - 1;
+
+	    ng.members.add (i,
+			    e);
+
+	    this.updateStates (ng,
+			       e,
+			       true);
+
+	}
+
+	// Only the groups the object has left and joined have changed.
+	if ((og != null)
+	    &&
+	    (og != ng)
+	   )
+	{
+
+	    this.updateGroup (old.group,
+			      og);
+
+	}
+
+	if (ng != null)
+	{
+
+	    this.updateGroup (e.group,
+			      ng);
+
+	}
+
+    }
+
+    private void updateGroup (List  key,
+			      Group g)
+	                      throws QueryExecutionException
+    {
+
+	List from = g.rows;
+
+	if (g.members.size () == 0)
+	{
+
+	    this.groups.remove (key);
+
+	    this.fireEvent (ContinuousQueryEvent.REMOVED,
+			    key,
+			    from,
+			    null);
+
+	    return;
+
+	}
+
+	g.rows = null;
+
+	if (this.aggs == null)
+	{
+
+	    g.rows = this.getRows (key,
+				   g.members);
+
+	} else {
+
+	    if (this.listeners.size () == 0)
+	    {
+
+		// Created when needed.
+		return;
+
+	    }
+
+	}
+
+	this.fireEvent ((from == null) ? ContinuousQueryEvent.ADDED : ContinuousQueryEvent.CHANGED,
+			key,
+			from,
+			this.getRows (g));
+
+    }
+
+    private Group getGroup (List key)
+    {
+
+	Group g = (Group) this.groups.get (key);
+
+	if (g == null)
+	{
+
+	    g = new Group ();
+
+	    if (this.aggs != null)
+	    {
+
+		g.states = new Aggregate.State[this.aggs.length];
+
+		for (int i = 0; i < this.aggs.length; i++)
+		{
+
+		    if (this.aggs[i] != null)
+		    {
+
+			g.states[i] = this.aggs[i].createState ();
+
+		    }
+
+		}
+
+	    }
+
+	    this.groups.put (key,
+			     g);
+
+	}
+
+	return g;
+
+    }
+
+    private void updateStates (Group   g,
+			       Row     e,
+			       boolean add)
+    {
+
+	if (g.states == null)
+	{
+
+	    return;
+
+	}
+
+	for (int i = 0; i < g.states.length; i++)
+	{
+
+	    if (g.states[i] == null)
+	    {
+
+		continue;
+
+	    }
+
+	    if (add)
+	    {
+
+		g.states[i].add (e.values[i]);
+
+	    } else {
+
+		g.states[i].remove (e.values[i]);
+
+	    }
+
+	}
+
+    }
+
+    /**
+     * Get the rows of a group, the rows are created from the states of the aggregates if
+     * they aren't already present.
+     *
+     * @param g The group.
+     * @return The rows.
+     */
+    private List getRows (Group g)
+    {
+
+	if (g.rows != null)
+	{
+
+	    return g.rows;
+
+	}
+
+	Object[] vs = new Object[this.aggs.length];
+
+	for (int i = 0; i < vs.length; i++)
+	{
+
+	    if (g.states[i] != null)
+	    {
+
+		vs[i] = g.states[i].getValue (g.members,
+					      i);
+
+	    }
+
+	}
+
+	g.rows = new GroupRows (g.members.toArray (),
+				this.aggs,
+				vs);
+
+	return g.rows;
+
+    }
+
+    private Row createRow (Object o,
+			   long   seq)
+	                   throws QueryExecutionException
+    {
+
+	Row e = LiveQueries.createRow (this.q,
+				       this.comp,
+				       o,
+				       seq,
+				       this.grouped);
+
+	if ((!e.in)
+	    ||
+	    (this.aggs == null)
+	    ||
+	    (this.aggs.length == 0)
+	   )
+	{
+
+	    return e;
+
+	}
+
+	List cols = this.q.getColumns ();
+
+	e.values = new Object[cols.size ()];
+
+	for (int i = 0; i < e.values.length; i++)
+	{
+
+	    this.q.setCurrentObject (o);
+
+	    if (this.aggs[i] != null)
+	    {
+
+		e.values[i] = this.aggs[i].getArgument (o,
+							this.q);
+
+	    } else {
+
+		e.values[i] = ((SelectItemExpression) cols.get (i)).getValue (o,
+									      this.q);
+
+	    }
+
+	}
+
+	return e;
+
+    }
+
+    /**
+     * Get the aggregates for the SELECT columns.
+     *
+     * @param q The query.
+     * @return The aggregate for each column (<code>null</code> for a column that only depends
+     *         upon the object, none if the objects are selected) or <code>null</code> if a
+     *         column is neither.
+     */
+    private static Aggregate[] getAggregates (Query q)
+    {
+
+	if (q.isWantObjects ())
+	{
+
+	    return new Aggregate[0];
+
+	}
+
+	List cols = q.getColumns ();
+
+	Aggregate[] as = new Aggregate[cols.size ()];
+
+	for (int i = 0; i < as.length; i++)
+	{
+
+	    Expression e = ((SelectItemExpression) cols.get (i)).getExpression ();
+
+	    as[i] = Aggregate.create (q,
+				      e);
+
+	    if ((as[i] == null)
+		&&
+		(!Aggregate.isPerObject (e))
+	       )
+	    {
+
+		return null;
+
+	    }
+
+	}
+
+	return as;
+
+    }
+
+    private List getRows (List   key,
+			  List   members)
+	                  throws QueryExecutionException
+    {
+
+	List objs = new ArrayList (members.size ());
+
+	for (int i = 0; i < members.size (); i++)
+	{
+
+	    objs.add (((Row) members.get (i)).object);
+
+	}
+
+	this.q.setAllObjects (objs);
+	this.q.setCurrentGroupByObjects (key);
+
+	try
+	{
+
+	    return Collections.unmodifiableList (this.q.getSelectValues (objs));
+
+	} finally {
+
+	    this.q.setAllObjects (null);
+	    this.q.setCurrentGroupByObjects (null);
+
+	}
+
+    }
+
+    private void fireEvent (int    type,
+			    Object key,
+			    Object from,
+			    Object to)
+    {
+
+	if (this.listeners.size () == 0)
+	{
+
+	    return;
+
+	}
+
+	ContinuousQueryEvent ev = new ContinuousQueryEvent (this,
+							    type,
+							    key,
+							    from,
+							    to);
+
+	// A listener may remove itself.
+	List l = new ArrayList (this.listeners);
+
+	for (int i = 0; i < l.size (); i++)
+	{
+
+	    ContinuousQueryListener cql = (ContinuousQueryListener) l.get (i);
+
+	    if (type == ContinuousQueryEvent.ADDED)
+	    {
+
+		cql.rowAdded (ev);
+
+	    }
+
+	    if (type == ContinuousQueryEvent.REMOVED)
+	    {
+
+		cql.rowRemoved (ev);
+
+	    }
+
+	    if (type == ContinuousQueryEvent.CHANGED)
+	    {
+
+		cql.rowChanged (ev);
+
+	    }
+
+	}
+
+    }
+
+    private static class Group
+    {
+
+	// The entries in the group, in order.
+	private List members = new ArrayList ();
+
+	// The state of each aggregate, if the rows are created from them.
+	private Aggregate.State[] states = null;
+
+	// Created when needed if there are states.
+	private List rows = null;
+
+    }
+
+    /**
+     * The rows of a group at a point in time, created from the entries and the values of
+     * the aggregates.
+     */
+    private static class GroupRows extends AbstractList
+    {
+
+	private Object[] members = null;
+	private Aggregate[] aggs = null;
+	private Object[] values = null;
+
+	private GroupRows (Object[]    members,
+			   Aggregate[] aggs,
+			   Object[]    values)
+	{
+
+	    this.members = members;
+	    this.aggs = aggs;
+	    this.values = values;
+
+	}
+
+	public Object get (int index)
+	{
+
+	    Row e = (Row) this.members[index];
+
+	    if (this.aggs.length == 0)
+	    {
+
+		return e.object;
+
+	    }
+
+	    return new RowValues (e.values,
+				  this.aggs,
+				  this.values);
+
+	}
+
+	public int size ()
+	{
+
+	    return this.members.length;
+
+	}
+
+    }
+
+    /**
+     * The column values of a row, the values of the aggregates are those of the group.
+     */
+    private static class RowValues extends AbstractList
+    {
+
+	private Object[] values = null;
+	private Aggregate[] aggs = null;
+	private Object[] aggValues = null;
+
+	private RowValues (Object[]    values,
+			   Aggregate[] aggs,
+			   Object[]    aggValues)
+	{
+
+	    this.values = values;
+	    this.aggs = aggs;
+	    this.aggValues = aggValues;
+
+	}
+
+	public Object get (int index)
+	{
+
+	    if (this.aggs[index] != null)
+	    {
+
+		return this.aggValues[index];
+
+	    }
+
+	    return this.values[index];
+
+	}
+
+	public int size ()
+	{
+
+	    return this.values.length;
+
+	}
+
+    }
+
+}
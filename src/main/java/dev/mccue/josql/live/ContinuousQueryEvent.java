@@ -0,0 +1,105 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.live;
+
+import java.util.EventObject;
+
+/**
+ * A change to the results of a {@link ContinuousQuery}.
+ * <p>
+ * For a query without a GROUP BY clause the key is the object that was added, removed or
+ * updated and the values are the result row for the object, either the object itself or a
+ * List of the column values.
+ * <p>
+ * For a query with a GROUP BY clause the key is the group (the List of group by values, as per:
+ * {@link dev.mccue.josql.QueryResults#getResults()}) and the values are the Lists of rows for the
+ * group (as per: {@link dev.mccue.josql.QueryResults#getGroupByResults()}).
+ * <p>
+ * The from value is <code>null</code> when a row is added and the to value is <code>null</code>
+ * when a row is removed.
+ */
+public class ContinuousQueryEvent extends EventObject
+{
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int ADDED = 0;
+    public static final int REMOVED = 1;
+    public static final int CHANGED = 2;
+
+    private ContinuousQuery cq = null;
+    private int type = -1;
+    private Object key = null;
+    private Object from = null;
+    private Object to = null;
+
+    public ContinuousQueryEvent (ContinuousQuery cq,
+				 int             type,
+				 Object          key,
+				 Object          from,
+				 Object          to)
+    {
+
+	super (cq);
+
+	this.cq = cq;
+	this.type = type;
+	this.key = key;
+	this.from = from;
+	this.to = to;
+
+    }
+
+    /**
+     * Get the type of change, one of: {@link #ADDED}, {@link #REMOVED} or {@link #CHANGED}.
+     *
+     * @return The type.
+     */
+    public int getType ()
+    {
+
+	return this.type;
+
+    }
+
+    public Object getKey ()
+    {
+
+	return this.key;
+
+    }
+
+    public Object getTo ()
+    {
+
+	return this.to;
+
+    }
+
+    public Object getFrom ()
+    {
+
+	return this.from;
+
+    }
+
+    public ContinuousQuery getContinuousQuery ()
+    {
+
+	return this.cq;
+
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.live;
+
+import java.util.List;
+import java.util.Comparator;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryParseException;
+import dev.mccue.josql.QueryExecutionException;
+
+import dev.mccue.josql.expressions.SelectItemExpression;
+import dev.mccue.josql.expressions.NewObjectExpression;
+
+import dev.mccue.josql.internal.ListExpressionComparator;
+
+/**
+ * The checks and rows shared by {@link LiveQueryView} and {@link ContinuousQuery}.
+ */
+class LiveQueries
+{
+
+    private LiveQueries ()
+    {
+
+    }
+
+    /**
+     * Check that the query can be used.  A query with a LIMIT, DISTINCT or EXECUTE ON clause
+     * or a SELECT column that adds items or creates new objects can't be used.
+     *
+     * @param q The query.
+     * @param grouped Whether GROUP BY and HAVING clauses are supported, if they are then
+     *                GROUP BY ORDER and GROUP BY LIMIT clauses still aren't.
+     * @param use What the query is to be used for, used in the message of the exception.
+     * @throws QueryParseException If the query has not been parsed or uses a clause that
+     *                             isn't supported.
+     */
+    static void checkQuery (Query   q,
+			    boolean grouped,
+			    String  use)
+	                    throws  QueryParseException
+    {
+
+	if (!q.parsed ())
+	{
+
+	    throw new QueryParseException ("Query has not been parsed.");
+
+	}
+
+	String c = null;
+
+	if (grouped)
+	{
+
+	    if (q.getGroupByOrderColumns () != null)
+	    {
+
+		c = "GROUP BY ORDER";
+
+	    }
+
+	    if (q.getGroupByLimit () != null)
+	    {
+
+		c = "GROUP BY LIMIT";
+
+	    }
+
+	} else {
+
+	    if (q.getGroupByColumns () != null)
+	    {
+
+		c = "GROUP BY";
+
+	    }
+
+	    if (q.getHavingClause () != null)
+	    {
+
+		c = "HAVING";
+
+	    }
+
+	}
+
+	if (q.getLimit () != null)
+	{
+
+	    c = "LIMIT";
+
+	}
+
+	if (q.isWantDistinctResults ())
+	{
+
+	    c = "DISTINCT";
+
+	}
+
+	if ((q.getExecuteOnFunctions () != null)
+	    &&
+	    (q.getExecuteOnFunctions ().size () > 0)
+	   )
+	{
+
+	    c = "EXECUTE ON";
+
+	}
+
+	if (!q.isWantObjects ())
+	{
+
+	    List cols = q.getColumns ();
+
+	    for (int i = 0; i < cols.size (); i++)
+	    {
+
+		SelectItemExpression s = (SelectItemExpression) cols.get (i);
+
+		if ((s.isAddItemsFromCollectionOrMap ())
+		    ||
+		    (s.getExpression () instanceof NewObjectExpression)
+		   )
+		{
+
+		    c = "SELECT " + s;
+
+		}
+
+	    }
+
+	}
+
+	if (c != null)
+	{
+
+	    throw new QueryParseException ("Query: " +
+					   q +
+					   " cannot be used for " +
+					   use +
+					   ", " +
+					   c +
+					   " is not supported.");
+
+	}
+
+    }
+
+    /**
+     * Create the comparator for rows, rows are ordered by their ORDER BY values and then
+     * rows that are equal are in the order they were first added.
+     *
+     * @param comp The comparator for the ORDER BY values, may be <code>null</code>.
+     * @return The comparator.
+     */
+    static Comparator createRowComparator (final ListExpressionComparator comp)
+    {
+
+	return new Comparator ()
+	{
+
+	    public int compare (Object o1,
+				Object o2)
+	    {
+
+		Row r1 = (Row) o1;
+		Row r2 = (Row) o2;
+
+		if (comp != null)
+		{
+
+		    int c = comp.compareSortValues (r1.keys,
+						    r2.keys);
+
+		    if (c != 0)
+		    {
+
+			return c;
+
+		    }
+
+		}
+
+		return (r1.seq < r2.seq) ? -1 : ((r1.seq == r2.seq) ? 0 : 1);
+
+	    }
+
+	};
+
+    }
+
+    /**
+     * Create the row for an object, the WHERE and HAVING clauses are evaluated for the
+     * object and, if it matches, the ORDER BY values and either the group by values or
+     * the select value are gained.
+     *
+     * @param q The query.
+     * @param comp The comparator for the ORDER BY values, may be <code>null</code>.
+     * @param o The object.
+     * @param seq The sequence of the row.
+     * @param grouped Whether the query has a GROUP BY clause.
+     * @return The row.
+     * @throws QueryExecutionException If the query cannot be evaluated for the object.
+     */
+    static Row createRow (Query                    q,
+			  ListExpressionComparator comp,
+			  Object                   o,
+			  long                     seq,
+			  boolean                  grouped)
+	                  throws                   QueryExecutionException
+    {
+
+	Row r = new Row ();
+	r.object = o;
+	r.seq = seq;
+
+	q.setCurrentObject (o);
+
+	r.in = q.isWhereTrue (o);
+
+	if (r.in)
+	{
+
+	    q.setCurrentObject (o);
+
+	    r.in = q.isHavingTrue (o);
+
+	}
+
+	if (!r.in)
+	{
+
+	    return r;
+
+	}
+
+	if (comp != null)
+	{
+
+	    r.keys = comp.getSortValues (o);
+
+	}
+
+	if (grouped)
+	{
+
+	    r.group = q.getGroupByValues (o);
+
+	} else {
+
+	    r.value = q.getSelectValue (o);
+
+	}
+
+	return r;
+
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.live;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.IdentityHashMap;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryParseException;
+import dev.mccue.josql.QueryExecutionException;
+
+import dev.mccue.josql.internal.ListExpressionComparator;
+
+/**
+ * Keeps the results of a query up to date as objects are added to, removed from and updated
+ * in a source collection.  Rather than executing the query again each change only evaluates
+ * the WHERE clause (and SELECT columns) for the changed object and, if there is an ORDER BY
+ * clause, the object is inserted in the correct place via a binary search.
+ * <p>
+ * Usage:
+ * <pre>
+ *   Query q = new Query ();
+ *   q.parse ("SELECT * FROM java.io.File WHERE length > 1000 ORDER BY length DESC");
+ *
+ *   LiveQueryView v = new LiveQueryView (q,
+ *                                        myFiles);
+ *
+ *   // As files change...
+ *   v.objectAdded (newFile);
+ *   v.objectUpdated (changedFile);
+ *   v.objectRemoved (deletedFile);
+ *
+ *   List res = v.getResults ();
+ * </pre>
+ * <p>
+ * The results are the same as those from {@link Query#execute(java.util.List)} on the source objects,
+ * objects that are equal in the ORDER BY are in the order they were first added.  Only queries
+ * without GROUP BY, HAVING, LIMIT, DISTINCT and EXECUTE ON clauses can be used and expressions that
+ * depend upon all the objects (such as: <code>count(:_allobjs)</code>) are not supported.
+ * Objects are identified by identity and each object can only be present once, adding an
+ * object that is already present is treated as an update.  The view holds every object added
+ * (not just those that match) until it is removed.
+ * <p>
+ * The methods of this class are synchronized, the query should not be executed elsewhere while
+ * it is in use by the view.
+ */
+public class LiveQueryView
+{
+
+    private Query q = null;
+    private ListExpressionComparator comp = null;
+
+    // The rows that match the WHERE clause, in order.
+    private List rows = new ArrayList ();
+
+    // Every object seen (whether it matches or not) to its row, the sequence of
+    // the row gives the order of equal objects.
+    private Map objRows = new IdentityHashMap ();
+    private long seq = 0;
+
+    private Comparator rowComp = null;
+
+    public LiveQueryView (Query q)
+	                  throws QueryParseException
+    {
+
+	LiveQueryView.checkQuery (q);
+
+	this.q = q;
+	this.comp = (ListExpressionComparator) q.getOrderByComparator ();
+	this.rowComp = LiveQueries.createRowComparator (this.comp);
+
+    }
+
+    /**
+     * Create the view with an initial set of objects, the matching objects are sorted once.
+     *
+     * @param q The query.
+     * @param objs The objects.
+     * @throws QueryParseException If the query cannot be used for a live view.
+     * @throws QueryExecutionException If the query cannot be evaluated for an object.
+     */
+    public LiveQueryView (Query      q,
+			  Collection objs)
+	                  throws     QueryParseException,
+				     QueryExecutionException
+    {
+
+	this (q);
+
+	Iterator iter = objs.iterator ();
+
+	while (iter.hasNext ())
+	{
+
+	    Object o = iter.next ();
+
+	    if (this.objRows.containsKey (o))
+	    {
+
+		continue;
+
+	    }
+
+	    Row r = this.createRow (o,
+				    this.seq++);
+
+	    this.objRows.put (o,
+			      r);
+
+	    if (r.in)
+	    {
+
+		this.rows.add (r);
+
+	    }
+
+	}
+
+	if (this.comp != null)
+	{
+
+	    // Stable, so equal objects stay in the order they were passed in.
+	    Collections.sort (this.rows,
+			      this.rowComp);
+
+	}
+
+    }
+
+    public Query getQuery ()
+    {
+
+	return this.q;
+
+    }
+
+    /**
+     * Check that the query can be used for a live view.
+     *
+     * @param q The query.
+     * @throws QueryParseException If the query has not been parsed or uses a clause that
+     *                             isn't supported.
+     */
+    public static void checkQuery (Query q)
+	                           throws QueryParseException
+    {
+
+	LiveQueries.checkQuery (q,
+				false,
+				"a live view");
+
+    }
+
+    /**
+     * Add an object, if it matches the WHERE clause it is added to the results.
+     *
+     * @param o The object.
+     * @return <code>true</code> if the results changed.
+     * @throws QueryExecutionException If the query cannot be evaluated for the object.
+     */
+    public synchronized boolean objectAdded (Object o)
+	                                     throws QueryExecutionException
+    {
+
+	// If the new row can't be created then the object is dropped.
+	Row old = (Row) this.objRows.remove (o);
+
+	boolean ch = this.remove (old);
+
+	// An updated object keeps its place amongst equal objects.
+	Row r = this.createRow (o,
+				(old != null) ? old.seq : this.seq++);
+
+	this.objRows.put (o,
+			  r);
+
+	if (!r.in)
+	{
+
+	    return ch;
+
+	}
+
+	// Not present, so this gives the insertion point.
+	int i = -Collections.binarySearch (this.rows,
+					   r,
+					   this.rowComp) - 1;
+
+	this.rows.add (i,
+		       r);
+
+	return true;
+
+    }
+
+    /**
+     * Remove an object, if it is in the results then it is removed from them.
+     *
+     * @param o The object.
+     * @return <code>true</code> if the results changed.
+     */
+    public synchronized boolean objectRemoved (Object o)
+    {
+
+	return this.remove ((Row) this.objRows.remove (o));
+
+    }
+
+    /**
+     * Indicate that an object has changed, it is removed from the results and then
+     * added again if it (still) matches the WHERE clause.
+     *
+     * @param o The object.
+     * @return <code>true</code> if the results changed.
+     * @throws QueryExecutionException If the query cannot be evaluated for the object.
+     */
+    public synchronized boolean objectUpdated (Object o)
+	                                       throws QueryExecutionException
+    {
+
+	return this.objectAdded (o);
+
+    }
+
+    /**
+     * Get the current results, this is a copy and won't change.
+     *
+     * @return The results, either the objects or Lists of the column values (as
+     *         per: {@link dev.mccue.josql.QueryResults#getResults()}).
+     */
+    public synchronized List getResults ()
+    {
+
+	List res = new ArrayList (this.rows.size ());
+
+	for (int i = 0; i < this.rows.size (); i++)
+	{
+
+	    res.add (((Row) this.rows.get (i)).value);
+
+	}
+
+	return res;
+
+    }
+
+    public synchronized int size ()
+    {
+
+	return this.rows.size ();
+
+    }
+
+    private Row createRow (Object o,
+			   long   seq)
+	                   throws QueryExecutionException
+    {
+
+	return LiveQueries.createRow (this.q,
+				      this.comp,
+				      o,
+				      seq,
+				      false);
+
+    }
+
+    private boolean remove (Row r)
+    {
+
+	if ((r == null)
+	    ||
+	    (!r.in)
+	   )
+	{
+
+	    return false;
+
+	}
+
+	// The keys are the ones the row was inserted with, so the row
+	// can be found even if the object has since changed.
+	this.rows.remove (Collections.binarySearch (this.rows,
+						    r,
+						    this.rowComp));
+
+	return true;
+
+    }
+
+}
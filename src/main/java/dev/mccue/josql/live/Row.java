@@ -0,0 +1,37 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.live;
+
+import java.util.List;
+
+/**
+ * The row for an object in a {@link LiveQueryView} or {@link ContinuousQuery}, see:
+ * {@link LiveQueries#createRow(dev.mccue.josql.Query,dev.mccue.josql.internal.ListExpressionComparator,Object,long,boolean)}.
+ * The sequence of the row gives the order of rows with equal ORDER BY values.  The values
+ * are only used by a grouped continuous query, they are the values of the SELECT columns
+ * for the object or, for an {@link Aggregate}, its argument.
+ */
+class Row
+{
+
+    Object object = null;
+    boolean in = false;
+    Object[] keys = null;
+    long seq = 0;
+    List group = null;
+    Object value = null;
+    Object[] values = null;
+
+}
@@ -11,6 +11,7 @@ import dev.mccue.josql.Query;
 import dev.mccue.josql.internal.OrderBy;
 import dev.mccue.josql.internal.Limit;
 import dev.mccue.josql.internal.Utilities;
+import dev.mccue.josql.internal.Numbers;
 import dev.mccue.josql.internal.ColumnReference;
 
 import dev.mccue.josql.expressions.*;
@@ -1941,7 +1942,7 @@ String MultiName():
                 ;
               }
               token = jj_consume_token(S_DOUBLE);
-                                                                                                      retval = new ConstantExpression (); ce = (ConstantExpression) retval; ce.setValue (Double.valueOf (tmp+token.image));
+                                                                                                      retval = new ConstantExpression (); ce = (ConstantExpression) retval; ce.setValue (Numbers.parse (tmp+token.image));
             } else if (jj_2_32(2147483647)) {
               switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
               case 70:
@@ -1965,7 +1966,7 @@ String MultiName():
                 ;
               }
               token = jj_consume_token(S_INTEGER);
-                                                                                                               retval = new ConstantExpression (); ce = (ConstantExpression) retval; ce.setValue (Double.valueOf (tmp+token.image));
+                                                                                                               retval = new ConstantExpression (); ce = (ConstantExpression) retval; ce.setValue (Numbers.parse (tmp+token.image));
             } else if (jj_2_33(2)) {
               switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
               case 70:
@@ -2375,14 +2376,6 @@ String MultiName():
     finally { jj_save(33, xla); }
   }
 
-  final private boolean jj_3R_65() {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_85()) jj_scanpos = xsp;
-    if (jj_scan_token(S_DOUBLE)) return true;
-    return false;
-  }
-
   final private boolean jj_3R_149() {
     if (jj_scan_token(K_GROUP_BY_RESULTS)) return true;
     return false;
@@ -3779,6 +3772,14 @@ String MultiName():
     return false;
   }
 
+  final private boolean jj_3R_65() {
+    Token xsp;
+    xsp = jj_scanpos;
+    if (jj_3R_85()) jj_scanpos = xsp;
+    if (jj_scan_token(S_DOUBLE)) return true;
+    return false;
+  }
+
   public JoSQLParserTokenManager token_source;
   JavaCharStream jj_input_stream;
   public Token token, jj_nt;
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.profiler;
+
+/**
+ * Holds the profiling information for a single expression node (or function handler
+ * method).  Every invocation is counted but only every Nth invocation (the sample interval
+ * of the {@link ExpressionProfiler}) is timed, the total time and allocation figures are
+ * then estimated by scaling the sampled values up to the number of invocations.
+ * <p>
+ * Times are "inclusive", that is the time for an expression includes the time taken
+ * to evaluate its child expressions.
+ */
+public class ExpressionProfile
+{
+
+    private String type = null;
+    private String description = null;
+    private String clause = null;
+    private int interval = 1;
+
+    private long invocations = 0;
+    private long samples = 0;
+    private long sampledNanos = 0;
+    private long sampledBytes = 0;
+
+    ExpressionProfile (String type,
+		       String description,
+		       String clause,
+		       int    interval)
+    {
+
+	this.type = type;
+	this.description = description;
+	this.clause = clause;
+	this.interval = interval;
+
+    }
+
+    /**
+     * Count an invocation and return whether it should be sampled.  This is called
+     * by the instrumented expressions, it should not be called by user code.
+     *
+     * @return <code>true</code> if the invocation should be timed and the result passed
+     *         to: {@link #addSample(long,long)}.
+     */
+    public boolean sample ()
+    {
+
+	return (this.invocations++ % this.interval) == 0;
+
+    }
+
+    /**
+     * Add a sample.  This is called by the instrumented expressions, it should not be
+     * called by user code.
+     *
+     * @param nanos The time the invocation took in nanoseconds.
+     * @param bytes The number of bytes allocated during the invocation.
+     */
+    public void addSample (long nanos,
+			   long bytes)
+    {
+
+	this.samples++;
+	this.sampledNanos += nanos;
+
+	if (bytes > 0)
+	{
+
+	    this.sampledBytes += bytes;
+
+	}
+
+    }
+
+    /**
+     * Get the type of node that was profiled, this is the (short) class name of the
+     * expression or <b>method</b> for a function handler method.
+     *
+     * @return The type.
+     */
+    public String getType ()
+    {
+
+	return this.type;
+
+    }
+
+    /**
+     * Get the description of the node, for expressions this is the string representation
+     * of the expression, for function handler methods it is the method signature.
+     *
+     * @return The description.
+     */
+    public String getDescription ()
+    {
+
+	return this.description;
+
+    }
+
+    /**
+     * Get the clause that the node is part of, i.e. WHERE, SELECT, HAVING, ORDER BY, GROUP BY or
+     * EXECUTE ON.  Function handler methods will return <code>null</code> since they may be
+     * called from any clause.
+     *
+     * @return The clause.
+     */
+    public String getClause ()
+    {
+
+	return this.clause;
+
+    }
+
+    public long getInvocationCount ()
+    {
+
+	return this.invocations;
+
+    }
+
+    public long getSampleCount ()
+    {
+
+	return this.samples;
+
+    }
+
+    /**
+     * Get the time (in nanoseconds) taken by the sampled invocations.
+     *
+     * @return The sampled time.
+     */
+    public long getSampledTime ()
+    {
+
+	return this.sampledNanos;
+
+    }
+
+    /**
+     * Get the estimated cumulative time (in nanoseconds) taken by all the invocations.
+     *
+     * @return The estimated time.
+     */
+    public long getEstimatedTime ()
+    {
+
+	if (this.samples == 0)
+	{
+
+	    return 0;
+
+	}
+
+	return (long) ((double) this.sampledNanos / (double) this.samples * (double) this.invocations);
+
+    }
+
+    /**
+     * Get the estimated number of bytes allocated by all the invocations.
+     *
+     * @return The estimated allocation.
+     * @see dev.mccue.josql.internal.AllocationMeter
+     */
+    public long getEstimatedAllocatedBytes ()
+    {
+
+	if (this.samples == 0)
+	{
+
+	    return 0;
+
+	}
+
+	return (long) ((double) this.sampledBytes / (double) this.samples * (double) this.invocations);
+
+    }
+
+    void reset ()
+    {
+
+	this.invocations = 0;
+	this.samples = 0;
+	this.sampledNanos = 0;
+	this.sampledBytes = 0;
+
+    }
+
+    public String toString ()
+    {
+
+	StringBuffer b = new StringBuffer ();
+
+	if (this.clause != null)
+	{
+
+	    b.append (this.clause);
+	    b.append (" ");
+
+	}
+
+	b.append (this.type);
+	b.append (" [");
+	b.append (this.description);
+	b.append ("] invocations: ");
+	b.append (this.invocations);
+	b.append (", samples: ");
+	b.append (this.samples);
+	b.append (", est. time: ");
+	b.append (this.getEstimatedTime () / 1000);
+	b.append ("us, est. allocated: ");
+	b.append (this.getEstimatedAllocatedBytes ());
+	b.append (" bytes");
+
+	return b.toString ();
+
+    }
+
+}
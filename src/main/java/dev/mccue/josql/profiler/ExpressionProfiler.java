@@ -0,0 +1,244 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.profiler;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+
+import java.lang.reflect.Method;
+
+import dev.mccue.josql.functions.RegisteredFunction;
+
+/**
+ * An opt-in profiler that records, per expression node, the number of invocations,
+ * the (estimated) cumulative time and the (estimated) number of bytes allocated.
+ * Function handler methods are also profiled, the figures for a method are
+ * shared across all the functions that call it.
+ * <p>
+ * To keep the overhead low only every Nth invocation of a node is timed (where N is the
+ * sample interval), the totals are then estimated from the samples.
+ * <p>
+ * Usage:
+ * <pre>
+ *   ExpressionProfiler p = new ExpressionProfiler ();
+ *
+ *   Query q = new Query ();
+ *   q.setProfiler (p);
+ *   q.parse (myStatement);
+ *   q.execute (myObjects);
+ *
+ *   System.out.println (p);
+ * </pre>
+ * <p>
+ * The nodes in the WHERE, HAVING and SELECT clauses are profiled along with the functions
+ * (and their arguments) used in the ORDER BY, GROUP BY and EXECUTE ON clauses.  Sub-queries
+ * are profiled as a single node.
+ */
+public class ExpressionProfiler
+{
+
+    public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    public static final String WHERE = "WHERE";
+    public static final String HAVING = "HAVING";
+    public static final String SELECT = "SELECT";
+    public static final String ORDER_BY = "ORDER BY";
+    public static final String GROUP_BY = "GROUP BY";
+    public static final String EXECUTE_ON = "EXECUTE ON";
+
+    private int interval = ExpressionProfiler.DEFAULT_SAMPLE_INTERVAL;
+    private List profiles = new ArrayList ();
+    // Shared profiles, i.e. those of the function handler methods.
+    private Map methodProfiles = new HashMap ();
+
+    public ExpressionProfiler ()
+    {
+
+    }
+
+    /**
+     * Create a new profiler that will time every <b>interval</b> invocation of a node.
+     * Use 1 to time every invocation.
+     *
+     * @param interval The sample interval.
+     * @throws IllegalArgumentException If the interval is less than 1.
+     */
+    public ExpressionProfiler (int interval)
+    {
+
+	if (interval < 1)
+	{
+
+	    throw new IllegalArgumentException ("Sample interval must be 1 or greater, got: " +
+						interval);
+
+	}
+
+	this.interval = interval;
+
+    }
+
+    public int getSampleInterval ()
+    {
+
+	return this.interval;
+
+    }
+
+    /**
+     * Get the profiles gathered so far, ordered by estimated time, most expensive first.
+     *
+     * @return A List of {@link ExpressionProfile} objects.
+     */
+    public List getProfiles ()
+    {
+
+	List l = new ArrayList (this.profiles);
+
+	Collections.sort (l,
+			  new Comparator ()
+			  {
+
+			      public int compare (Object o1,
+						  Object o2)
+			      {
+
+				  long t1 = ((ExpressionProfile) o1).getEstimatedTime ();
+				  long t2 = ((ExpressionProfile) o2).getEstimatedTime ();
+
+				  if (t1 == t2)
+				  {
+
+				      return 0;
+
+				  }
+
+				  return (t1 > t2) ? -1 : 1;
+
+			      }
+
+			  });
+
+	return l;
+
+    }
+
+    /**
+     * Reset all the counts, the profiles themselves are retained.
+     */
+    public void reset ()
+    {
+
+	for (int i = 0; i < this.profiles.size (); i++)
+	{
+
+	    ((ExpressionProfile) this.profiles.get (i)).reset ();
+
+	}
+
+    }
+
+    /**
+     * Get the profile for a node of a query, the profile is created if there isn't one for
+     * the key.
+     * <p>
+     * This is called when the Query is instrumented, it should not be called by user code.
+     *
+     * @param key The key of a profile that is shared by several nodes, i.e. a function handler
+     *            {@link Method} or {@link RegisteredFunction}, or <code>null</code> to always
+     *            create a new profile.
+     * @param type The type of the node, i.e. the simple class name of the expression.
+     * @param description The description of the node.
+     * @param clause The clause the node belongs to, <code>null</code> for a shared profile.
+     * @return The profile.
+     */
+    public ExpressionProfile getProfile (Object key,
+					 String type,
+					 String description,
+					 String clause)
+    {
+
+	if (key == null)
+	{
+
+	    return this.createProfile (type,
+				       description,
+				       clause);
+
+	}
+
+	ExpressionProfile p = (ExpressionProfile) this.methodProfiles.get (key);
+
+	if (p == null)
+	{
+
+	    p = this.createProfile (type,
+				    description,
+				    clause);
+
+	    this.methodProfiles.put (key,
+				     p);
+
+	}
+
+	return p;
+
+    }
+
+    private ExpressionProfile createProfile (String type,
+					     String description,
+					     String clause)
+    {
+
+	ExpressionProfile p = new ExpressionProfile (type,
+						     description,
+						     clause,
+						     this.interval);
+
+	this.profiles.add (p);
+
+	return p;
+
+    }
+
+    /**
+     * Return a report of the profiles, one per line, most expensive first.
+     *
+     * @return The report.
+     */
+    public String toString ()
+    {
+
+	StringBuffer b = new StringBuffer ();
+
+	List l = this.getProfiles ();
+
+	for (int i = 0; i < l.size (); i++)
+	{
+
+	    b.append (l.get (i));
+	    b.append ("\n");
+
+	}
+
+	return b.toString ();
+
+    }
+
+}
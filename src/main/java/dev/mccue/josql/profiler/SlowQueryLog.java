@@ -0,0 +1,406 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.profiler;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Date;
+
+import dev.mccue.josql.Query;
+import dev.mccue.josql.QueryResults;
+
+/**
+ * A log of query executions that exceeded a time, row or group threshold.  Records are held
+ * in a bounded in-memory ring buffer (oldest records are dropped first) and can also be
+ * appended, one per line, to a file.
+ * <p>
+ * Usage:
+ * <pre>
+ *   SlowQueryLog log = new SlowQueryLog (200);
+ *   log.setTimeThreshold (50);
+ *   log.setRowThreshold (100000);
+ *
+ *   Query q = new Query ();
+ *   q.parse (myStatement);
+ *   q.setSlowQueryLog (log);
+ * </pre>
+ * <p>
+ * A threshold of -1 means that the threshold is not checked, by default only the time
+ * threshold is set (to 1000ms).  A single log can be shared by many queries (and threads).
+ */
+public class SlowQueryLog
+{
+
+    public static final int DEFAULT_CAPACITY = 100;
+    public static final long DEFAULT_TIME_THRESHOLD = 1000;
+
+    private SlowQueryRecord[] records = null;
+    private int next = 0;
+    private int count = 0;
+
+    private long timeThreshold = SlowQueryLog.DEFAULT_TIME_THRESHOLD;
+    private int rowThreshold = -1;
+    private int groupThreshold = -1;
+
+    private File file = null;
+    private IOException fileError = null;
+
+    public SlowQueryLog ()
+    {
+
+	this (SlowQueryLog.DEFAULT_CAPACITY);
+
+    }
+
+    /**
+     * Create a new log that will hold (at most) <b>capacity</b> records in memory.
+     *
+     * @param capacity The number of records to hold, use 0 to only write to a file.
+     * @throws IllegalArgumentException If the capacity is less than 0.
+     */
+    public SlowQueryLog (int capacity)
+    {
+
+	if (capacity < 0)
+	{
+
+	    throw new IllegalArgumentException ("Capacity must be 0 or greater, got: " +
+						capacity);
+
+	}
+
+	this.records = new SlowQueryRecord[capacity];
+
+    }
+
+    /**
+     * Set the execution time (in milliseconds) above which an execution will be logged.
+     *
+     * @param t The time, -1 to not check.
+     */
+    public void setTimeThreshold (long t)
+    {
+
+	this.timeThreshold = t;
+
+    }
+
+    public long getTimeThreshold ()
+    {
+
+	return this.timeThreshold;
+
+    }
+
+    /**
+     * Set the number of rows (the objects the query is executed against) above which an
+     * execution will be logged.
+     *
+     * @param r The number of rows, -1 to not check.
+     */
+    public void setRowThreshold (int r)
+    {
+
+	this.rowThreshold = r;
+
+    }
+
+    public int getRowThreshold ()
+    {
+
+	return this.rowThreshold;
+
+    }
+
+    /**
+     * Set the number of groups (for queries with a GROUP BY clause) above which an
+     * execution will be logged.
+     *
+     * @param g The number of groups, -1 to not check.
+     */
+    public void setGroupThreshold (int g)
+    {
+
+	this.groupThreshold = g;
+
+    }
+
+    public int getGroupThreshold ()
+    {
+
+	return this.groupThreshold;
+
+    }
+
+    /**
+     * Set the file that records should be appended to, pass <code>null</code> to only
+     * keep the records in memory.
+     *
+     * @param f The file.
+     */
+    public synchronized void setFile (File f)
+    {
+
+	this.file = f;
+	this.fileError = null;
+
+    }
+
+    public synchronized File getFile ()
+    {
+
+	return this.file;
+
+    }
+
+    /**
+     * Get the last error that occurred when writing to the file, the query execution
+     * is not failed when the log cannot be written.
+     *
+     * @return The error, or <code>null</code> if there hasn't been one.
+     */
+    public synchronized IOException getFileError ()
+    {
+
+	return this.fileError;
+
+    }
+
+    /**
+     * Get the records currently held in memory, oldest first.
+     *
+     * @return A List of {@link SlowQueryRecord} objects.
+     */
+    public synchronized List getRecords ()
+    {
+
+	List l = new ArrayList (this.count);
+
+	int s = this.next - this.count;
+
+	if (s < 0)
+	{
+
+	    s += this.records.length;
+
+	}
+
+	for (int i = 0; i < this.count; i++)
+	{
+
+	    l.add (this.records[(s + i) % this.records.length]);
+
+	}
+
+	return l;
+
+    }
+
+    /**
+     * Remove all the records held in memory.
+     */
+    public synchronized void clear ()
+    {
+
+	for (int i = 0; i < this.records.length; i++)
+	{
+
+	    this.records[i] = null;
+
+	}
+
+	this.next = 0;
+	this.count = 0;
+
+    }
+
+    /**
+     * Check the execution against the thresholds and log it if any are exceeded.
+     * This is called by the Query at the end of an execution.
+     *
+     * @param q The Query.
+     * @param qr The results of the execution.
+     * @param time The time the execution took, in nanoseconds.
+     */
+    public void check (Query        q,
+		       QueryResults qr,
+		       long         time)
+    {
+
+	StringBuffer reason = null;
+
+	if ((this.timeThreshold > -1)
+	    &&
+	    (time > (this.timeThreshold * 1000000))
+	   )
+	{
+
+	    reason = this.addReason (reason,
+				     "time > " + this.timeThreshold + "ms");
+
+	}
+
+	if (this.rowThreshold > -1)
+	{
+
+	    Number n = (Number) qr.getStatistics ().get (QueryResults.INPUT_SIZE);
+
+	    if ((n != null)
+		&&
+		(n.intValue () > this.rowThreshold)
+	       )
+	    {
+
+		reason = this.addReason (reason,
+					 "rows > " + this.rowThreshold);
+
+	    }
+
+	}
+
+	if ((this.groupThreshold > -1)
+	    &&
+	    (qr.getGroupByResults () != null)
+	    &&
+	    (qr.getGroupByResults ().size () > this.groupThreshold)
+	   )
+	{
+
+	    reason = this.addReason (reason,
+				     "groups > " + this.groupThreshold);
+
+	}
+
+	if (reason == null)
+	{
+
+	    return;
+
+	}
+
+	String s = q.getQuery ();
+
+	if (s == null)
+	{
+
+	    s = q.toString ();
+
+	}
+
+	Map vars = new LinkedHashMap ();
+
+	if (q.getVariables () != null)
+	{
+
+	    vars.putAll (q.getVariables ());
+
+	}
+
+	this.add (new SlowQueryRecord (new Date (),
+				       s,
+				       reason.toString (),
+				       vars,
+				       new LinkedHashMap (qr.getStageTimings ()),
+				       new LinkedHashMap (qr.getStatistics ()),
+				       time));
+
+    }
+
+    private StringBuffer addReason (StringBuffer b,
+				    String       r)
+    {
+
+	if (b == null)
+	{
+
+	    return new StringBuffer (r);
+
+	}
+
+	b.append (", ");
+	b.append (r);
+
+	return b;
+
+    }
+
+    private synchronized void add (SlowQueryRecord r)
+    {
+
+	if (this.records.length > 0)
+	{
+
+	    this.records[this.next] = r;
+
+	    this.next = (this.next + 1) % this.records.length;
+
+	    if (this.count < this.records.length)
+	    {
+
+		this.count++;
+
+	    }
+
+	}
+
+	if (this.file != null)
+	{
+
+	    FileWriter w = null;
+
+	    try
+	    {
+
+		w = new FileWriter (this.file,
+				    true);
+
+		w.write (r.toString ());
+		w.write (System.getProperty ("line.separator"));
+
+	    } catch (IOException e) {
+
+		this.fileError = e;
+
+	    } finally {
+
+		if (w != null)
+		{
+
+		    try
+		    {
+
+			w.close ();
+
+		    } catch (IOException e) {
+
+			this.fileError = e;
+
+		    }
+
+		}
+
+	    }
+
+	}
+
+    }
+
+}
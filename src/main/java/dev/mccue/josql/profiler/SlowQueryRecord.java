@@ -0,0 +1,172 @@
+/*
+ * Copyright 2004-2007 Gary Bentley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.mccue.josql.profiler;
+
+import java.util.Map;
+import java.util.Date;
+
+/**
+ * A single entry in a {@link SlowQueryLog}.  All the values are copies taken at the end
+ * of the execution so they are not affected by later executions of the query.
+ */
+public class SlowQueryRecord
+{
+
+    private Date date = null;
+    private String query = null;
+    private String reason = null;
+    private Map variables = null;
+    private Map stageTimings = null;
+    private Map statistics = null;
+    private long time = 0;
+
+    SlowQueryRecord (Date   date,
+		     String query,
+		     String reason,
+		     Map    variables,
+		     Map    stageTimings,
+		     Map    statistics,
+		     long   time)
+    {
+
+	this.date = date;
+	this.query = query;
+	this.reason = reason;
+	this.variables = variables;
+	this.stageTimings = stageTimings;
+	this.statistics = statistics;
+	this.time = time;
+
+    }
+
+    /**
+     * Get when the execution finished.
+     *
+     * @return The date.
+     */
+    public Date getDate ()
+    {
+
+	return this.date;
+
+    }
+
+    /**
+     * Get the query statement, if the query was not parsed from a statement then this
+     * will be the reconstructed form of the query.
+     *
+     * @return The statement.
+     */
+    public String getQuery ()
+    {
+
+	return this.query;
+
+    }
+
+    /**
+     * Get the threshold(s) that were exceeded.
+     *
+     * @return The reason the execution was logged.
+     */
+    public String getReason ()
+    {
+
+	return this.reason;
+
+    }
+
+    /**
+     * Get the bind variables at the time of the execution, note that anonymous
+     * bind variables (?) will be keyed on their internal name.
+     *
+     * @return The bind variable name/value mappings, may be empty.
+     */
+    public Map getVariables ()
+    {
+
+	return this.variables;
+
+    }
+
+    /**
+     * Get the time each stage took, in nanoseconds.
+     *
+     * @return The stage timings.
+     * @see dev.mccue.josql.QueryResults#getStageTimings()
+     */
+    public Map getStageTimings ()
+    {
+
+	return this.stageTimings;
+
+    }
+
+    /**
+     * Get the input/output sizes of the execution.
+     *
+     * @return The statistics.
+     * @see dev.mccue.josql.QueryResults#getStatistics()
+     */
+    public Map getStatistics ()
+    {
+
+	return this.statistics;
+
+    }
+
+    /**
+     * Get the total execution time in nanoseconds.
+     *
+     * @return The time.
+     */
+    public long getTime ()
+    {
+
+	return this.time;
+
+    }
+
+    /**
+     * Return the record as a single line, suitable for writing to a file.
+     *
+     * @return The record as a string.
+     */
+    public String toString ()
+    {
+
+	StringBuffer b = new StringBuffer ();
+
+	b.append (this.date.getTime ());
+	b.append (" [");
+	b.append (this.reason);
+	b.append ("] time: ");
+	b.append (this.time / 1000000);
+	b.append ("ms, query: ");
+	b.append (this.query.replace ('\n',
+				      ' ').replace ('\r',
+						    ' '));
+	b.append (", variables: ");
+	b.append (this.variables);
+	b.append (", stages (ns): ");
+	b.append (this.stageTimings);
+	b.append (", statistics: ");
+	b.append (this.statistics);
+
+	return b.toString ();
+
+    }
+
+}
@@ -6,4 +6,15 @@ module dev.mccue.josql {
     exports dev.mccue.josql.functions;
     exports dev.mccue.josql.functions.regexp;
     exports dev.mccue.josql.events;
+    exports dev.mccue.josql.profiler;
+    exports dev.mccue.josql.index;
+    exports dev.mccue.josql.live;
+    exports dev.mccue.josql.accessors;
+    exports dev.mccue.josql.compiler;
+    exports dev.mccue.josql.builder;
+
+    requires static jdk.management;
+    requires static java.compiler;
+
+    uses dev.mccue.josql.accessors.AccessorTable;
 }
\ No newline at end of file